@@ -15,13 +15,20 @@ import java.awt.MediaTracker;
 import java.awt.Point;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
 import java.net.URL;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.BoardConstants;
 import net.sf.gogui.gogui.GoGui.Orientation;
 
-/** Draws a board. */
+/** Draws a board.
+    The background image, the grid and the grid labels are drawn into a
+    cached image, which is only redrawn if the width, the board size, the
+    grid label setting or the orientation changes. Only the parts of the
+    board that intersect the clip bounds of the graphics object are drawn,
+    so that callers can redraw small regions of a buffered image after a few
+    fields changed. */
 public class BoardPainter
 {
     public BoardPainter()
@@ -61,10 +68,9 @@ public class BoardPainter
         m_fieldSize =
             Math.round((float)Math.floor(width / (m_size + 2 * borderSize)));
         m_fieldOffset = (width - m_size * m_fieldSize) / 2;
-        drawBackground(graphics);
-        drawGrid(graphics);
-        if (showGrid)
-            drawGridLabels(graphics);
+        if (width <= 0)
+            return;
+        graphics.drawImage(getGridImage(graphics, showGrid), 0, 0, null);
         drawShadows(graphics, field);
         drawFields(graphics, field);
     }
@@ -156,6 +162,15 @@ public class BoardPainter
 
     private int m_width;
 
+    /** Width of the cached images. */
+    private int m_imageWidth;
+
+    /** Board size of the cached grid image. */
+    private int m_imageSize;
+
+    /** Grid label setting of the cached grid image. */
+    private boolean m_imageShowGrid;
+
     private static int s_cachedFontFieldSize;
 
     private static final AlphaComposite COMPOSITE_3
@@ -171,15 +186,37 @@ public class BoardPainter
 
     private final Image m_image;
 
+    /** Cached background image scaled to the board width.
+        Null, if no background image exists or if the cache is invalid. */
+    private Image m_backgroundImage;
+
+    /** Cached image of background, grid and grid labels.
+        Null, if the cache is invalid. */
+    private Image m_gridImage;
+
+    /** Cached image of a stone shadow.
+        Contains an opaque black circle with a transparent background, which
+        is drawn with transparency. */
+    private BufferedImage m_shadowImage;
+
+    private Image createImage(Graphics graphics)
+    {
+        if (graphics instanceof Graphics2D)
+            return ((Graphics2D)graphics).getDeviceConfiguration()
+                .createCompatibleImage(m_width, m_width);
+        return new BufferedImage(m_width, m_width,
+                                 BufferedImage.TYPE_INT_RGB);
+    }
+
     private void drawBackground(Graphics graphics)
     {
-        if (m_image == null)
+        if (m_backgroundImage == null)
         {
             graphics.setColor(new Color(212, 167, 102));
             graphics.fillRect(0, 0, m_width, m_width);
         }
         else
-            graphics.drawImage(m_image, 0, 0, m_width, m_width, null);
+            graphics.drawImage(m_backgroundImage, 0, 0, null);
     }
 
     private void drawFields(Graphics graphics, ConstField field[][])
@@ -192,7 +229,7 @@ public class BoardPainter
             {
                 Point location = getLocation(x, y);
                 field[x][y].draw(graphics, m_fieldSize, location.x,
-                                 location.y, m_image, m_width);
+                                 location.y, m_backgroundImage, m_width);
             }
         }
     }
@@ -310,20 +347,21 @@ public class BoardPainter
             graphics instanceof Graphics2D ? (Graphics2D)graphics : null;
         if (graphics2D == null)
             return;
-        graphics2D.setComposite(COMPOSITE_3);
         int size = m_fieldSize - 2 * Field.getStoneMargin(m_fieldSize);
         int offsetX = getShadowOffset() / 2; // Relates to stone gradient
         int offsetY = getShadowOffset();
+        Image shadowImage = getShadowImage(size);
+        graphics2D.setComposite(COMPOSITE_3);
         for (int x = 0; x < m_size; ++x)
             for (int y = 0; y < m_size; ++y)
             {
                 if (field[x][y].getColor() == EMPTY)
                     continue;
                 Point location = getCenter(x, y);
-                graphics.setColor(Color.black);
-                graphics.fillOval(location.x - size / 2 + offsetX,
-                                  location.y - size / 2 + offsetY,
-                                  size, size);
+                int shadowX = location.x - size / 2 + offsetX;
+                int shadowY = location.y - size / 2 + offsetY;
+                if (graphics.hitClip(shadowX, shadowY, size, size))
+                    graphics.drawImage(shadowImage, shadowX, shadowY, null);
             }
         graphics.setPaintMode();
     }
@@ -339,6 +377,55 @@ public class BoardPainter
         graphics.drawString(string, location.x + x, location.y + y);
     }
 
+    /** Get the cached image of background, grid and grid labels.
+        Recreates the cached images if the width, board size, grid label
+        setting changed or the orientation changed since the last call. */
+    private Image getGridImage(Graphics graphics, boolean showGrid)
+    {
+        if (m_gridImage != null && m_imageWidth == m_width
+            && m_imageSize == m_size && m_imageShowGrid == showGrid)
+            return m_gridImage;
+        if (m_image != null
+            && (m_backgroundImage == null || m_imageWidth != m_width))
+        {
+            m_backgroundImage = createImage(graphics);
+            Graphics backgroundGraphics = m_backgroundImage.getGraphics();
+            backgroundGraphics.drawImage(m_image, 0, 0, m_width, m_width,
+                                         null);
+            backgroundGraphics.dispose();
+        }
+        m_gridImage = createImage(graphics);
+        Graphics gridGraphics = m_gridImage.getGraphics();
+        if (graphics instanceof Graphics2D
+            && gridGraphics instanceof Graphics2D)
+            ((Graphics2D)gridGraphics).setRenderingHints(
+                                ((Graphics2D)graphics).getRenderingHints());
+        drawBackground(gridGraphics);
+        drawGrid(gridGraphics);
+        if (showGrid)
+            drawGridLabels(gridGraphics);
+        gridGraphics.dispose();
+        m_imageWidth = m_width;
+        m_imageSize = m_size;
+        m_imageShowGrid = showGrid;
+        return m_gridImage;
+    }
+
+    private Image getShadowImage(int size)
+    {
+        if (m_shadowImage != null && m_shadowImage.getWidth() == size)
+            return m_shadowImage;
+        m_shadowImage =
+            new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = m_shadowImage.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                  RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setColor(Color.black);
+        graphics.fillOval(0, 0, size, size);
+        graphics.dispose();
+        return m_shadowImage;
+    }
+
     private static Image loadImage(URL url)
     {
         Image image = Toolkit.getDefaultToolkit().getImage(url);
@@ -355,7 +442,8 @@ public class BoardPainter
         return image;
     }
 
-    private static void setFont(Graphics graphics, int fieldSize)
+    private static synchronized void setFont(Graphics graphics,
+                                             int fieldSize)
     {
         if (s_cachedFont != null && s_cachedFontFieldSize == fieldSize)
         {
@@ -375,6 +463,9 @@ public class BoardPainter
     }
 
     public void setOrientation(boolean flipHorizontal, boolean flipVertical) {
+        if (flipHorizontal != m_flipHorizontal
+            || flipVertical != m_flipVertical)
+            m_gridImage = null;
         m_flipHorizontal = flipHorizontal;
         m_flipVertical = flipVertical;
     }
@@ -34,6 +34,10 @@ public interface ConstField
 
     GoColor getGhostStone();
 
+    /** Get the influence value.
+        Only valid, if isInfluenceSet() returns true. */
+    double getInfluence();
+
     String getLabel();
 
     GoColor getTerritory();
@@ -11,9 +11,12 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.Stroke;
 import java.awt.font.LineMetrics;
 import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
@@ -121,6 +124,11 @@ public class Field
         return m_ghostStone;
     }
 
+    public double getInfluence()
+    {
+        return m_influence;
+    }
+
     public static int getStoneMargin(int size)
     {
         return size / 17;
@@ -243,10 +251,6 @@ public class Field
 
     private static int s_cachedFontFieldSize;
 
-    private int m_paintSizeBlack;
-
-    private int m_paintSizeWhite;
-
     private int m_size;
 
     private double m_influence;
@@ -310,9 +314,13 @@ public class Field
 
     private Graphics2D m_graphics2D;
 
-    private RadialGradientPaint m_paintBlack;
+    /** Maximum number of field sizes in s_stoneImages.
+        Resizing a window can create images for many different sizes. */
+    private static final int MAX_STONE_IMAGES = 64;
 
-    private RadialGradientPaint m_paintWhite;
+    /** Cached images of a black and a white stone by field size. */
+    private static final ConcurrentHashMap<Integer,BufferedImage[]>
+        s_stoneImages = new ConcurrentHashMap<Integer,BufferedImage[]>();
 
     private void drawCircle(Color color)
     {
@@ -480,30 +488,20 @@ public class Field
 
     private void drawStone(GoColor color, boolean isGhostStone)
     {
-        if (color == BLACK)
-            drawStone(color, COLOR_STONE_BLACK, COLOR_STONE_BLACK_BRIGHT,
-                      isGhostStone);
-        else if (color == WHITE)
-            drawStone(color, COLOR_STONE_WHITE, COLOR_STONE_WHITE_BRIGHT,
-                      isGhostStone);
-    }
-
-    private void drawStone(GoColor color, Color colorNormal,
-                           Color colorBright, boolean isGhostStone)
-    {
-        int margin = getStoneMargin(m_size);
+        if (color != BLACK && color != WHITE)
+            return;
+        if (isGhostStone)
+            setComposite(COMPOSITE_8);
         if (m_graphics2D != null && m_size >= 7)
         {
-            RadialGradientPaint paint =
-                getPaint(color, m_size, colorNormal, colorBright);
-            m_graphics2D.setPaint(paint);
+            m_graphics.drawImage(getStoneImage(color, m_size), 0, 0, null);
+            return;
         }
+        int margin = getStoneMargin(m_size);
+        if (color == BLACK)
+            m_graphics.setColor(COLOR_STONE_BLACK);
         else
-        {
-            m_graphics.setColor(colorNormal);
-        }
-        if (isGhostStone)
-            setComposite(COMPOSITE_8);
+            m_graphics.setColor(COLOR_STONE_WHITE);
         m_graphics.fillOval(margin, margin,
                             m_size - 2 * margin, m_size - 2 * margin);
     }
@@ -534,42 +532,56 @@ public class Field
         m_graphics2D.setPaintMode();
     }
 
-    private RadialGradientPaint getPaint(GoColor color, int size,
-                                         Color colorNormal,
-                                         Color colorBright)
+    /** Get the image of a stone.
+        Drawing the stone with a radial gradient paint is slow, because the
+        paint computes the color of each pixel whenever it is used, so the
+        stones are drawn once per field size into cached images with a
+        transparent background. The images are kept for each size, such
+        that boards with different field sizes can be painted by several
+        threads without a lock. */
+    private static BufferedImage getStoneImage(GoColor color, int size)
     {
-        RadialGradientPaint paint;
-        int paintSize;
-        if (color == BLACK)
+        BufferedImage[] images = s_stoneImages.get(size);
+        if (images == null)
         {
-            paint = m_paintBlack;
-            paintSize = m_paintSizeBlack;
+            images = new BufferedImage[2];
+            images[0] = createStoneImage(size, COLOR_STONE_BLACK,
+                                         COLOR_STONE_BLACK_BRIGHT);
+            images[1] = createStoneImage(size, COLOR_STONE_WHITE,
+                                         COLOR_STONE_WHITE_BRIGHT);
+            if (s_stoneImages.size() >= MAX_STONE_IMAGES)
+                s_stoneImages.clear();
+            BufferedImage[] old = s_stoneImages.putIfAbsent(size, images);
+            if (old != null)
+                images = old;
         }
-        else
-        {
-            assert color == WHITE;
-            paint = m_paintWhite;
-            paintSize = m_paintSizeWhite;
-        }
-        if (size == paintSize && paint != null)
-            return paint;
+        if (color == BLACK)
+            return images[0];
+        assert color == WHITE;
+        return images[1];
+    }
+
+    private static BufferedImage createStoneImage(int size,
+                                                  Color colorNormal,
+                                                  Color colorBright)
+    {
+        BufferedImage image =
+            new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                  RenderingHints.VALUE_ANTIALIAS_ON);
         Point2D.Double center = new Point2D.Double(0.43 * size, 0.21 * size);
         Point2D.Double radius1 = new Point2D.Double(0.47 * size, -0.15 * size);
         Point2D.Double radius2 = new Point2D.Double(0.08 * size, 0.25 * size);
         double focus = -0.4;
-        paint = new RadialGradientPaint(center, radius1, radius2, focus,
-                                        colorBright, colorNormal);
-        if (color == BLACK)
-        {
-            m_paintBlack = paint;
-            m_paintSizeBlack = size;
-        }
-        else
-        {
-            m_paintWhite = paint;
-            m_paintSizeWhite = size;
-        }
-        return paint;
+        graphics.setPaint(new RadialGradientPaint(center, radius1, radius2,
+                                                  focus, colorBright,
+                                                  colorNormal));
+        int margin = getStoneMargin(size);
+        graphics.fillOval(margin, margin, size - 2 * margin,
+                          size - 2 * margin);
+        graphics.dispose();
+        return image;
     }
 
     private void setComposite(AlphaComposite composite)
@@ -578,7 +590,8 @@ public class Field
             m_graphics2D.setComposite(composite);
     }
 
-    private static void setFont(Graphics graphics, int fieldSize)
+    private static synchronized void setFont(Graphics graphics,
+                                             int fieldSize)
     {
         if (s_cachedFont != null && s_cachedFontFieldSize == fieldSize)
         {
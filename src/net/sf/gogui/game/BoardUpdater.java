@@ -21,64 +21,200 @@ public class BoardUpdater
     public BoardUpdater()
     {
         m_nodes = new ArrayList<ConstNode>(400);
+        m_path = new ArrayList<PathEntry>(400);
     }
 
+    /** Forget the position remembered from the last update.
+        Must be called if nodes in the path from the root to the node of the
+        last update were modified, because updateIncremental() assumes that
+        the nodes still contain the properties that were used for the last
+        update. */
+    public void invalidate()
+    {
+        m_tree = null;
+        m_board = null;
+        m_pathLength = 0;
+    }
+
+    /** Update a board to a node by replaying all nodes from the root. */
     public void update(ConstGameTree tree, ConstNode currentNode, Board board)
     {
         board.init(tree.getBoardSize());
-        int handicap = tree.getGameInfoConst(currentNode).getHandicap();
+        m_tree = tree;
+        m_board = board;
+        m_handicap = tree.getGameInfoConst(currentNode).getHandicap();
+        m_nuMoves = 0;
+        m_isFirstPlacement = true;
+        m_isHandicapSetupDone = false;
+        m_isInInitialBlackMoveSequence = true;
+        m_pathLength = 0;
         NodeUtil.getPathToRoot(currentNode, m_nodes);
-        int nuMoves = 0;
-        boolean isFirstPlacement = true;
-        boolean isHandicapSetupDone = false;
-        boolean isInInitialBlackMoveSequence = true;
         for (int i = m_nodes.size() - 1; i >= 0; --i)
+            execute(m_nodes.get(i), board);
+    }
+
+    /** Update a board to a node starting from the position of the last
+        update.
+        Takes back the moves from the last node up to the common ancestor of
+        the last node and the new node and plays the moves from the common
+        ancestor to the new node. Falls back to update(), if the board was
+        not updated by this updater before, if the last update was for a
+        different tree, if a game ruler is attached to the board, or if
+        nodes that need to be taken back contain setup stones, a player
+        property or handicap stones stored as moves.
+        Note that the nodes in the path from the root to the node of the
+        last update must not have been modified since the last update
+        (see invalidate()). */
+    public void updateIncremental(ConstGameTree tree, ConstNode currentNode,
+                                  Board board)
+    {
+        if (tree != m_tree || board != m_board || m_pathLength == 0
+            || board.getSize() != tree.getBoardSize()
+            || board.isGameRulerAttached()
+            || board.getNumberMoves()
+               != m_path.get(m_pathLength - 1).m_boardMoves
+            || tree.getGameInfoConst(currentNode).getHandicap() != m_handicap)
         {
-            ConstNode node = m_nodes.get(i);
-            GoColor player = node.getPlayer();
-            if (node.hasSetup())
-            {
-                ConstPointList setupBlack = node.getSetup(BLACK);
-                ConstPointList setupWhite = node.getSetup(WHITE);
-                ConstPointList setupEmpty = node.getSetup(EMPTY);
-                if (handicap > 0 && isFirstPlacement
-                    && setupBlack.size() == handicap && setupWhite.isEmpty()
-                    && setupEmpty.isEmpty())
-                {
-                    board.setupHandicap(setupBlack);
-                    isHandicapSetupDone = true;
-                }
-                else
-                    newSetup(board, setupBlack, setupWhite, setupEmpty, player);
-                isFirstPlacement = false;
-                isInInitialBlackMoveSequence = false;
-            }
-            else if (player != null)
-                board.setToMove(player);
-            Move move = node.getMove();
-            if (move != null)
+            update(tree, currentNode, board);
+            return;
+        }
+        NodeUtil.getPathToRoot(currentNode, m_nodes);
+        // Paths in a tree share a common prefix, so the common ancestor can
+        // be found by comparing backwards from the shorter path length
+        int newLength = m_nodes.size();
+        int common = Math.min(newLength, m_pathLength);
+        while (common > 0
+               && m_path.get(common - 1).m_node
+                  != m_nodes.get(newLength - common))
+            --common;
+        if (common == 0)
+        {
+            update(tree, currentNode, board);
+            return;
+        }
+        for (int i = common; i < m_pathLength; ++i)
+            if (! m_path.get(i).m_isUndoable)
             {
-                board.play(move);
-                ++nuMoves;
-                isFirstPlacement = false;
-                if (move.getColor() != BLACK)
-                    isInInitialBlackMoveSequence = false;
-                // Files from the KGS Go server with Chines rules store
-                // handicap stones as moves, not as setup as specified by SGF
-                if (handicap > 0 && ! isHandicapSetupDone &&
-                    isInInitialBlackMoveSequence && nuMoves == handicap)
-                {
-                    setupMovesAsHandicap(board);
-                    isHandicapSetupDone = true;
-                }
+                update(tree, currentNode, board);
+                return;
             }
-        }
+        PathEntry ancestor = m_path.get(common - 1);
+        board.undo(board.getNumberMoves() - ancestor.m_boardMoves);
+        m_nuMoves = ancestor.m_nuMoves;
+        m_isFirstPlacement = ancestor.m_isFirstPlacement;
+        m_isHandicapSetupDone = ancestor.m_isHandicapSetupDone;
+        m_isInInitialBlackMoveSequence =
+            ancestor.m_isInInitialBlackMoveSequence;
+        m_pathLength = common;
+        for (int i = newLength - common - 1; i >= 0; --i)
+            execute(m_nodes.get(i), board);
+    }
+
+    /** State of the update after executing a node in the current path. */
+    private static class PathEntry
+    {
+        public ConstNode m_node;
+
+        /** Number of moves on the board after executing the node. */
+        public int m_boardMoves;
+
+        public int m_nuMoves;
+
+        public boolean m_isFirstPlacement;
+
+        public boolean m_isHandicapSetupDone;
+
+        public boolean m_isInInitialBlackMoveSequence;
+
+        /** Node can be taken back with Board.undo().
+            This is the case if the node does not contain setup stones or a
+            player property and its move did not trigger the conversion of
+            moves to handicap stones. */
+        public boolean m_isUndoable;
     }
 
     /** Local variable used in update.
         Member variable for avoiding frequent new memory allocations. */
     private final ArrayList<ConstNode> m_nodes;
 
+    /** Path from the root to the node of the last update.
+        Entries at indices greater or equal m_pathLength are unused and kept
+        for avoiding frequent new memory allocations. */
+    private final ArrayList<PathEntry> m_path;
+
+    private int m_pathLength;
+
+    private ConstGameTree m_tree;
+
+    private Board m_board;
+
+    private int m_handicap;
+
+    private int m_nuMoves;
+
+    private boolean m_isFirstPlacement;
+
+    private boolean m_isHandicapSetupDone;
+
+    private boolean m_isInInitialBlackMoveSequence;
+
+    private void execute(ConstNode node, Board board)
+    {
+        boolean isUndoable = true;
+        GoColor player = node.getPlayer();
+        if (node.hasSetup())
+        {
+            ConstPointList setupBlack = node.getSetup(BLACK);
+            ConstPointList setupWhite = node.getSetup(WHITE);
+            ConstPointList setupEmpty = node.getSetup(EMPTY);
+            if (m_handicap > 0 && m_isFirstPlacement
+                && setupBlack.size() == m_handicap && setupWhite.isEmpty()
+                && setupEmpty.isEmpty())
+            {
+                board.setupHandicap(setupBlack);
+                m_isHandicapSetupDone = true;
+            }
+            else
+                newSetup(board, setupBlack, setupWhite, setupEmpty, player);
+            m_isFirstPlacement = false;
+            m_isInInitialBlackMoveSequence = false;
+            isUndoable = false;
+        }
+        else if (player != null)
+        {
+            board.setToMove(player);
+            isUndoable = false;
+        }
+        Move move = node.getMove();
+        if (move != null)
+        {
+            board.play(move);
+            ++m_nuMoves;
+            m_isFirstPlacement = false;
+            if (move.getColor() != BLACK)
+                m_isInInitialBlackMoveSequence = false;
+            // Files from the KGS Go server with Chines rules store
+            // handicap stones as moves, not as setup as specified by SGF
+            if (m_handicap > 0 && ! m_isHandicapSetupDone &&
+                m_isInInitialBlackMoveSequence && m_nuMoves == m_handicap)
+            {
+                setupMovesAsHandicap(board);
+                m_isHandicapSetupDone = true;
+                isUndoable = false;
+            }
+        }
+        if (m_pathLength == m_path.size())
+            m_path.add(new PathEntry());
+        PathEntry entry = m_path.get(m_pathLength++);
+        entry.m_node = node;
+        entry.m_boardMoves = board.getNumberMoves();
+        entry.m_nuMoves = m_nuMoves;
+        entry.m_isFirstPlacement = m_isFirstPlacement;
+        entry.m_isHandicapSetupDone = m_isHandicapSetupDone;
+        entry.m_isInInitialBlackMoveSequence = m_isInInitialBlackMoveSequence;
+        entry.m_isUndoable = isUndoable;
+    }
+
     /** Initialize board with new setup from merging the current position
         with the setup properties from a node. */
     private void newSetup(Board board, ConstPointList setupBlack,
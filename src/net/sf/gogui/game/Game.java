@@ -153,6 +153,7 @@ public class Game
     {
         m_tree = tree;
         m_current = m_tree.getRoot();
+        m_boardUpdater.invalidate();
         updateBoard();
         updateClock();
         m_clock.reset();
@@ -314,6 +315,7 @@ public class Game
             || color.equals(m_board.getToMove()))
             setModified();
         m_current.setPlayer(color);
+        m_boardUpdater.invalidate();
         updateBoard();
     }
 
@@ -357,6 +359,8 @@ public class Game
     {
         assert p != null;
         m_current.removeSetup(p);
+        // The current node is modified in place
+        m_boardUpdater.invalidate();
         Node father = m_current.getFather();
         if (father != null)
         {
@@ -422,7 +426,7 @@ public class Game
 
     private void updateBoard()
     {
-        m_boardUpdater.update(m_tree, m_current, m_board);
+        m_boardUpdater.updateIncremental(m_tree, m_current, m_board);
         if (m_board.isGameRulerAttached())
             GenericBoard.copyBoardState(m_board.getGameRuler(), m_current, m_board);
         m_board.setToMove(getToMove());
@@ -33,6 +33,12 @@ final class ExtraInfo
 
     public MoreExtraInfo m_moreExtraInfo;
 
+    /** Loader of the lazy content or null, if not loaded on demand.
+        @see NodeLoader */
+    public NodeLoader m_loader;
+
+    public int m_loaderIndex;
+
     public boolean isEmpty()
     {
         return ((m_marked == null || m_marked.size() == 0)
@@ -102,7 +108,9 @@ final class TimeInfo
 /** Node in a game tree.
     The memory requirement is optimized for nodes containing only a move and
     comment property (e.g. for GNU Go's large SGF traces).
-    The optimization also expects that most nodes have only one child. */
+    The optimization also expects that most nodes have only one child.
+    The comment, markup and other properties of nodes read from large files
+    can be loaded on demand, see NodeLoader. */
 public final class Node
     implements ConstNode
 {
@@ -151,6 +159,7 @@ public final class Node
     public void addMarked(GoPoint point, MarkType type)
     {
         assert point != null;
+        detachLoader();
         Map<MarkType,PointList> marked = createMarked();
         PointList pointList = (PointList)marked.get(type);
         if (pointList == null)
@@ -176,11 +185,13 @@ public final class Node
         @param values The values of the property */
     public void addSgfProperty(String label, ArrayList<String> values)
     {
+        detachLoader();
         createSgfProperties().add(label, values);
     }
 
     public void addSgfProperty(String label, String value)
     {
+        detachLoader();
         createSgfProperties().add(label, value);
     }
 
@@ -265,6 +276,7 @@ public final class Node
         comment. */
     public String getComment()
     {
+        loadContent();
         if (m_comment == null)
             return null;
         try
@@ -308,7 +320,8 @@ public final class Node
         @return Label at location or null, if no label. */
     public String getLabel(GoPoint point)
     {
-        Map<GoPoint,String> map = getLabels();
+        loadContent();
+        Map<GoPoint,String> map = getLabelsInternal();
         if (map == null || ! map.containsKey(point))
             return null;
         return map.get(point);
@@ -318,15 +331,15 @@ public final class Node
         @return Map containing (Point,String) pairs. */
     public Map<GoPoint,String> getLabels()
     {
-        if (m_extraInfo == null || m_extraInfo.m_moreExtraInfo == null)
-            return null;
-        return m_extraInfo.m_moreExtraInfo.m_label;
+        detachLoader();
+        return getLabelsInternal();
     }
 
     /** Get all labels on the board (unmodifiable). */
     public Map<GoPoint,String> getLabelsUnmodifiable()
     {
-        Map<GoPoint,String> labels = getLabels();
+        loadContent();
+        Map<GoPoint,String> labels = getLabelsInternal();
         if (labels == null)
             return null;
         return Collections.unmodifiableMap(labels);
@@ -337,9 +350,8 @@ public final class Node
         @return Map containing (Point,String) pairs. */
     public PointList getMarked(MarkType type)
     {
-        if (m_extraInfo == null || m_extraInfo.m_marked == null)
-            return null;
-        return m_extraInfo.m_marked.get(type);
+        detachLoader();
+        return getMarkedInternal(type);
     }
 
     /** Get all markups of a type (const).
@@ -347,7 +359,8 @@ public final class Node
         @return Map containing (Point,String) pairs. */
     public ConstPointList getMarkedConst(MarkType type)
     {
-        return getMarked(type);
+        loadContent();
+        return getMarkedInternal(type);
     }
 
     /** Get move contained in this node.
@@ -409,9 +422,8 @@ public final class Node
         @see #addSgfProperty */
     public SgfProperties getSgfProperties()
     {
-        if (m_extraInfo == null || m_extraInfo.m_moreExtraInfo == null)
-            return null;
-        return m_extraInfo.m_moreExtraInfo.m_sgfProperties;
+        detachLoader();
+        return getSgfPropertiesInternal();
     }
 
     /** Get other unspecified SGF properties (const).
@@ -420,7 +432,8 @@ public final class Node
         @see #addSgfProperty */
     public ConstSgfProperties getSgfPropertiesConst()
     {
-        return getSgfProperties();
+        loadContent();
+        return getSgfPropertiesInternal();
     }
 
     /** Time left for color after move was made.
@@ -455,6 +468,7 @@ public final class Node
         @return The value, or Float.NaN, if node contains no value */
     public float getValue()
     {
+        loadContent();
         if (m_extraInfo == null)
             return Float.NaN;
         return m_extraInfo.m_value;
@@ -471,6 +485,7 @@ public final class Node
         @return true if node contains a comment */
     public boolean hasComment()
     {
+        loadContent();
         return (m_comment != null);
     }
 
@@ -500,6 +515,7 @@ public final class Node
     /** Return true, if node stores no information. */
     public boolean isEmpty()
     {
+        loadContent();
         return (m_comment == null && m_move == null
                 && (m_extraInfo == null || m_extraInfo.isEmpty()));
     }
@@ -543,6 +559,7 @@ public final class Node
     public void removeMarked(GoPoint point, MarkType type)
     {
         assert point != null;
+        detachLoader();
         Map<MarkType,PointList> marked = createMarked();
         PointList pointList = (PointList)marked.get(type);
         if (pointList != null)
@@ -577,6 +594,7 @@ public final class Node
         node. */
     public void setComment(String comment)
     {
+        detachLoader();
         if (StringUtil.isEmpty(comment))
         {
             m_comment = null;
@@ -607,6 +625,7 @@ public final class Node
     public void setLabel(GoPoint point, String label)
     {
         assert point != null;
+        detachLoader();
         Map<GoPoint,String> map = createLabel();
         map.remove(point);
         if (label == null)
@@ -655,6 +674,7 @@ public final class Node
         @param value The value */
     public void setValue(float value)
     {
+        detachLoader();
         createExtraInfo();
         m_extraInfo.m_value = value;
     }
@@ -717,6 +737,31 @@ public final class Node
     /** Node if one child only, ArrayList otherwise. */
     private Object m_children;
 
+    /** Set the loader for the lazy content.
+        @see NodeLoader#add */
+    void setLoader(NodeLoader loader, int index)
+    {
+        createExtraInfo();
+        assert m_extraInfo.m_loader == null;
+        m_extraInfo.m_loader = loader;
+        m_extraInfo.m_loaderIndex = index;
+    }
+
+    /** Remove the lazy content.
+        Called by the loader, if the content can be loaded again. */
+    void unloadContent()
+    {
+        m_comment = null;
+        m_extraInfo.m_marked = null;
+        m_extraInfo.m_value = Float.NaN;
+        MoreExtraInfo moreExtraInfo = m_extraInfo.m_moreExtraInfo;
+        if (moreExtraInfo != null)
+        {
+            moreExtraInfo.m_label = null;
+            moreExtraInfo.m_sgfProperties = null;
+        }
+    }
+
     private void createExtraInfo()
     {
         if (m_extraInfo == null)
@@ -771,6 +816,43 @@ public final class Node
         return moreExtraInfo.m_timeInfo;
     }
 
+    /** Load the lazy content and detach the node from its loader.
+        Called before the lazy content is modified or returned as a
+        modifiable object. Does nothing while the loader is setting the
+        content. */
+    private void detachLoader()
+    {
+        if (m_extraInfo == null || m_extraInfo.m_loader == null)
+            return;
+        NodeLoader loader = m_extraInfo.m_loader;
+        if (loader.isLoading())
+            return;
+        loader.load(this, m_extraInfo.m_loaderIndex);
+        loader.remove(this);
+        m_extraInfo.m_loader = null;
+    }
+
+    private Map<GoPoint,String> getLabelsInternal()
+    {
+        if (m_extraInfo == null || m_extraInfo.m_moreExtraInfo == null)
+            return null;
+        return m_extraInfo.m_moreExtraInfo.m_label;
+    }
+
+    private PointList getMarkedInternal(MarkType type)
+    {
+        if (m_extraInfo == null || m_extraInfo.m_marked == null)
+            return null;
+        return m_extraInfo.m_marked.get(type);
+    }
+
+    private SgfProperties getSgfPropertiesInternal()
+    {
+        if (m_extraInfo == null || m_extraInfo.m_moreExtraInfo == null)
+            return null;
+        return m_extraInfo.m_moreExtraInfo.m_sgfProperties;
+    }
+
     private SetupInfo getSetupInfo()
     {
         if (m_extraInfo == null || m_extraInfo.m_moreExtraInfo == null)
@@ -784,4 +866,12 @@ public final class Node
             return null;
         return m_extraInfo.m_moreExtraInfo.m_timeInfo;
     }
+
+    /** Load the lazy content, if it is loaded on demand.
+        @see NodeLoader */
+    private void loadContent()
+    {
+        if (m_extraInfo != null && m_extraInfo.m_loader != null)
+            m_extraInfo.m_loader.load(this, m_extraInfo.m_loaderIndex);
+    }
 }
@@ -0,0 +1,93 @@
+// NodeLoader.java
+
+package net.sf.gogui.game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Loads the content of nodes on demand.
+    Used by readers of large game files to avoid creating the content of all
+    nodes up front. Only the lazy content of a node is loaded on demand:
+    the comment, markup, labels, value and other SGF properties. The
+    structure of the tree, moves, setup stones, time information and game
+    information must be set when the node is created.
+    The content is loaded the first time it is accessed. At most a fixed
+    number of nodes are kept loaded; the content of the least recently used
+    node is removed from the node and loaded again, if it is accessed again.
+    A node is detached from its loader, if its lazy content is modified or
+    returned by a non-const getter, and keeps its content from then on. */
+public abstract class NodeLoader
+{
+    /** Constructor.
+        @param maxLoaded The maximum number of nodes with loaded content. */
+    public NodeLoader(int maxLoaded)
+    {
+        assert maxLoaded > 0;
+        m_maxLoaded = maxLoaded;
+        m_loaded = new LinkedHashMap<Node,Node>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<Node,Node> e)
+                {
+                    if (size() <= m_maxLoaded)
+                        return false;
+                    e.getKey().unloadContent();
+                    return true;
+                }
+            };
+    }
+
+    /** Register a node, whose content is loaded by this loader.
+        @param node The node. Must not contain lazy content yet.
+        @param index An index for identifying the node content, e.g. a
+        position in the game file. Passed to loadContent(). */
+    public void add(Node node, int index)
+    {
+        node.setLoader(this, index);
+    }
+
+    /** Get the number of nodes with currently loaded content. */
+    public synchronized int getNumberLoaded()
+    {
+        return m_loaded.size();
+    }
+
+    /** Load the lazy content of a node.
+        Implementations set the content with the setter functions of the
+        node (e.g. setComment(), addMarked()), which does not detach the
+        node from the loader during loading.
+        @param node The node.
+        @param index The index given to add(). */
+    protected abstract void loadContent(Node node, int index);
+
+    private boolean m_isLoading;
+
+    private final int m_maxLoaded;
+
+    /** Nodes with loaded content in access order. */
+    private final LinkedHashMap<Node,Node> m_loaded;
+
+    synchronized boolean isLoading()
+    {
+        return m_isLoading;
+    }
+
+    synchronized void load(Node node, int index)
+    {
+        if (m_isLoading || m_loaded.get(node) != null)
+            return;
+        m_isLoading = true;
+        try
+        {
+            loadContent(node, index);
+        }
+        finally
+        {
+            m_isLoading = false;
+        }
+        m_loaded.put(node, node);
+    }
+
+    synchronized void remove(Node node)
+    {
+        m_loaded.remove(node);
+    }
+}
@@ -0,0 +1,170 @@
+// PositionIndex.java
+
+package net.sf.gogui.game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import net.sf.gogui.go.Board;
+import net.sf.gogui.go.Move;
+
+/** Index from position hash codes to the nodes of a game tree.
+    Can be used for detecting positional superko violations and for finding
+    transpositions in different variations of a tree in constant time.
+    The hash codes are the Zobrist hash codes of the board position after
+    each node (see Board.getHash()) or the hash codes invariant under
+    rotation and mirroring (see Board.getSymmetricHash()).
+    The index is not updated if the tree is modified after the index was
+    created. */
+public class PositionIndex
+{
+    /** Create an index for all nodes of a tree.
+        @param tree The game tree. */
+    public PositionIndex(ConstGameTree tree)
+    {
+        this(tree, false);
+    }
+
+    /** Create an index for all nodes of a tree.
+        @param tree The game tree.
+        @param symmetric Use hash codes that are invariant under rotation
+        and mirroring of the board. */
+    public PositionIndex(ConstGameTree tree, boolean symmetric)
+    {
+        Board board = new Board(tree.getBoardSize());
+        BoardUpdater updater = new BoardUpdater();
+        ConstNode node = tree.getRootConst();
+        while (node != null)
+        {
+            updater.updateIncremental(tree, node, board);
+            long hash =
+                (symmetric ? board.getSymmetricHash() : board.getHash());
+            ConstNode father = node.getFatherConst();
+            int depth = 0;
+            if (father != null)
+                depth = m_entries.get(father).m_depth + 1;
+            m_entries.put(node, new Entry(hash, depth));
+            ArrayList<ConstNode> nodes = m_nodes.get(hash);
+            if (nodes == null)
+            {
+                nodes = new ArrayList<ConstNode>(1);
+                m_nodes.put(hash, nodes);
+            }
+            nodes.add(node);
+            node = NodeUtil.nextNode(node);
+        }
+    }
+
+    /** Check if a node is in the index. */
+    public boolean contains(ConstNode node)
+    {
+        return m_entries.containsKey(node);
+    }
+
+    /** Get the hash code of the position after a node.
+        @param node A node contained in the index. */
+    public long getHash(ConstNode node)
+    {
+        return getEntry(node).m_hash;
+    }
+
+    /** Get all nodes with a given position hash code.
+        @return The nodes in the order of a depth-first traversal of the
+        tree; empty list if there are no such nodes. */
+    public List<ConstNode> getNodes(long hash)
+    {
+        ArrayList<ConstNode> nodes = m_nodes.get(hash);
+        if (nodes == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /** Get the earlier node in the same variation that had the same position
+        as a node, if the node contains a move that repeats it.
+        Pass moves and nodes without moves are never considered as
+        repetitions.
+        @param node A node contained in the index.
+        @return The ancestor of the node with the same position closest to
+        the root, or null if the move of the node does not violate the
+        positional superko rule. */
+    public ConstNode getRepetition(ConstNode node)
+    {
+        Move move = node.getMove();
+        if (move == null || move.getPoint() == null)
+            return null;
+        Entry entry = getEntry(node);
+        for (ConstNode other : m_nodes.get(entry.m_hash))
+        {
+            int depth = m_entries.get(other).m_depth;
+            if (depth < entry.m_depth && isAncestor(other, node, depth,
+                                                    entry.m_depth))
+                return other;
+        }
+        return null;
+    }
+
+    /** Get nodes in other variations with the same position as a node.
+        Nodes in the same variation as the given node (ancestors and
+        descendants, for example nodes without moves) are not included.
+        @param node A node contained in the index.
+        @return The transpositions in the order of a depth-first traversal
+        of the tree. */
+    public List<ConstNode> getTranspositions(ConstNode node)
+    {
+        Entry entry = getEntry(node);
+        List<ConstNode> result = new ArrayList<ConstNode>();
+        for (ConstNode other : m_nodes.get(entry.m_hash))
+        {
+            int depth = m_entries.get(other).m_depth;
+            if (other == node
+                || (depth < entry.m_depth
+                    && isAncestor(other, node, depth, entry.m_depth))
+                || (depth > entry.m_depth
+                    && isAncestor(node, other, entry.m_depth, depth)))
+                continue;
+            result.add(other);
+        }
+        return result;
+    }
+
+    /** Get the number of nodes in the index. */
+    public int size()
+    {
+        return m_entries.size();
+    }
+
+    private static class Entry
+    {
+        public final long m_hash;
+
+        public final int m_depth;
+
+        public Entry(long hash, int depth)
+        {
+            m_hash = hash;
+            m_depth = depth;
+        }
+    }
+
+    private final HashMap<ConstNode,Entry> m_entries
+        = new HashMap<ConstNode,Entry>();
+
+    private final HashMap<Long,ArrayList<ConstNode>> m_nodes
+        = new HashMap<Long,ArrayList<ConstNode>>();
+
+    private Entry getEntry(ConstNode node)
+    {
+        Entry entry = m_entries.get(node);
+        assert entry != null;
+        return entry;
+    }
+
+    private static boolean isAncestor(ConstNode ancestor, ConstNode node,
+                                      int ancestorDepth, int depth)
+    {
+        for (int i = depth; i > ancestorDepth; --i)
+            node = node.getFatherConst();
+        return node == ancestor;
+    }
+}
@@ -22,6 +22,17 @@ public class GameReader
     /** Construct reader and read a game.
         @param progressShow Callback to show progress, can be null */
     public GameReader(File file, ProgressShow progressShow) throws ErrorMessage
+    {
+        this(file, progressShow, 0);
+    }
+
+    /** Construct reader and read a game with optional lazy loading.
+        @param progressShow Callback to show progress, can be null
+        @param maxLoadedNodes Maximum number of nodes with loaded content,
+        if the content of nodes should be loaded on demand; 0 for reading
+        all content immediately. Only used for SGF files, see SgfReader. */
+    public GameReader(File file, ProgressShow progressShow,
+                      int maxLoadedNodes) throws ErrorMessage
     {
         m_gameFile = new GameFile();
         GameFile.Format format = detectFormat(file);
@@ -49,7 +60,8 @@ public class GameReader
         case SGF:
             {
                 SgfReader reader =
-                    new SgfReader(in, file, progressShow, file.length());
+                    new SgfReader(in, file, progressShow, file.length(),
+                                  maxLoadedNodes);
                 m_tree = reader.getTree();
                 m_warnings = reader.getWarnings();
             }
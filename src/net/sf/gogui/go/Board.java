@@ -3,6 +3,7 @@
 package net.sf.gogui.go;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import net.sf.gogui.gtp.GtpClientBase;
@@ -78,14 +79,14 @@ implements ConstBoard
         opponent moves or by suicide. */
     public int getCaptured(GoColor c)
     {
-        return m_captured.get(c);
+        return m_captured[c.ordinal()];
     }
 
     /** Get state of a point on the board.
         @return BLACK, WHITE or EMPTY */
     public GoColor getColor(GoPoint p)
     {
-        return m_color[p.getIndex()];
+        return COLORS[m_color[p.getIndex()]];
     }
 
     /** Get location of handicap stones for a given board size.
@@ -102,6 +103,8 @@ implements ConstBoard
     /** Opponent stones captured in last move.
         Does not include player stones killed by suicide.
         Requires that there is a last move (or setup stone).
+        The returned list is reused by the board and is only valid until
+        the next call to play() or undo().
         @return List of opponent stones (go.Point) captured in last move;
         empty if none were killed or there is no last move.
         @see #getSuicide() */
@@ -127,7 +130,7 @@ implements ConstBoard
         @see #getMove */
     public int getNumberMoves()
     {
-        return m_stack.size();
+        return m_nuMoves;
     }
 
     /** Get a move from the sequence of moves played so far.
@@ -136,6 +139,7 @@ implements ConstBoard
         @see #getNumberMoves() */
     public Move getMove(int i)
     {
+        assert i < m_nuMoves;
         return m_stack.get(i).m_move;
     }
 
@@ -165,17 +169,76 @@ implements ConstBoard
         return m_size;
     }
 
-    /** Get stones of a block. */
+    /** Get the Zobrist hash code of the position.
+        The hash code only depends on the stones on the board, not on the
+        color to move or the move history, and can be used for detecting
+        repetitions of positions (positional superko) or transpositions.
+        @return The hash code. */
+    public long getHash()
+    {
+        return m_hash[0];
+    }
+
+    /** Get the Zobrist hash code of a rotated or mirrored position.
+        @param rotationMode The rotation mode in
+        [0..BoardUtil.NUMBER_ROTATIONS - 1]
+        @return The hash code of the position after transforming all stones
+        with BoardUtil.rotate(rotationMode, point, getSize())
+        @see BoardUtil#rotate */
+    public long getHash(int rotationMode)
+    {
+        return m_hash[rotationMode];
+    }
+
+    /** Get a hash code that is invariant under rotation and mirroring.
+        @return The smallest of the hash codes for all rotation modes, which
+        is the same for all positions that are rotated or mirrored versions
+        of each other.
+        @see #getHash(int) */
+    public long getSymmetricHash()
+    {
+        long result = m_hash[0];
+        for (int i = 1; i < BoardUtil.NUMBER_ROTATIONS; ++i)
+            result = Math.min(result, m_hash[i]);
+        return result;
+    }
+
+    /** Get the number of liberties of a block.
+        @param p A point occupied by a stone of the block.
+        @return The number of empty points adjacent to the block. */
+    public int getLiberties(GoPoint p)
+    {
+        assert getColor(p) != EMPTY;
+        return m_blockLiberties[m_anchor[p.getIndex()]];
+    }
+
+    /** Get stones of a block.
+        If color is EMPTY, returns the connected region of empty points. */
     public void getStones(GoPoint p, GoColor color, PointList stones)
     {
-        assert m_mark.isCleared();
-        findStones(p, color, stones);
-        m_mark.clear(stones);
-        //assert m_mark.isCleared();
+        if (getColor(p) != color)
+            return;
+        int index = p.getIndex();
+        if (color == EMPTY)
+        {
+            int nuStones = findStones(index);
+            for (int i = 0; i < nuStones; ++i)
+                stones.add(GoPoint.get(m_stones[i]));
+            return;
+        }
+        int stone = index;
+        do
+        {
+            stones.add(GoPoint.get(stone));
+            stone = m_nextStone[stone];
+        }
+        while (stone != index);
     }
 
     /** Player stones killed by suicide in last move.
         Requires that there is a last move (or setup stone).
+        The returned list is reused by the board and is only valid until
+        the next call to play() or undo().
         @return List of stones (go.Point) killed by suicide in last move,
         including the stone played; empty if no stones were killed by suicide
         or if there is no last move.
@@ -202,8 +265,12 @@ implements ConstBoard
     public void init(int size)
     {
         m_size = size;
-        m_mark = new Marker(m_size);
         m_constants = BoardConstants.get(size);
+        m_adjacentIndex = m_constants.getAdjacentIndexes();
+        m_adjacentSize = m_constants.getAdjacentSizes();
+        m_zobristKeys = m_constants.getZobristKeys();
+        Arrays.fill(m_color, EMPTY_VALUE);
+        Arrays.fill(m_hash, 0L);
         clear();
     }
 
@@ -232,12 +299,19 @@ implements ConstBoard
         capture any opponent stones, or be a suicide move. */
     public boolean isCaptureOrSuicide(GoColor c, GoPoint p)
     {
-        if (getColor(p) != EMPTY)
+        if (getColor(p) != EMPTY || isGameRulerAttached())
             return false;
-        play(c, p);
-        boolean result = (getKilled().size() > 0 || getSuicide().size() > 0);
-        undo();
-        return result;
+        int index = p.getIndex();
+        byte other = (byte)c.otherColor().ordinal();
+        int nuAdjacent = m_adjacentSize[index];
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            int adj = m_adjacentIndex[4 * index + i];
+            if (m_color[adj] == other
+                && m_blockLiberties[m_anchor[adj]] == 1)
+                return true;
+        }
+        return isSuicide(c, p);
     }
 
     /** Check if a point is a handicap point.
@@ -262,7 +336,7 @@ implements ConstBoard
     /** Check if any moves were played or setup stones placed on the board. */
     public boolean isModified()
     {
-        return (! m_stack.isEmpty()
+        return (m_nuMoves > 0
                 || m_setup.get(BLACK).size() > 0
                 || m_setup.get(WHITE).size() > 0
                 || m_toMove != BLACK);
@@ -284,12 +358,22 @@ implements ConstBoard
         would be a suicide move. */
     public boolean isSuicide(GoColor c, GoPoint p)
     {
-        if (getColor(p) != EMPTY)
+        if (getColor(p) != EMPTY || isGameRulerAttached())
             return false;
-        play(c, p);
-        boolean result = (getSuicide().size() > 0);
-        undo();
-        return result;
+        int index = p.getIndex();
+        byte color = (byte)c.ordinal();
+        int nuAdjacent = m_adjacentSize[index];
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            int adj = m_adjacentIndex[4 * index + i];
+            byte adjColor = m_color[adj];
+            if (adjColor == EMPTY_VALUE)
+                return false;
+            int liberties = m_blockLiberties[m_anchor[adj]];
+            if (adjColor == color ? liberties > 1 : liberties == 1)
+                return false;
+        }
+        return true;
     }
 
     public Iterator<GoPoint> iterator()
@@ -303,11 +387,11 @@ implements ConstBoard
     {
         for (GoPoint p : this)
             setColor(p, EMPTY);
-        m_stack.clear();
+        m_nuMoves = 0;
         for (GoColor c : BLACK_WHITE)
         {
             m_setup.get(c).clear();
-            m_captured.set(c, 0);
+            m_captured[c.ordinal()] = 0;
         }
         if (isGameRulerAttached())
             try {
@@ -341,16 +425,17 @@ implements ConstBoard
         @param move The move (location and player) */
     public void play(Move move)
     {
-        StackEntry entry = new StackEntry(move);
-        entry.execute(this);
-        m_stack.add(entry);
+        // Stack entries are reused to avoid memory allocation in play()
+        if (m_nuMoves == m_stack.size())
+            m_stack.add(new StackEntry());
+        StackEntry entry = m_stack.get(m_nuMoves);
+        entry.execute(this, move);
+        ++m_nuMoves;
     }
     
     public void playGameMove(Move move)
     {
-        StackEntry entry = new StackEntry(move);
-        entry.execute(this);
-        m_stack.add(entry);
+        play(move);
     }
 
     /** Change the color to move.
@@ -391,6 +476,7 @@ implements ConstBoard
                 m_setup.set(c, new PointList(stones));
             }
         }
+        createBlocks();
     }
     
     /**
@@ -402,6 +488,7 @@ implements ConstBoard
         {
             setColor(p, c);
         }
+        createBlocks();
     }
 
     /** Setup initial handicap stones.
@@ -420,11 +507,10 @@ implements ConstBoard
         suicide) and the color who was to move before the move. */
     public void undo()
     {
-        int index = getNumberMoves() - 1;
+        int index = m_nuMoves - 1;
         assert index >= 0;
         m_stack.get(index).undo(this);
-        m_stack.remove(index);
-        m_lastMoveIndex = index;
+        m_nuMoves = index;
     }
 
     /** Undo a number of moves.
@@ -441,7 +527,7 @@ implements ConstBoard
 
     private static class StackEntry
     {
-        public final Move m_move;
+        public Move m_move;
 
         public GoPoint m_oldKoPoint;
 
@@ -449,25 +535,17 @@ implements ConstBoard
 
         public GoColor m_oldToMove;
 
-        public PointList m_killed;
+        public final PointList m_killed = new PointList();
 
-        public PointList m_suicide;
+        public final PointList m_suicide = new PointList();
 
-        public int m_moveIndex = 0;
-
-        public StackEntry(Move move)
+        public void execute(Board board, Move move)
         {
             m_move = move;
-        }
-
-        public void execute(Board board)
-        {
-            m_killed = new PointList();
-            m_suicide = new PointList();
+            m_killed.clear();
+            m_suicide.clear();
             m_oldKoPoint = board.m_koPoint;
             board.m_koPoint = null;
-            if (m_moveIndex < board.m_stack.size())
-                m_moveIndex = board.m_stack.size();
             if (board.isGameRulerAttached())
             {
                 try {
@@ -480,10 +558,6 @@ implements ConstBoard
             {
                 executeGo(board);
             }
-            if (board.m_lastMoveIndex < board.getNumberMoves()-1) {
-                board.m_lastMoveIndex = board.getNumberMoves()-1 ;
-            }
-            m_moveIndex = board.m_lastMoveIndex;
         }
 
         private void executeGameRules(Board board) throws GtpError
@@ -504,26 +578,38 @@ implements ConstBoard
             if (p != null)
             {
                 m_oldColor = board.getColor(p);
-                board.setColor(p, c);
                 assert c != EMPTY;
-                for (GoPoint adj : board.getAdjacent(p))
+                int index = p.getIndex();
+                if (m_oldColor == EMPTY)
+                    board.addStone(index, c);
+                else
+                {
+                    // Move on occupied point, only in invalid SGF files
+                    board.setColor(p, c);
+                    board.createBlocks();
+                }
+                byte other = (byte)otherColor.ordinal();
+                int nuAdjacent = board.m_adjacentSize[index];
+                for (int i = 0; i < nuAdjacent; ++i)
                 {
+                    int adj = board.m_adjacentIndex[4 * index + i];
                     int killedSize = m_killed.size();
-                    if (board.getColor(adj) == otherColor)
-                        board.checkKill(adj, m_killed);
+                    if (board.m_color[adj] == other
+                        && board.m_blockLiberties[board.m_anchor[adj]] == 0)
+                        board.removeBlock(board.m_anchor[adj], m_killed);
                     if (m_killed.size() == killedSize + 1)
                         board.m_koPoint = m_killed.get(killedSize);
                 }
-                board.checkKill(p, m_suicide);
+                int anchor = board.m_anchor[index];
+                if (board.m_blockLiberties[anchor] == 0)
+                    board.removeBlock(anchor, m_suicide);
                 if (board.m_koPoint != null
-                    && ! board.isSingleStoneSingleLib(p, c))
+                    && (m_suicide.size() > 0
+                        || board.m_blockSize[anchor] != 1
+                        || board.m_blockLiberties[anchor] != 1))
                     board.m_koPoint = null;
-                board.m_captured.set(c,
-                                     board.m_captured.get(c)
-                                     + m_suicide.size());
-                board.m_captured.set(otherColor,
-                                     board.m_captured.get(otherColor)
-                                     + m_killed.size());
+                board.m_captured[c.ordinal()] += m_suicide.size();
+                board.m_captured[otherColor.ordinal()] += m_killed.size();
             }
             m_oldToMove = board.m_toMove;
             board.m_toMove = otherColor;
@@ -536,40 +622,121 @@ implements ConstBoard
             {
                 GoColor c = m_move.getColor();
                 GoColor otherColor = c.otherColor();
-                for (GoPoint stone : m_suicide)
-                    board.setColor(stone, c);
+                int nuSuicide = m_suicide.size();
+                // Don't use an iterator for efficiency
+                for (int i = 0; i < nuSuicide; ++i)
+                    board.setColor(m_suicide.get(i), c);
                 board.setColor(p, m_oldColor);
-                for (GoPoint stone : m_killed)
-                    board.setColor(stone, otherColor);
-                board.m_captured.set(c,
-                                     board.m_captured.get(c)
-                                     - m_suicide.size());
-                board.m_captured.set(otherColor,
-                                     board.m_captured.get(otherColor)
-                                     - m_killed.size());
+                int nuKilled = m_killed.size();
+                for (int i = 0; i < nuKilled; ++i)
+                    board.setColor(m_killed.get(i), otherColor);
+                board.m_captured[c.ordinal()] -= nuSuicide;
+                board.m_captured[otherColor.ordinal()] -= nuKilled;
+                if (m_oldColor == EMPTY)
+                    undoBlocks(board);
+                else
+                    board.createBlocks();
             }
             board.m_toMove = m_oldToMove;
             board.m_koPoint = m_oldKoPoint;
         }
+
+        /** Recompute the blocks that were changed by the move.
+            These are the blocks adjacent to the move, the captured blocks
+            and the blocks adjacent to captured stones or stones killed by
+            suicide. */
+        private void undoBlocks(Board board)
+        {
+            int mark = board.newMarkValue();
+            board.updateAdjacentBlocks(m_move.getPoint().getIndex(), mark);
+            int nuKilled = m_killed.size();
+            for (int i = 0; i < nuKilled; ++i)
+            {
+                int index = m_killed.get(i).getIndex();
+                board.updateBlock(index, mark);
+                board.updateAdjacentBlocks(index, mark);
+            }
+            int nuSuicide = m_suicide.size();
+            for (int i = 0; i < nuSuicide; ++i)
+                board.updateAdjacentBlocks(m_suicide.get(i).getIndex(), mark);
+        }
     }
 
-    private Marker m_mark;
+    /** Lookup table for converting the values in m_color to colors. */
+    private static final GoColor[] COLORS = GoColor.values();
+
+    private static final byte EMPTY_VALUE = (byte)EMPTY.ordinal();
 
     private int m_size;
 
-    private final BlackWhiteSet<Integer> m_captured
-        = new BlackWhiteSet<Integer>(0, 0);
+    /** Number of captured stones indexed by GoColor.ordinal(). */
+    private final int[] m_captured = new int[2];
 
+    /** Undo stack.
+        Contains the entries for the moves played and possibly further
+        entries from moves that were taken back, which are kept for
+        reuse. */
     private final ArrayList<StackEntry> m_stack
         = new ArrayList<StackEntry>(361);
 
-    /** Temporary variable reused for efficiency. */
-    private final PointList m_checkKillStones = new PointList();
+    /** Number of moves played, which are the valid entries in m_stack. */
+    private int m_nuMoves;
+
+    /** Colors of the points indexed by GoPoint.getIndex().
+        Contains the values of GoColor.ordinal(). */
+    private final byte[] m_color = new byte[GoPoint.NUMBER_INDEXES];
+
+    /** Marker for flood fills.
+        A point is marked if its value is equal to the value returned by the
+        last call to newMarkValue(), which avoids clearing the marks after
+        each use. */
+    private final int[] m_mark = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Marker for blocks that were recomputed.
+        Uses the same mark values as m_mark. */
+    private final int[] m_blockMark = new int[GoPoint.NUMBER_INDEXES];
+
+    private int m_markValue;
+
+    /** Anchor of the block a stone belongs to, indexed by point index.
+        The anchor is the point index of one of the stones of the block and
+        used as an index for m_blockSize and m_blockLiberties.
+        Only valid for occupied points. */
+    private final int[] m_anchor = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Next stone in the circular list of the stones of a block. */
+    private final int[] m_nextStone = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Number of stones of a block, indexed by anchor. */
+    private final int[] m_blockSize = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Number of liberties of a block, indexed by anchor. */
+    private final int[] m_blockLiberties = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Temporary variable reused for efficiency.
+        Anchors of the distinct blocks adjacent to a point. */
+    private final int[] m_adjacentAnchors = new int[4];
+
+    /** Temporary variable reused for efficiency.
+        Contains the point indices of the block found by the last flood
+        fill. */
+    private final int[] m_stones = new int[GoPoint.NUMBER_INDEXES];
 
     /** Temporary variable reused for efficiency. */
-    private final PointList m_checkKillStack = new PointList();
+    private final int[] m_floodStack = new int[GoPoint.NUMBER_INDEXES];
+
+    /** See BoardConstants.getAdjacentIndexes(). */
+    private int[] m_adjacentIndex;
 
-    private GoColor[] m_color = new GoColor[GoPoint.NUMBER_INDEXES];
+    /** See BoardConstants.getAdjacentSizes(). */
+    private int[] m_adjacentSize;
+
+    /** See BoardConstants.getZobristKeys(). */
+    private long[] m_zobristKeys;
+
+    /** Zobrist hash codes of the position for each rotation mode.
+        @see #getHash(int) */
+    private final long[] m_hash = new long[BoardUtil.NUMBER_ROTATIONS];
 
     private GoColor m_toMove;
 
@@ -581,96 +748,254 @@ implements ConstBoard
     
     private GtpClientBase m_gameRuler;
 
-    private int m_lastMoveIndex = 0;
-
     private final BlackWhiteSet<PointList> m_setup
         = new BlackWhiteSet<PointList>(new PointList(), new PointList());
 
     private boolean m_isSetupHandicap;
 
-    private boolean isSingleStoneSingleLib(GoPoint point, GoColor color)
-    {
-        if (getColor(point) != color)
-            return false;
-        int lib = 0;
-        for (GoPoint adj : getAdjacent(point))
+    /** Place a stone on an empty point and update the blocks.
+        Merges the blocks of the same color adjacent to the stone and
+        removes the point from the liberties of adjacent opponent blocks.
+        Does not remove captured blocks. */
+    private void addStone(int index, GoColor c)
+    {
+        byte color = (byte)c.ordinal();
+        setColor(index, color);
+        m_anchor[index] = index;
+        m_nextStone[index] = index;
+        m_blockSize[index] = 1;
+        int anchor = index;
+        boolean isMerged = false;
+        int nuAnchors = getAdjacentAnchors(index);
+        for (int i = 0; i < nuAnchors; ++i)
         {
-            GoColor adjColor = getColor(adj);
-            if (adjColor == EMPTY)
+            int adjAnchor = m_adjacentAnchors[i];
+            if (m_color[adjAnchor] == color)
             {
-                ++lib;
-                if (lib > 1)
-                    return false;
+                anchor = mergeBlocks(anchor, adjAnchor);
+                isMerged = true;
             }
-            else if (adjColor.equals(color))
-                return false;
+            else
+                --m_blockLiberties[adjAnchor];
+        }
+        if (isMerged)
+            m_blockLiberties[anchor] = countLiberties(anchor);
+        else
+        {
+            int liberties = 0;
+            int nuAdjacent = m_adjacentSize[index];
+            for (int i = 0; i < nuAdjacent; ++i)
+                if (m_color[m_adjacentIndex[4 * index + i]] == EMPTY_VALUE)
+                    ++liberties;
+            m_blockLiberties[index] = liberties;
         }
-        return true;
     }
 
-    private void checkKill(GoPoint point, PointList killed)
+    private int countLiberties(int anchor)
     {
-        assert m_mark.isCleared();
-        GoColor color = getColor(point);
-        assert color != EMPTY;
-        m_checkKillStack.clear();
-        m_checkKillStack.add(point);
-        m_mark.set(point);
-        m_checkKillStones.clear();
-        boolean isDead = true;
-        // Recursion is unrolled using a stack for efficiency
-        while (isDead && ! m_checkKillStack.isEmpty())
+        int mark = newMarkValue();
+        int liberties = 0;
+        int stone = anchor;
+        do
         {
-            GoPoint p = m_checkKillStack.pop();
-            assert getColor(p) == color;
-            m_checkKillStones.add(p);
-            ConstPointList adjacent = getAdjacent(p);
-            int nuAdjacent = adjacent.size();
-            // Don't use an iterator for efficiency
+            int nuAdjacent = m_adjacentSize[stone];
             for (int i = 0; i < nuAdjacent; ++i)
             {
-                GoPoint adj = adjacent.get(i);
-                GoColor c = getColor(adj);
-                if (c == EMPTY)
+                int adj = m_adjacentIndex[4 * stone + i];
+                if (m_color[adj] == EMPTY_VALUE && m_mark[adj] != mark)
                 {
-                    isDead = false;
-                    break;
+                    m_mark[adj] = mark;
+                    ++liberties;
                 }
-                if (m_mark.get(adj) || ! c.equals(color))
-                    continue;
-                m_checkKillStack.add(adj);
-                m_mark.set(adj);
             }
+            stone = m_nextStone[stone];
         }
-        if (isDead)
+        while (stone != anchor);
+        return liberties;
+    }
+
+    /** Recompute all blocks on the board. */
+    private void createBlocks()
+    {
+        int mark = newMarkValue();
+        ConstPointList points = m_constants.getPoints();
+        int nuPoints = points.size();
+        for (int i = 0; i < nuPoints; ++i)
+            updateBlock(points.get(i).getIndex(), mark);
+    }
+
+    /** Store the anchors of the distinct blocks adjacent to a point in
+        m_adjacentAnchors.
+        @return The number of anchors. */
+    private int getAdjacentAnchors(int index)
+    {
+        int nuAnchors = 0;
+        int nuAdjacent = m_adjacentSize[index];
+        for (int i = 0; i < nuAdjacent; ++i)
         {
-            killed.addAll(m_checkKillStones);
-            int nuKillStones = m_checkKillStones.size();
-            // Don't use an iterator for efficiency
-            for (int i = 0; i < nuKillStones; ++i)
-                setColor(m_checkKillStones.get(i), EMPTY);
+            int adj = m_adjacentIndex[4 * index + i];
+            if (m_color[adj] == EMPTY_VALUE)
+                continue;
+            int anchor = m_anchor[adj];
+            boolean isNew = true;
+            for (int j = 0; j < nuAnchors; ++j)
+                if (m_adjacentAnchors[j] == anchor)
+                {
+                    isNew = false;
+                    break;
+                }
+            if (isNew)
+                m_adjacentAnchors[nuAnchors++] = anchor;
         }
-        m_mark.clear(m_checkKillStack);
-        m_mark.clear(m_checkKillStones);
-        //assert m_mark.isCleared();
+        return nuAnchors;
     }
 
-    private void findStones(GoPoint p, GoColor color, PointList stones)
+    /** Merge two blocks.
+        The stones of the smaller block are added to the larger block.
+        Does not update the number of liberties.
+        @return The anchor of the merged block. */
+    private int mergeBlocks(int anchor1, int anchor2)
     {
-        if (getColor(p) != color)
-            return;
-        if (m_mark.get(p))
+        if (m_blockSize[anchor1] < m_blockSize[anchor2])
+        {
+            int tmp = anchor1;
+            anchor1 = anchor2;
+            anchor2 = tmp;
+        }
+        int stone = anchor2;
+        do
+        {
+            m_anchor[stone] = anchor1;
+            stone = m_nextStone[stone];
+        }
+        while (stone != anchor2);
+        int next = m_nextStone[anchor1];
+        m_nextStone[anchor1] = m_nextStone[anchor2];
+        m_nextStone[anchor2] = next;
+        m_blockSize[anchor1] += m_blockSize[anchor2];
+        return anchor1;
+    }
+
+    /** Remove the stones of a block from the board.
+        Adds the removed points to the liberties of the adjacent blocks.
+        @param anchor The anchor of the block.
+        @param removed List to add the removed stones to. */
+    private void removeBlock(int anchor, PointList removed)
+    {
+        int stone = anchor;
+        do
+        {
+            removed.add(GoPoint.get(stone));
+            setColor(stone, EMPTY_VALUE);
+            stone = m_nextStone[stone];
+        }
+        while (stone != anchor);
+        do
+        {
+            int nuAnchors = getAdjacentAnchors(stone);
+            for (int i = 0; i < nuAnchors; ++i)
+                ++m_blockLiberties[m_adjacentAnchors[i]];
+            stone = m_nextStone[stone];
+        }
+        while (stone != anchor);
+    }
+
+    /** Recompute the blocks adjacent to a point.
+        @see #updateBlock */
+    private void updateAdjacentBlocks(int index, int mark)
+    {
+        int nuAdjacent = m_adjacentSize[index];
+        for (int i = 0; i < nuAdjacent; ++i)
+            updateBlock(m_adjacentIndex[4 * index + i], mark);
+    }
+
+    /** Recompute the block containing a point.
+        Does nothing if the point is empty or if the block was already
+        recomputed with the same mark value.
+        @param index The point index.
+        @param mark Mark value for remembering recomputed blocks. */
+    private void updateBlock(int index, int mark)
+    {
+        if (m_color[index] == EMPTY_VALUE || m_blockMark[index] == mark)
             return;
-        m_mark.set(p);
-        stones.add(p);
-        for (GoPoint adj : getAdjacent(p))
-            findStones(adj, color, stones);
+        int nuStones = findStones(index);
+        for (int i = 0; i < nuStones; ++i)
+        {
+            int stone = m_stones[i];
+            m_anchor[stone] = index;
+            m_nextStone[stone] = m_stones[(i + 1) % nuStones];
+            m_blockMark[stone] = mark;
+        }
+        m_blockSize[index] = nuStones;
+        m_blockLiberties[index] = countLiberties(index);
+    }
+
+    /** Find the stones of a block.
+        @param index The index of a stone of the block.
+        @return The number of stones; the stones are stored in m_stones. */
+    private int findStones(int index)
+    {
+        byte color = m_color[index];
+        int mark = newMarkValue();
+        int stackSize = 0;
+        int nuStones = 0;
+        m_floodStack[stackSize++] = index;
+        m_mark[index] = mark;
+        while (stackSize > 0)
+        {
+            int p = m_floodStack[--stackSize];
+            m_stones[nuStones++] = p;
+            int nuAdjacent = m_adjacentSize[p];
+            for (int i = 0; i < nuAdjacent; ++i)
+            {
+                int adj = m_adjacentIndex[4 * p + i];
+                if (m_mark[adj] == mark || m_color[adj] != color)
+                    continue;
+                m_floodStack[stackSize++] = adj;
+                m_mark[adj] = mark;
+            }
+        }
+        return nuStones;
+    }
+
+    private int newMarkValue()
+    {
+        ++m_markValue;
+        if (m_markValue == 0)
+        {
+            // Overflow after 2^32 uses, clear all marks
+            Arrays.fill(m_mark, 0);
+            Arrays.fill(m_blockMark, 0);
+            m_markValue = 1;
+        }
+        return m_markValue;
     }
 
     private void setColor(GoPoint p, GoColor c)
     {
         assert p != null;
-        m_color[p.getIndex()] = c;
+        setColor(p.getIndex(), (byte)c.ordinal());
+    }
+
+    /** Change the color of a point and update the hash codes. */
+    private void setColor(int index, byte color)
+    {
+        byte oldColor = m_color[index];
+        if (oldColor == color)
+            return;
+        if (oldColor != EMPTY_VALUE)
+            xorHash(index, oldColor);
+        if (color != EMPTY_VALUE)
+            xorHash(index, color);
+        m_color[index] = color;
+    }
+
+    private void xorHash(int index, byte color)
+    {
+        int offset = 2 * index + color;
+        for (int i = 0; i < BoardUtil.NUMBER_ROTATIONS; ++i)
+            m_hash[i] ^= m_zobristKeys[i * BoardConstants.ZOBRIST_STRIDE
+                                       + offset];
     }
 
     public GtpClientBase getGameRuler() {
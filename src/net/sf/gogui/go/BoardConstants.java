@@ -2,6 +2,8 @@
 
 package net.sf.gogui.go;
 
+import java.util.Random;
+
 /** Some values that are constant for a given board size.
     Instances of this class are immutable. */
 public final class BoardConstants
@@ -28,6 +30,39 @@ public final class BoardConstants
         return m_adjacent[p.getIndex()];
     }
 
+    /** Get the indices of points adjacent to a point.
+        The indices of the adjacent points of the point with index
+        <code>i</code> are stored at positions
+        <code>i * 4</code> to <code>i * 4 + getAdjacentSizes()[i] - 1</code>.
+        For efficient iteration in go.Board without creating iterators.
+        The array must not be modified. */
+    int[] getAdjacentIndexes()
+    {
+        return m_adjacentIndex;
+    }
+
+    /** Get the number of adjacent points for each point index.
+        @see #getAdjacentIndexes() */
+    int[] getAdjacentSizes()
+    {
+        return m_adjacentSize;
+    }
+
+    /** Get the Zobrist keys for all rotation modes.
+        The key for a stone of color <code>c</code> (BLACK or WHITE) at the
+        point with index <code>i</code> under rotation mode <code>r</code> is
+        stored at position
+        <code>r * ZOBRIST_STRIDE + 2 * i + c.ordinal()</code> and is equal to
+        the key of the point <code>BoardUtil.rotate(r, p, getSize())</code>
+        under rotation mode 0.
+        The keys are generated with a fixed seed, so hash codes are the same
+        in every program run.
+        The array must not be modified. */
+    long[] getZobristKeys()
+    {
+        return m_zobristKeys;
+    }
+
     /** Get location of handicap stones.
         The handicap stone locations are defined as in the GTP version 2
         specification (section 4.1.1 Fixed Handicap Placement).
@@ -119,9 +154,24 @@ public final class BoardConstants
         return (isHandicapLine(x) && isHandicapLine(y));
     }
 
+    /** Offset between the Zobrist keys of two rotation modes.
+        @see #getZobristKeys() */
+    static final int ZOBRIST_STRIDE = 2 * GoPoint.NUMBER_INDEXES;
+
     private static BoardConstants[] s_boardConstants
         = new BoardConstants[GoPoint.MAX_SIZE + 1];
 
+    /** Zobrist keys for rotation mode 0, shared by all board sizes. */
+    private static final long[] s_zobristKeys;
+
+    static
+    {
+        Random random = new Random(20070531L);
+        s_zobristKeys = new long[ZOBRIST_STRIDE];
+        for (int i = 0; i < ZOBRIST_STRIDE; ++i)
+            s_zobristKeys[i] = random.nextLong();
+    }
+
     private final int m_size;
 
     private final int m_handicapLine1;
@@ -134,6 +184,12 @@ public final class BoardConstants
 
     private final ConstPointList[] m_adjacent;
 
+    private final int[] m_adjacentIndex;
+
+    private final int[] m_adjacentSize;
+
+    private final long[] m_zobristKeys;
+
     private BoardConstants(int size)
     {
         m_size = size;
@@ -158,6 +214,10 @@ public final class BoardConstants
             m_handicapLine2 = -1;
         m_allPoints = new PointList();
         m_adjacent = new ConstPointList[GoPoint.NUMBER_INDEXES];
+        m_adjacentIndex = new int[4 * GoPoint.NUMBER_INDEXES];
+        m_adjacentSize = new int[GoPoint.NUMBER_INDEXES];
+        m_zobristKeys =
+            new long[BoardUtil.NUMBER_ROTATIONS * ZOBRIST_STRIDE];
         for (int x = 0; x < m_size; ++x)
             for (int y = 0; y < m_size; ++y)
             {
@@ -172,7 +232,19 @@ public final class BoardConstants
                     adjacent.add(GoPoint.get(x, y - 1));
                 if (y < m_size - 1)
                     adjacent.add(GoPoint.get(x, y + 1));
-                m_adjacent[p.getIndex()] = adjacent;
+                int index = p.getIndex();
+                m_adjacent[index] = adjacent;
+                m_adjacentSize[index] = adjacent.size();
+                for (int i = 0; i < adjacent.size(); ++i)
+                    m_adjacentIndex[index * 4 + i] =
+                        adjacent.get(i).getIndex();
+                for (int r = 0; r < BoardUtil.NUMBER_ROTATIONS; ++r)
+                {
+                    int rotated = BoardUtil.rotate(r, p, size).getIndex();
+                    for (int c = 0; c < 2; ++c)
+                        m_zobristKeys[r * ZOBRIST_STRIDE + 2 * index + c] =
+                            s_zobristKeys[2 * rotated + c];
+                }
             }
     }
 }
@@ -23,8 +23,14 @@ public interface ConstBoard
 
     ConstPointList getKilled();
 
+    long getHash();
+
+    long getHash(int rotationMode);
+
     Move getLastMove();
 
+    int getLiberties(GoPoint p);
+
     Move getMove(int i);
 
     int getNumberMoves();
@@ -33,6 +39,8 @@ public interface ConstBoard
 
     GoColor getSetupPlayer();
 
+    long getSymmetricHash();
+
     int getSize();
 
     void getStones(GoPoint p, GoColor color, PointList stones);
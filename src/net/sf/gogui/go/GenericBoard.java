@@ -6,6 +6,8 @@ import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.WeakHashMap;
 
 import net.sf.gogui.game.ConstNode;
 
@@ -17,6 +19,9 @@ import net.sf.gogui.gtp.GtpError;
 /**
  * final class containing the methods used if a gtp gameRuler is attached
  * used by Board.java
+ * The state of the ruler is queried through a RulerSession per ruler,
+ * which caches the responses per position and synchronizes the ruler
+ * only when needed.
  * @author fretel
  *
  */
@@ -25,7 +30,7 @@ public final class GenericBoard {
     public static GoColor getSideToMove(GtpClientBase gameRuler, Move move) throws GtpError {
         if (! gameRuler.isSupported("gogui-rules_side_to_move"))
             return move.getColor().otherColor();
-        String color = gameRuler.send("gogui-rules_side_to_move");
+        String color = getSession(gameRuler).getSideToMove(gameRuler);
         char c = color.charAt(0);
         GoColor sideToMove;
         if (c == 'b' || c == 'B')
@@ -55,7 +60,7 @@ public final class GenericBoard {
 
     public static String getLegalMoves(GtpClientBase gameRuler) throws GtpError
     {
-        return gameRuler.send("gogui-rules_legal_moves");
+        return getSession(gameRuler).getLegalMoves(gameRuler);
     }
 
     /**
@@ -78,7 +83,7 @@ public final class GenericBoard {
     public static void sendPlay(GtpClientBase gameRuler, Board board, Move move)
     {
         try {
-            gameRuler.sendPlay(move);
+            getSession(gameRuler).play(gameRuler, move);
             GenericBoard.copyRulerBoardState(gameRuler, board);
             GenericBoard.setToMove(gameRuler, board, move);
         } catch (GtpError e) {
@@ -121,14 +126,16 @@ public final class GenericBoard {
             return;
         String rulerBoardState = "";
         try {
-            rulerBoardState = gameRuler.send("gogui-rules_board");
+            rulerBoardState = getSession(gameRuler).getBoard(gameRuler);
         } catch (GtpError e) {
             return;
         }
         if (rulerBoardState.equals("")) return;
         int size = 0;
         try {
-            size = GenericBoard.getBoardSize(gameRuler);
+            if (!gameRuler.isSupported("gogui-rules_board_size"))
+                return;
+            size = Integer.parseInt(getSession(gameRuler).getBoardSize(gameRuler));
         } catch (GtpError e) {
             return;
         }
@@ -189,7 +196,7 @@ public final class GenericBoard {
     }
 
     /**
-     * Clears the ruler board and plays moves from the beginning.
+     * Brings the ruler to the position of a node.
      * Then copy the ruler board changes to the board.
      */
     public static void copyBoardState(GtpClientBase gameRuler, ConstNode node, Board board)
@@ -197,7 +204,9 @@ public final class GenericBoard {
         ArrayList<Move> moves = new ArrayList<Move>();
         while (node.hasFather())
         {
-            moves.add(node.getMove());
+            // Nodes without move do not change the position of the ruler
+            if (node.getMove() != null)
+                moves.add(node.getMove());
             node = node.getFatherConst();
         }
         try {
@@ -206,16 +215,36 @@ public final class GenericBoard {
         }
     }
 
+    /**
+     * Sets the position of the ruler to the moves in reverse order.
+     * The session sends only the commands needed to get from the current
+     * position of the ruler to the new position (undo or clear_board and
+     * play), together with the queries of copyRulerBoardState.
+     */
     public static void playFromBeginning(GtpClientBase gameRuler, ArrayList<Move> moves, Board board) throws GtpError {
-        gameRuler.sendClearBoard(board.getSize());
-        for (int i = moves.size() - 1; i >= 0; i--)
+        ArrayList<Move> sequence = new ArrayList<Move>(moves);
+        Collections.reverse(sequence);
+        getSession(gameRuler).setPosition(gameRuler, board.getSize(), sequence);
+        GenericBoard.copyRulerBoardState(gameRuler, board);
+    }
+
+    private static final WeakHashMap<GtpClientBase,RulerSession> s_sessions
+        = new WeakHashMap<GtpClientBase,RulerSession>();
+
+    private static RulerSession getSession(GtpClientBase gameRuler)
+    {
+        synchronized (s_sessions)
         {
-            gameRuler.sendPlay(moves.get(i));
+            RulerSession session = s_sessions.get(gameRuler);
+            if (session == null)
+            {
+                session = new RulerSession();
+                s_sessions.put(gameRuler, session);
+            }
+            return session;
         }
-        GenericBoard.copyRulerBoardState(gameRuler, board);
     }
 
-    
     //Makes the constructor unavailable.
     private GenericBoard()
     {
@@ -0,0 +1,290 @@
+// RulerSession.java
+
+package net.sf.gogui.go;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.sf.gogui.gtp.GtpClientBase;
+import net.sf.gogui.gtp.GtpError;
+
+/** Caching connection to a game ruler.
+    Keeps track of the position (board size and move sequence) that the
+    ruler should be in and the position that it is actually in. The ruler
+    is only synchronized, if its state is queried, using undo commands
+    (if supported) for moving back to a common position, otherwise by
+    replaying the game from the beginning. The synchronization commands and
+    the queries (board, board size, side to move and legal moves) are sent
+    as one pipelined list of commands. The responses are cached for the
+    most recently used positions, such that navigating in the game tree
+    does not need to send any commands to the ruler for positions that were
+    visited before.
+    If other commands were sent to the ruler (detected with
+    GtpClientBase.getNumberCommands()), the current position of the ruler
+    and the cache are invalidated and the ruler is queried in the position
+    it is in. Clients that do not implement getNumberCommands() must only
+    be used through this class.
+    A session must always be used with the same ruler. The ruler is passed
+    to the functions and not stored, such that the session can be the value
+    of a weak hash map with the ruler as key. */
+final class RulerSession
+{
+    public String getBoard(GtpClientBase ruler) throws GtpError
+    {
+        return getState(ruler).get(BOARD);
+    }
+
+    public String getBoardSize(GtpClientBase ruler) throws GtpError
+    {
+        return getState(ruler).get(BOARD_SIZE);
+    }
+
+    public String getLegalMoves(GtpClientBase ruler) throws GtpError
+    {
+        return getState(ruler).get(LEGAL_MOVES);
+    }
+
+    public String getSideToMove(GtpClientBase ruler) throws GtpError
+    {
+        return getState(ruler).get(SIDE_TO_MOVE);
+    }
+
+    /** Play a move in the current position.
+        The move is sent together with the synchronization commands and the
+        queries for the new position.
+        @throws GtpError If the synchronization or the move failed. */
+    public void play(GtpClientBase ruler, Move move) throws GtpError
+    {
+        checkCommands(ruler);
+        ArrayList<String> commands = new ArrayList<String>();
+        addSyncCommands(ruler, commands);
+        commands.add(ruler.getCommandPlay(move));
+        if (m_position != null)
+            m_position.add(move);
+        m_state = null;
+        try
+        {
+            setState(query(ruler, commands));
+        }
+        catch (GtpError e)
+        {
+            if (m_position != null)
+                m_position.remove(m_position.size() - 1);
+            throw e;
+        }
+    }
+
+    /** Set the position the ruler should be in.
+        Does not send any commands. */
+    public void setPosition(GtpClientBase ruler, int size,
+                            ArrayList<Move> moves)
+    {
+        checkCommands(ruler);
+        if (size != m_size)
+        {
+            m_size = size;
+            m_cache.clear();
+        }
+        else if (m_position != null && m_position.equals(moves))
+            return;
+        m_position = new ArrayList<Move>(moves);
+        m_state = m_cache.get(m_position);
+    }
+
+    /** Maximum number of positions in the cache. */
+    private static final int MAX_CACHED = 1000;
+
+    private static final String BOARD = "gogui-rules_board";
+
+    private static final String BOARD_SIZE = "gogui-rules_board_size";
+
+    private static final String LEGAL_MOVES = "gogui-rules_legal_moves";
+
+    private static final String SIDE_TO_MOVE = "gogui-rules_side_to_move";
+
+    private static final String[] QUERIES =
+        { BOARD, BOARD_SIZE, LEGAL_MOVES, SIDE_TO_MOVE };
+
+    /** Responses of the ruler to the queries in a position. */
+    private static final class State
+    {
+        public String get(String command) throws GtpError
+        {
+            String response = m_responses.get(command);
+            if (response != null)
+                return response;
+            GtpError error = m_errors.get(command);
+            if (error == null)
+                throw new GtpError("command not supported: " + command);
+            throw error;
+        }
+
+        public boolean isComplete()
+        {
+            return m_errors.isEmpty();
+        }
+
+        public void put(String command, String response, GtpError error)
+        {
+            if (response != null)
+                m_responses.put(command, response);
+            else
+                m_errors.put(command, error);
+        }
+
+        private final Map<String,String> m_responses =
+            new LinkedHashMap<String,String>();
+
+        private final Map<String,GtpError> m_errors =
+            new LinkedHashMap<String,GtpError>();
+    }
+
+    private int m_size = -1;
+
+    /** Number of commands of the ruler after the last command sent by
+        this class. */
+    private int m_numberCommands = -2;
+
+    /** Moves of the position the ruler should be in.
+        Null, if the ruler should stay in the position it is in. */
+    private ArrayList<Move> m_position;
+
+    /** Moves of the position the ruler is in.
+        Null, if unknown. */
+    private ArrayList<Move> m_rulerMoves;
+
+    /** State of the current position or null, if not queried yet. */
+    private State m_state;
+
+    /** States of recently used positions in access order. */
+    private final LinkedHashMap<ArrayList<Move>,State> m_cache =
+        new LinkedHashMap<ArrayList<Move>,State>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<ArrayList<Move>,
+                                                State> e)
+            {
+                return size() > MAX_CACHED;
+            }
+        };
+
+    /** Add the commands for bringing the ruler into the position. */
+    private void addSyncCommands(GtpClientBase ruler,
+                                 ArrayList<String> commands)
+    {
+        if (m_position == null || m_position.equals(m_rulerMoves))
+            return;
+        int size = m_position.size();
+        int common = 0;
+        if (m_rulerMoves != null)
+            while (common < size && common < m_rulerMoves.size()
+                   && m_position.get(common) == m_rulerMoves.get(common))
+                ++common;
+        int numberUndo = (m_rulerMoves == null ? -1
+                          : m_rulerMoves.size() - common);
+        if (numberUndo >= 0 && ruler.isSupported("undo")
+            && numberUndo + size - common < size + 1)
+        {
+            for (int i = 0; i < numberUndo; ++i)
+                commands.add("undo");
+        }
+        else
+        {
+            commands.add(ruler.getCommandClearBoard(m_size));
+            common = 0;
+        }
+        for (int i = common; i < size; ++i)
+            commands.add(ruler.getCommandPlay(m_position.get(i)));
+    }
+
+    /** Invalidate the ruler position and the cache, if other commands
+        were sent to the ruler. */
+    private void checkCommands(GtpClientBase ruler)
+    {
+        int numberCommands = ruler.getNumberCommands();
+        if (numberCommands < 0 || numberCommands == m_numberCommands)
+            return;
+        m_position = null;
+        m_rulerMoves = null;
+        m_state = null;
+        m_cache.clear();
+        m_numberCommands = numberCommands;
+    }
+
+    private State getState(GtpClientBase ruler) throws GtpError
+    {
+        checkCommands(ruler);
+        if (m_state == null)
+        {
+            ArrayList<String> commands = new ArrayList<String>();
+            addSyncCommands(ruler, commands);
+            setState(query(ruler, commands));
+        }
+        return m_state;
+    }
+
+    /** Send commands followed by the supported queries.
+        If a query fails, the queries are sent again one by one to get the
+        results of the other queries.
+        @param commands Commands that change the position of the ruler.
+        @throws GtpError If one of these commands failed. */
+    private State query(GtpClientBase ruler, ArrayList<String> commands)
+        throws GtpError
+    {
+        int numberCommands = commands.size();
+        ArrayList<String> queries = new ArrayList<String>();
+        for (String command : QUERIES)
+            if (ruler.isSupported(command))
+                queries.add(command);
+        commands.addAll(queries);
+        State state = new State();
+        try
+        {
+            ArrayList<String> responses = ruler.send(commands);
+            for (int i = 0; i < queries.size(); ++i)
+                state.put(queries.get(i), responses.get(numberCommands + i),
+                          null);
+        }
+        catch (GtpError e)
+        {
+            m_numberCommands = ruler.getNumberCommands();
+            if (ruler.isProgramDead() || ! isQuery(e.getCommand()))
+            {
+                // The position of the ruler is unknown
+                m_rulerMoves = null;
+                throw e;
+            }
+            for (String command : queries)
+            {
+                try
+                {
+                    state.put(command, ruler.send(command), null);
+                }
+                catch (GtpError queryError)
+                {
+                    state.put(command, null, queryError);
+                }
+            }
+        }
+        m_numberCommands = ruler.getNumberCommands();
+        if (m_position != null)
+            m_rulerMoves = new ArrayList<Move>(m_position);
+        return state;
+    }
+
+    private static boolean isQuery(String command)
+    {
+        if (command == null)
+            return false;
+        for (String query : QUERIES)
+            // Command can contain an ID
+            if (command.equals(query) || command.endsWith(" " + query))
+                return true;
+        return false;
+    }
+
+    private void setState(State state)
+    {
+        m_state = state;
+        if (m_position != null && state.isComplete())
+            m_cache.put(new ArrayList<Move>(m_position), state);
+    }
+}
@@ -100,6 +100,7 @@ import net.sf.gogui.gui.GameInfoDialog;
 import net.sf.gogui.gui.GameInfoPanel;
 import net.sf.gogui.gui.GameTreePanel;
 import net.sf.gogui.gui.GameTreeViewer;
+import net.sf.gogui.gui.GfxFrame;
 import net.sf.gogui.gui.GtpShell;
 import net.sf.gogui.gui.GuiAction;
 import net.sf.gogui.gui.GuiBoard;
@@ -2358,16 +2359,14 @@ implements AnalyzeDialog.Listener, GuiBoard.Listener,
         return (m_gtp != null && m_gtp.isProgramDead());
     }
 
-    public void showLiveGfx(String text)
+    public void showLiveGfx(GfxFrame frame)
     {
         assert SwingUtilities.isEventDispatchThread();
         // The live gfx events can arrive delayed, we don't want to allow
         // them to paint on the board, if no command is currently running
         if (! isCommandInProgress())
             return;
-        m_guiBoard.clearAll();
-        GuiBoardUtil.updateFromGoBoard(m_guiBoard, getBoard(), false, false);
-        AnalyzeShow.showGfx(text, m_guiBoard, m_statusBar, null);
+        AnalyzeShow.showLiveGfx(frame, m_guiBoard, getBoard(), m_statusBar);
     }
 
     private class AnalyzeContinue
@@ -2430,9 +2429,18 @@ implements AnalyzeDialog.Listener, GuiBoard.Listener,
 
         public void run(ProgressShow progressShow) throws Throwable
         {
-            m_reader = new GameReader(m_file, progressShow);
+            int maxLoadedNodes = 0;
+            if (m_file.length() >= LAZY_LOADING_SIZE)
+                maxLoadedNodes = MAX_LOADED_NODES;
+            m_reader = new GameReader(m_file, progressShow, maxLoadedNodes);
         }
 
+        /** Minimum file size for loading the content of nodes on demand. */
+        private static final long LAZY_LOADING_SIZE = 4000000;
+
+        /** Maximum number of nodes with loaded content for large files. */
+        private static final int MAX_LOADED_NODES = 10000;
+
         private final File m_file;
 
         private GameReader m_reader;
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -200,6 +201,12 @@ public final class GtpClient
         return m_fullResponse;
     }
 
+    /** Get the number of commands sent to the program. */
+    public int getNumberCommands()
+    {
+        return m_commandNumber;
+    }
+
     /** Get the command line that was used for invoking the Go program.
         @return The command line that was given to the constructor. */
     public String getProgramCommand()
@@ -239,27 +246,13 @@ public final class GtpClient
     public String send(String command, long timeout,
                        TimeoutCallback timeoutCallback) throws GtpError
     {
-        assert ! command.trim().equals("");
-        assert ! command.trim().startsWith("#");
         m_timeoutCallback = timeoutCallback;
         m_fullResponse = "";
         m_response = "";
-        ++m_commandNumber;
-        if (m_autoNumber)
-            command = Integer.toString(m_commandNumber) + " " + command;
-        if (m_log)
-            logOut(command);
-        m_out.println(command);
-        m_out.flush();
+        command = writeCommand(command);
         try
         {
-            if (m_out.checkError())
-            {
-                throwProgramDied();
-            }
-            if (m_callback != null)
-                m_callback.sentCommand(command);
-            readResponse(timeout);
+            readResponse(timeout, -1);
             return m_response;
         }
         catch (GtpError e)
@@ -269,6 +262,72 @@ public final class GtpClient
         }
     }
 
+    /** Send a list of commands without waiting for each response.
+        @see #send(ArrayList,long,TimeoutCallback) */
+    public ArrayList<String> send(ArrayList<String> commands) throws GtpError
+    {
+        return send(commands, -1, null);
+    }
+
+    /** Send a list of commands without waiting for each response.
+        Commands are written to the program while the responses to previous
+        commands are still outstanding (at most MAX_PIPELINED commands),
+        which saves a round trip per command for long command sequences,
+        like replaying the moves of a game. The GTP standard requires that
+        commands are executed in the order received.
+        If auto-numbering is enabled, the IDs of the responses are checked.
+        All commands are executed, even if a command fails, unless the
+        program died. getResponse() returns the response to the last
+        command afterwards.
+        @param commands The commands to send
+        @param timeout Timeout in milliseconds for each response or -1, if
+        no timeout
+        @param timeoutCallback Timeout callback or null if no timeout.
+        @return The response texts of the commands.
+        @throws GtpError The error of the first failed command. */
+    public ArrayList<String> send(ArrayList<String> commands, long timeout,
+                                  TimeoutCallback timeoutCallback)
+        throws GtpError
+    {
+        m_timeoutCallback = timeoutCallback;
+        m_fullResponse = "";
+        m_response = "";
+        int size = commands.size();
+        ArrayList<String> responses = new ArrayList<String>(size);
+        // Commands as sent, including the ID
+        String[] sent = new String[size];
+        int[] id = new int[size];
+        int numberSent = 0;
+        GtpError error = null;
+        while (responses.size() < size)
+        {
+            while (numberSent < size
+                   && numberSent - responses.size() < MAX_PIPELINED)
+            {
+                sent[numberSent] = writeCommand(commands.get(numberSent));
+                id[numberSent] = (m_autoNumber ? m_commandNumber : -1);
+                ++numberSent;
+            }
+            int i = responses.size();
+            try
+            {
+                responses.add(readResponse(timeout, id[i]));
+            }
+            catch (GtpError e)
+            {
+                e.setCommand(sent[i]);
+                if (m_isProgramDead)
+                    throw e;
+                if (error == null)
+                    error = e;
+                responses.add(null);
+            }
+        }
+        if (error != null)
+            throw error;
+        return responses;
+    }
+
     public void sendPlay(Move move, long timeout,
                          TimeoutCallback timeoutCallback) throws GtpError
     {
@@ -367,6 +426,12 @@ public final class GtpClient
         return m_wasKilled;
     }
 
+    /** Maximum number of commands sent without waiting for a response.
+        Must be smaller than the capacity of m_queue, otherwise the input
+        thread could block on a full queue, while the program blocks on
+        writing the responses and the commands cannot be written. */
+    private static final int MAX_PIPELINED = 8;
+
     private static final class Message
     {
         public Message(String text)
@@ -624,7 +689,11 @@ public final class GtpClient
         Thread.dumpStack();
     }
 
-    private String readResponse(long timeout) throws GtpError
+    /** Read the response to a command.
+        @param timeout Timeout in milliseconds or -1, if no timeout
+        @param id The expected ID of the response or -1, if the ID should
+        not be checked. */
+    private String readResponse(long timeout, int id) throws GtpError
     {
         while (true)
         {
@@ -647,12 +716,34 @@ public final class GtpClient
                 m_response = response.substring(1, length - 2);
             else
                 m_response = response.substring(index + 1, length - 2);
+            if (id >= 0 && ! isResponseId(response, id))
+                throw new GtpError("Response has wrong ID (expected "
+                                   + id + ")");
             if (error)
                 throw new GtpError(m_response);
             return m_response;
         }
     }
 
+    /** Check if a response has a given ID or no ID. */
+    private static boolean isResponseId(String response, int id)
+    {
+        int end = 1;
+        while (end < response.length()
+               && Character.isDigit(response.charAt(end)))
+            ++end;
+        if (end == 1)
+            return true;
+        try
+        {
+            return (Integer.parseInt(response.substring(1, end)) == id);
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+
     private void throwProgramDied() throws GtpError
     {
         m_isProgramDead = true;
@@ -665,6 +756,37 @@ public final class GtpClient
             throw new GtpError(name + " terminated unexpectedly.");
     }
 
+    /** Write a command to the program.
+        Adds the ID, if auto-numbering is enabled.
+        @return The command as sent. */
+    private String writeCommand(String command) throws GtpError
+    {
+        assert ! command.trim().equals("");
+        assert ! command.trim().startsWith("#");
+        ++m_commandNumber;
+        if (m_autoNumber)
+            command = Integer.toString(m_commandNumber) + " " + command;
+        if (m_log)
+            logOut(command);
+        m_out.println(command);
+        m_out.flush();
+        try
+        {
+            if (m_out.checkError())
+            {
+                throwProgramDied();
+            }
+        }
+        catch (GtpError e)
+        {
+            e.setCommand(command);
+            throw e;
+        }
+        if (m_callback != null)
+            m_callback.sentCommand(command);
+        return command;
+    }
+
     private Message waitForMessage(long timeout) throws GtpError
     {
         Message message = null;
@@ -120,6 +120,15 @@ public abstract class GtpClientBase
         }
     }
 
+    /** Get the number of commands sent to the program.
+        Allows to detect, if other commands were sent to the program since
+        a certain point of time. Returns -1 (unknown), but can be
+        reimplemented in a subclass. */
+    public int getNumberCommands()
+    {
+        return -1;
+    }
+
     /** Get program name or "Unknown Program" if unknown.
         If queryName() was not called or the name command failed, the
         string "Unknown Program" is returned. */
@@ -298,6 +307,38 @@ public abstract class GtpClientBase
         @throws GtpError containing the response if the command fails. */
     public abstract String send(String command) throws GtpError;
 
+    /** Send a list of commands.
+        All commands are sent, even if a command fails, unless the program
+        died. The default implementation sends the commands one after the
+        other. Subclasses can send them without waiting for each response
+        (see GtpClient.send(ArrayList,long,TimeoutCallback)).
+        @param commands The commands.
+        @return The response texts of the commands.
+        @throws GtpError The error of the first failed command. */
+    public ArrayList<String> send(ArrayList<String> commands) throws GtpError
+    {
+        ArrayList<String> responses = new ArrayList<String>(commands.size());
+        GtpError error = null;
+        for (String command : commands)
+        {
+            try
+            {
+                responses.add(send(command));
+            }
+            catch (GtpError e)
+            {
+                if (isProgramDead())
+                    throw e;
+                if (error == null)
+                    error = e;
+                responses.add(null);
+            }
+        }
+        if (error != null)
+            throw error;
+        return responses;
+    }
+
     /** Send comment.
         @param comment comment line (must start with '#'). */
     public abstract void sendComment(String comment);
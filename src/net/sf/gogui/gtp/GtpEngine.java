@@ -10,13 +10,32 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.InvalidPointException;
 import net.sf.gogui.go.PointList;
 import net.sf.gogui.util.StringUtil;
 
-/** Base class for Go programs and tools implementing GTP. */
+/** Base class for Go programs and tools implementing GTP.
+    By default, the commands are executed one after the other in the order
+    they are received. If concurrent execution is enabled with
+    setConcurrentThreads(), commands registered as concurrent are executed
+    by a pool of worker threads, while all other commands are still
+    executed one after the other in a single thread. This allows answering
+    commands like name or list_commands while a long command like genmove
+    is running. The responses are always written in the order of the
+    commands, as required by GTP. */
 public class GtpEngine
 {
     public GtpEngine(PrintStream log)
@@ -24,39 +43,42 @@ public class GtpEngine
         m_log = log;
         register("known_command", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
-                    cmdKnownCommand(cmd); } });
+                    cmdKnownCommand(cmd); } }, true);
         register("list_commands", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
-                    cmdListCommands(cmd); } });
+                    cmdListCommands(cmd); } }, true);
         register("name", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
-                    cmdName(cmd); } });
+                    cmdName(cmd); } }, true);
         register("protocol_version", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
-                    cmdProtocolVersion(cmd); } });
+                    cmdProtocolVersion(cmd); } }, true);
         register("quit", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
                     cmdQuit(cmd); } });
         register("version", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
-                    cmdVersion(cmd); } });
+                    cmdVersion(cmd); } }, true);
     }
 
     public void cmdKnownCommand(GtpCommand cmd) throws GtpError
     {
         String name = cmd.getArg();
-        cmd.setResponse(m_commands.containsKey(name) ? "true" : "false");
+        cmd.setResponse(isRegistered(name) ? "true" : "false");
     }
 
     public void cmdListCommands(GtpCommand cmd) throws GtpError
     {
         cmd.checkArgNone();
         StringBuilder response = cmd.getResponse();
-        Iterator it = m_commands.keySet().iterator();
-        while (it.hasNext())
+        synchronized (m_commands)
         {
-            response.append(it.next());
-            response.append('\n');
+            Iterator it = m_commands.keySet().iterator();
+            while (it.hasNext())
+            {
+                response.append(it.next());
+                response.append('\n');
+            }
         }
     }
 
@@ -92,7 +114,10 @@ public class GtpEngine
     /** Callback for interrupting commands.
         This callback will be invoked if the special comment line
         "# interrupt" is received. It will be invoked from a different
-        thread. */
+        thread. If concurrent execution is enabled, it is also invoked if
+        the main loop terminates while commands are still running. The
+        interrupt applies to the command that is executed in the thread for
+        non-concurrent commands, see isInterrupted(). */
     public void interruptCommand()
     {
         m_interrupted = true;
@@ -100,12 +125,13 @@ public class GtpEngine
 
     /** Handle command.
         The default implementation looks up the command within the registered
-        commands and calls the registered callback. */
+        commands and calls the registered callback.
+        If concurrent execution is enabled, this function is not called for
+        commands registered as concurrent. */
     public void handleCommand(GtpCommand cmd) throws GtpError
     {
         m_interrupted = false;
-        String name = cmd.getCommand();
-        GtpCallback callback = (GtpCallback)m_commands.get(name);
+        GtpCallback callback = getCallback(cmd.getCommand());
         if (callback == null)
             cmdUnknown(cmd);
         else
@@ -114,7 +140,20 @@ public class GtpEngine
 
     public boolean isRegistered(String command)
     {
-        return m_commands.containsKey(command);
+        synchronized (m_commands)
+        {
+            return m_commands.containsKey(command);
+        }
+    }
+
+    /** Check if a command is registered as concurrent.
+        @see #register(String,GtpCallback,boolean) */
+    public boolean isConcurrent(String command)
+    {
+        synchronized (m_commands)
+        {
+            return m_concurrentCommands.contains(command);
+        }
     }
 
     public synchronized void log(String line)
@@ -132,6 +171,11 @@ public class GtpEngine
         m_in = in;
         ReadThread readThread = new ReadThread(this, m_in, m_log != null);
         readThread.start();
+        if (m_concurrentThreads > 0)
+        {
+            mainLoopConcurrent(readThread);
+            return;
+        }
         while (true)
         {
             GtpCommand cmd = readThread.getCommand();
@@ -149,8 +193,7 @@ public class GtpEngine
                 response = e.getMessage();
                 status = false;
             }
-            String sanitizedResponse = response.replaceAll("\\n\\n", "\n \n");
-            respond(status, cmd.hasId(), cmd.getId(), sanitizedResponse);
+            respond(status, cmd, response);
             // TODO: Use only quit flag not GtpCommand.isQuit once all
             // subclasses use the new registered quit command
             if (m_quit || cmd.isQuit())
@@ -215,11 +258,34 @@ public class GtpEngine
 
     /** Register new command.
         If a command was already registered with the same name,
-        it will be replaced by the new command. */
+        it will be replaced by the new command. The command is not
+        registered as concurrent. */
     public final void register(String command, GtpCallback callback)
     {
-        unregister(command);
-        m_commands.put(command, callback);
+        register(command, callback, false);
+    }
+
+    /** Register new command.
+        If a command was already registered with the same name,
+        it will be replaced by the new command.
+        @param command The command name.
+        @param callback The callback.
+        @param concurrent Whether the command may be executed concurrently
+        with other commands if concurrent execution is enabled. Only
+        commands that neither change nor depend on the state of the engine
+        should be registered as concurrent, because they can overlap with
+        any other command. Concurrent commands are not passed to
+        handleCommand() and do not reset the interrupt flag. */
+    public final void register(String command, GtpCallback callback,
+                               boolean concurrent)
+    {
+        synchronized (m_commands)
+        {
+            unregister(command);
+            m_commands.put(command, callback);
+            if (concurrent)
+                m_concurrentCommands.add(command);
+        }
     }
 
     public void respond(boolean status, boolean hasId, int id,
@@ -242,6 +308,18 @@ public class GtpEngine
             m_log.println(fullResponse);
     }
 
+    /** Enable concurrent execution of commands.
+        Must be called before mainLoop().
+        @param numberThreads The number of worker threads for commands
+        registered as concurrent, zero for executing all commands one after
+        the other in the main loop.
+        @see #register(String,GtpCallback,boolean) */
+    public void setConcurrentThreads(int numberThreads)
+    {
+        assert numberThreads >= 0;
+        m_concurrentThreads = numberThreads;
+    }
+
     /** Set quit flag for terminating command loop. */
     public void setQuit()
     {
@@ -262,8 +340,11 @@ public class GtpEngine
 
     public final void unregister(String command)
     {
-        if (m_commands.containsKey(command))
+        synchronized (m_commands)
+        {
             m_commands.remove(command);
+            m_concurrentCommands.remove(command);
+        }
     }
 
     protected boolean isInterrupted()
@@ -271,9 +352,28 @@ public class GtpEngine
         return m_interrupted;
     }
 
+    /** Command read by the main loop with the future of its execution. */
+    private static final class PendingCommand
+    {
+        public PendingCommand(GtpCommand cmd, Future<String> future)
+        {
+            m_cmd = cmd;
+            m_future = future;
+        }
+
+        public final GtpCommand m_cmd;
+
+        public final Future<String> m_future;
+    }
+
+    /** Marker for the end of the commands in the pending queue. */
+    private static final PendingCommand END = new PendingCommand(null, null);
+
     private volatile boolean m_interrupted;
 
-    private boolean m_quit;
+    private volatile boolean m_quit;
+
+    private int m_concurrentThreads;
 
     private String m_name = "Unknown";
 
@@ -286,11 +386,153 @@ public class GtpEngine
     private final Map<String,GtpCallback> m_commands
         = new TreeMap<String,GtpCallback>();
 
+    /** Commands registered as concurrent.
+        Protected by the lock of m_commands. */
+    private final Set<String> m_concurrentCommands = new TreeSet<String>();
+
     private InputStream m_in;
 
     private final PrintStream m_log;
 
     private PrintStream m_out;
+
+    private GtpCallback getCallback(String command)
+    {
+        synchronized (m_commands)
+        {
+            return m_commands.get(command);
+        }
+    }
+
+    /** Main loop for concurrent execution of commands.
+        A dispatcher thread reads the commands and submits them to the
+        executor for concurrent commands or to the executor for all other
+        commands, which has a single thread. This thread writes the
+        responses in the order of the commands. */
+    private void mainLoopConcurrent(final ReadThread readThread)
+    {
+        final ExecutorService sequential =
+            Executors.newSingleThreadExecutor(DAEMON_THREAD_FACTORY);
+        final ExecutorService concurrent =
+            Executors.newFixedThreadPool(m_concurrentThreads,
+                                         DAEMON_THREAD_FACTORY);
+        final BlockingQueue<PendingCommand> pending =
+            new LinkedBlockingQueue<PendingCommand>();
+        Thread dispatcher = new Thread() {
+                public void run()
+                {
+                    while (true)
+                    {
+                        GtpCommand cmd = readThread.getCommand();
+                        if (cmd == null)
+                            break;
+                        boolean isConcurrent =
+                            isConcurrent(cmd.getCommand());
+                        ExecutorService executor =
+                            (isConcurrent ? concurrent : sequential);
+                        Future<String> future;
+                        try
+                        {
+                            future = submit(executor, cmd, isConcurrent);
+                        }
+                        catch (RejectedExecutionException e)
+                        {
+                            // Main loop has terminated
+                            return;
+                        }
+                        pending.add(new PendingCommand(cmd, future));
+                        if (cmd.isQuit())
+                            break;
+                    }
+                    pending.add(END);
+                }
+            };
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        try
+        {
+            while (true)
+            {
+                PendingCommand next = pending.take();
+                if (next == END)
+                    break;
+                GtpCommand cmd = next.m_cmd;
+                boolean status = true;
+                String response;
+                try
+                {
+                    response = next.m_future.get();
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof GtpError)
+                    {
+                        response = cause.getMessage();
+                        status = false;
+                    }
+                    else if (cause instanceof Error)
+                        throw (Error)cause;
+                    else if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    else
+                        throw new RuntimeException(cause);
+                }
+                respond(status, cmd, response);
+                if (m_quit || cmd.isQuit())
+                    break;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            System.err.println("Interrupted");
+        }
+        finally
+        {
+            if (! pending.isEmpty())
+                interruptCommand();
+            sequential.shutdownNow();
+            concurrent.shutdownNow();
+        }
+    }
+
+    private void respond(boolean status, GtpCommand cmd, String response)
+    {
+        String sanitizedResponse = response.replaceAll("\\n\\n", "\n \n");
+        respond(status, cmd.hasId(), cmd.getId(), sanitizedResponse);
+    }
+
+    private Future<String> submit(ExecutorService executor,
+                                  final GtpCommand cmd,
+                                  final boolean isConcurrent)
+    {
+        return executor.submit(new Callable<String>() {
+                public String call() throws GtpError
+                {
+                    if (isConcurrent)
+                    {
+                        GtpCallback callback = getCallback(cmd.getCommand());
+                        if (callback == null)
+                            cmdUnknown(cmd);
+                        else
+                            callback.run(cmd);
+                    }
+                    else
+                        handleCommand(cmd);
+                    return cmd.getResponse().toString();
+                }
+            });
+    }
+
+    private static final ThreadFactory DAEMON_THREAD_FACTORY =
+        new ThreadFactory() {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
 }
 
 /** Thread reading the command stream.
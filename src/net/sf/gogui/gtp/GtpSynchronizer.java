@@ -16,6 +16,7 @@ import static net.sf.gogui.go.GoColor.WHITE_BLACK;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
+import net.sf.gogui.go.PointList;
 import net.sf.gogui.util.ObjectUtil;
 
 /** Synchronizes a GTP engine with a Go board.
@@ -64,15 +65,12 @@ public class GtpSynchronizer
         int size = board.getSize();
         m_engineState = null;
         m_gtp.sendBoardsize(size);
-        m_engineState = new Board(size);
+        m_engineState = new State(size);
         m_gtp.sendClearBoard(size);
         sendGameInfo(komi, timeSettings);
-        ConstBoard targetState = computeTargetState(board);
+        State targetState = computeTargetState(board);
         setup(targetState);
-        ArrayList<Move> moves = new ArrayList<Move>();
-        for (int i = 0; i < targetState.getNumberMoves(); ++i)
-            moves.add(targetState.getMove(i));
-        play(moves);
+        play(targetState.m_moves);
         m_isOutOfSync = false;
     }
 
@@ -80,8 +78,8 @@ public class GtpSynchronizer
                             TimeSettings timeSettings) throws GtpError
     {
         int size = board.getSize();
-        ConstBoard targetState = computeTargetState(board);
-        if (m_engineState == null || size != m_engineState.getSize()
+        State targetState = computeTargetState(board);
+        if (m_engineState == null || size != m_engineState.m_size
             || isSetupDifferent(targetState))
         {
             init(board, komi, timeSettings);
@@ -120,9 +118,7 @@ public class GtpSynchronizer
         playing it on the board, e.g. after a new human move was entered. */
     public void updateHumanMove(ConstBoard board, Move move) throws GtpError
     {
-        ConstBoard targetState = computeTargetState(board);
-        assert findNumberCommonMoves(targetState)
-            == targetState.getNumberMoves();
+        assert isSynchronized(board);
         if (m_fillPasses && m_engineState.getNumberMoves() > 0)
         {
             Move lastMove = m_engineState.getLastMove();
@@ -143,19 +139,77 @@ public class GtpSynchronizer
         Move move = board.getLastMove();
         assert move != null;
         m_engineState.play(move);
-        try
+        assert isSynchronized(board);
+    }
+
+    /** Position as transmitted to the engine.
+        Contains the setup stones (if transmitted as setup) and the
+        sequence of moves, but not the board. The synchronizer only needs
+        to compare moves and setup, so it does not replay the game on a
+        Board for every target position. */
+    private static final class State
+    {
+        public final int m_size;
+
+        public boolean m_isSetupHandicap;
+
+        public GoColor m_setupPlayer;
+
+        public ConstPointList m_setupBlack = EMPTY_LIST;
+
+        public ConstPointList m_setupWhite = EMPTY_LIST;
+
+        public final ArrayList<Move> m_moves = new ArrayList<Move>();
+
+        public State(int size)
         {
-            ConstBoard targetState = computeTargetState(board);
-            assert findNumberCommonMoves(targetState)
-                == targetState.getNumberMoves();
+            m_size = size;
         }
-        catch (GtpError e)
+
+        public Move getLastMove()
         {
-            // computeTargetState should not throw (no new setup
-            assert false;
+            return m_moves.get(m_moves.size() - 1);
+        }
+
+        public int getNumberMoves()
+        {
+            return m_moves.size();
+        }
+
+        public ConstPointList getSetup(GoColor c)
+        {
+            return (c == BLACK ? m_setupBlack : m_setupWhite);
+        }
+
+        public void play(Move move)
+        {
+            m_moves.add(move);
+        }
+
+        public void setup(ConstPointList black, ConstPointList white,
+                          GoColor player)
+        {
+            m_setupBlack = new PointList(black);
+            m_setupWhite = new PointList(white);
+            m_setupPlayer = player;
+            m_isSetupHandicap = false;
+        }
+
+        public void setupHandicap(ConstPointList points)
+        {
+            setup(points, EMPTY_LIST, WHITE);
+            m_isSetupHandicap = true;
+        }
+
+        public void undo(int n)
+        {
+            for (int i = 0; i < n; ++i)
+                m_moves.remove(m_moves.size() - 1);
         }
     }
 
+    private static final ConstPointList EMPTY_LIST = new PointList();
+
     private boolean m_fillPasses;
 
     private boolean m_isOutOfSync;
@@ -180,26 +234,35 @@ public class GtpSynchronizer
 
     private GtpClientBase m_gtp;
 
-    private Board m_engineState;
+    /** Shadow of the engine state.
+        Updated incrementally with each command sent; null if unknown. */
+    private State m_engineState;
 
     /** Computes all actions to execute.
         Replaces setup stones by moves, if setup is not supported.
         Fills in passes between moves of same color if m_fillPasses. */
-    private Board computeTargetState(ConstBoard board) throws GtpError
+    private State computeTargetState(ConstBoard board) throws GtpError
     {
         int size = board.getSize();
-        Board targetState = new Board(size);
+        State targetState = new State(size);
         ConstPointList setupBlack = board.getSetup(BLACK);
         ConstPointList setupWhite = board.getSetup(WHITE);
         GoColor setupPlayer = board.getSetupPlayer();
+        GoColor toMove = BLACK;
         if (setupBlack.size() > 0 || setupWhite.size() > 0)
         {
-            targetState.clear();
             boolean isHandicap = board.isSetupHandicap();
             if (isHandicap && m_isSupportedHandicap)
+            {
                 targetState.setupHandicap(setupBlack);
+                toMove = WHITE;
+            }
             else if (m_isSupportedSetup)
+            {
                 targetState.setup(setupBlack, setupWhite, setupPlayer);
+                if (setupPlayer != null)
+                    toMove = setupPlayer;
+            }
             else
             {
                 // Translate setup into moves
@@ -211,18 +274,23 @@ public class GtpSynchronizer
                     colors = BLACK_WHITE;
                 else
                     colors = WHITE_BLACK;
+                // Board only needed for detecting captures
+                Board setupBoard = new Board(size);
                 for (GoColor c : colors)
                 {
                     for (GoPoint p : board.getSetup(c))
                     {
-                        if (targetState.isCaptureOrSuicide(c, p))
+                        if (setupBoard.isCaptureOrSuicide(c, p))
                         {
                             String message =
                                 "cannot transmit setup as " +
                                 "move if stones are captured";
                             throw new GtpError(message);
                         }
-                        targetState.play(Move.get(c, p));
+                        Move move = Move.get(c, p);
+                        setupBoard.play(move);
+                        targetState.play(move);
+                        toMove = c.otherColor();
                     }
                 }
             }
@@ -230,47 +298,64 @@ public class GtpSynchronizer
         for (int i = 0; i < board.getNumberMoves(); ++i)
         {
             Move move = board.getMove(i);
-            GoColor toMove = targetState.getToMove();
             if (m_fillPasses && move.getColor() != toMove)
                 targetState.play(Move.getPass(toMove));
             targetState.play(move);
+            toMove = move.getColor().otherColor();
         }
         return targetState;
     }
 
     /** Compute number of moves to undo and moves to execute.
         @return Number of moves to undo. */
-    private int computeToPlay(ArrayList<Move> moves, ConstBoard targetState)
+    private int computeToPlay(ArrayList<Move> moves, State targetState)
         throws GtpError
     {
         int numberCommonMoves = findNumberCommonMoves(targetState);
         int numberUndo = m_engineState.getNumberMoves() - numberCommonMoves;
         moves.clear();
-        for (int i = numberCommonMoves; i < targetState.getNumberMoves(); ++i)
-            moves.add(targetState.getMove(i));
+        ArrayList<Move> targetMoves = targetState.m_moves;
+        moves.addAll(targetMoves.subList(numberCommonMoves,
+                                         targetMoves.size()));
         return numberUndo;
     }
 
-    private int findNumberCommonMoves(ConstBoard targetState)
+    private int findNumberCommonMoves(State targetState)
     {
+        ArrayList<Move> targetMoves = targetState.m_moves;
+        ArrayList<Move> engineMoves = m_engineState.m_moves;
+        int n = Math.min(targetMoves.size(), engineMoves.size());
         int i;
-        for (i = 0; i < targetState.getNumberMoves(); ++i)
-        {
-            if (i >= m_engineState.getNumberMoves())
+        // Moves are unique objects, compare references
+        for (i = 0; i < n; ++i)
+            if (targetMoves.get(i) != engineMoves.get(i))
                 break;
-            Move move = (Move)targetState.getMove(i);
-            if (! move.equals(m_engineState.getMove(i)))
-                break;
-        }
         return i;
     }
 
-    private boolean isSetupDifferent(ConstBoard targetState)
+    /** Check that the engine is synchronized with a board.
+        Only used in assertions. */
+    private boolean isSynchronized(ConstBoard board)
     {
-        if (m_engineState.isSetupHandicap() != targetState.isSetupHandicap())
+        try
+        {
+            State targetState = computeTargetState(board);
+            return (findNumberCommonMoves(targetState)
+                    == targetState.getNumberMoves());
+        }
+        catch (GtpError e)
+        {
+            // computeTargetState should not throw (no new setup)
+            return false;
+        }
+    }
+
+    private boolean isSetupDifferent(State targetState)
+    {
+        if (m_engineState.m_isSetupHandicap != targetState.m_isSetupHandicap)
             return true;
-        if (! ObjectUtil.equals(m_engineState.getSetupPlayer(),
-                                targetState.getSetupPlayer()))
+        if (! ObjectUtil.equals(m_engineState.m_setupPlayer,
+                                targetState.m_setupPlayer))
             return true;
         for (GoColor c : BLACK_WHITE)
             if (! m_engineState.getSetup(c).equals(targetState.getSetup(c)))
@@ -311,13 +396,39 @@ public class GtpSynchronizer
             for (int i = 0; i < moves.size(); ++i)
                 m_engineState.play(moves.get(i));
         }
-        else
+        else if (moves.size() > 1)
         {
+            ArrayList<String> commands = new ArrayList<String>(moves.size());
             for (int i = 0; i < moves.size(); ++i)
-            {
-                play(moves.get(i));
-                updateListener();
-            }
+                commands.add(m_gtp.getCommandPlay(moves.get(i)));
+            send(commands);
+            for (int i = 0; i < moves.size(); ++i)
+                m_engineState.play(moves.get(i));
+            updateListener();
+        }
+        else
+        {
+            play(moves.get(0));
+            updateListener();
+        }
+    }
+
+    /** Send a list of commands.
+        The commands are sent without waiting for each response, if
+        supported by the GtpClientBase implementation. All commands are
+        executed, even if one fails, so the state of the engine is unknown
+        after a failure. In this case, the engine will be initialized again
+        on the next synchronize(). */
+    private void send(ArrayList<String> commands) throws GtpError
+    {
+        try
+        {
+            m_gtp.send(commands);
+        }
+        catch (GtpError e)
+        {
+            m_engineState = null;
+            throw e;
         }
     }
 
@@ -358,14 +469,14 @@ public class GtpSynchronizer
         }
     }
 
-    private void setup(ConstBoard targetState) throws GtpError
+    private void setup(State targetState) throws GtpError
     {
         ConstPointList setupBlack = targetState.getSetup(BLACK);
         ConstPointList setupWhite = targetState.getSetup(WHITE);
-        GoColor setupPlayer = targetState.getSetupPlayer();
+        GoColor setupPlayer = targetState.m_setupPlayer;
         if (setupBlack.size() == 0 && setupWhite.size() == 0)
             return;
-        if (targetState.isSetupHandicap())
+        if (targetState.m_isSetupHandicap)
         {
             StringBuilder command = new StringBuilder(128);
             command.append("set_free_handicap");
@@ -409,12 +520,12 @@ public class GtpSynchronizer
         else
         {
             assert m_isSupportedUndo;
+            ArrayList<String> commands = new ArrayList<String>(n);
             for (int i = 0; i < n; ++i)
-            {
-                m_gtp.send("undo");
-                m_engineState.undo();
-                updateListener();
-            }
+                commands.add("undo");
+            send(commands);
+            m_engineState.undo(n);
+            updateListener();
         }
     }
 
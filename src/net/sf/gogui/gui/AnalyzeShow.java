@@ -2,12 +2,9 @@
 
 package net.sf.gogui.gui;
 
-import java.awt.Color;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Locale;
+import net.sf.gogui.boardpainter.ConstField;
+import net.sf.gogui.boardpainter.Field;
 import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.ConstPointList;
 import net.sf.gogui.go.GoColor;
@@ -15,14 +12,12 @@ import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.GoPoint;
-import net.sf.gogui.go.InvalidPointException;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.go.PointList;
 import net.sf.gogui.gtp.AnalyzeCommand;
 import net.sf.gogui.gtp.AnalyzeType;
 import net.sf.gogui.gtp.GtpResponseFormatError;
 import net.sf.gogui.gtp.GtpUtil;
-import net.sf.gogui.util.StringUtil;
 
 /** Show response to an AnalyzeCommand in the GUI. */
 public final class AnalyzeShow
@@ -144,262 +139,98 @@ public final class AnalyzeShow
                                StatusBar statusBar,
                                StringBuilder showTextBuffer)
     {
-        BufferedReader reader
-            = new BufferedReader(new StringReader(response));
-        while (true)
-        {
-            String line;
-            try
-            {
-                line = reader.readLine();
-            }
-            catch (IOException e)
-            {
-                assert false;
-                break;
-            }
-            if (line == null)
-                break;
-            showGfxLine(line, guiBoard, statusBar, showTextBuffer);
-        }
-    }
-
-    public static void showGfxCircle(String[] arg, GuiBoard guiBoard)
-    {
-        int size = guiBoard.getBoardSize();
-        for (int i = 1; i < arg.length; ++i)
-        {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(arg[i], size);
-                if (point == null)
-                    continue;
-                guiBoard.setMarkCircle(point, true);
-            }
-            catch (InvalidPointException e)
-            {
-            }
-        }
-    }
-
-    public static void showGfxColor(String[] arg, GuiBoard guiBoard)
-    {
-        if (arg.length < 2)
-            return;
-        int size = guiBoard.getBoardSize();
-        Color color = GuiBoardUtil.getColor(arg[1]);
-        for (int i = 2; i < arg.length; ++i)
-        {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(arg[i], size);
-                if (point == null)
-                    continue;
-                guiBoard.setFieldBackground(point, color);
-            }
-            catch (InvalidPointException e)
-            {
-            }
-        }
-    }
-
-    public static void showGfxInfluence(String[] arg, GuiBoard guiBoard)
-    {
-        int size = guiBoard.getBoardSize();
-        for (int i = 1; i < arg.length; i += 2)
-        {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(arg[i], size);
-                if (i + 1 >= arg.length)
-                    break;
-                if (point == null)
-                    continue;
-                double value = Double.parseDouble(arg[i + 1]);
-                guiBoard.setInfluence(point, value);
-            }
-            catch (InvalidPointException e)
-            {
-            }
-            catch (NumberFormatException e)
-            {
-            }
-        }
-    }
-
-    public static void showGfxLabel(String[] arg, GuiBoard guiBoard)
-    {
-        int size = guiBoard.getBoardSize();
-        for (int i = 1; i < arg.length; i += 2)
-        {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(arg[i], size);
-                if (i + 1 >= arg.length)
-                    break;
-                if (point == null)
-                    continue;
-                guiBoard.setLabel(point, arg[i + 1]);
-            }
-            catch (InvalidPointException e)
-            {
-            }
-        }
+        GfxFrame frame = new GfxFrame(response, guiBoard.getBoardSize());
+        showGfx(frame, guiBoard, statusBar, showTextBuffer);
     }
 
-    /** Parse gfx analyze command response line and display it on the board.
+    /** Display a parsed gfx response on the board.
+        Adds the markup of the frame to the markup on the board, or replaces
+        it, if the frame contains a CLEAR command.
         @param showTextBuffer See AnalyzeShow.show() */
-    public static void showGfxLine(String line, GuiBoard guiBoard,
-                                   StatusBar statusBar,
-                                   StringBuilder showTextBuffer)
+    public static void showGfx(GfxFrame frame, GuiBoard guiBoard,
+                               StatusBar statusBar,
+                               StringBuilder showTextBuffer)
     {
-        String[] args = StringUtil.splitArguments(line);
-        if (args.length == 0)
-            return;
-        String cmd = args[0].toUpperCase(Locale.ENGLISH);
-        if (cmd.equals("BLACK"))
-            showGfxTerritory(args, BLACK, guiBoard);
-        else if (cmd.equals("CIRCLE"))
-            showGfxCircle(args, guiBoard);
-        else if (cmd.equals("CLEAR"))
+        guiBoard.beginBatch();
+        if (frame.isClear())
             guiBoard.clearAll();
-        else if (cmd.equals("COLOR"))
-            showGfxColor(args, guiBoard);
-        else if (cmd.equals("INFLUENCE"))
-            showGfxInfluence(args, guiBoard);
-        else if (cmd.equals("LABEL"))
-            showGfxLabel(args, guiBoard);
-        else if (cmd.equals("MARK"))
-            showGfxMark(args, guiBoard);
-        else if (cmd.equals("SQUARE"))
-            showGfxSquare(args, guiBoard);
-        else if (cmd.equals("TEXT"))
-        {
-            line = line.trim();
-            int pos = line.indexOf(' ');
-            String text = "";
-            if (pos > 0)
-                text = line.substring(pos + 1);
-            if (showTextBuffer == null)
-                statusBar.setText(text);
-            else
-            {
-                if (showTextBuffer.length() > 0)
-                    showTextBuffer.append('\n');
-                showTextBuffer.append(text);
-            }
-        }
-        else if (cmd.equals("TRIANGLE"))
-            showGfxTriangle(args, guiBoard);
-        else if (cmd.equals("VAR"))
-            showGfxVariation(args, guiBoard);
-        else if (cmd.equals("WHITE"))
-            showGfxTerritory(args, WHITE, guiBoard);
-    }
-
-    public static void showGfxMark(String[] args, GuiBoard guiBoard)
-    {
-        int size = guiBoard.getBoardSize();
-        for (int i = 1; i < args.length; ++i)
-        {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(args[i], size);
-                if (point == null)
-                    continue;
-                guiBoard.setMark(point, true);
-            }
-            catch (InvalidPointException e)
-            {
-            }
-        }
-    }
-
-    public static void showGfxSquare(String[] args, GuiBoard guiBoard)
-    {
-        int size = guiBoard.getBoardSize();
-        for (int i = 1; i < args.length; ++i)
-        {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(args[i], size);
-                if (point == null)
-                    continue;
-                guiBoard.setMarkSquare(point, true);
-            }
-            catch (InvalidPointException e)
-            {
-            }
-        }
-    }
-
-    public static void showGfxTriangle(String[] args, GuiBoard guiBoard)
-    {
-        int size = guiBoard.getBoardSize();
-        for (int i = 1; i < args.length; ++i)
-        {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(args[i], size);
-                if (point == null)
-                    continue;
-                guiBoard.setMarkTriangle(point, true);
-            }
-            catch (InvalidPointException e)
-            {
-            }
-        }
+        int size = Math.min(frame.getSize(), guiBoard.getBoardSize());
+        for (int x = 0; x < size; ++x)
+            for (int y = 0; y < size; ++y)
+            {
+                GoPoint point = GoPoint.get(x, y);
+                ConstField field = frame.getField(point);
+                if (field.getFieldBackground() != null)
+                    guiBoard.setFieldBackground(point,
+                                                field.getFieldBackground());
+                if (field.isInfluenceSet())
+                    guiBoard.setInfluence(point, field.getInfluence());
+                if (field.getLabel() != null)
+                    guiBoard.setLabel(point, field.getLabel());
+                if (field.getMark())
+                    guiBoard.setMark(point, true);
+                if (field.getMarkCircle())
+                    guiBoard.setMarkCircle(point, true);
+                if (field.getMarkSquare())
+                    guiBoard.setMarkSquare(point, true);
+                if (field.getMarkTriangle())
+                    guiBoard.setMarkTriangle(point, true);
+                if (field.getGhostStone() != null)
+                    guiBoard.setGhostStone(point, field.getGhostStone());
+                if (field.getTerritory() != EMPTY)
+                    guiBoard.setTerritory(point, field.getTerritory());
+            }
+        guiBoard.endBatch();
+        showText(frame, statusBar, showTextBuffer);
     }
 
-    public static void showGfxTerritory(String[] args, GoColor color,
-                                        GuiBoard guiBoard)
+    /** Display a live gfx frame on the board.
+        Replaces all markup on the board by the markup of the frame and the
+        stones by the stones of a board. Has the same result as calling
+        GuiBoard.clearAll(), GuiBoardUtil.updateFromGoBoard() and showGfx(),
+        but only changes and repaints the fields that are different.
+        @param frame The live gfx frame.
+        @param guiBoard The board to display the frame on.
+        @param board The board with the stones to display.
+        @param statusBar The status bar for showing the text of the frame. */
+    public static void showLiveGfx(GfxFrame frame, GuiBoard guiBoard,
+                                   ConstBoard board, StatusBar statusBar)
     {
-        int size = guiBoard.getBoardSize();
-        for (int i = 1; i < args.length; ++i)
+        guiBoard.beginBatch();
+        for (GoPoint point : board)
         {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(args[i], size);
-                if (point == null)
-                    continue;
-                guiBoard.setTerritory(point, color);
-            }
-            catch (InvalidPointException e)
-            {
-            }
+            ConstField field;
+            if (point.isOnBoard(frame.getSize()))
+                field = frame.getField(point);
+            else
+                field = EMPTY_FIELD;
+            ConstField oldField = guiBoard.getFieldConst(point);
+            guiBoard.setFieldBackground(point, field.getFieldBackground());
+            guiBoard.setCrossHair(point, false);
+            guiBoard.setSelect(point, false);
+            guiBoard.setMark(point, field.getMark());
+            guiBoard.setMarkCircle(point, field.getMarkCircle());
+            guiBoard.setMarkSquare(point, field.getMarkSquare());
+            guiBoard.setMarkTriangle(point, field.getMarkTriangle());
+            if (field.isInfluenceSet())
+            {
+                if (! oldField.isInfluenceSet()
+                    || oldField.getInfluence() != field.getInfluence())
+                    guiBoard.setInfluence(point, field.getInfluence());
+            }
+            else if (oldField.isInfluenceSet())
+                guiBoard.clearInfluence(point);
+            String label = field.getLabel();
+            guiBoard.setLabel(point, label == null ? "" : label);
+            guiBoard.setGhostStone(point, field.getGhostStone());
+            guiBoard.setTerritory(point, field.getTerritory());
         }
+        GuiBoardUtil.updateFromGoBoard(guiBoard, board, false, false);
+        guiBoard.endBatch();
+        showText(frame, statusBar, null);
     }
 
-    public static void showGfxVariation(String[] args, GuiBoard guiBoard)
-    {
-        int size = guiBoard.getBoardSize();
-        int n = 0;
-        for (int i = 1; i < args.length; i += 2)
-        {
-            try
-            {
-                GoColor color;
-                if (args[i].equalsIgnoreCase("b"))
-                    color = BLACK;
-                else if (args[i].equalsIgnoreCase("w"))
-                    color = WHITE;
-                else
-                    break;
-                if (i + 1 >= args.length)
-                    break;
-                GoPoint point = GoPoint.parsePoint(args[i + 1], size);
-                ++n;
-                if (point != null)
-                {
-                    guiBoard.setGhostStone(point, color);
-                    guiBoard.setLabel(point, Integer.toString(n));
-                }
-            }
-            catch (InvalidPointException e)
-            {
-            }
-        }
-    }
+    private static final ConstField EMPTY_FIELD = new Field();
 
     /** Make constructor unavailable; class is for namespace only. */
     private AnalyzeShow()
@@ -423,6 +254,22 @@ public final class AnalyzeShow
         return color;
     }
 
+    private static void showText(GfxFrame frame, StatusBar statusBar,
+                                 StringBuilder showTextBuffer)
+    {
+        for (String text : frame.getText())
+        {
+            if (showTextBuffer == null)
+                statusBar.setText(text);
+            else
+            {
+                if (showTextBuffer.length() > 0)
+                    showTextBuffer.append('\n');
+                showTextBuffer.append(text);
+            }
+        }
+    }
+
     private static void showVariation(GuiBoard guiBoard, String response,
                                       GoColor color)
     {
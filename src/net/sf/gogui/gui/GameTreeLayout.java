@@ -0,0 +1,234 @@
+// GameTreeLayout.java
+
+package net.sf.gogui.gui;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import net.sf.gogui.game.ConstNode;
+
+/** Layout of the visible nodes in a GameTreePanel.
+    Stores the grid position (column and row) and the information needed
+    for painting of each visible node in arrays indexed by the order in
+    which the nodes were added. The nodes of each column are also stored
+    sorted by row, which is used as a spatial index for finding the nodes
+    in a rectangle or at a point. */
+final class GameTreeLayout
+{
+    /** Add a node.
+        Nodes in the same column must be added with increasing row, unless
+        the row is not used by another node in the column yet.
+        @param node The node.
+        @param column The column (the depth of the node in the tree).
+        @param row The row.
+        @param moveNumber The move number of the node.
+        @return The index of the node. */
+    public int add(ConstNode node, int column, int row, int moveNumber)
+    {
+        if (m_numberNodes == m_node.length)
+        {
+            int capacity = 2 * m_node.length;
+            m_node = Arrays.copyOf(m_node, capacity);
+            m_column = Arrays.copyOf(m_column, capacity);
+            m_row = Arrays.copyOf(m_row, capacity);
+            m_moveNumber = Arrays.copyOf(m_moveNumber, capacity);
+            m_lastChildRow = Arrays.copyOf(m_lastChildRow, capacity);
+            m_subtreeSize = Arrays.copyOf(m_subtreeSize, capacity);
+        }
+        int index = m_numberNodes++;
+        m_node[index] = node;
+        m_column[index] = column;
+        m_row[index] = row;
+        m_moveNumber[index] = moveNumber;
+        m_lastChildRow[index] = -1;
+        m_subtreeSize[index] = -1;
+        m_index.put(node, index);
+        addToColumn(index);
+        m_maxColumn = Math.max(m_maxColumn, column);
+        m_maxRow = Math.max(m_maxRow, row);
+        return index;
+    }
+
+    /** Find the node at a grid position.
+        @return The index of the node or -1, if no node at this position. */
+    public int find(int column, int row)
+    {
+        if (column < 0 || column >= m_columns.length)
+            return -1;
+        int i = findInColumn(column, row);
+        if (i < m_columnSize[column])
+        {
+            int index = m_columns[column][i];
+            if (m_row[index] == row)
+                return index;
+        }
+        return -1;
+    }
+
+    /** Find the position of the first node in a column with a row greater
+        or equal to a given row.
+        @return The position in the list of nodes of the column (see
+        getInColumn()), getColumnSize() if there is no such node. */
+    public int findInColumn(int column, int row)
+    {
+        int[] nodes = m_columns[column];
+        int low = 0;
+        int high = m_columnSize[column];
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (m_row[nodes[mid]] < row)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    public int getColumn(int index)
+    {
+        return m_column[index];
+    }
+
+    public int getColumnSize(int column)
+    {
+        if (column >= m_columns.length)
+            return 0;
+        return m_columnSize[column];
+    }
+
+    /** Get the index of a node in a column.
+        @param column The column.
+        @param i The position in the column, nodes are sorted by row. */
+    public int getInColumn(int column, int i)
+    {
+        return m_columns[column][i];
+    }
+
+    /** Get the index of a node.
+        @return The index or -1, if the node is not in the layout. */
+    public int getIndex(ConstNode node)
+    {
+        Integer index = m_index.get(node);
+        return (index == null ? -1 : index.intValue());
+    }
+
+    /** Get the row of the last child of an expanded node with more than
+        one child.
+        @return The row or -1, if the node has no junction to its
+        children. */
+    public int getLastChildRow(int index)
+    {
+        return m_lastChildRow[index];
+    }
+
+    public int getMaxColumn()
+    {
+        return m_maxColumn;
+    }
+
+    public int getMaxRow()
+    {
+        return m_maxRow;
+    }
+
+    public int getMoveNumber(int index)
+    {
+        return m_moveNumber[index];
+    }
+
+    public ConstNode getNode(int index)
+    {
+        return m_node[index];
+    }
+
+    public int getNumberColumns()
+    {
+        return Math.min(m_maxColumn + 1, m_columns.length);
+    }
+
+    public int getNumberNodes()
+    {
+        return m_numberNodes;
+    }
+
+    public int getRow(int index)
+    {
+        return m_row[index];
+    }
+
+    /** Get the subtree size shown for a node with hidden children.
+        @return The size or -1, if no subtree size is shown. */
+    public int getSubtreeSize(int index)
+    {
+        return m_subtreeSize[index];
+    }
+
+    public void setLastChildRow(int index, int row)
+    {
+        m_lastChildRow[index] = row;
+    }
+
+    public void setSubtreeSize(int index, int subtreeSize)
+    {
+        m_subtreeSize[index] = subtreeSize;
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int m_numberNodes;
+
+    private int m_maxColumn;
+
+    private int m_maxRow;
+
+    private ConstNode[] m_node = new ConstNode[INITIAL_CAPACITY];
+
+    private int[] m_column = new int[INITIAL_CAPACITY];
+
+    private int[] m_row = new int[INITIAL_CAPACITY];
+
+    private int[] m_moveNumber = new int[INITIAL_CAPACITY];
+
+    private int[] m_lastChildRow = new int[INITIAL_CAPACITY];
+
+    private int[] m_subtreeSize = new int[INITIAL_CAPACITY];
+
+    /** Indexes of the nodes in each column sorted by row. */
+    private int[][] m_columns = new int[0][];
+
+    private int[] m_columnSize = new int[0];
+
+    private final HashMap<ConstNode,Integer> m_index =
+        new HashMap<ConstNode,Integer>();
+
+    private void addToColumn(int index)
+    {
+        int column = m_column[index];
+        if (column >= m_columns.length)
+        {
+            int numberColumns = Math.max(2 * m_columns.length, column + 1);
+            int oldNumberColumns = m_columns.length;
+            m_columns = Arrays.copyOf(m_columns, numberColumns);
+            m_columnSize = Arrays.copyOf(m_columnSize, numberColumns);
+            for (int i = oldNumberColumns; i < numberColumns; ++i)
+                m_columns[i] = new int[4];
+        }
+        int[] nodes = m_columns[column];
+        int size = m_columnSize[column];
+        if (size == nodes.length)
+        {
+            nodes = Arrays.copyOf(nodes, 2 * size);
+            m_columns[column] = nodes;
+        }
+        int row = m_row[index];
+        if (size == 0 || m_row[nodes[size - 1]] < row)
+            nodes[size] = index;
+        else
+        {
+            int i = findInColumn(column, row);
+            System.arraycopy(nodes, i, nodes, i + 1, size - i);
+            nodes[i] = index;
+        }
+        m_columnSize[column] = size + 1;
+    }
+}
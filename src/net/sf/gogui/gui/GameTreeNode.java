@@ -3,14 +3,10 @@
 package net.sf.gogui.gui;
 
 import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Image;
-import java.awt.event.MouseListener;
 import java.awt.font.LineMetrics;
-import javax.swing.JComponent;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.NodeUtil;
 import net.sf.gogui.go.GoColor;
@@ -19,29 +15,20 @@ import static net.sf.gogui.go.GoColor.BLACK_WHITE_EMPTY;
 import net.sf.gogui.go.Move;
 import static net.sf.gogui.gui.I18n.i18n;
 
+/** Painter for a node in the game tree panel.
+    The game tree panel paints the visible nodes itself instead of using a
+    component for each node, which needs too much memory and time for
+    large trees. A painter is reused for all nodes, the node to paint is
+    set with setNode(). */
 class GameTreeNode
-    extends JComponent
 {
-    public GameTreeNode(ConstNode node, int moveNumber,
-                        GameTreePanel gameTreePanel,
-                        MouseListener mouseListener, Font font,
-                        Image imageBlack, Image imageWhite, Image imageSetup,
-                        Dimension size)
+    public GameTreeNode(GameTreePanel gameTreePanel, Image imageBlack,
+                        Image imageWhite, Image imageSetup)
     {
         m_gameTreePanel = gameTreePanel;
-        m_node = node;
-        m_moveNumber = moveNumber;
-        addMouseListener(mouseListener);
-        setOpaque(false);
-        setFocusable(false);
-        setFocusTraversalKeysEnabled(false);
-        if (font != null)
-            setFont(font);
         m_imageBlack = imageBlack;
         m_imageWhite = imageWhite;
         m_imageSetup = imageSetup;
-        updateToolTip();
-        setPreferredSize(size);
     }
 
     public ConstNode getNode()
@@ -49,7 +36,43 @@ class GameTreeNode
         return m_node;
     }
 
-    public void paintComponent(Graphics graphics)
+    /** Paint the line from the junction of the father to this node, if
+        the node is not the first child.
+        The graphics context is expected to be translated to the upper
+        left corner of the cell of the father's column in the row of this
+        node and clipped to the cell. */
+    public void paintJunctionBranch(Graphics graphics)
+    {
+        ConstNode father = m_node.getFatherConst();
+        if (father == null || father.getChildConst(0) == m_node)
+            return;
+        int size = m_gameTreePanel.getNodeSize();
+        int fullSize = m_gameTreePanel.getNodeFullSize();
+        int halfSize = size / 2;
+        graphics.setColor(COLOR_GRID);
+        graphics.drawLine(halfSize, 0, size, halfSize);
+        graphics.drawLine(size, halfSize, fullSize, halfSize);
+    }
+
+    /** Paint the vertical line of the junction to the children of an
+        expanded node with more than one child.
+        The graphics context is expected to be translated to the upper
+        left corner of the cell below the node.
+        @param lastChildDy The distance from the node to the row of the last
+        child. */
+    public void paintJunction(Graphics graphics, int lastChildDy)
+    {
+        int size = m_gameTreePanel.getNodeSize();
+        int fullSize = m_gameTreePanel.getNodeFullSize();
+        int halfSize = size / 2;
+        graphics.setColor(COLOR_GRID);
+        graphics.drawLine(halfSize, 0, halfSize, lastChildDy - fullSize);
+    }
+
+    /** Paint the node.
+        The graphics context is expected to be translated to the upper
+        left corner of the node and clipped to its cell. */
+    public void paint(Graphics graphics)
     {
         int size = m_gameTreePanel.getNodeSize();
         int fullSize = m_gameTreePanel.getNodeFullSize();
@@ -93,7 +116,15 @@ class GameTreeNode
         }
     }
 
-    public final void updateToolTip()
+    public void setNode(ConstNode node, int moveNumber)
+    {
+        m_node = node;
+        m_moveNumber = moveNumber;
+    }
+
+    /** Get the tool tip text for the node.
+        @return The text or null, if the node has no tool tip. */
+    public String getToolTipText()
     {
         StringBuilder toolTip = new StringBuilder(128);
         Move move = m_node.getMove();
@@ -149,11 +180,12 @@ class GameTreeNode
                 toolTip.append("</p>");
             }
         }
-        if (toolTip.length() > 0)
-            setToolTipText("<html>" + toolTip.toString() + "</html>");
+        if (toolTip.length() == 0)
+            return null;
+        return "<html>" + toolTip.toString() + "</html>";
     }
 
-    private final int m_moveNumber;
+    private int m_moveNumber;
 
     private static final Color COLOR_LIGHT_BLUE = new Color(103, 122, 164);
 
@@ -163,7 +195,7 @@ class GameTreeNode
 
     private final GameTreePanel m_gameTreePanel;
 
-    private final ConstNode m_node;
+    private ConstNode m_node;
 
     private final Image m_imageBlack;
 
@@ -3,10 +3,10 @@
 package net.sf.gogui.gui;
 
 import java.awt.Color;
-import java.awt.Component;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Rectangle;
@@ -15,22 +15,20 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionAdapter;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.prefs.Preferences;
 
 import javax.swing.ImageIcon;
 import javax.swing.JDialog;
-import javax.swing.JLabel;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.Scrollable;
-import javax.swing.SpringLayout;
 import javax.swing.SwingConstants;
+import javax.swing.ToolTipManager;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.Game;
 import net.sf.gogui.game.Node;
@@ -43,7 +41,11 @@ import net.sf.gogui.util.ErrorMessage;
 
 import static net.sf.gogui.gui.I18n.i18n;
 
-/** Panel displaying a game tree. */
+/** Panel displaying a game tree.
+    The panel does not contain a component for each node. The layout of the
+    visible nodes is computed into a GameTreeLayout, and only the nodes
+    that intersect the clip rectangle are painted. Mouse events and tool
+    tips find the node at a point with the spatial index of the layout. */
 public class GameTreePanel
     extends JPanel
     implements Scrollable
@@ -74,7 +76,7 @@ public class GameTreePanel
                          Label labelMode, Size sizeMode,
                          MessageDialogs messageDialogs, GoGuiActions m_actions)
     {
-        super(new SpringLayout());
+        super(null);
         m_messageDialogs = messageDialogs;
         m_owner = owner;
         setBackground(BACKGROUND);
@@ -85,43 +87,33 @@ public class GameTreePanel
         setFocusTraversalKeysEnabled(false);
         setAutoscrolls(true);
         addMouseMotionListener(new GameTreePanel.MouseMotionListener());
+        ToolTipManager.sharedInstance().registerComponent(this);
         m_listener = listener;
-        m_mouseListener = new MouseAdapter()
+        addMouseListener(new MouseAdapter()
             {
                 public void mouseClicked(MouseEvent event)
                 {
                     //Left click
                     if (event.getButton() != MouseEvent.BUTTON1)
                         return;
-                    GameTreeNode gameNode = (GameTreeNode)event.getSource();
-                    gotoNode(gameNode.getNode());
+                    int index = findNode(event.getX(), event.getY());
+                    if (index >= 0)
+                        gotoNode(m_layout.getNode(index));
                 }
 
                 public void mousePressed(MouseEvent event)
                 {
                     if (event.isPopupTrigger())
-                    {
-                        GameTreeNode gameNode
-                            = (GameTreeNode)event.getSource();
-                        int x = event.getX();
-                        int y = event.getY();
-                        showPopup(x, y, gameNode, m_actions);
-                    }
+                        showPopup(event, m_actions);
                 }
 
                 public void mouseReleased(MouseEvent event)
                 {
                 	//Right click
                     if (event.isPopupTrigger())
-                    {
-                        GameTreeNode gameNode
-                            = (GameTreeNode)event.getSource();
-                        int x = event.getX();
-                        int y = event.getY();
-                        showPopup(x, y, gameNode, m_actions);
-                    }
+                        showPopup(event, m_actions);
                 }
-            };
+            });
     }
 
     public ConstNode getCurrentNode()
@@ -203,16 +195,51 @@ public class GameTreePanel
         return m_isExpanded.contains(node);
     }
 
+    public String getToolTipText(MouseEvent event)
+    {
+        int index = findNode(event.getX(), event.getY());
+        if (index < 0)
+            return null;
+        m_painter.setNode(m_layout.getNode(index),
+                          m_layout.getMoveNumber(index));
+        return m_painter.getToolTipText();
+    }
+
     public void paintComponent(Graphics graphics)
     {
         GuiUtil.setAntiAlias(graphics);
         super.paintComponent(graphics);
+        Rectangle clip = graphics.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        graphics.setFont(m_font);
+        // Subtree sizes extend into the next columns, lines to variations
+        // into the previous column
+        int minColumn = Math.max(0, getColumn(clip.x) - 2);
+        int maxColumn = Math.min(m_layout.getNumberColumns() - 1,
+                                 getColumn(clip.x + clip.width) + 1);
+        int minRow = getRow(clip.y);
+        int maxRow = getRow(clip.y + clip.height);
+        for (int column = minColumn; column <= maxColumn; ++column)
+        {
+            int size = m_layout.getColumnSize(column);
+            int i = m_layout.findInColumn(column, minRow);
+            // The junction of the node above the clip can reach into it
+            if (i > 0)
+                --i;
+            for ( ; i < size; ++i)
+            {
+                int index = m_layout.getInColumn(column, i);
+                if (m_layout.getRow(index) > maxRow)
+                    break;
+                paintNode(graphics, index);
+            }
+        }
     }
 
     public void redrawCurrentNode()
     {
-        GameTreeNode gameNode = getGameTreeNode(m_currentNode);
-        gameNode.repaint();
+        repaintNode(m_currentNode);
     }
 
     public void scrollToCurrent()
@@ -279,23 +306,22 @@ public class GameTreePanel
         ConstNode father = node.getFatherConst();
         assert father != null;
         assert father.getNumberChildren() == 1;
-        GameTreeNode fatherGameNode = getGameTreeNode(father);
-        if (fatherGameNode == null)
+        int fatherIndex = m_layout.getIndex(father);
+        if (fatherIndex < 0)
         {
             assert false;
             return;
         }
+        // The row right of a node without children is always free
+        int column = m_layout.getColumn(fatherIndex) + 1;
+        int row = m_layout.getRow(fatherIndex);
         int moveNumber = NodeUtil.getMoveNumber(node);
-        GameTreeNode gameNode = createNode(node, moveNumber);
-        m_map.put(node, gameNode);
-        add(gameNode);
-        putConstraint(fatherGameNode, gameNode, m_nodeFullSize, 0);
-        gameNode.setLocation(fatherGameNode.getX() + m_nodeFullSize,
-                             fatherGameNode.getY());
-        gameNode.setSize(m_nodeFullSize, m_nodeFullSize);
-        m_maxX = Math.max(fatherGameNode.getX() + 2 * m_nodeFullSize, m_maxX);
+        m_layout.add(node, column, row, moveNumber);
+        m_maxX = Math.max(column * m_nodeFullSize, m_maxX);
         setPreferredSize(new Dimension(m_maxX + m_nodeFullSize + MARGIN,
                                        m_maxY + m_nodeFullSize + MARGIN));
+        repaintNode(father);
+        repaintNode(node);
     }
 
     public void showPopup(GoGuiActions m_actions)
@@ -303,11 +329,11 @@ public class GameTreePanel
         if (m_currentNode == null)
             return;
         scrollToCurrent();
-        GameTreeNode gameNode = getGameTreeNode(m_currentNode);
-        if (gameNode == null)
+        int index = m_layout.getIndex(m_currentNode);
+        if (index < 0)
             return;
-        showPopup(gameNode.getWidth() / 2, gameNode.getHeight() / 2,
-                  gameNode, m_actions);
+        showPopup(getNodeX(index) + m_nodeFullSize / 2,
+                  getNodeY(index) + m_nodeFullSize / 2, index, m_actions);
     }
 
     public void update(ConstGameTree tree, ConstNode currentNode,
@@ -323,14 +349,13 @@ public class GameTreePanel
         ensureVisible(currentNode);
         m_tree = tree;
         m_currentNode = currentNode;
-        removeAll();
-        m_map.clear();
+        m_layout = new GameTreeLayout();
         m_maxX = minWidth;
         m_maxY = minHeight;
         try
         {
             ConstNode root = m_tree.getRootConst();
-            createNodes(this, root, 0, 0, MARGIN, MARGIN, 0);
+            createLayout(root);
             if (gameTreeChanged
                 && ! NodeUtil.subtreeGreaterThan(root, 10000))
                 showSubtree(root);
@@ -338,7 +363,7 @@ public class GameTreePanel
         catch (OutOfMemoryError e)
         {
             m_isExpanded.clear();
-            removeAll();
+            m_layout = new GameTreeLayout();
             m_messageDialogs.showError(m_owner,
                                        i18n("MSG_TREE_OUTOFMEM"),
                                        i18n("MSG_TREE_OUTOFMEM_2"));
@@ -347,6 +372,7 @@ public class GameTreePanel
         setPreferredSize(new Dimension(m_maxX + m_nodeFullSize + MARGIN,
                                        m_maxY + m_nodeFullSize + MARGIN));
         revalidate();
+        repaint();
         scrollToCurrent();
         if (m_scrollPane != null)
             m_scrollPane.requestFocusInWindow();
@@ -361,8 +387,7 @@ public class GameTreePanel
             update(m_tree, currentNode, minWidth, minHeight);
             return;
         }
-        GameTreeNode gameNode = getGameTreeNode(m_currentNode);
-        if (gameNode == null)
+        if (m_layout.getIndex(m_currentNode) < 0)
         {
             // The following warning was previously an assert false.
             // But it can can happen, because GoGui does sometimes defer a full
@@ -377,19 +402,17 @@ public class GameTreePanel
             System.err.println("GameTreePanel: current node not found");
             return;
         }
-        gameNode.repaint();
-        gameNode = getGameTreeNode(currentNode);
-        if (gameNode == null)
+        repaintNode(m_currentNode);
+        int index = m_layout.getIndex(currentNode);
+        if (index < 0)
         {
             update(m_tree, currentNode, minWidth, minHeight);
             return;
         }
-        Point location = gameNode.getLocation();
-        m_currentNodeX = location.x;
-        m_currentNodeY = location.y;
-        gameNode.repaint();
-        gameNode.updateToolTip();
+        m_currentNodeX = getNodeX(index);
+        m_currentNodeY = getNodeY(index);
         m_currentNode = currentNode;
+        repaintNode(m_currentNode);
         scrollToCurrent();
         if (m_scrollPane != null)
             m_scrollPane.requestFocusInWindow();
@@ -432,10 +455,12 @@ public class GameTreePanel
 
     private int m_maxY;
 
-    private Dimension m_preferredNodeSize;
-
     private Font m_font;
 
+    private GameTreeLayout m_layout = new GameTreeLayout();
+
+    private GameTreeNode m_painter;
+
     private ConstGameTree m_tree;
 
     private final GameTreeViewer.Listener m_listener;
@@ -449,14 +474,9 @@ public class GameTreePanel
 
     private ConstNode m_popupNode;
 
-    private final HashMap<ConstNode,GameTreeNode> m_map =
-        new HashMap<ConstNode,GameTreeNode>(500, 0.8f);
-
     private final HashSet<ConstNode> m_isExpanded
         = new HashSet<ConstNode>(200);
 
-    private final MouseListener m_mouseListener;
-
     private Point m_popupLocation;
 
     private ImageIcon m_iconBlack;
@@ -514,76 +534,98 @@ public class GameTreePanel
 
 
         m_font = new Font("Dialog", Font.PLAIN, (int)(0.4 * m_nodeSize));
-        m_preferredNodeSize = new Dimension(m_nodeFullSize, m_nodeFullSize);
-    }
-
-    private GameTreeNode createNode(ConstNode node, int moveNumber)
-    {
-        return new GameTreeNode(node, moveNumber, this, m_mouseListener,
-                                m_font, m_iconBlack.getImage(),
-                                m_iconWhite.getImage(),
-                                m_iconSetup.getImage(),
-                                m_preferredNodeSize);
-    }
-
-    private int createNodes(Component father, ConstNode node, int x, int y,
-                            int dx, int dy, int moveNumber)
-    {
-        m_maxX = Math.max(x, m_maxX);
-        m_maxY = Math.max(y, m_maxY);
-        if (node.getMove() != null)
-            ++moveNumber;
-        GameTreeNode gameNode = createNode(node, moveNumber);
-        m_map.put(node, gameNode);
-        add(gameNode);
-        putConstraint(father, gameNode, dx, dy);
-        int numberChildren = node.getNumberChildren();
-        dx = m_nodeFullSize;
-        dy = 0;
-        boolean isExpanded = isExpanded(node);
-        if (isExpanded)
+        m_painter = new GameTreeNode(this, m_iconBlack.getImage(),
+                                     m_iconWhite.getImage(),
+                                     m_iconSetup.getImage());
+    }
+
+    /** Compute the layout of the visible nodes.
+        Traverses the tree without recursion, the main variation of large
+        trees can be too deep for the stack. Nodes are added in preorder,
+        so the row of a node that is not a first child is the row after
+        the last node added. */
+    private void createLayout(ConstNode root)
+    {
+        int moveNumber = (root.getMove() != null ? 1 : 0);
+        int rootIndex = m_layout.add(root, 0, 0, moveNumber);
+        int lastRow = 0;
+        // Stack of layout indexes and next child to visit
+        int[] stackIndex = new int[64];
+        int[] stackChild = new int[64];
+        int stackSize = 0;
+        if (beginChildren(rootIndex))
+        {
+            stackIndex[0] = rootIndex;
+            stackChild[0] = 0;
+            stackSize = 1;
+        }
+        while (stackSize > 0)
         {
-            int[] childrenDy = new int[numberChildren];
-            for (int i = 0; i < numberChildren; ++i)
+            int fatherIndex = stackIndex[stackSize - 1];
+            int i = stackChild[stackSize - 1]++;
+            ConstNode father = m_layout.getNode(fatherIndex);
+            if (i >= father.getNumberChildren())
             {
-                childrenDy[i] = dy;
-                dy += createNodes(gameNode, node.getChildConst(i),
-                                  x + dx, y + dy, dx, dy, moveNumber);
-                if (i < numberChildren - 1)
-                    dy += m_nodeFullSize;
+                --stackSize;
+                continue;
             }
-            if (numberChildren > 1)
+            ConstNode node = father.getChildConst(i);
+            int row;
+            if (i == 0)
+                row = m_layout.getRow(fatherIndex);
+            else
             {
-                GameTreeJunction junction =
-                    new GameTreeJunction(childrenDy, this);
-                add(junction);
-                putConstraint(gameNode, junction, 0, m_nodeFullSize);
+                row = lastRow + 1;
+                m_layout.setLastChildRow(fatherIndex, row);
             }
-        }
-        else
-        {
-            if (m_showSubtreeSizes && node.hasChildren())
+            lastRow = row;
+            moveNumber = m_layout.getMoveNumber(fatherIndex);
+            if (node.getMove() != null)
+                ++moveNumber;
+            int index = m_layout.add(node, stackSize, row, moveNumber);
+            if (beginChildren(index))
             {
-                int subtreeSize = NodeUtil.subtreeSize(node) - 1;
-                String text = Integer.toString(subtreeSize);
-                // Use upper limit for textWidth
-                int textWidth = text.length() + m_font.getSize();
-                int textHeight = m_font.getSize();
-                int pad = GuiUtil.SMALL_PAD;
-                m_maxX = Math.max(x + textWidth + pad, m_maxX);
-                JLabel label = new JLabel(text);
-                label.setFont(m_font);
-                add(label);
-                putConstraint(gameNode, label, dx + pad,
-                              (m_nodeSize - textHeight) / 2);
+                if (stackSize == stackIndex.length)
+                {
+                    stackIndex = Arrays.copyOf(stackIndex, 2 * stackSize);
+                    stackChild = Arrays.copyOf(stackChild, 2 * stackSize);
+                }
+                stackIndex[stackSize] = index;
+                stackChild[stackSize] = 0;
+                ++stackSize;
             }
         }
-        if (node == m_currentNode)
+        m_maxX = Math.max(m_layout.getMaxColumn() * m_nodeFullSize, m_maxX);
+        m_maxY = Math.max(m_layout.getMaxRow() * m_nodeFullSize, m_maxY);
+        int currentIndex = m_layout.getIndex(m_currentNode);
+        if (currentIndex >= 0)
+        {
+            m_currentNodeX = getNodeX(currentIndex);
+            m_currentNodeY = getNodeY(currentIndex);
+        }
+    }
+
+    /** Check if the children of a node in the layout are visible.
+        Sets the subtree size label for nodes with hidden children.
+        @return true, if the children are visible. */
+    private boolean beginChildren(int index)
+    {
+        ConstNode node = m_layout.getNode(index);
+        if (! node.hasChildren())
+            return false;
+        if (isExpanded(node))
+            return true;
+        if (m_showSubtreeSizes)
         {
-            m_currentNodeX = x;
-            m_currentNodeY = y;
+            int subtreeSize = NodeUtil.subtreeSize(node) - 1;
+            m_layout.setSubtreeSize(index, subtreeSize);
+            // Use upper limit for textWidth
+            int textWidth = Integer.toString(subtreeSize).length()
+                + m_font.getSize();
+            int x = m_layout.getColumn(index) * m_nodeFullSize;
+            m_maxX = Math.max(x + textWidth + GuiUtil.SMALL_PAD, m_maxX);
         }
-        return dy;
+        return false;
     }
 
     private void createPopup(GoGuiActions m_actions)
@@ -671,9 +713,33 @@ public class GameTreePanel
         m_popup.add(item);
     }
 
-    private GameTreeNode getGameTreeNode(ConstNode node)
+    /** Find the node at a point.
+        @return The index of the node in the layout or -1. */
+    private int findNode(int x, int y)
+    {
+        if (x < MARGIN || y < MARGIN)
+            return -1;
+        return m_layout.find(getColumn(x), getRow(y));
+    }
+
+    private int getColumn(int x)
+    {
+        return Math.max(0, (x - MARGIN) / m_nodeFullSize);
+    }
+
+    private int getNodeX(int index)
+    {
+        return MARGIN + m_layout.getColumn(index) * m_nodeFullSize;
+    }
+
+    private int getNodeY(int index)
+    {
+        return MARGIN + m_layout.getRow(index) * m_nodeFullSize;
+    }
+
+    private int getRow(int y)
     {
-        return m_map.get(node);
+        return Math.max(0, (y - MARGIN) / m_nodeFullSize);
     }
 
     private boolean ensureVisible(ConstNode node)
@@ -737,33 +803,77 @@ public class GameTreePanel
         textViewer.setVisible(true);
     }
 
-    private void putConstraint(Component father, Component son,
-                               int west, int north)
+    private void paintNode(Graphics graphics, int index)
+    {
+        int x = getNodeX(index);
+        int y = getNodeY(index);
+        int fullSize = m_nodeFullSize;
+        m_painter.setNode(m_layout.getNode(index),
+                          m_layout.getMoveNumber(index));
+        // Clip like the components that were used for nodes and junctions
+        // in earlier versions
+        Graphics cell = graphics.create(x - fullSize, y, fullSize, fullSize);
+        m_painter.paintJunctionBranch(cell);
+        cell.dispose();
+        int lastChildRow = m_layout.getLastChildRow(index);
+        if (lastChildRow >= 0)
+        {
+            int lastChildDy = (lastChildRow - m_layout.getRow(index))
+                * fullSize;
+            cell = graphics.create(x, y + fullSize, fullSize, lastChildDy);
+            m_painter.paintJunction(cell, lastChildDy);
+            cell.dispose();
+        }
+        cell = graphics.create(x, y, fullSize, fullSize);
+        m_painter.paint(cell);
+        cell.dispose();
+        int subtreeSize = m_layout.getSubtreeSize(index);
+        if (subtreeSize >= 0)
+        {
+            FontMetrics metrics = graphics.getFontMetrics();
+            int textHeight = m_font.getSize();
+            graphics.setColor(getForeground());
+            graphics.drawString(Integer.toString(subtreeSize),
+                                x + fullSize + GuiUtil.SMALL_PAD,
+                                y + (m_nodeSize - textHeight) / 2
+                                + metrics.getAscent());
+        }
+    }
+
+    private void repaintNode(ConstNode node)
     {
-        SpringLayout layout = (SpringLayout)getLayout();
-        layout.putConstraint(SpringLayout.WEST, son, west,
-                             SpringLayout.WEST, father);
-        layout.putConstraint(SpringLayout.NORTH, son, north,
-                             SpringLayout.NORTH, father);
+        int index = m_layout.getIndex(node);
+        if (index >= 0)
+            repaint(getNodeX(index), getNodeY(index), m_nodeFullSize,
+                    m_nodeFullSize);
     }
 
     private void scrollTo(ConstNode node)
     {
         if (node == null)
             return;
-        GameTreeNode gameNode = getGameTreeNode(node);
+        int index = m_layout.getIndex(node);
+        if (index < 0)
+            return;
         Rectangle rectangle = new Rectangle();
-        rectangle.x = gameNode.getLocation().x;
-        rectangle.y = gameNode.getLocation().y;
+        rectangle.x = getNodeX(index);
+        rectangle.y = getNodeY(index);
         // Make rectangle large so that children are visible
         rectangle.width = 3 * m_nodeFullSize;
         rectangle.height = 3 * m_nodeFullSize;
         scrollRectToVisible(rectangle);
     }
 
-    private void showPopup(int x, int y, GameTreeNode gameNode, GoGuiActions m_actions)
+    private void showPopup(MouseEvent event, GoGuiActions m_actions)
+    {
+        int index = findNode(event.getX(), event.getY());
+        if (index >= 0)
+            showPopup(event.getX(), event.getY(), index, m_actions);
+    }
+
+    private void showPopup(int x, int y, int index, GoGuiActions m_actions)
     {
-        ConstNode node = gameNode.getNode();
+        ConstNode node = m_layout.getNode(index);
         m_popupNode = node;
         if (m_popup == null)
             createPopup(m_actions);
@@ -773,7 +883,7 @@ public class GameTreePanel
         m_itemHideSubtree.setEnabled(hasChildren);
         m_itemShowSubtree.setEnabled(hasChildren);
         m_itemShowChildren.setEnabled(hasChildren);
-        m_popup.show(gameNode, x, y);
+        m_popup.show(this, x, y);
         m_popupLocation = m_popup.getLocationOnScreen();
     }
 
@@ -803,7 +913,7 @@ public class GameTreePanel
             update(m_tree, m_currentNode, m_minWidth, m_minHeight);
             // Game node could have disappeared, because after out of memory
             // error all nodes are hidden but main variation
-            if (getGameTreeNode(root) == null)
+            if (m_layout.getIndex(root) < 0)
             {
                 ensureVisible(root);
                 update(m_tree, m_currentNode, m_minWidth, m_minHeight);
@@ -0,0 +1,274 @@
+// GfxFrame.java
+
+package net.sf.gogui.gui;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Locale;
+import net.sf.gogui.boardpainter.ConstField;
+import net.sf.gogui.boardpainter.Field;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.InvalidPointException;
+import net.sf.gogui.util.StringUtil;
+
+/** Parsed response to a gfx analyze command or a live gfx block.
+    Contains the markup of each point that the response sets. Parsing does
+    not access the GUI, so responses can be parsed in a different thread
+    than the Swing event dispatch thread and displayed later with
+    AnalyzeShow.showGfx() or AnalyzeShow.showLiveGfx(). */
+public final class GfxFrame
+{
+    /** Parse a gfx response.
+        @param response The response.
+        @param size The board size. Points that are not on a board with
+        this size are ignored. */
+    public GfxFrame(String response, int size)
+    {
+        m_size = size;
+        initFields();
+        BufferedReader reader
+            = new BufferedReader(new StringReader(response));
+        while (true)
+        {
+            String line;
+            try
+            {
+                line = reader.readLine();
+            }
+            catch (IOException e)
+            {
+                assert false;
+                break;
+            }
+            if (line == null)
+                break;
+            parseLine(line);
+        }
+    }
+
+    public int getSize()
+    {
+        return m_size;
+    }
+
+    /** Get the markup of a point.
+        The label of the field is null, if the response did not set a label
+        on this point. */
+    public ConstField getField(GoPoint point)
+    {
+        return m_field[point.getX()][point.getY()];
+    }
+
+    /** Get the arguments of the TEXT commands in the response. */
+    public ArrayList<String> getText()
+    {
+        return m_text;
+    }
+
+    /** Check if the response contains a CLEAR command.
+        The markup of the commands before the last CLEAR command is not
+        contained in the frame. */
+    public boolean isClear()
+    {
+        return m_isClear;
+    }
+
+    private boolean m_isClear;
+
+    private final int m_size;
+
+    private Field[][] m_field;
+
+    private final ArrayList<String> m_text = new ArrayList<String>();
+
+    private Field getField(String string) throws InvalidPointException
+    {
+        GoPoint point = GoPoint.parsePoint(string, m_size);
+        if (point == null)
+            return null;
+        return m_field[point.getX()][point.getY()];
+    }
+
+    private void initFields()
+    {
+        m_field = new Field[m_size][m_size];
+        for (int x = 0; x < m_size; ++x)
+            for (int y = 0; y < m_size; ++y)
+            {
+                m_field[x][y] = new Field();
+                m_field[x][y].setLabel(null);
+            }
+    }
+
+    private void parseColor(String[] args)
+    {
+        if (args.length < 2)
+            return;
+        Color color = GuiBoardUtil.getColor(args[1]);
+        for (int i = 2; i < args.length; ++i)
+        {
+            try
+            {
+                Field field = getField(args[i]);
+                if (field != null)
+                    field.setFieldBackground(color);
+            }
+            catch (InvalidPointException e)
+            {
+            }
+        }
+    }
+
+    private void parseInfluence(String[] args)
+    {
+        for (int i = 1; i < args.length; i += 2)
+        {
+            try
+            {
+                Field field = getField(args[i]);
+                if (i + 1 >= args.length)
+                    break;
+                if (field == null)
+                    continue;
+                field.setInfluence(Double.parseDouble(args[i + 1]));
+            }
+            catch (InvalidPointException e)
+            {
+            }
+            catch (NumberFormatException e)
+            {
+            }
+        }
+    }
+
+    private void parseLabel(String[] args)
+    {
+        for (int i = 1; i < args.length; i += 2)
+        {
+            try
+            {
+                Field field = getField(args[i]);
+                if (i + 1 >= args.length)
+                    break;
+                if (field != null)
+                    field.setLabel(args[i + 1]);
+            }
+            catch (InvalidPointException e)
+            {
+            }
+        }
+    }
+
+    private void parseLine(String line)
+    {
+        String[] args = StringUtil.splitArguments(line);
+        if (args.length == 0)
+            return;
+        String cmd = args[0].toUpperCase(Locale.ENGLISH);
+        if (cmd.equals("BLACK"))
+            parseTerritory(args, BLACK);
+        else if (cmd.equals("CIRCLE") || cmd.equals("MARK")
+                 || cmd.equals("SQUARE") || cmd.equals("TRIANGLE"))
+            parseMarks(args, cmd);
+        else if (cmd.equals("CLEAR"))
+        {
+            initFields();
+            m_isClear = true;
+        }
+        else if (cmd.equals("COLOR"))
+            parseColor(args);
+        else if (cmd.equals("INFLUENCE"))
+            parseInfluence(args);
+        else if (cmd.equals("LABEL"))
+            parseLabel(args);
+        else if (cmd.equals("TEXT"))
+        {
+            line = line.trim();
+            int pos = line.indexOf(' ');
+            String text = "";
+            if (pos > 0)
+                text = line.substring(pos + 1);
+            m_text.add(text);
+        }
+        else if (cmd.equals("VAR"))
+            parseVariation(args);
+        else if (cmd.equals("WHITE"))
+            parseTerritory(args, WHITE);
+    }
+
+    private void parseMarks(String[] args, String cmd)
+    {
+        for (int i = 1; i < args.length; ++i)
+        {
+            try
+            {
+                Field field = getField(args[i]);
+                if (field == null)
+                    continue;
+                if (cmd.equals("CIRCLE"))
+                    field.setMarkCircle(true);
+                else if (cmd.equals("MARK"))
+                    field.setMark(true);
+                else if (cmd.equals("SQUARE"))
+                    field.setMarkSquare(true);
+                else
+                    field.setMarkTriangle(true);
+            }
+            catch (InvalidPointException e)
+            {
+            }
+        }
+    }
+
+    private void parseTerritory(String[] args, GoColor color)
+    {
+        for (int i = 1; i < args.length; ++i)
+        {
+            try
+            {
+                Field field = getField(args[i]);
+                if (field != null)
+                    field.setTerritory(color);
+            }
+            catch (InvalidPointException e)
+            {
+            }
+        }
+    }
+
+    private void parseVariation(String[] args)
+    {
+        int n = 0;
+        for (int i = 1; i < args.length; i += 2)
+        {
+            try
+            {
+                GoColor color;
+                if (args[i].equalsIgnoreCase("b"))
+                    color = BLACK;
+                else if (args[i].equalsIgnoreCase("w"))
+                    color = WHITE;
+                else
+                    break;
+                if (i + 1 >= args.length)
+                    break;
+                Field field = getField(args[i + 1]);
+                ++n;
+                if (field != null)
+                {
+                    field.setGhostStone(color);
+                    field.setLabel(Integer.toString(n));
+                }
+            }
+            catch (InvalidPointException e)
+            {
+            }
+        }
+    }
+}
@@ -14,7 +14,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.prefs.Preferences;
@@ -30,8 +30,8 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.JViewport;
 import javax.swing.SwingUtilities;
-import javax.swing.event.CaretEvent;
-import javax.swing.event.CaretListener;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import net.sf.gogui.gtp.GtpUtil;
 import static net.sf.gogui.gui.I18n.i18n;
 import net.sf.gogui.util.ObjectUtil;
@@ -60,20 +60,22 @@ public class GtpShell
         m_messageDialogs = messageDialogs;
         m_listener = listener;
         Preferences prefs = Preferences.userNodeForPackage(getClass());
-        m_historyMin = prefs.getInt("history-min", 2000);
-        m_historyMax = prefs.getInt("history-max", 3000);
+        int historyMax = prefs.getInt("history-max", 100000);
+        int historyMaxChars = prefs.getInt("history-max-chars", 4000000);
         JPanel panel = new JPanel(new BorderLayout());
         getContentPane().add(panel, BorderLayout.CENTER);
-        m_gtpShellText = new GtpShellText(m_historyMin, m_historyMax, false);
-        CaretListener caretListener = new CaretListener()
+        m_gtpShellText =
+            new GtpShellText(historyMax, historyMaxChars, false);
+        m_commands = new GtpShellLog(historyMax, historyMaxChars, true);
+        ChangeListener selectionListener = new ChangeListener()
             {
-                public void caretUpdate(CaretEvent event)
+                public void stateChanged(ChangeEvent event)
                 {
                     if (m_listener == null)
                         return;
                     // Call the callback only if the selected text has changed.
                     // This avoids that the callback is called multiple times
-                    // if the caret position changes, but the text selection
+                    // if the selection changes, but the text selection
                     // was null before and after the change (see also bug
                     // #2964755)
                     String selectedText = m_gtpShellText.getSelectedText();
@@ -84,11 +86,11 @@ public class GtpShell
                     }
                 }
             };
-        m_gtpShellText.addCaretListener(caretListener);
+        m_gtpShellText.addChangeListener(selectionListener);
         m_scrollPane =
             new JScrollPane(m_gtpShellText,
                             JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
-                            JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+                            JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
         if (Platform.isMac())
             // Default Apple L&F uses no border, but Quaqua 3.7.4 does
             m_scrollPane.setBorder(null);
@@ -107,6 +109,14 @@ public class GtpShell
             setVisible(false);
     }
 
+    /** Dispose the dialog and delete the temporary files of the logs. */
+    public void dispose()
+    {
+        m_gtpShellText.getLog().close();
+        m_commands.close();
+        super.dispose();
+    }
+
     /** @see net.sf.gogui.gui.GtpShellText#isLastTextNonGTP */
     public boolean isLastTextNonGTP()
     {
@@ -116,67 +126,39 @@ public class GtpShell
     public void receivedInvalidResponse(final String response,
                                         boolean invokeLater)
     {
-        if (SwingUtilities.isEventDispatchThread())
-            appendInvalidResponse(response);
-        else
-        {
-            Runnable r = new Runnable() {
-                    public void run() {
-                        appendInvalidResponse(response);
-                    } };
-            if (invokeLater)
-                SwingUtilities.invokeLater(r);
-            else
-                GuiUtil.invokeAndWait(r);
-        }
+        invoke(new Runnable() {
+                public void run() {
+                    appendInvalidResponse(response);
+                } }, invokeLater);
     }
 
     public void receivedResponse(final boolean error, final String response,
                                  boolean invokeLater)
     {
-        if (SwingUtilities.isEventDispatchThread())
-            appendResponse(error, response);
-        else
-        {
-            Runnable r = new Runnable() {
-                    public void run() {
-                        appendResponse(error, response);
-                    } };
-            if (invokeLater)
-                SwingUtilities.invokeLater(r);
-            else
-                GuiUtil.invokeAndWait(r);
-        }
+        invoke(new Runnable() {
+                public void run() {
+                    appendResponse(error, response);
+                } }, invokeLater);
     }
 
     public void receivedStdErr(final String s, boolean invokeLater,
                                final boolean isLiveGfx,
                                final boolean isWarning)
     {
-        if (SwingUtilities.isEventDispatchThread())
-            appendLog(s, isLiveGfx, isWarning);
-        else
-        {
-            Runnable r = new Runnable() {
-                    public void run() {
-                        appendLog(s, isLiveGfx, isWarning);
-                    } };
-            if (invokeLater)
-                SwingUtilities.invokeLater(r);
-            else
-                GuiUtil.invokeAndWait(r);
-        }
+        invoke(new Runnable() {
+                public void run() {
+                    appendLog(s, isLiveGfx, isWarning);
+                } }, invokeLater);
     }
 
     public void saveLog(JFrame parent)
     {
-        save(parent, m_gtpShellText.getLog(),
-             m_gtpShellText.getLinesTruncated());
+        save(parent, m_gtpShellText.getLog());
     }
 
     public void saveCommands(JFrame parent)
     {
-        save(parent, m_commands.toString(), m_linesTruncated);
+        save(parent, m_commands);
     }
 
     public void saveHistory()
@@ -208,13 +190,10 @@ public class GtpShell
 
     public void sentCommand(final String command)
     {
-        if (SwingUtilities.isEventDispatchThread())
-            appendSentCommand(command);
-        else
-            GuiUtil.invokeAndWait(new Runnable() {
-                    public void run() {
-                        appendSentCommand(command);
-                    } });
+        invoke(new Runnable() {
+                public void run() {
+                    appendSentCommand(command);
+                } }, false);
     }
 
     public void setInitialCompletions(ArrayList<String> completions)
@@ -251,14 +230,6 @@ public class GtpShell
 
     private boolean m_commandInProgress;
 
-    private final int m_historyMax;
-
-    private final int m_historyMin;
-
-    private int m_linesTruncated;
-
-    private int m_numberCommands;
-
     private final Listener m_listener;
 
     private ComboBoxEditor m_editor;
@@ -276,7 +247,8 @@ public class GtpShell
 
     private final GtpShellText m_gtpShellText;
 
-    private final StringBuilder m_commands = new StringBuilder(4096);
+    /** Sent commands for saveCommands(). */
+    private final GtpShellLog m_commands;
 
     private final ArrayList<String> m_history = new ArrayList<String>(128);
 
@@ -290,6 +262,15 @@ public class GtpShell
 
     private final MessageDialogs m_messageDialogs;
 
+    /** Appends to the shell from other threads than the event dispatch
+        thread that were not run yet. Guarded by itself. */
+    private final ArrayList<Runnable> m_queue = new ArrayList<Runnable>();
+
+    private final Runnable m_processQueue = new Runnable() {
+            public void run() {
+                processQueue();
+            } };
+
     // See comment at m_comboBox
     @SuppressWarnings("unchecked")
     private void addAllCompletions(ArrayList<String> completions)
@@ -333,19 +314,7 @@ public class GtpShell
     private void appendSentCommand(String command)
     {
         assert SwingUtilities.isEventDispatchThread();
-        m_commands.append(command);
-        m_commands.append('\n');
-        ++m_numberCommands;
-        if (m_numberCommands > m_historyMax)
-        {
-            int truncateLines = m_numberCommands - m_historyMin;
-            String s = m_commands.toString();
-            int index = GtpShellText.findTruncateIndex(s, truncateLines);
-            assert index != -1;
-            m_commands.delete(0, index);
-            m_linesTruncated += truncateLines;
-            m_numberCommands = 0;
-        }
+        m_commands.append(command + "\n", 0);
         m_gtpShellText.appendOutput(command + "\n");
     }
 
@@ -526,7 +495,46 @@ public class GtpShell
             m_comboBox.hidePopup();
     }
 
-    private void save(JFrame parent, String s, int linesTruncated)
+    /** Run an append to the shell in the event dispatch thread.
+        Appends from other threads are queued and the queue is processed
+        by a single event, so that programs that write many lines to
+        standard error do not flood the event queue. The appends are always
+        run in the order of the calls of this function.
+        @param invokeLater If false, wait until the append was run. */
+    private void invoke(Runnable runnable, boolean invokeLater)
+    {
+        if (SwingUtilities.isEventDispatchThread())
+        {
+            processQueue();
+            runnable.run();
+            return;
+        }
+        boolean isScheduled;
+        synchronized (m_queue)
+        {
+            isScheduled = ! m_queue.isEmpty();
+            m_queue.add(runnable);
+        }
+        if (! invokeLater)
+            GuiUtil.invokeAndWait(m_processQueue);
+        else if (! isScheduled)
+            SwingUtilities.invokeLater(m_processQueue);
+    }
+
+    private void processQueue()
+    {
+        assert SwingUtilities.isEventDispatchThread();
+        Runnable[] queue;
+        synchronized (m_queue)
+        {
+            queue = m_queue.toArray(new Runnable[m_queue.size()]);
+            m_queue.clear();
+        }
+        for (Runnable runnable : queue)
+            runnable.run();
+    }
+
+    private void save(JFrame parent, GtpShellLog log)
     {
         File file = FileDialogs.showSave(parent, null, m_messageDialogs);
         if (file == null)
@@ -537,11 +545,13 @@ public class GtpShell
             out.println("# Name: " + m_programName);
             out.println("# Version: " + m_programVersion);
             out.println("# Command: " + m_programCommand);
-            out.println("# Lines truncated: " + linesTruncated);
-            out.print(s);
+            out.println("# Lines truncated: " + log.getLinesTruncated());
+            log.write(out);
             out.close();
+            if (out.checkError())
+                throw new IOException();
         }
-        catch (FileNotFoundException e)
+        catch (IOException e)
         {
             m_messageDialogs.showError(parent, i18n("MSG_SHELL_SAVE_FAILURE"),
                                        "");
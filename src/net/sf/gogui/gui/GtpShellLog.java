@@ -0,0 +1,381 @@
+// GtpShellLog.java
+
+package net.sf.gogui.gui;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/** Bounded text log with styled lines used by the GTP shell.
+    Keeps the last lines of the text in a ring buffer with a fixed maximum
+    number of lines and a fixed maximum number of characters, such that
+    verbose programs cannot make the memory usage of the shell grow
+    without limit. The complete text is also appended to a temporary file,
+    which is used by write() to save the full log.
+    The style of a text is a small non-negative integer, 0 is the default
+    style. Lines are stored as runs of characters with the same style.
+    Tabs are expanded to spaces, carriage returns are ignored and lines
+    longer than MAX_LINE_LENGTH are broken. */
+final class GtpShellLog
+{
+    /** Maximum length of a line.
+        Longer lines are broken into several lines. */
+    public static final int MAX_LINE_LENGTH = 4096;
+
+    /** Constructor.
+        @param maxLines The maximum number of lines kept in memory.
+        @param maxChars The maximum number of characters kept in memory.
+        @param spill Append the complete text to a temporary file. */
+    public GtpShellLog(int maxLines, int maxChars, boolean spill)
+    {
+        assert maxLines > 0;
+        assert maxChars > 0;
+        m_maxLines = maxLines;
+        m_maxChars = maxChars;
+        int capacity = Math.min(maxLines, INITIAL_CAPACITY);
+        m_line = new String[capacity];
+        m_runs = new int[capacity][];
+        if (spill)
+        {
+            try
+            {
+                m_spillFile = File.createTempFile("gogui-shell", ".log");
+                m_spillFile.deleteOnExit();
+                m_spill = new BufferedWriter(new FileWriter(m_spillFile));
+            }
+            catch (IOException e)
+            {
+                closeSpill();
+            }
+        }
+    }
+
+    public void append(String text, int style)
+    {
+        assert style >= 0;
+        if (m_spill != null)
+        {
+            try
+            {
+                m_spill.write(text);
+            }
+            catch (IOException e)
+            {
+                closeSpill();
+            }
+        }
+        int length = text.length();
+        for (int i = 0; i < length; ++i)
+        {
+            char c = text.charAt(i);
+            if (c == '\n')
+                closeLine();
+            else if (c == '\t')
+            {
+                do
+                    appendChar(' ', style);
+                while (m_open.length() % TAB_SIZE != 0);
+            }
+            else if (c != '\r')
+                appendChar(c, style);
+        }
+        removeLines();
+    }
+
+    /** Delete the temporary file.
+        Should be called if the log is no longer used. After calling this
+        function, write() only writes the lines kept in memory. */
+    public void close()
+    {
+        closeSpill();
+    }
+
+    /** Get a line.
+        @param i The index of the line, 0 is the oldest line kept in memory.
+        @return The line without the trailing newline. */
+    public String getLine(int i)
+    {
+        assert i >= 0 && i < getNumberLines();
+        if (i == m_size)
+            return m_open.toString();
+        return m_line[getRingIndex(i)];
+    }
+
+    /** Get the number of lines that write() does not write.
+        This is the number of lines removed from memory, if the complete
+        text could not be written to the temporary file, and zero
+        otherwise. */
+    public int getLinesTruncated()
+    {
+        return (m_spill == null ? m_linesRemoved : 0);
+    }
+
+    /** Get the number of lines that were removed from memory.
+        Can be used to translate line indexes into positions in the complete
+        log that do not change if old lines are removed. */
+    public int getLinesRemoved()
+    {
+        return m_linesRemoved;
+    }
+
+    /** Get the length of the longest line kept in memory. */
+    public int getMaxLineLength()
+    {
+        if (m_maxLineLength < 0)
+        {
+            m_maxLineLength = m_open.length();
+            for (int i = 0; i < m_size; ++i)
+                m_maxLineLength = Math.max(m_maxLineLength,
+                                           m_line[getRingIndex(i)].length());
+        }
+        return Math.max(m_maxLineLength, m_open.length());
+    }
+
+    /** Get the number of lines kept in memory.
+        Includes the last line if it is not terminated by a newline yet and
+        not empty. */
+    public int getNumberLines()
+    {
+        return (m_open.length() > 0 ? m_size + 1 : m_size);
+    }
+
+    /** Get the style runs of a line.
+        @param i The index of the line.
+        @return An array containing pairs of the start index and style of
+        each run in the line. Must not be modified. */
+    public int[] getRuns(int i)
+    {
+        assert i >= 0 && i < getNumberLines();
+        if (i == m_size)
+            return Arrays.copyOf(m_openRuns, m_openRunsSize);
+        return m_runs[getRingIndex(i)];
+    }
+
+    /** Get a part of the text kept in memory.
+        Lines are separated by newlines, columns are clipped to the length
+        of the line.
+        @param startLine The index of the first line.
+        @param startColumn The start column in the first line.
+        @param endLine The index of the last line.
+        @param endColumn The end column (exclusive) in the last line. */
+    public String getText(int startLine, int startColumn, int endLine,
+                          int endColumn)
+    {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = startLine; i <= endLine; ++i)
+        {
+            String line = getLine(i);
+            int start = (i == startLine ? startColumn : 0);
+            int end = (i == endLine ? endColumn : line.length());
+            start = Math.min(start, line.length());
+            end = Math.min(end, line.length());
+            if (start < end)
+                buffer.append(line, start, end);
+            if (i < endLine)
+                buffer.append('\n');
+        }
+        return buffer.toString();
+    }
+
+    /** Write the log.
+        Writes the complete text, if it could be appended to the temporary
+        file, otherwise the lines kept in memory. */
+    public void write(PrintStream out) throws IOException
+    {
+        if (m_spill != null)
+        {
+            m_spill.flush();
+            out.flush();
+            copy(m_spillFile, out);
+            return;
+        }
+        for (int i = 0; i < m_size; ++i)
+        {
+            out.print(m_line[getRingIndex(i)]);
+            out.print('\n');
+        }
+        out.print(m_open);
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final int TAB_SIZE = 8;
+
+    private static final int[] EMPTY_RUNS = new int[0];
+
+    /** Shared runs of lines with a single style. */
+    private static int[][] s_singleRuns = new int[0][];
+
+    private final int m_maxLines;
+
+    private final int m_maxChars;
+
+    /** Index of the oldest line in the ring buffer. */
+    private int m_start;
+
+    /** Number of complete lines in the ring buffer. */
+    private int m_size;
+
+    /** Number of characters in the complete lines in the ring buffer. */
+    private long m_chars;
+
+    private int m_linesRemoved;
+
+    /** Length of the longest line or -1, if it needs to be recomputed. */
+    private int m_maxLineLength;
+
+    private String[] m_line;
+
+    private int[][] m_runs;
+
+    /** Last line, which is not terminated by a newline yet. */
+    private final StringBuilder m_open = new StringBuilder();
+
+    private int[] m_openRuns = new int[8];
+
+    private int m_openRunsSize;
+
+    private File m_spillFile;
+
+    private BufferedWriter m_spill;
+
+    private void appendChar(char c, int style)
+    {
+        if (m_open.length() == MAX_LINE_LENGTH)
+            closeLine();
+        if (m_openRunsSize == 0 || m_openRuns[m_openRunsSize - 1] != style)
+        {
+            if (m_openRunsSize == m_openRuns.length)
+                m_openRuns = Arrays.copyOf(m_openRuns, 2 * m_openRunsSize);
+            m_openRuns[m_openRunsSize++] = m_open.length();
+            m_openRuns[m_openRunsSize++] = style;
+        }
+        m_open.append(c);
+    }
+
+    private void closeLine()
+    {
+        int[] runs;
+        if (m_openRunsSize == 0)
+            runs = EMPTY_RUNS;
+        else if (m_openRunsSize == 2)
+            runs = getSingleRun(m_openRuns[1]);
+        else
+            runs = Arrays.copyOf(m_openRuns, m_openRunsSize);
+        String line = m_open.toString();
+        m_open.setLength(0);
+        m_openRunsSize = 0;
+        if (m_size == m_line.length)
+        {
+            if (m_size < m_maxLines)
+                grow();
+            else
+                removeFirst();
+        }
+        int index = getRingIndex(m_size);
+        m_line[index] = line;
+        m_runs[index] = runs;
+        ++m_size;
+        m_chars += line.length();
+        if (m_maxLineLength >= 0)
+            m_maxLineLength = Math.max(m_maxLineLength, line.length());
+    }
+
+    private void closeSpill()
+    {
+        if (m_spill != null)
+        {
+            try
+            {
+                m_spill.close();
+            }
+            catch (IOException e)
+            {
+            }
+            m_spill = null;
+        }
+        if (m_spillFile != null)
+        {
+            m_spillFile.delete();
+            m_spillFile = null;
+        }
+    }
+
+    private static void copy(File file, OutputStream out) throws IOException
+    {
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[65536];
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private int getRingIndex(int i)
+    {
+        int index = m_start + i;
+        if (index >= m_line.length)
+            index -= m_line.length;
+        return index;
+    }
+
+    private static synchronized int[] getSingleRun(int style)
+    {
+        if (style >= s_singleRuns.length)
+        {
+            int[][] singleRuns = Arrays.copyOf(s_singleRuns, style + 1);
+            for (int i = s_singleRuns.length; i <= style; ++i)
+                singleRuns[i] = new int[] { 0, i };
+            s_singleRuns = singleRuns;
+        }
+        return s_singleRuns[style];
+    }
+
+    private void grow()
+    {
+        int capacity = Math.min(2 * m_line.length, m_maxLines);
+        String[] line = new String[capacity];
+        int[][] runs = new int[capacity][];
+        for (int i = 0; i < m_size; ++i)
+        {
+            int index = getRingIndex(i);
+            line[i] = m_line[index];
+            runs[i] = m_runs[index];
+        }
+        m_line = line;
+        m_runs = runs;
+        m_start = 0;
+    }
+
+    private void removeFirst()
+    {
+        String line = m_line[m_start];
+        m_chars -= line.length();
+        if (line.length() == m_maxLineLength)
+            m_maxLineLength = -1;
+        m_line[m_start] = null;
+        m_runs[m_start] = null;
+        m_start = getRingIndex(1);
+        --m_size;
+        ++m_linesRemoved;
+    }
+
+    /** Remove the oldest lines if the character limit is exceeded.
+        The newest complete line is never removed. */
+    private void removeLines()
+    {
+        while (m_size > 1 && m_chars + m_open.length() > m_maxChars)
+            removeFirst();
+    }
+}
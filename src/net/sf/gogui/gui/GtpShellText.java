@@ -3,108 +3,243 @@
 package net.sf.gogui.gui;
 
 import java.awt.Color;
-import javax.swing.JTextPane;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import javax.swing.AbstractAction;
+import javax.swing.BorderFactory;
+import javax.swing.InputMap;
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.KeyStroke;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.Document;
-import javax.swing.text.Style;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import net.sf.gogui.game.Clock;
 
+/** Text area of the GTP shell.
+    Shows the text of a GtpShellLog. Only the lines in the visible area are
+    painted, so the cost of painting does not depend on the size of the
+    log. Lines are not wrapped. The text can be selected with the mouse and
+    copied to the clipboard. Updates of the size and the scroll position
+    after appending text are delayed to the next event, such that many
+    small appends cause only one update. */
 class GtpShellText
-    extends JTextPane
+    extends JComponent
+    implements Scrollable
 {
-    public GtpShellText(int historyMin, int historyMax, boolean timeStamp)
+    public GtpShellText(int historyMax, int historyMaxChars,
+                        boolean timeStamp)
     {
         GuiUtil.setMonospacedFont(this);
+        m_boldFont = getFont().deriveFont(Font.BOLD);
         m_startTime = System.currentTimeMillis();
         m_timeStamp = timeStamp;
-        m_historyMin = historyMin;
-        m_historyMax = historyMax;
-        GuiUtil.addStyle(this, "error", Color.red);
-        GuiUtil.addStyle(this, "warning", Color.decode("#ff7000"));
-        GuiUtil.addStyle(this, "output", null, null, true);
-        GuiUtil.addStyle(this, "log", new Color(0.5f, 0.5f, 0.5f));
-        GuiUtil.addStyle(this, "livegfx", Color.decode("#5498B0"));
-        GuiUtil.addStyle(this, "time", new Color(0, 0, 0.5f));
-        GuiUtil.addStyle(this, "invalid", new Color(1.0f, 0.58f, 0.25f));
-        setEditable(false);
+        m_log = new GtpShellLog(historyMax, historyMaxChars, true);
+        setBackground(Color.white);
+        setForeground(Color.black);
+        setOpaque(true);
+        setFocusable(true);
+        setBorder(BorderFactory.createEmptyBorder(MARGIN, MARGIN, MARGIN,
+                                                  MARGIN));
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+                public void mouseDragged(MouseEvent event)
+                {
+                    if (! SwingUtilities.isLeftMouseButton(event))
+                        return;
+                    setLead(event.getPoint());
+                    scrollRectToVisible(new Rectangle(event.getX(),
+                                                      event.getY(), 1, 1));
+                }
+
+                public void mousePressed(MouseEvent event)
+                {
+                    requestFocusInWindow();
+                    if (! SwingUtilities.isLeftMouseButton(event))
+                        return;
+                    if (event.getClickCount() == 2)
+                        selectWord(event.getPoint());
+                    else if (event.isShiftDown())
+                        setLead(event.getPoint());
+                    else
+                        setAnchor(event.getPoint());
+                }
+
+                public void mouseReleased(MouseEvent event)
+                {
+                    copyToSystemSelection();
+                }
+            };
+        addMouseListener(mouseAdapter);
+        addMouseMotionListener(mouseAdapter);
+        setAutoscrolls(true);
+        int shortcut = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+        InputMap inputMap = getInputMap(WHEN_FOCUSED);
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_C, shortcut),
+                     "copy");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_COPY, 0), "copy");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_A, shortcut),
+                     "select-all");
+        getActionMap().put("copy", new AbstractAction() {
+                public void actionPerformed(ActionEvent event)
+                {
+                    String text = getSelectedText();
+                    if (text != null)
+                        GuiUtil.copyToClipboard(text);
+                }
+            });
+        getActionMap().put("select-all", new AbstractAction() {
+                public void actionPerformed(ActionEvent event)
+                {
+                    selectAll();
+                }
+            });
+    }
+
+    /** Add a listener that is notified if the selection changes. */
+    public void addChangeListener(ChangeListener listener)
+    {
+        listenerList.add(ChangeListener.class, listener);
     }
 
     public void appendComment(String text)
     {
         m_isLastTextNonGTP = false;
-        appendText(text, "log");
+        appendText(text, STYLE_LOG);
     }
 
     public void appendError(String text)
     {
         m_isLastTextNonGTP = false;
         appendTimeStamp();
-        appendText(text, "error");
+        appendText(text, STYLE_ERROR);
     }
 
     public void appendInput(String text)
     {
         m_isLastTextNonGTP = false;
         appendTimeStamp();
-        appendText(text, null);
+        appendText(text, STYLE_DEFAULT);
     }
 
     public void appendInvalidResponse(String text)
     {
         m_isLastTextNonGTP = true;
-        appendText(text, "invalid");
+        appendText(text, STYLE_INVALID);
     }
 
     public void appendLog(String text, boolean isLiveGfx, boolean isWarning)
     {
         m_isLastTextNonGTP = true;
         if (isLiveGfx)
-            appendText(text, "livegfx");
+            appendText(text, STYLE_LIVEGFX);
         else if (isWarning)
-            appendText(text, "warning");
+            appendText(text, STYLE_WARNING);
         else
-            appendText(text, "log");
+            appendText(text, STYLE_LOG);
     }
 
     public void appendOutput(String text)
     {
         m_isLastTextNonGTP = false;
         appendTimeStamp();
-        appendText(text, "output");
+        appendText(text, STYLE_OUTPUT);
     }
 
-    public static int findTruncateIndex(String text, int truncateLines)
+    public GtpShellLog getLog()
     {
-        int indexNewLine = 0;
-        int lines = 0;
-        while ((indexNewLine = text.indexOf('\n', indexNewLine)) != -1)
-        {
-            ++indexNewLine;
-            ++lines;
-            if (lines == truncateLines)
-                return indexNewLine;
-        }
-        return -1;
+        return m_log;
+    }
+
+    public Dimension getPreferredScrollableViewportSize()
+    {
+        return getPreferredSize();
+    }
+
+    public Dimension getPreferredSize()
+    {
+        if (isPreferredSizeSet())
+            return super.getPreferredSize();
+        Insets insets = getInsets();
+        FontMetrics metrics = getFontMetrics(getFont());
+        int width = m_log.getMaxLineLength() * getCharWidth(metrics);
+        int height = m_log.getNumberLines() * metrics.getHeight();
+        return new Dimension(width + insets.left + insets.right,
+                             height + insets.top + insets.bottom);
     }
 
-    public int getLinesTruncated()
+    public int getScrollableBlockIncrement(Rectangle visibleRect,
+                                           int orientation, int direction)
     {
-        return m_truncated;
+        if (orientation == SwingConstants.VERTICAL)
+            return visibleRect.height;
+        return visibleRect.width;
     }
 
-    public String getLog()
+    public boolean getScrollableTracksViewportHeight()
     {
-        Document doc = getDocument();
-        try
+        Container parent = getParent();
+        return (parent instanceof JViewport
+                && parent.getHeight() > getPreferredSize().height);
+    }
+
+    public boolean getScrollableTracksViewportWidth()
+    {
+        Container parent = getParent();
+        return (parent instanceof JViewport
+                && parent.getWidth() > getPreferredSize().width);
+    }
+
+    public int getScrollableUnitIncrement(Rectangle visibleRect,
+                                          int orientation, int direction)
+    {
+        FontMetrics metrics = getFontMetrics(getFont());
+        if (orientation == SwingConstants.VERTICAL)
+            return metrics.getHeight();
+        return getCharWidth(metrics);
+    }
+
+    /** Get the selected text.
+        @return The selected text or null, if no text is selected. */
+    public String getSelectedText()
+    {
+        int removed = m_log.getLinesRemoved();
+        int numberLines = m_log.getNumberLines();
+        if (numberLines == 0 || ! hasSelection())
+            return null;
+        int startLine = getStartLine() - removed;
+        int startColumn = getStartColumn();
+        int endLine = getEndLine() - removed;
+        int endColumn = getEndColumn();
+        if (endLine < 0)
+            return null;
+        if (startLine < 0)
         {
-            return doc.getText(0, doc.getLength());
+            startLine = 0;
+            startColumn = 0;
         }
-        catch (BadLocationException e)
+        if (endLine >= numberLines)
         {
-            assert false;
-            return "";
+            endLine = numberLines - 1;
+            endColumn = Integer.MAX_VALUE;
         }
+        String text = m_log.getText(startLine, startColumn, endLine,
+                                    endColumn);
+        return (text.equals("") ? null : text);
     }
 
     /** Check if last text appended is not part of the GTP streams.
@@ -115,10 +250,23 @@ class GtpShellText
         return m_isLastTextNonGTP;
     }
 
+    public void selectAll()
+    {
+        int numberLines = m_log.getNumberLines();
+        if (numberLines == 0)
+            return;
+        int removed = m_log.getLinesRemoved();
+        m_anchorLine = removed;
+        m_anchorColumn = 0;
+        m_leadLine = removed + numberLines - 1;
+        m_leadColumn = m_log.getLine(numberLines - 1).length();
+        selectionChanged();
+    }
+
     public void setPositionToEnd()
     {
-        int length = getDocument().getLength();
-        setCaretPosition(length);
+        updateSize();
+        scrollRectToVisible(new Rectangle(0, getHeight() - 1, 1, 1));
     }
 
     public void setTimeStamp(boolean enable)
@@ -126,49 +274,125 @@ class GtpShellText
         m_timeStamp = enable;
     }
 
+    protected void paintComponent(Graphics graphics)
+    {
+        Rectangle clip = graphics.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        graphics.setColor(getBackground());
+        graphics.fillRect(clip.x, clip.y, clip.width, clip.height);
+        int numberLines = m_log.getNumberLines();
+        if (numberLines == 0)
+            return;
+        Insets insets = getInsets();
+        FontMetrics metrics = getFontMetrics(getFont());
+        int lineHeight = metrics.getHeight();
+        int charWidth = getCharWidth(metrics);
+        int first = Math.max(0, (clip.y - insets.top) / lineHeight);
+        int last = Math.min(numberLines - 1,
+                            (clip.y + clip.height - insets.top)
+                            / lineHeight);
+        int removed = m_log.getLinesRemoved();
+        boolean hasSelection = hasSelection();
+        for (int i = first; i <= last; ++i)
+        {
+            int y = insets.top + i * lineHeight;
+            String line = m_log.getLine(i);
+            if (hasSelection)
+                paintSelection(graphics, i + removed, line.length(),
+                               insets.left, y, charWidth, lineHeight);
+            int[] runs = m_log.getRuns(i);
+            for (int j = 0; j < runs.length; j += 2)
+            {
+                int start = runs[j];
+                int end = (j + 2 < runs.length ? runs[j + 2] : line.length());
+                int style = runs[j + 1];
+                Color color = STYLE_COLOR[style];
+                graphics.setColor(color == null ? getForeground() : color);
+                graphics.setFont(style == STYLE_OUTPUT ? m_boldFont
+                                 : getFont());
+                graphics.drawString(line.substring(start, end),
+                                    insets.left + start * charWidth,
+                                    y + metrics.getAscent());
+            }
+        }
+    }
+
+    private static final int MARGIN = 3;
+
+    private static final int STYLE_DEFAULT = 0;
+
+    private static final int STYLE_ERROR = 1;
+
+    private static final int STYLE_WARNING = 2;
+
+    private static final int STYLE_OUTPUT = 3;
+
+    private static final int STYLE_LOG = 4;
+
+    private static final int STYLE_LIVEGFX = 5;
+
+    private static final int STYLE_TIME = 6;
+
+    private static final int STYLE_INVALID = 7;
+
+    /** Foreground colors of the styles.
+        Null means the foreground color of the component. The output style
+        also uses a bold font. */
+    private static final Color[] STYLE_COLOR = {
+        null,
+        Color.red,
+        Color.decode("#ff7000"),
+        null,
+        new Color(0.5f, 0.5f, 0.5f),
+        Color.decode("#5498B0"),
+        new Color(0, 0, 0.5f),
+        new Color(1.0f, 0.58f, 0.25f)
+    };
+
+    private static final Color SELECTION_COLOR = new Color(184, 207, 229);
+
     private boolean m_isLastTextNonGTP;
 
     private boolean m_timeStamp;
 
-    private final int m_historyMin;
+    private boolean m_isUpdateScheduled;
+
+    /** Selection anchor and lead.
+        Lines are counted from the start of the log including the lines
+        already removed from memory. */
+    private int m_anchorLine;
 
-    private final int m_historyMax;
+    private int m_anchorColumn;
 
-    private int m_lines;
+    private int m_leadLine;
 
-    private int m_truncated;
+    private int m_leadColumn;
 
     private final long m_startTime;
 
-    private void appendText(String text, String style)
+    private final Font m_boldFont;
+
+    private final GtpShellLog m_log;
+
+    private final Runnable m_update = new Runnable() {
+            public void run() {
+                m_isUpdateScheduled = false;
+                setPositionToEnd();
+                repaint();
+            }
+        };
+
+    private void appendText(String text, int style)
     {
         assert SwingUtilities.isEventDispatchThread();
         if (text.equals(""))
             return;
-        int indexNewLine = 0;
-        while ((indexNewLine = text.indexOf('\n', indexNewLine)) != -1)
-        {
-            ++m_lines;
-            ++indexNewLine;
-        }
-        Document doc = getDocument();
-        Style s = null;
-        if (style != null)
-            s = getStyle(style);
-        try
-        {
-            int length = doc.getLength();
-            doc.insertString(length, text, s);
-            setPositionToEnd();
-        }
-        catch (BadLocationException e)
-        {
-            assert false;
-        }
-        if (m_lines > m_historyMax)
+        m_log.append(text, style);
+        if (! m_isUpdateScheduled)
         {
-            truncateHistory();
-            setPositionToEnd();
+            m_isUpdateScheduled = true;
+            SwingUtilities.invokeLater(m_update);
         }
     }
 
@@ -178,25 +402,168 @@ class GtpShellText
             return;
         long timeMillis = System.currentTimeMillis();
         double diff = (float)(timeMillis - m_startTime) / 1000;
-        appendText(Clock.getTimeString(diff, -1) + " ", "time");
+        appendText(Clock.getTimeString(diff, -1) + " ", STYLE_TIME);
+    }
+
+    private void copyToSystemSelection()
+    {
+        String text = getSelectedText();
+        Clipboard selection = getToolkit().getSystemSelection();
+        if (text == null || selection == null)
+            return;
+        StringSelection contents = new StringSelection(text);
+        selection.setContents(contents, contents);
+    }
+
+    private static int getCharWidth(FontMetrics metrics)
+    {
+        return Math.max(1, metrics.charWidth('m'));
+    }
+
+    private int getEndColumn()
+    {
+        if (m_anchorLine > m_leadLine
+            || (m_anchorLine == m_leadLine && m_anchorColumn > m_leadColumn))
+            return m_anchorColumn;
+        return m_leadColumn;
     }
 
-    private void truncateHistory()
+    private int getEndLine()
     {
-        int truncateLines = m_lines - m_historyMin;
-        Document doc = getDocument();
-        try
+        return Math.max(m_anchorLine, m_leadLine);
+    }
+
+    /** Get the line and column at a point.
+        @return The line counted like the selection lines in x and the column
+        in y. */
+    private Point getPosition(Point point)
+    {
+        Insets insets = getInsets();
+        FontMetrics metrics = getFontMetrics(getFont());
+        int numberLines = m_log.getNumberLines();
+        int line = (point.y - insets.top) / metrics.getHeight();
+        if (point.y < insets.top)
+            line = 0;
+        line = Math.min(line, numberLines - 1);
+        int column = 0;
+        if (line >= 0)
         {
-            String text = doc.getText(0, doc.getLength());
-            int truncateIndex = findTruncateIndex(text, truncateLines);
-            assert truncateIndex != -1;
-            doc.remove(0, truncateIndex);
-            m_lines -= truncateLines;
-            m_truncated += truncateLines;
+            int charWidth = getCharWidth(metrics);
+            column = (point.x - insets.left + charWidth / 2) / charWidth;
+            column = Math.max(0, column);
+            column = Math.min(column, m_log.getLine(line).length());
         }
-        catch (BadLocationException e)
+        else
+            line = 0;
+        return new Point(line + m_log.getLinesRemoved(), column);
+    }
+
+    private int getStartColumn()
+    {
+        if (m_anchorLine > m_leadLine
+            || (m_anchorLine == m_leadLine && m_anchorColumn > m_leadColumn))
+            return m_leadColumn;
+        return m_anchorColumn;
+    }
+
+    private int getStartLine()
+    {
+        return Math.min(m_anchorLine, m_leadLine);
+    }
+
+    private boolean hasSelection()
+    {
+        return (m_anchorLine != m_leadLine || m_anchorColumn != m_leadColumn);
+    }
+
+    private void paintSelection(Graphics graphics, int line, int length,
+                                int x, int y, int charWidth, int lineHeight)
+    {
+        int startLine = getStartLine();
+        int endLine = getEndLine();
+        if (line < startLine || line > endLine)
+            return;
+        int start = (line == startLine ? getStartColumn() : 0);
+        int end;
+        if (line == endLine)
+            end = Math.min(getEndColumn(), length);
+        else
+            // Include the newline
+            end = length + 1;
+        if (start >= end)
+            return;
+        graphics.setColor(SELECTION_COLOR);
+        graphics.fillRect(x + start * charWidth, y,
+                          (end - start) * charWidth, lineHeight);
+    }
+
+    private void selectionChanged()
+    {
+        repaint();
+        Object[] listeners = listenerList.getListenerList();
+        ChangeEvent event = null;
+        for (int i = listeners.length - 2; i >= 0; i -= 2)
+            if (listeners[i] == ChangeListener.class)
+            {
+                if (event == null)
+                    event = new ChangeEvent(this);
+                ((ChangeListener)listeners[i + 1]).stateChanged(event);
+            }
+    }
+
+    private void selectWord(Point point)
+    {
+        if (m_log.getNumberLines() == 0)
+            return;
+        Point position = getPosition(point);
+        String line = m_log.getLine(position.x - m_log.getLinesRemoved());
+        int start = position.y;
+        int end = position.y;
+        while (start > 0 && ! Character.isWhitespace(line.charAt(start - 1)))
+            --start;
+        while (end < line.length()
+               && ! Character.isWhitespace(line.charAt(end)))
+            ++end;
+        m_anchorLine = position.x;
+        m_anchorColumn = start;
+        m_leadLine = position.x;
+        m_leadColumn = end;
+        selectionChanged();
+    }
+
+    /** Set the selection anchor and lead to a point. */
+    private void setAnchor(Point point)
+    {
+        Point position = getPosition(point);
+        m_anchorLine = position.x;
+        m_anchorColumn = position.y;
+        m_leadLine = position.x;
+        m_leadColumn = position.y;
+        selectionChanged();
+    }
+
+    private void setLead(Point point)
+    {
+        Point position = getPosition(point);
+        if (position.x == m_leadLine && position.y == m_leadColumn)
+            return;
+        m_leadLine = position.x;
+        m_leadColumn = position.y;
+        selectionChanged();
+    }
+
+    /** Update the size of the component and the scroll pane.
+        Needed before scrolling to the end, because revalidate() is
+        delayed. */
+    private void updateSize()
+    {
+        Container parent = getParent();
+        if (parent instanceof JViewport && parent.getParent() != null)
         {
-            assert false;
+            invalidate();
+            parent.getParent().validate();
         }
+        else
+            setSize(getPreferredSize());
     }
 }
@@ -71,6 +71,15 @@ public final class GuiBoard
         initSize(size);
     }
 
+    /** Start a batch of changes.
+        Until the matching call of endBatch(), changed fields are not
+        repainted immediately. endBatch() repaints the region of all changed
+        fields with a single repaint request. Batches can be nested. */
+    public void beginBatch()
+    {
+        ++m_batchLevel;
+    }
+
     /** Clear every kind of markup. */
     public void clearAll()
     {
@@ -162,6 +171,18 @@ public final class GuiBoard
         m_panel.contextMenu(point);
     }
 
+    /** End a batch of changes.
+        @see #beginBatch() */
+    public void endBatch()
+    {
+        assert m_batchLevel > 0;
+        if (--m_batchLevel == 0 && m_batchDirty != null)
+        {
+            m_panel.repaint(m_batchDirty);
+            m_batchDirty = null;
+        }
+    }
+
     /** Get current board size. */
     public int getBoardSize()
     {
@@ -690,7 +711,7 @@ public final class GuiBoard
             dirty.width = m_painter.getFieldSize();
             dirty.height = m_painter.getFieldSize();
             addDirty(dirty);
-            repaint(dirty);
+            repaintDirty(dirty);
         }
 
         public void repaintWithShadow(GoPoint point)
@@ -706,7 +727,7 @@ public final class GuiBoard
             dirty.width = m_painter.getFieldSize() + offset;
             dirty.height = m_painter.getFieldSize() + offset;
             addDirty(dirty);
-            repaint(dirty);
+            repaintDirty(dirty);
         }
 
         public final void setPreferredFieldSize()
@@ -717,6 +738,16 @@ public final class GuiBoard
             int minimumSize = 4 * m_size + 2;
             setMinimumSize(new Dimension(minimumSize, minimumSize));
         }
+
+        private void repaintDirty(Rectangle dirty)
+        {
+            if (m_batchLevel == 0)
+                repaint(dirty);
+            else if (m_batchDirty == null)
+                m_batchDirty = new Rectangle(dirty);
+            else
+                m_batchDirty.add(dirty);
+        }
     }
 
     private static final boolean DEBUG_REPAINT = false;
@@ -729,6 +760,9 @@ public final class GuiBoard
 
     private boolean m_showGrid = true;
 
+    /** Nesting level of beginBatch(). */
+    private int m_batchLevel;
+
     private int m_imageHeight;
 
     private int m_imageWidth;
@@ -757,6 +791,10 @@ public final class GuiBoard
 
     private Rectangle m_dirty = new Rectangle();
 
+    /** Union of the fields changed during a batch.
+        Null, if no field changed. */
+    private Rectangle m_batchDirty;
+
     private void addDirty(Rectangle rectangle)
     {
         if (m_dirty == null)
@@ -4,6 +4,7 @@ package net.sf.gogui.gui;
 
 import java.awt.Component;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import javax.swing.SwingUtilities;
 import net.sf.gogui.game.TimeSettings;
 import net.sf.gogui.go.ConstBoard;
@@ -92,6 +93,11 @@ public class GuiGtpClient
         return m_gtp.getAnyCommandsResponded();
     }
 
+    public int getNumberCommands()
+    {
+        return m_gtp.getNumberCommands();
+    }
+
     /** Get exception of asynchronous command.
         You must call this before you are allowed to send new a command. */
     public GtpError getException()
@@ -174,6 +180,22 @@ public class GuiGtpClient
         return m_gtp.send(command, TIMEOUT, timeoutCallback);
     }
 
+    /** Send list of commands in event dispatch thread.
+        Uses pipelining, see GtpClient.send(ArrayList,long,TimeoutCallback).
+        The timeout applies to each response. */
+    public ArrayList<String> send(ArrayList<String> commands)
+        throws GtpError
+    {
+        assert SwingUtilities.isEventDispatchThread();
+        assert ! m_commandInProgress;
+        if (commands.isEmpty())
+            return new ArrayList<String>();
+        // Use first command for the timeout message, usually all commands
+        // are of the same type
+        TimeoutCallback timeoutCallback = new TimeoutCallback(commands.get(0));
+        return m_gtp.send(commands, TIMEOUT, timeoutCallback);
+    }
+
     public void setAutoNumber(boolean enable)
     {
         m_gtp.setAutoNumber(enable);
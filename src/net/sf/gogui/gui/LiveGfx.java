@@ -2,21 +2,45 @@
 
 package net.sf.gogui.gui;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import net.sf.gogui.go.GoPoint;
 
 /** Parse standard error of a GTP engine for GoGui live graphics commands.
-    See chapter "Live Graphics" in the GoGui documentation. */
+    See chapter "Live Graphics" in the GoGui documentation.
+    The live gfx blocks are parsed in the thread that calls handleLine().
+    Only the latest parsed frame is kept until the event dispatch thread
+    shows it, so that programs that send live gfx at a high rate do not
+    flood the event queue. Frames are shown with at most MAX_FRAME_RATE
+    frames per second; frames that are replaced by a newer frame before
+    they are shown are dropped. */
 public class LiveGfx
 {
     public interface Listener
     {
-        void showLiveGfx(String text);
+        /** Show a live gfx frame.
+            Called in the event dispatch thread. The frame is parsed with
+            board size GoPoint.MAX_SIZE, points outside the current board
+            should be ignored. */
+        void showLiveGfx(GfxFrame frame);
     }
 
+    /** Maximum number of frames shown per second. */
+    public static final int MAX_FRAME_RATE = 25;
+
     public LiveGfx(Listener listener)
     {
         m_listener = listener;
         m_duringMultiLineResponse = false;
+        m_timer = new Timer(0, new ActionListener() {
+                public void actionPerformed(ActionEvent event)
+                {
+                    showFrame();
+                }
+            });
+        m_timer.setRepeats(false);
     }
 
     /** Parse line.
@@ -61,16 +85,59 @@ public class LiveGfx
 
     private boolean m_duringMultiLineResponse;
 
+    /** Only accessed in the event dispatch thread. */
+    private boolean m_isFrameShown;
+
+    /** Time in milliseconds when the last frame was shown.
+        Only accessed in the event dispatch thread. */
+    private long m_lastShowTime;
+
     private Listener m_listener;
 
+    /** Latest frame that was not shown yet.
+        Null, if no frame is waiting to be shown. Guarded by this. */
+    private GfxFrame m_frame;
+
     private final StringBuilder m_response = new StringBuilder(1024);
 
-    private void showGfx(final String text)
+    private final Timer m_timer;
+
+    private void showFrame()
     {
+        assert SwingUtilities.isEventDispatchThread();
+        long time = System.nanoTime() / 1000000L;
+        long delay = m_lastShowTime + 1000 / MAX_FRAME_RATE - time;
+        if (m_isFrameShown && delay > 0)
+        {
+            m_timer.setInitialDelay((int)delay);
+            m_timer.restart();
+            return;
+        }
+        GfxFrame frame;
+        synchronized (this)
+        {
+            frame = m_frame;
+            m_frame = null;
+        }
+        m_isFrameShown = true;
+        m_lastShowTime = time;
+        m_listener.showLiveGfx(frame);
+    }
+
+    private void showGfx(String text)
+    {
+        GfxFrame frame = new GfxFrame(text, GoPoint.MAX_SIZE);
+        synchronized (this)
+        {
+            boolean isScheduled = (m_frame != null);
+            m_frame = frame;
+            if (isScheduled)
+                return;
+        }
         SwingUtilities.invokeLater(new Runnable() {
                 public void run()
                 {
-                    m_listener.showLiveGfx(text);
+                    showFrame();
                 }
             });
     }
@@ -2,26 +2,22 @@
 
 package net.sf.gogui.sgf;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.StreamTokenizer;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
-import java.util.Map;
-import java.util.TreeMap;
+import java.nio.charset.IllegalCharsetNameException;
 import java.util.TreeSet;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
 import net.sf.gogui.game.GameInfo;
 import net.sf.gogui.game.GameTree;
 import net.sf.gogui.game.MarkType;
 import net.sf.gogui.game.Node;
+import net.sf.gogui.game.NodeLoader;
 import net.sf.gogui.game.StringInfo;
 import net.sf.gogui.game.StringInfoColor;
 import net.sf.gogui.game.TimeSettings;
@@ -35,71 +31,107 @@ import net.sf.gogui.go.InvalidPointException;
 import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.go.PointList;
-import net.sf.gogui.util.ByteCountInputStream;
 import net.sf.gogui.util.ProgressShow;
 
 /** SGF reader.
+    The input is read into memory and tokenized at the byte level. Property
+    values are unescaped into a byte buffer and only decoded into strings
+    if needed; point values are parsed directly from the bytes. This works
+    for all charsets, in which the bytes below 128 always encode ASCII
+    characters (like ISO-8859-1 or UTF-8). Files in other charsets are
+    converted to UTF-8 before parsing.
     @bug The error messages currently don't contain line numbers, see
     implementation of getError(). */
 public final class SgfReader
 {
     /** Read SGF file from stream.
         Default charset is ISO-8859-1 according to the SGF version 4 standard.
-        The charset property is only respected if the stream is a
-        FileInputStream, because it has to be reopened with a different
-        encoding.
         The stream is closed after reading.
         @param in Stream to read from.
-        @param file File name if input stream is a FileInputStream to allow
-        reopening the stream after a charset change
+        @param file File name for error messages, can be null
         @param progressShow Callback to show progress, can be null
-        @param size Size of stream if progressShow != null
+        @param size Size of stream if known, otherwise 0
         @throws SgfError If reading fails. */
     public SgfReader(InputStream in, File file, ProgressShow progressShow,
                      long size)
         throws SgfError
+    {
+        this(in, file, progressShow, size, 0);
+    }
+
+    /** Read SGF file from stream with optional lazy loading.
+        In lazy mode, the comments, markup, labels, values and unknown
+        properties of all nodes but the root node are not read until they
+        are accessed (see NodeLoader). The file content is kept in memory
+        for loading them. Errors in these properties are not detected while
+        reading and the properties with errors are ignored when loading the
+        node content.
+        @param in Stream to read from.
+        @param file File name for error messages, can be null
+        @param progressShow Callback to show progress, can be null
+        @param size Size of stream if known, otherwise 0
+        @param maxLoadedNodes Maximum number of nodes with loaded content
+        in lazy mode; 0 for reading all content immediately.
+        @throws SgfError If reading fails. */
+    public SgfReader(InputStream in, File file, ProgressShow progressShow,
+                     long size, int maxLoadedNodes)
+        throws SgfError
     {
         m_file = file;
+        if (maxLoadedNodes > 0)
+            m_loader = new Loader(maxLoadedNodes);
         m_progressShow = progressShow;
-        m_size = size;
-        m_isFile = (in instanceof FileInputStream && file != null);
         if (progressShow != null)
             progressShow.showProgress(0);
         try
         {
-            // SGF FF 4 standard defines ISO-8859-1 as default
-            readSgf(in, "ISO-8859-1");
+            readData(in, size);
         }
-        catch (SgfCharsetChanged e1)
+        catch (IOException e)
+        {
+            throw new SgfError("IO error");
+        }
+        catch (OutOfMemoryError e)
+        {
+            throw new SgfError("Out of memory");
+        }
+        finally
         {
             try
             {
                 in.close();
-                in = new FileInputStream(file);
             }
-            catch (IOException e2)
+            catch (IOException e)
             {
-                throw new SgfError("Could not reset SGF stream after"
-                                   + " charset change.");
+                System.err.println("Could not close SGF stream");
             }
+        }
+        try
+        {
+            // SGF FF 4 standard defines ISO-8859-1 as default
+            readSgf(ISO_8859_1);
+        }
+        catch (SgfCharsetChanged e1)
+        {
+            // The charset is not ASCII compatible, convert to UTF-8
+            Charset charset = Charset.forName(m_newCharset);
             try
             {
-                readSgf(in, m_newCharset);
+                m_data = new String(m_data, 0, m_end, charset)
+                    .getBytes(UTF_8);
+                m_end = m_data.length;
             }
-            catch (SgfCharsetChanged e3)
+            catch (OutOfMemoryError e2)
             {
-                assert false;
+                throw new SgfError("Out of memory");
             }
-        }
-        finally
-        {
             try
             {
-                in.close();
+                readSgf(UTF_8);
             }
-            catch (IOException e)
+            catch (SgfCharsetChanged e3)
             {
-                System.err.println("Could not close SGF stream");
+                assert false;
             }
         }
     }
@@ -131,48 +163,157 @@ public final class SgfReader
     {
     }
 
-    private final boolean m_isFile;
+    /** Loads the lazy content of nodes from m_data. */
+    private final class Loader
+        extends NodeLoader
+    {
+        public Loader(int maxLoaded)
+        {
+            super(maxLoaded);
+        }
+
+        /** Load node content.
+            @param node The node.
+            @param index Position after the start of the node in m_data. */
+        protected void loadContent(Node node, int index)
+        {
+            m_pos = index;
+            m_pushedBack = false;
+            clearProps();
+            try
+            {
+                while (readProp());
+                for (Property prop : m_props)
+                    if (isLazyProp(prop.m_name))
+                        handleProp(node, prop);
+            }
+            catch (SgfError e)
+            {
+                // Node content was already partially set, the remaining
+                // properties are ignored
+            }
+        }
+    }
+
+    /** Property of the current node.
+        The values are stored in m_valueStart and m_valueEnd at the indexes
+        m_firstValue to m_firstValue + m_numberValues - 1. */
+    private static class Property
+    {
+        public String m_name;
+
+        public int m_firstValue;
+
+        public int m_numberValues;
+    }
+
+    /** Token type for end of file (same value as in StreamTokenizer). */
+    private static final int TT_EOF = -1;
+
+    /** Token type for a number (same value as in StreamTokenizer). */
+    private static final int TT_NUMBER = -2;
+
+    /** Token type for a word (same value as in StreamTokenizer). */
+    private static final int TT_WORD = -3;
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Properties that are always read immediately in lazy mode.
+        Contains all properties handled by handleProp() that set other
+        than lazy node content (see NodeLoader) or are ignored. */
+    private static final Set<String> EAGER_PROPS = new HashSet<String>();
+
+    static
+    {
+        String[] props = {
+            "AB", "AE", "AN", "AP", "AW", "B", "BL", "BR", "BT", "CA", "CP",
+            "DT", "FF", "GM", "GN", "HA", "KM", "OB", "OM", "OP", "OT", "OW",
+            "PB", "PL", "PW", "RE", "RO", "RU", "SO", "SZ", "TM", "US", "W",
+            "WL", "WR", "WT" };
+        for (String p : props)
+            EAGER_PROPS.add(p);
+    }
 
     /** Has current node inconsistent FF3 overtime settings properties. */
     private boolean m_ignoreOvertime;
 
+    /** Was the last token pushed back with pushBack()? */
+    private boolean m_pushedBack;
+
     private int m_lastPercent;
 
     private int m_boardSize;
 
     private int m_byoyomiMoves;
 
-    private final long m_size;
+    /** Number of bytes in m_data. */
+    private int m_end;
+
+    /** Current position in m_data. */
+    private int m_pos;
+
+    /** Type of the last token. */
+    private int m_ttype;
+
+    /** Start of the last token in m_data, if it is a word. */
+    private int m_wordStart;
+
+    /** End of the last token in m_data, if it is a word. */
+    private int m_wordEnd;
+
+    /** Number of used bytes in m_values. */
+    private int m_valuesLength;
+
+    /** Number of values of the current node. */
+    private int m_numberValues;
 
     private long m_byoyomi;
 
     private long m_preByoyomi;
 
-    private ByteCountInputStream m_byteCountInputStream;
+    /** Content of the SGF stream. */
+    private byte[] m_data;
+
+    /** Unescaped property values of the current node. */
+    private byte[] m_values = new byte[1024];
+
+    /** Start of values of the current node in m_values. */
+    private int[] m_valueStart = new int[64];
+
+    /** End of values of the current node in m_values. */
+    private int[] m_valueEnd = new int[64];
 
-    private java.io.Reader m_reader;
+    /** Charset for decoding property values. */
+    private Charset m_charset;
 
     private GameTree m_tree;
 
+    /** Loader for lazy content, null if not in lazy mode. */
+    private Loader m_loader;
+
     private final ProgressShow m_progressShow;
 
     /** Contains strings with warnings. */
     private final Set<String> m_warnings = new TreeSet<String>();
 
-    private StreamTokenizer m_tokenizer;
-
     private final File m_file;
 
     private String m_newCharset;
 
-    /** Pre-allocated temporary buffer for use within functions. */
-    private final StringBuilder m_buffer = new StringBuilder(512);
+    /** Interned property names with one or two upper case letters.
+        @see #getPropertyName */
+    private final String[] m_propertyNames = new String[26 * 27];
 
     private final PointList m_pointList = new PointList();
 
-    /** Map containing the properties of the current node. */
-    private final Map<String,ArrayList<String>> m_props =
-        new TreeMap<String,ArrayList<String>>();
+    /** Properties of the current node sorted by name. */
+    private final ArrayList<Property> m_props = new ArrayList<Property>();
+
+    /** Unused Property objects for reuse. */
+    private final ArrayList<Property> m_unusedProps =
+        new ArrayList<Property>();
 
     /** Apply some fixes for broken SGF files. */
     private void applyFixes()
@@ -207,22 +348,25 @@ public final class SgfReader
         }
     }
 
-    private void checkEndOfFile() throws SgfError, IOException
+    /** Append a byte to the values of the current node. */
+    private void appendValue(int c)
     {
-        while (true)
+        if (m_valuesLength == m_values.length)
         {
-            m_tokenizer.nextToken();
-            int t = m_tokenizer.ttype;
-            if (t == '(')
-                throw getError("Multiple SGF trees not supported");
-            else if (t == StreamTokenizer.TT_EOF)
-                return;
-            else if (t != ' ' && t != '\t' && t != '\n' && t != '\r')
-            {
-                setWarning("Extra text after SGF tree");
-                return;
-            }
+            byte[] newValues = new byte[2 * m_values.length];
+            System.arraycopy(m_values, 0, newValues, 0, m_valuesLength);
+            m_values = newValues;
         }
+        m_values[m_valuesLength++] = (byte)c;
+    }
+
+    private void checkEndOfFile() throws SgfError
+    {
+        nextToken();
+        if (m_ttype == '(')
+            throw getError("Multiple SGF trees not supported");
+        else if (m_ttype != TT_EOF)
+            setWarning("Extra text after SGF tree");
     }
 
     /** Check for obsolete long names for standard properties.
@@ -289,32 +433,46 @@ public final class SgfReader
         return node.createGameInfo();
     }
 
-    private void findRoot() throws SgfError, IOException
+    private void findRoot() throws SgfError
     {
         while (true)
         {
-            m_tokenizer.nextToken();
-            int t = m_tokenizer.ttype;
+            nextToken();
+            int t = m_ttype;
             if (t == '(')
             {
                 // Better make sure that ( is followed by a node
-                m_tokenizer.nextToken();
-                t = m_tokenizer.ttype;
+                nextToken();
+                t = m_ttype;
                 if (t == ';')
                 {
-                    m_tokenizer.pushBack();
+                    pushBack();
                     return;
                 }
                 else
                     setWarning("Extra text before SGF tree");
             }
-            else if (t == StreamTokenizer.TT_EOF)
+            else if (t == TT_EOF)
                 throw getError("No root tree found");
             else
                 setWarning("Extra text before SGF tree");
         }
     }
 
+    /** Check if two values of the current node are equal. */
+    private boolean isValueEqual(int index1, int index2)
+    {
+        int start1 = m_valueStart[index1];
+        int start2 = m_valueStart[index2];
+        int length = m_valueEnd[index1] - start1;
+        if (m_valueEnd[index2] - start2 != length)
+            return false;
+        for (int i = 0; i < length; ++i)
+            if (m_values[start1 + i] != m_values[start2 + i])
+                return false;
+        return true;
+    }
+
     private int getBoardSize()
     {
         if (m_boardSize == -1)
@@ -324,41 +482,110 @@ public final class SgfReader
 
     private SgfError getError(String message)
     {
-        // Line numbers in error messages is currently disabled because
-        // StreamTokenizer.lineno() does not work as expected with Windows-style
-        // line endings (it seems to count CRLF as two line endings; last with
-        // Java 1.7).
-        /*
-        int lineNumber = m_tokenizer.lineno();
-        if (m_file == null)
-            return new SgfError(lineNumber + ": " + message);
-        else
-        {
-            String s = m_file.getName() + ":" + lineNumber + ": " + message;
-            return new SgfError(s);
-        }
-        */
         if (m_file == null)
             return new SgfError(message);
         else
             return new SgfError(m_file.getName() + ": " + message);
     }
 
-    private void handleProps(Node node, boolean isRoot)
-        throws IOException, SgfError, SgfCharsetChanged
+    /** Get the first value of a property decoded as a string. */
+    private String getValue(Property prop)
+    {
+        return getValue(prop.m_firstValue);
+    }
+
+    /** Get a value of the current node decoded as a string.
+        @param index The index of the value in m_valueStart and
+        m_valueEnd. */
+    private String getValue(int index)
+    {
+        int start = m_valueStart[index];
+        return new String(m_values, start, m_valueEnd[index] - start,
+                          m_charset);
+    }
+
+    private ArrayList<String> getValues(Property prop)
+    {
+        ArrayList<String> values =
+            new ArrayList<String>(prop.m_numberValues);
+        for (int i = 0; i < prop.m_numberValues; ++i)
+            values.add(getValue(prop.m_firstValue + i));
+        return values;
+    }
+
+    /** Get the property of the current node with a given name.
+        @param name The interned property name.
+        @return The property or null, if the node has no such property. */
+    private Property getProp(String name)
+    {
+        for (Property prop : m_props)
+            if (prop.m_name == name)
+                return prop;
+        return null;
+    }
+
+    /** Get the interned upper case name of a property.
+        @param start Start of the name in m_data.
+        @param end End of the name in m_data. */
+    private String getPropertyName(int start, int end)
+    {
+        int length = end - start;
+        if (length <= 2)
+        {
+            // Avoid creating strings for the common short names
+            int c1 = Character.toUpperCase((char)(m_data[start] & 0xff));
+            int c2 = 'A' - 1;
+            if (length == 2)
+                c2 = Character.toUpperCase((char)(m_data[start + 1] & 0xff));
+            if (c1 >= 'A' && c1 <= 'Z' && c2 >= 'A' - 1 && c2 <= 'Z')
+            {
+                int index = (c1 - 'A') * 27 + (c2 - 'A' + 1);
+                String name = m_propertyNames[index];
+                if (name == null)
+                {
+                    name = new String(m_data, start, length, ISO_8859_1)
+                        .toUpperCase(Locale.ENGLISH).intern();
+                    m_propertyNames[index] = name;
+                }
+                return name;
+            }
+        }
+        // Use intern() to allow fast comparsion with ==
+        return new String(m_data, start, length, m_charset)
+            .toUpperCase(Locale.ENGLISH).intern();
+    }
+
+    /** Clear the properties of the current node. */
+    private void clearProps()
+    {
+        m_unusedProps.addAll(m_props);
+        m_props.clear();
+        m_valuesLength = 0;
+        m_numberValues = 0;
+    }
+
+    /** Handle the properties of the current node.
+        @param node The node.
+        @param isRoot Is the node the root node?
+        @param start The position after the start of the node in m_data,
+        used for loading the lazy content in lazy mode. */
+    private void handleProps(Node node, boolean isRoot, int start)
+        throws SgfError, SgfCharsetChanged
     {
         // Handle SZ property first to be able to parse points
-        if (m_props.containsKey("SZ"))
+        Property sizeProp = getProp("SZ");
+        if (sizeProp != null)
         {
-            ArrayList<String> values = m_props.get("SZ");
-            m_props.remove("SZ");
+            String value = getValue(sizeProp);
+            m_props.remove(sizeProp);
+            m_unusedProps.add(sizeProp);
             if (! isRoot)
                 setWarning("Size property not in root node ignored");
             else
             {
                 try
                 {
-                    int size = parseInt(values.get(0));
+                    int size = parseInt(value);
                     if (size <= 0 || size > GoPoint.MAX_SIZE)
                         setWarning("Invalid board size value");
                     assert m_boardSize == -1;
@@ -370,207 +597,242 @@ public final class SgfReader
                 }
             }
         }
-        for (Map.Entry<String,ArrayList<String>> entry : m_props.entrySet())
+        // Handle CA property before decoding any text values
+        Property charsetProp = getProp("CA");
+        if (charsetProp != null && isRoot && m_newCharset == null)
+        {
+            m_newCharset = getValue(charsetProp).trim();
+            Charset charset = null;
+            try
+            {
+                if (Charset.isSupported(m_newCharset))
+                    charset = Charset.forName(m_newCharset);
+            }
+            catch (IllegalCharsetNameException e)
+            {
+            }
+            if (charset == null)
+                setWarning("Unknown character set \"" + m_newCharset + "\"");
+            else if (isAsciiCompatible(charset))
+                m_charset = charset;
+            else
+                throw new SgfCharsetChanged();
+        }
+        boolean isLazy = (m_loader != null && ! isRoot);
+        boolean hasLazyProps = false;
+        for (Property prop : m_props)
+        {
+            if (isLazy && isLazyProp(prop.m_name))
+                hasLazyProps = true;
+            else
+                handleProp(node, prop);
+        }
+        if (hasLazyProps)
+        {
+            // Loading the content would replace SGF properties already
+            // added by other properties (e.g. OT in unknown format)
+            if (node.getSgfPropertiesConst() == null)
+                m_loader.add(node, start);
+            else
+                for (Property prop : m_props)
+                    if (isLazyProp(prop.m_name))
+                        handleProp(node, prop);
+        }
+    }
+
+    private void handleProp(Node node, Property prop) throws SgfError
+    {
+        String p = prop.m_name;
+        if (p == "AB")
+        {
+            parsePointList(prop);
+            node.addStones(BLACK, m_pointList);
+        }
+        else if (p == "AE")
+        {
+            parsePointList(prop);
+            node.addStones(EMPTY, m_pointList);
+        }
+        else if (p == "AN")
+            set(node, StringInfo.ANNOTATION, getValue(prop));
+        else if (p == "AW")
+        {
+            parsePointList(prop);
+            node.addStones(WHITE, m_pointList);
+        }
+        else if (p == "B")
+        {
+            node.setMove(Move.get(BLACK, parsePoint(prop.m_firstValue)));
+        }
+        else if (p == "BL")
         {
-            String p = entry.getKey();
-            ArrayList<String> values = entry.getValue();
-            String v = values.get(0);
-            if (p == "AB")
+            try
             {
-                parsePointList(values);
-                node.addStones(BLACK, m_pointList);
+                node.setTimeLeft(BLACK,
+                                 Double.parseDouble(getValue(prop)));
             }
-            else if (p == "AE")
+            catch (NumberFormatException e)
             {
-                parsePointList(values);
-                node.addStones(EMPTY, m_pointList);
             }
-            else if (p == "AN")
-                set(node, StringInfo.ANNOTATION, v);
-            else if (p == "AW")
+        }
+        else if (p == "BR")
+            set(node, StringInfoColor.RANK, BLACK, getValue(prop));
+        else if (p == "BT")
+            set(node, StringInfoColor.TEAM, BLACK, getValue(prop));
+        else if (p == "C")
+            node.setComment(getValue(prop));
+        else if (p == "CA")
+            // Handled above
+            ;
+        else if (p == "CP")
+            set(node, StringInfo.COPYRIGHT, getValue(prop));
+        else if (p == "CR")
+            parseMarked(node, MarkType.CIRCLE, prop);
+        else if (p == "DT")
+            set(node, StringInfo.DATE, getValue(prop));
+        else if (p == "FF")
+        {
+            int format = -1;
+            try
             {
-                parsePointList(values);
-                node.addStones(WHITE, m_pointList);
+                format = Integer.parseInt(getValue(prop));
             }
-            else if (p == "B")
+            catch (NumberFormatException e)
             {
-                node.setMove(Move.get(BLACK, parsePoint(v)));
             }
-            else if (p == "BL")
+            if (format < 1 || format > 4)
+                setWarning("Unknown SGF file format version");
+        }
+        else if (p == "GM")
+        {
+            // Some SGF files contain GM[], interpret as GM[1]
+            String v = getValue(prop).trim();
+            if (! v.equals("") && ! v.equals("1"))
+                throw getError("Not a Go game");
+        }
+        else if (p == "HA")
+        {
+            // Some SGF files contain HA[], interpret as unknown handicap
+            String v = getValue(prop).trim();
+            if (! v.equals(""))
             {
                 try
                 {
-                    node.setTimeLeft(BLACK, Double.parseDouble(v));
+                    int handicap = Integer.parseInt(v);
+                    if (handicap == 1 || handicap < 0)
+                        setWarning("Invalid handicap value");
+                    else
+                        createGameInfo(node).setHandicap(handicap);
                 }
                 catch (NumberFormatException e)
                 {
+                    setWarning("Invalid handicap value");
                 }
             }
-            else if (p == "BR")
-                set(node, StringInfoColor.RANK, BLACK, v);
-            else if (p == "BT")
-                set(node, StringInfoColor.TEAM, BLACK, v);
-            else if (p == "C")
-                node.setComment(v);
-            else if (p == "CA")
+        }
+        else if (p == "KM")
+            parseKomi(node, getValue(prop));
+        else if (p == "LB")
+        {
+            for (int i = 0; i < prop.m_numberValues; ++i)
             {
-                if (isRoot && m_isFile && m_newCharset == null)
+                String value = getValue(prop.m_firstValue + i);
+                int pos = value.indexOf(':');
+                if (pos > 0)
                 {
-                    m_newCharset = v.trim();
-                    if (Charset.isSupported(m_newCharset))
-                        throw new SgfCharsetChanged();
-                    else
-                        setWarning("Unknown character set \"" + m_newCharset
-                                   + "\"");
+                    GoPoint point = parsePoint(value.substring(0, pos));
+                    String text = value.substring(pos + 1);
+                    node.setLabel(point, text);
                 }
             }
-            else if (p == "CP")
-                set(node, StringInfo.COPYRIGHT, v);
-            else if (p == "CR")
-                parseMarked(node, MarkType.CIRCLE, values);
-            else if (p == "DT")
-                set(node, StringInfo.DATE, v);
-            else if (p == "FF")
+        }
+        else if (p == "MA" || p == "M")
+            parseMarked(node, MarkType.MARK, prop);
+        else if (p == "OB")
+        {
+            try
             {
-                int format = -1;
-                try
-                {
-                    format = Integer.parseInt(v);
-                }
-                catch (NumberFormatException e)
-                {
-                }
-                if (format < 1 || format > 4)
-                    setWarning("Unknown SGF file format version");
+                node.setMovesLeft(BLACK,
+                                  Integer.parseInt(getValue(prop)));
             }
-            else if (p == "GM")
+            catch (NumberFormatException e)
             {
-                // Some SGF files contain GM[], interpret as GM[1]
-                v = v.trim();
-                if (! v.equals("") && ! v.equals("1"))
-                    throw getError("Not a Go game");
             }
-            else if (p == "HA")
+        }
+        else if (p == "OM")
+            parseOvertimeMoves(getValue(prop));
+        else if (p == "OP")
+            parseOvertimePeriod(getValue(prop));
+        else if (p == "OT")
+            parseOvertime(node, getValue(prop));
+        else if (p == "OW")
+        {
+            try
             {
-                // Some SGF files contain HA[], interpret as unknown handicap
-                v = v.trim();
-                if (! v.equals(""))
-                {
-                    try
-                    {
-                        int handicap = Integer.parseInt(v);
-                        if (handicap == 1 || handicap < 0)
-                            setWarning("Invalid handicap value");
-                        else
-                            createGameInfo(node).setHandicap(handicap);
-                    }
-                    catch (NumberFormatException e)
-                    {
-                        setWarning("Invalid handicap value");
-                    }
-                }
+                node.setMovesLeft(WHITE,
+                                  Integer.parseInt(getValue(prop)));
             }
-            else if (p == "KM")
-                parseKomi(node, v);
-            else if (p == "LB")
+            catch (NumberFormatException e)
             {
-                for (int i = 0; i < values.size(); ++i)
-                {
-                    String value = values.get(i);
-                    int pos = value.indexOf(':');
-                    if (pos > 0)
-                    {
-                        GoPoint point = parsePoint(value.substring(0, pos));
-                        String text = value.substring(pos + 1);
-                        node.setLabel(point, text);
-                    }
-                }
             }
-            else if (p == "MA" || p == "M")
-                parseMarked(node, MarkType.MARK, values);
-            else if (p == "OB")
+        }
+        else if (p == "PB")
+            set(node, StringInfoColor.NAME, BLACK, getValue(prop));
+        else if (p == "PW")
+            set(node, StringInfoColor.NAME, WHITE, getValue(prop));
+        else if (p == "PL")
+            node.setPlayer(parseColor(getValue(prop)));
+        else if (p == "RE")
+            set(node, StringInfo.RESULT, getValue(prop));
+        else if (p == "RO")
+            set(node, StringInfo.ROUND, getValue(prop));
+        else if (p == "RU")
+            set(node, StringInfo.RULES, getValue(prop));
+        else if (p == "SO")
+            set(node, StringInfo.SOURCE, getValue(prop));
+        else if (p == "SQ")
+            parseMarked(node, MarkType.SQUARE, prop);
+        else if (p == "SL")
+            parseMarked(node, MarkType.SELECT, prop);
+        else if (p == "TB")
+            parseMarked(node, MarkType.TERRITORY_BLACK, prop);
+        else if (p == "TM")
+            parseTime(node, getValue(prop));
+        else if (p == "TR")
+            parseMarked(node, MarkType.TRIANGLE, prop);
+        else if (p == "US")
+            set(node, StringInfo.USER, getValue(prop));
+        else if (p == "W")
+            node.setMove(Move.get(WHITE, parsePoint(prop.m_firstValue)));
+        else if (p == "TW")
+            parseMarked(node, MarkType.TERRITORY_WHITE, prop);
+        else if (p == "V")
+        {
+            try
             {
-                try
-                {
-                    node.setMovesLeft(BLACK, Integer.parseInt(v));
-                }
-                catch (NumberFormatException e)
-                {
-                }
+                node.setValue(Float.parseFloat(getValue(prop)));
             }
-            else if (p == "OM")
-                parseOvertimeMoves(v);
-            else if (p == "OP")
-                parseOvertimePeriod(v);
-            else if (p == "OT")
-                parseOvertime(node, v);
-            else if (p == "OW")
+            catch (NumberFormatException e)
             {
-                try
-                {
-                    node.setMovesLeft(WHITE, Integer.parseInt(v));
-                }
-                catch (NumberFormatException e)
-                {
-                }
             }
-            else if (p == "PB")
-                set(node, StringInfoColor.NAME, BLACK, v);
-            else if (p == "PW")
-                set(node, StringInfoColor.NAME, WHITE, v);
-            else if (p == "PL")
-                node.setPlayer(parseColor(v));
-            else if (p == "RE")
-                set(node, StringInfo.RESULT, v);
-            else if (p == "RO")
-                set(node, StringInfo.ROUND, v);
-            else if (p == "RU")
-                set(node, StringInfo.RULES, v);
-            else if (p == "SO")
-                set(node, StringInfo.SOURCE, v);
-            else if (p == "SQ")
-                parseMarked(node, MarkType.SQUARE, values);
-            else if (p == "SL")
-                parseMarked(node, MarkType.SELECT, values);
-            else if (p == "TB")
-                parseMarked(node, MarkType.TERRITORY_BLACK, values);
-            else if (p == "TM")
-                parseTime(node, v);
-            else if (p == "TR")
-                parseMarked(node, MarkType.TRIANGLE, values);
-            else if (p == "US")
-                set(node, StringInfo.USER, v);
-            else if (p == "W")
-                node.setMove(Move.get(WHITE, parsePoint(v)));
-            else if (p == "TW")
-                parseMarked(node, MarkType.TERRITORY_WHITE, values);
-            else if (p == "V")
+        }
+        else if (p == "WL")
+        {
+            try
             {
-                try
-                {
-                    node.setValue(Float.parseFloat(v));
-                }
-                catch (NumberFormatException e)
-                {
-                }
+                node.setTimeLeft(WHITE,
+                                 Double.parseDouble(getValue(prop)));
             }
-            else if (p == "WL")
+            catch (NumberFormatException e)
             {
-                try
-                {
-                    node.setTimeLeft(WHITE, Double.parseDouble(v));
-                }
-                catch (NumberFormatException e)
-                {
-                }
             }
-            else if (p == "WR")
-                set(node, StringInfoColor.RANK, WHITE, v);
-            else if (p == "WT")
-                set(node, StringInfoColor.TEAM, WHITE, v);
-            else if (p != "FF" && p != "GN" && p != "AP")
-                node.addSgfProperty(p, values);
         }
+        else if (p == "WR")
+            set(node, StringInfoColor.RANK, WHITE, getValue(prop));
+        else if (p == "WT")
+            set(node, StringInfoColor.TEAM, WHITE, getValue(prop));
+        else if (p != "FF" && p != "GN" && p != "AP")
+            node.addSgfProperty(p, getValues(prop));
     }
 
     private GoColor parseColor(String s) throws SgfError
@@ -615,11 +877,10 @@ public final class SgfReader
         }
     }
 
-    private void parseMarked(Node node, MarkType type,
-                             ArrayList<String> values)
+    private void parseMarked(Node node, MarkType type, Property prop)
         throws SgfError
     {
-        parsePointList(values);
+        parsePointList(prop);
         for (GoPoint p : m_pointList)
             node.addMarked(p, type);
     }
@@ -688,11 +949,21 @@ public final class SgfReader
         }
         else if (s.length() != 2)
             throwInvalidCoordinates(s);
+        return parseStandardPoint(s.charAt(0), s.charAt(1));
+    }
+
+    /** Parse point value in standard encoding.
+        @param c0 First lower case character of the value.
+        @param c1 Second lower case character of the value (must be a
+        letter).
+        @return Point or null, if pass move */
+    private GoPoint parseStandardPoint(int c0, int c1) throws SgfError
+    {
         int boardSize = getBoardSize();
-        if (s.equals("tt") && boardSize <= 19)
+        if (c0 == 't' && c1 == 't' && boardSize <= 19)
             return null;
-        int x = s.charAt(0) - 'a';
-        int y = boardSize - (s.charAt(1) - 'a') - 1;
+        int x = c0 - 'a';
+        int y = boardSize - (c1 - 'a') - 1;
         if (x < 0 || x >= boardSize || y < 0 || y >= boardSize)
         {
             if (x == boardSize && y == -1)
@@ -701,22 +972,55 @@ public final class SgfReader
                 setWarning("Non-standard pass move encoding");
                 return null;
             }
-            throw getError("Coordinates \"" + s + "\" outside board size "
-                           + boardSize);
+            throw getError("Coordinates \"" + (char)c0 + (char)c1
+                           + "\" outside board size " + boardSize);
         }
         return GoPoint.get(x, y);
     }
 
-    private void parsePointList(ArrayList<String> values) throws SgfError
+    /** Parse point value of the current node.
+        @param index The index of the value in m_valueStart and
+        m_valueEnd. */
+    private GoPoint parsePoint(int index) throws SgfError
+    {
+        return parsePoint(m_valueStart[index], m_valueEnd[index]);
+    }
+
+    /** Parse point value from m_values.
+        Avoids creating a string for values in the standard encoding,
+        otherwise equivalent to parsePoint(String).
+        @param start Start of the value in m_values.
+        @param end End of the value in m_values. */
+    private GoPoint parsePoint(int start, int end) throws SgfError
+    {
+        while (start < end && (m_values[start] & 0xff) <= ' ')
+            ++start;
+        while (end > start && (m_values[end - 1] & 0xff) <= ' ')
+            --end;
+        if (end - start == 2)
+        {
+            int c0 = toLowerCase(m_values[start]);
+            int c1 = toLowerCase(m_values[start + 1]);
+            if (c0 < 0x80 && c1 >= 'a' && c1 <= 'z')
+                return parseStandardPoint(c0, c1);
+        }
+        return parsePoint(new String(m_values, start, end - start,
+                                     m_charset));
+    }
+
+    private void parsePointList(Property prop) throws SgfError
     {
         m_pointList.clear();
-        for (int i = 0; i < values.size(); ++i)
+        for (int i = 0; i < prop.m_numberValues; ++i)
         {
-            String value = values.get(i);
-            int pos = value.indexOf(':');
-            if (pos < 0)
+            int start = m_valueStart[prop.m_firstValue + i];
+            int end = m_valueEnd[prop.m_firstValue + i];
+            int pos = start;
+            while (pos < end && m_values[pos] != ':')
+                ++pos;
+            if (pos == end)
             {
-                GoPoint point = parsePoint(value);
+                GoPoint point = parsePoint(start, end);
                 if (point == null)
                     setWarning("Point list argument contains PASS");
                 else
@@ -724,8 +1028,8 @@ public final class SgfReader
             }
             else
             {
-                GoPoint point1 = parsePoint(value.substring(0, pos));
-                GoPoint point2 = parsePoint(value.substring(pos + 1));
+                GoPoint point1 = parsePoint(start, pos);
+                GoPoint point2 = parsePoint(pos + 1, end);
                 if (point1 == null || point2 == null)
                 {
                     setWarning("Compressed point list contains PASS");
@@ -761,25 +1065,139 @@ public final class SgfReader
             m_preByoyomi = preByoyomi;
     }
 
+    /** Check if the bytes below 128 always encode ASCII characters in a
+        charset.
+        Only true for charsets known to have this property. */
+    private static boolean isAsciiCompatible(Charset charset)
+    {
+        String name = charset.name();
+        return (name.equals("UTF-8") || name.equals("US-ASCII")
+                || name.startsWith("ISO-8859-")
+                || name.startsWith("windows-125")
+                || name.startsWith("EUC-") || name.equals("GB2312")
+                || name.startsWith("KOI8-"));
+    }
+
+    private static boolean isLazyProp(String p)
+    {
+        return ! EAGER_PROPS.contains(p);
+    }
+
+    private static boolean isDigitChar(int c)
+    {
+        return ((c >= '0' && c <= '9') || c == '.' || c == '-');
+    }
+
+    private static boolean isWordChar(int c)
+    {
+        return ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c >= 0xa0);
+    }
+
+    /** Read next token.
+        Tokenizes like java.io.StreamTokenizer in its default configuration
+        (which was used in earlier versions of this class), but on bytes
+        instead of characters. Stores the token type in m_ttype, which is
+        a character or TT_WORD, TT_NUMBER or TT_EOF. */
+    private void nextToken()
+    {
+        if (m_pushedBack)
+        {
+            m_pushedBack = false;
+            return;
+        }
+        while (m_pos < m_end)
+        {
+            int c = m_data[m_pos] & 0xff;
+            if (c <= ' ')
+            {
+                ++m_pos;
+                continue;
+            }
+            if (isWordChar(c))
+            {
+                m_wordStart = m_pos;
+                ++m_pos;
+                while (m_pos < m_end
+                       && (isWordChar(m_data[m_pos] & 0xff)
+                           || isDigitChar(m_data[m_pos])))
+                    ++m_pos;
+                m_wordEnd = m_pos;
+                m_ttype = TT_WORD;
+                return;
+            }
+            if (isDigitChar(c))
+            {
+                readNumber();
+                return;
+            }
+            ++m_pos;
+            if (c == '/')
+            {
+                // Comment until end of line
+                while (m_pos < m_end && m_data[m_pos] != '\n'
+                       && m_data[m_pos] != '\r')
+                    ++m_pos;
+                continue;
+            }
+            if (c == '"' || c == '\'')
+                skipQuoted(c);
+            m_ttype = c;
+            return;
+        }
+        m_ttype = TT_EOF;
+    }
+
+    /** Push back the last token.
+        The next call of nextToken() will not change the token type. */
+    private void pushBack()
+    {
+        m_pushedBack = true;
+    }
+
+    /** Read the content of the stream into m_data. */
+    private void readData(InputStream in, long size) throws IOException
+    {
+        if (in instanceof FileInputStream)
+            size = ((FileInputStream)in).getChannel().size();
+        int capacity = 8192;
+        if (size > 0 && size < Integer.MAX_VALUE - 1)
+            // One more byte to detect end of stream without growing
+            capacity = (int)size + 1;
+        byte[] data = new byte[capacity];
+        int length = 0;
+        while (true)
+        {
+            if (length == data.length)
+            {
+                byte[] newData = new byte[2 * data.length];
+                System.arraycopy(data, 0, newData, 0, length);
+                data = newData;
+            }
+            int n = in.read(data, length, data.length - length);
+            if (n < 0)
+                break;
+            length += n;
+        }
+        m_data = data;
+        m_end = length;
+    }
+
     private Node readNext(Node father, boolean isRoot)
-        throws IOException, SgfError, SgfCharsetChanged
+        throws SgfError, SgfCharsetChanged
     {
         if (m_progressShow != null)
         {
             int percent;
-            if (m_size > 0)
-            {
-                long count = m_byteCountInputStream.getCount();
-                percent = (int)(count * 100 / m_size);
-            }
+            if (m_end > 0)
+                percent = (int)((long)m_pos * 100 / m_end);
             else
                 percent = 100;
             if (percent != m_lastPercent)
                 m_progressShow.showProgress(percent);
             m_lastPercent = percent;
         }
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
+        nextToken();
+        int ttype = m_ttype;
         if (ttype == '(')
         {
             Node node = father;
@@ -789,7 +1207,7 @@ public final class SgfReader
         }
         if (ttype == ')')
             return null;
-        if (ttype == StreamTokenizer.TT_EOF)
+        if (ttype == TT_EOF)
         {
             setWarning("Game tree not closed");
             return null;
@@ -803,74 +1221,99 @@ public final class SgfReader
         m_byoyomiMoves = -1;
         m_byoyomi = -1;
         m_preByoyomi = -1;
-        m_props.clear();
+        clearProps();
+        int start = m_pos;
         while (readProp());
-        handleProps(son, isRoot);
+        handleProps(son, isRoot, start);
         setTimeSettings(son);
         return son;
     }
 
-    private boolean readProp() throws IOException, SgfError
+    /** Read a number token.
+        Like StreamTokenizer, accepts a minus sign only at the beginning
+        and a single decimal point. */
+    private void readNumber()
     {
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype == StreamTokenizer.TT_WORD)
+        if (m_data[m_pos] == '-')
         {
-            // Use intern() to allow fast comparsion with ==
-            String p = m_tokenizer.sval.toUpperCase(Locale.ENGLISH).intern();
-            ArrayList<String> values = new ArrayList<String>();
-            String s;
-            while ((s = readValue()) != null)
-                values.add(s);
-            if (values.isEmpty())
+            ++m_pos;
+            if (m_pos >= m_end
+                || (m_data[m_pos] != '.'
+                    && (m_data[m_pos] < '0' || m_data[m_pos] > '9')))
+            {
+                m_ttype = '-';
+                return;
+            }
+        }
+        boolean seenDot = false;
+        while (m_pos < m_end)
+        {
+            byte c = m_data[m_pos];
+            if (c == '.' && ! seenDot)
+                seenDot = true;
+            else if (c < '0' || c > '9')
+                break;
+            ++m_pos;
+        }
+        m_ttype = TT_NUMBER;
+    }
+
+    private boolean readProp() throws SgfError
+    {
+        nextToken();
+        if (m_ttype == TT_WORD)
+        {
+            String p = getPropertyName(m_wordStart, m_wordEnd);
+            int firstValue = m_numberValues;
+            while (readValue());
+            int numberValues = m_numberValues - firstValue;
+            if (numberValues == 0)
             {
                 setWarning("Property \"" + p + "\" has no value");
                 return true;
             }
             p = checkForObsoleteLongProps(p);
-            if (m_props.containsKey(p))
+            // Keep properties sorted by name
+            int i = 0;
+            while (i < m_props.size()
+                   && m_props.get(i).m_name.compareTo(p) < 0)
+                ++i;
+            Property prop;
+            if (i < m_props.size() && m_props.get(i).m_name == p)
+            {
+                prop = m_props.get(i);
                 // Silently accept duplicate properties, as long as they have
                 // the same value (only check for single value properties)
-                if (m_props.get(p).size() > 1 || values.size() > 1
-                    || ! values.get(0).equals(m_props.get(p).get(0)))
+                if (prop.m_numberValues > 1 || numberValues > 1
+                    || ! isValueEqual(prop.m_firstValue, firstValue))
                     setWarning("Duplicate property " + p + " in node");
-            m_props.put(p, values);
+            }
+            else
+            {
+                if (m_unusedProps.isEmpty())
+                    prop = new Property();
+                else
+                    prop = m_unusedProps.remove(m_unusedProps.size() - 1);
+                prop.m_name = p;
+                m_props.add(i, prop);
+            }
+            prop.m_firstValue = firstValue;
+            prop.m_numberValues = numberValues;
             return true;
         }
-        if (ttype != '\n')
-            // Don't pushBack newline, will confuse lineno() (Bug 4942853)
-            m_tokenizer.pushBack();
+        pushBack();
         return false;
     }
 
-    private void readSgf(InputStream in, String charset)
+    private void readSgf(Charset charset)
         throws SgfError, SgfCharsetChanged
     {
         try
         {
+            m_charset = charset;
+            m_pos = 0;
+            m_pushedBack = false;
             m_boardSize = -1;
-            if (m_progressShow != null)
-            {
-                m_byteCountInputStream = new ByteCountInputStream(in);
-                in = m_byteCountInputStream;
-            }
-            InputStreamReader reader;
-            try
-            {
-                reader = new InputStreamReader(in, charset);
-            }
-            catch (UnsupportedEncodingException e)
-            {
-                // Should actually not happen, because this function is only
-                // called with charset ISO-8859-1 (should be supported on every
-                // Java platform according to Charset documentation) or with a
-                // CA property value, which was already checked with
-                // Charset.isSupported()
-                setWarning("Character set \"" + charset + "\" not supported");
-                reader = new InputStreamReader(in);
-            }
-            m_reader = new BufferedReader(reader);
-            m_tokenizer = new StreamTokenizer(m_reader);
             findRoot();
             Node root = readNext(null, true);
             Node node = root;
@@ -881,44 +1324,37 @@ public final class SgfReader
             m_tree = new GameTree(m_boardSize, root);
             applyFixes();
         }
-        catch (FileNotFoundException e)
-        {
-            throw new SgfError("File not found.");
-        }
-        catch (IOException e)
-        {
-            throw new SgfError("IO error");
-        }
         catch (OutOfMemoryError e)
         {
             throw new SgfError("Out of memory");
         }
     }
 
-    private String readValue() throws IOException, SgfError
+    /** Read a property value.
+        Stores the unescaped value in m_values and adds its location to
+        m_valueStart and m_valueEnd.
+        @return false, if the next token is not the start of a value. */
+    private boolean readValue() throws SgfError
     {
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype != '[')
+        nextToken();
+        if (m_ttype != '[')
         {
-            if (ttype != '\n')
-                // Don't pushBack newline, will confuse lineno() (Bug 4942853)
-                m_tokenizer.pushBack();
-            return null;
+            pushBack();
+            return false;
         }
-        m_buffer.setLength(0);
+        int start = m_valuesLength;
         boolean quoted = false;
-        Character last = null;
+        int last = -1;
         while (true)
         {
-            int c = m_reader.read();
-            if (c < 0)
+            if (m_pos >= m_end)
                 throw getError("Property value incomplete");
+            int c = m_data[m_pos++] & 0xff;
             if (quoted)
             {
                 if (c != '\n' && c != '\r')
-                    m_buffer.append((char)c);
-                last = Character.valueOf((char)c);
+                    appendValue(c);
+                last = c;
                 quoted = false;
             }
             else
@@ -931,25 +1367,35 @@ public final class SgfReader
                     // Transform all linebreaks allowed in SGF (LF, CR, LFCR,
                     // CRLF) to a single '\n'
                     boolean isLinebreak = (c == '\n' || c == '\r');
-                    boolean lastLinebreak =
-                        (last != null && (last.charValue() == '\n'
-                                          || last.charValue() == '\r'));
+                    boolean lastLinebreak = (last == '\n' || last == '\r');
                     boolean filterSecondLinebreak =
-                        (isLinebreak && lastLinebreak && c != last.charValue());
+                        (isLinebreak && lastLinebreak && c != last);
                     if (filterSecondLinebreak)
-                        last = null;
+                        last = -1;
                     else
                     {
                         if (isLinebreak)
-                            m_buffer.append('\n');
+                            appendValue('\n');
                         else
-                            m_buffer.append((char)c);
-                        last = Character.valueOf((char)c);
+                            appendValue(c);
+                        last = c;
                     }
                 }
             }
         }
-        return m_buffer.toString();
+        if (m_numberValues == m_valueStart.length)
+        {
+            int[] newStart = new int[2 * m_numberValues];
+            System.arraycopy(m_valueStart, 0, newStart, 0, m_numberValues);
+            m_valueStart = newStart;
+            int[] newEnd = new int[2 * m_numberValues];
+            System.arraycopy(m_valueEnd, 0, newEnd, 0, m_numberValues);
+            m_valueEnd = newEnd;
+        }
+        m_valueStart[m_numberValues] = start;
+        m_valueEnd[m_numberValues] = m_valuesLength;
+        ++m_numberValues;
+        return true;
     }
 
     private void set(Node node, StringInfo type, String value)
@@ -986,6 +1432,28 @@ public final class SgfReader
         m_warnings.add(message);
     }
 
+    /** Skip the rest of a quoted string token.
+        Like StreamTokenizer, a quoted string ends at the closing quote
+        character or at the end of the line. */
+    private void skipQuoted(int quote)
+    {
+        while (m_pos < m_end)
+        {
+            int c = m_data[m_pos++] & 0xff;
+            if (c == quote || c == '\n' || c == '\r')
+                return;
+            if (c == '\\' && m_pos < m_end)
+                ++m_pos;
+        }
+    }
+
+    private static int toLowerCase(byte c)
+    {
+        if (c >= 'A' && c <= 'Z')
+            return c - 'A' + 'a';
+        return c & 0xff;
+    }
+
     private void throwInvalidCoordinates(String s) throws SgfError
     {
         throw getError("Invalid coordinates \"" + s + "\"");
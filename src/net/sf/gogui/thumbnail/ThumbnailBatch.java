@@ -0,0 +1,189 @@
+// ThumbnailBatch.java
+
+package net.sf.gogui.thumbnail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.FileUtil;
+import net.sf.gogui.util.StringUtil;
+
+/** Creates thumbnails for many files in parallel.
+    The thumbnails are created at the standard location like with
+    ThumbnailCreator.create(File); files that already have an up-to-date
+    thumbnail are skipped. Directories are searched recursively for files
+    with extension sgf or xml. The files are passed to the worker threads
+    while the directories are searched, so the memory usage does not depend
+    on the number of files. Each worker thread uses its own
+    ThumbnailCreator, the stone images of the board painter are shared by
+    all threads. */
+public final class ThumbnailBatch
+{
+    public ThumbnailBatch(int numberThreads, boolean verbose)
+    {
+        assert numberThreads > 0;
+        m_numberThreads = numberThreads;
+        m_verbose = verbose;
+    }
+
+    public int getNumberCreated()
+    {
+        return m_numberCreated.get();
+    }
+
+    public int getNumberErrors()
+    {
+        return m_numberErrors.get();
+    }
+
+    public int getNumberSkipped()
+    {
+        return m_numberSkipped.get();
+    }
+
+    /** Create the thumbnails.
+        Errors for single files are printed to standard error and counted,
+        see getNumberErrors().
+        @param files The files or directories. */
+    public void run(ArrayList<File> files) throws ErrorMessage
+    {
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        m_numberWorkers.set(m_numberThreads);
+        for (int i = 0; i < m_numberThreads; ++i)
+        {
+            Thread thread = new Thread(new Worker());
+            thread.start();
+            threads.add(thread);
+        }
+        try
+        {
+            for (File file : files)
+            {
+                if (file.isDirectory())
+                    addDirectory(file);
+                else
+                    put(file);
+            }
+            for (int i = 0; i < m_numberThreads; ++i)
+                put(END);
+            for (Thread thread : threads)
+                thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            for (Thread thread : threads)
+                thread.interrupt();
+            throw new ErrorMessage("Interrupted");
+        }
+    }
+
+    private class Worker
+        implements Runnable
+    {
+        public void run()
+        {
+            try
+            {
+                runFiles();
+            }
+            finally
+            {
+                m_numberWorkers.decrementAndGet();
+            }
+        }
+
+        private void runFiles()
+        {
+            ThumbnailCreator creator = new ThumbnailCreator(m_verbose);
+            while (true)
+            {
+                File file;
+                try
+                {
+                    file = m_queue.take();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                if (file == END)
+                    return;
+                try
+                {
+                    if (creator.create(file))
+                        m_numberCreated.incrementAndGet();
+                    else
+                        m_numberSkipped.incrementAndGet();
+                }
+                catch (ErrorMessage e)
+                {
+                    m_numberErrors.incrementAndGet();
+                    System.err.println(file + ": " + e.getMessage());
+                }
+                catch (Throwable e)
+                {
+                    // Also catch errors like OutOfMemoryError for a single
+                    // large file, they should not end the worker thread
+                    m_numberErrors.incrementAndGet();
+                    System.err.println(file + ":");
+                    StringUtil.printException(e);
+                }
+            }
+        }
+    }
+
+    /** Marker for the end of the files in the queue. */
+    private static final File END = new File("");
+
+    private final boolean m_verbose;
+
+    private final int m_numberThreads;
+
+    private final AtomicInteger m_numberCreated = new AtomicInteger();
+
+    private final AtomicInteger m_numberErrors = new AtomicInteger();
+
+    private final AtomicInteger m_numberSkipped = new AtomicInteger();
+
+    /** Number of worker threads that are still running. */
+    private final AtomicInteger m_numberWorkers = new AtomicInteger();
+
+    private final BlockingQueue<File> m_queue =
+        new ArrayBlockingQueue<File>(1024);
+
+    private void addDirectory(File dir)
+        throws ErrorMessage, InterruptedException
+    {
+        File[] files = dir.listFiles();
+        if (files == null)
+        {
+            m_numberErrors.incrementAndGet();
+            System.err.println(dir + ": Could not read directory");
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files)
+        {
+            if (file.isDirectory())
+                addDirectory(file);
+            else if (FileUtil.hasExtension(file, "sgf")
+                     || FileUtil.hasExtension(file, "xml"))
+                put(file);
+        }
+    }
+
+    /** Add a file to the queue.
+        Waits while the queue is full, but fails if no worker thread is
+        running anymore, which would block forever. */
+    private void put(File file) throws ErrorMessage, InterruptedException
+    {
+        while (! m_queue.offer(file, 1, TimeUnit.SECONDS))
+            if (m_numberWorkers.get() == 0)
+                throw new ErrorMessage("All worker threads terminated");
+    }
+}
@@ -352,10 +352,10 @@ public class Adapter
         }
         register("name", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
-                    cmdName(cmd); } });
+                    cmdName(cmd); } }, true);
         register("version", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
-                    cmdVersion(cmd); } });
+                    cmdVersion(cmd); } }, true);
     }
 
     private Board m_board;
@@ -407,6 +407,9 @@ public class Adapter
         m_board = new Board(size);
         registerCommands(noScore, version1);
         synchronize();
+        // Answer commands that do not use the program, while the program
+        // is busy with a command
+        setConcurrentThreads(1);
     }
 
     private void play(GoColor color, GoPoint point) throws GtpError
@@ -454,7 +457,7 @@ public class Adapter
         if (version1)
             register("protocol_version", new GtpCallback() {
                     public void run(GtpCommand cmd) throws GtpError {
-                        cmdProtocolVersion1(cmd); } });
+                        cmdProtocolVersion1(cmd); } }, true);
         register("set_free_handicap", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
                     cmdSetFreeHandicap(cmd); } });
@@ -26,6 +26,7 @@ import net.sf.gogui.gtp.GtpError;
 import net.sf.gogui.gtp.GtpResponseFormatError;
 import net.sf.gogui.gtp.GtpUtil;
 import net.sf.gogui.gui.AnalyzeShow;
+import net.sf.gogui.gui.GfxFrame;
 import net.sf.gogui.gui.GuiBoard;
 import net.sf.gogui.gui.GuiBoardUtil;
 import net.sf.gogui.gui.GuiUtil;
@@ -110,6 +111,8 @@ public class Display
             m_frame.setTitle("gogui-display");
         }
         registerCommands();
+        // Answer commands like name while waiting for a move
+        setConcurrentThreads(1);
         GuiUtil.setGoIcon(m_frame);
         m_frame.pack();
         m_frame.setVisible(true);
@@ -180,12 +183,10 @@ public class Display
         }
     }
 
-    public void showLiveGfx(final String text)
+    public void showLiveGfx(GfxFrame frame)
     {
         assert SwingUtilities.isEventDispatchThread();
-        m_guiBoard.clearAll();
-        GuiBoardUtil.updateFromGoBoard(m_guiBoard, m_board, false, false);
-        AnalyzeShow.showGfx(text, m_guiBoard, m_statusBar, null);
+        AnalyzeShow.showLiveGfx(frame, m_guiBoard, m_board, m_statusBar);
     }
 
     /** Only accept this board size.
@@ -446,7 +447,7 @@ public class Display
                     cmdKomi(cmd); } });
         register("name", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
-                    cmdName(cmd); } });
+                    cmdName(cmd); } }, true);
         register("place_free_handicap", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
                     cmdPlaceFreeHandicap(cmd); } });
@@ -464,7 +465,7 @@ public class Display
                     cmdUndo(cmd); } });
         register("version", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
-                    cmdVersion(cmd); } });
+                    cmdVersion(cmd); } }, true);
     }
 
     private void send(String cmd, StringBuilder response) throws GtpError
@@ -22,6 +22,8 @@ public final class Main
                 "help",
                 "long",
                 "output:",
+                "reuse",
+                "threads:",
                 "verbose",
                 "version"
             };
@@ -38,7 +40,9 @@ public final class Main
             }
             boolean verbose = opt.contains("verbose");
             boolean longOutput = opt.contains("long");
+            boolean reuse = opt.contains("reuse");
             String output = opt.get("output", "");
+            int numberThreads = opt.getInteger("threads", 1, 1);
             File gtpFile = null;
             if (opt.contains("gtpfile"))
                 gtpFile = new File(opt.get("gtpfile")).getAbsoluteFile();
@@ -53,7 +57,8 @@ public final class Main
             ArrayList<String> tests = new ArrayList<String>(arguments);
             tests.remove(0);
             Regress regress = new Regress(program, tests, output, longOutput,
-                                          verbose, gtpFile);
+                                          verbose, gtpFile, numberThreads,
+                                          reuse);
             System.exit(regress.getResult() ? 0 : 1);
         }
         catch (Throwable t)
@@ -78,6 +83,8 @@ public final class Main
                   "-help         Display this help and exit\n" +
                   "-long         Longer output to standard out\n" +
                   "-output       Output directory\n" +
+                  "-reuse        Reuse program for test files in same dir\n" +
+                  "-threads      Number of test files to run in parallel\n" +
                   "-verbose      Log GTP stream to stderr\n" +
                   "-version      Display this help and exit\n");
     }
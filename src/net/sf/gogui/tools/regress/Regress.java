@@ -12,6 +12,14 @@ import java.io.Reader;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import net.sf.gogui.gtp.GtpClient;
@@ -23,17 +31,41 @@ import net.sf.gogui.util.HtmlUtil;
 import net.sf.gogui.util.Platform;
 import net.sf.gogui.util.StringUtil;
 
-/** Runs GTP regression tests. */
+/** Runs GTP regression tests.
+    Test files can be run in parallel by several threads, each using its
+    own instance of the Go program. The output files are the same as in a
+    sequential run, the output to standard out of each test file is
+    buffered and printed in the order of the test files.
+    Optionally, an instance of the Go program is reused for the next test
+    file after sending a clear_board command. Reuse is only safe for
+    programs, whose state does not depend on previous test files apart
+    from the board, and only done for test files in the same directory,
+    because the program is run in the directory of the test file. */
 public class Regress
     implements GtpClient.IOCallback
 {
     /** Constructor.
-        @param gtpFile File with GTP commands to send at startup or
-        <code>null</code> for no file. */
+        Runs the tests sequentially without reusing the program. */
     public Regress(String program, ArrayList<String> tests, String output,
                    boolean longOutput, boolean verbose, File gtpFile)
         throws Exception
     {
+        this(program, tests, output, longOutput, verbose, gtpFile, 1,
+             false);
+    }
+
+    /** Constructor.
+        @param gtpFile File with GTP commands to send at startup or
+        <code>null</code> for no file.
+        @param numberThreads Number of test files to run in parallel.
+        @param reuse Reuse instances of the program for the next test file
+        in the same directory. */
+    public Regress(String program, ArrayList<String> tests, String output,
+                   boolean longOutput, boolean verbose, File gtpFile,
+                   int numberThreads, boolean reuse)
+        throws Exception
+    {
+        assert numberThreads > 0;
         tests = RegressUtil.expandTestSuites(tests);
         RegressUtil.checkFiles(tests);
         m_result = true;
@@ -41,6 +73,8 @@ public class Regress
         m_longOutput = longOutput;
         m_verbose = verbose;
         m_gtpFile = gtpFile;
+        m_reuse = reuse;
+        m_stdOut = null;
         if (output.equals(""))
             m_prefix = "";
         else
@@ -53,19 +87,43 @@ public class Regress
             m_prefix = output + File.separator;
         }
         initOutNames(tests);
-        for (int i = 0; i < tests.size(); ++i)
+        if (numberThreads > 1)
+            runParallel(tests, numberThreads);
+        else
         {
-            String test = tests.get(i);
-            if (tests.size() > 1)
-                m_outPrefix = test + " ";
-            else
-                m_outPrefix = "";
-            runTest(test);
+            try
+            {
+                for (int i = 0; i < tests.size(); ++i)
+                {
+                    String test = tests.get(i);
+                    m_outPrefix = getOutPrefix(tests, test);
+                    m_testSummaries.add(runTest(test));
+                }
+            }
+            finally
+            {
+                quitProgram();
+            }
         }
         writeSummary();
         writeData();
     }
 
+    /** Constructor for running test files in a thread of a parallel run.
+        The output to standard out is buffered. */
+    private Regress(Regress regress)
+    {
+        m_result = true;
+        m_program = regress.m_program;
+        m_longOutput = regress.m_longOutput;
+        m_verbose = regress.m_verbose;
+        m_gtpFile = regress.m_gtpFile;
+        m_reuse = regress.m_reuse;
+        m_prefix = regress.m_prefix;
+        m_outNames = regress.m_outNames;
+        m_stdOut = new StringBuilder();
+    }
+
     /** Return true if tests completed with no unexpected failures. */
     public boolean getResult()
     {
@@ -158,6 +216,15 @@ public class Regress
 
         public double m_cpuTime;
 
+        /** Name of the program. */
+        public String m_name;
+
+        /** Version of the program. */
+        public String m_version;
+
+        /** Buffered output to standard out in a parallel run. */
+        public String m_stdOut;
+
         public int getNumberPasses()
         {
             return m_expectedPasses + m_unexpectedPasses;
@@ -166,6 +233,8 @@ public class Regress
 
     private boolean m_lastError;
 
+    private final boolean m_reuse;
+
     private final boolean m_longOutput;
 
     private boolean m_result;
@@ -233,6 +302,13 @@ public class Regress
 
     private String m_version;
 
+    /** Buffer for output to standard out.
+        Null, if output is printed immediately. */
+    private final StringBuilder m_stdOut;
+
+    /** Directory of the last test file, if the program can be reused. */
+    private File m_reuseDir;
+
     /** Name of m_outFile and the summary file of the test without directory
         and file extension for the all tests. */
     private TreeMap<String,String> m_outNames;
@@ -244,6 +320,10 @@ public class Regress
 
     private GtpClient m_gtp;
 
+    /** Regress instances that run the test files in a parallel run. */
+    private final BlockingQueue<Regress> m_workers =
+        new LinkedBlockingQueue<Regress>();
+
     private void checkLastSgf(String line)
     {
         String regex =
@@ -283,6 +363,7 @@ public class Regress
                     "</body>\n" +
                     "</html>\n");
         m_out.close();
+        m_out = null;
     }
 
     private int getId(String line)
@@ -301,6 +382,28 @@ public class Regress
         }
     }
 
+    private static String getOutPrefix(ArrayList<String> tests, String test)
+    {
+        if (tests.size() > 1)
+            return test + " ";
+        return "";
+    }
+
+    private static <T> T getResult(Future<T> task) throws Exception
+    {
+        try
+        {
+            return task.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw (Exception)cause;
+        }
+    }
+
     private TestSummary getTestSummary(long timeMillis, double cpuTime)
     {
         TestSummary summary = new TestSummary();
@@ -309,6 +412,8 @@ public class Regress
         summary.m_timeMillis = timeMillis;
         summary.m_cpuTime = cpuTime;
         summary.m_otherErrors = m_otherErrors;
+        summary.m_name = m_name;
+        summary.m_version = m_version;
         for (int i = 0; i < m_tests.size(); ++i)
         {
             Test t = m_tests.get(i);
@@ -334,14 +439,14 @@ public class Regress
             {
                 printOutLine("fail", m_lastFullResponse);
                 if (m_lastResponse.equals(""))
-                    System.out.println(m_outPrefix
-                                       + Integer.toString(m_lastCommandId)
-                                       + " unexpected FAIL");
+                    printStdOut(m_outPrefix
+                                + Integer.toString(m_lastCommandId)
+                                + " unexpected FAIL");
                 else
-                    System.out.println(m_outPrefix
-                                       + Integer.toString(m_lastCommandId)
-                                       + " unexpected FAIL: '"
-                                       + m_lastResponse + "'");
+                    printStdOut(m_outPrefix
+                                + Integer.toString(m_lastCommandId)
+                                + " unexpected FAIL: '"
+                                + m_lastResponse + "'");
                 fail = true;
             }
             else
@@ -480,39 +585,39 @@ public class Regress
         {
             // Output compatible with eval.sh in GNU Go
             if (fail && ! expectedFail)
-                System.out.println(m_outPrefix
-                                   + Integer.toString(m_lastCommandId)
-                                   + " FAILED: Correct '"
-                                   + expectedResponse + "', got '" + response
-                                   + "'");
+                printStdOut(m_outPrefix
+                            + Integer.toString(m_lastCommandId)
+                            + " FAILED: Correct '"
+                            + expectedResponse + "', got '" + response
+                            + "'");
             else if (fail && expectedFail)
-                System.out.println(m_outPrefix
-                                   + Integer.toString(m_lastCommandId)
-                                   + " failed: Correct '"
-                                   + expectedResponse + "', got '" + response
-                                   + "'");
+                printStdOut(m_outPrefix
+                            + Integer.toString(m_lastCommandId)
+                            + " failed: Correct '"
+                            + expectedResponse + "', got '" + response
+                            + "'");
             else if (! fail && expectedFail)
-                System.out.println(m_outPrefix
-                                   + Integer.toString(m_lastCommandId)
-                                   + " PASSED");
+                printStdOut(m_outPrefix
+                            + Integer.toString(m_lastCommandId)
+                            + " PASSED");
             else if (! fail && ! expectedFail)
-                System.out.println(m_outPrefix
-                                   + Integer.toString(m_lastCommandId)
-                                   + " passed");
+                printStdOut(m_outPrefix
+                            + Integer.toString(m_lastCommandId)
+                            + " passed");
         }
         else
         {
             // Output compatible with regress.sh in GNU Go
             if (fail && ! expectedFail)
-                System.out.println(m_outPrefix
-                                   + Integer.toString(m_lastCommandId)
-                                   + " unexpected FAIL: Correct '"
-                                   + expectedResponse + "', got '" + response
-                                   + "'");
+                printStdOut(m_outPrefix
+                            + Integer.toString(m_lastCommandId)
+                            + " unexpected FAIL: Correct '"
+                            + expectedResponse + "', got '" + response
+                            + "'");
             else if (! fail && expectedFail)
-                System.out.println(m_outPrefix
-                                   + Integer.toString(m_lastCommandId)
-                                   + " unexpected PASS!");
+                printStdOut(m_outPrefix
+                            + Integer.toString(m_lastCommandId)
+                            + " unexpected PASS!");
         }
         m_tests.add(new Test(m_lastCommandId, m_lastCommand, fail,
                              expectedFail, expectedResponse, response,
@@ -594,7 +699,7 @@ public class Regress
 
     private synchronized void printOut(String style, String line, int id)
     {
-        if (line == null || line.length() == 0)
+        if (line == null || line.length() == 0 || m_out == null)
             return;
         line = line.replaceAll("&", "&amp;");
         line = line.replaceAll(">", "&gt;");
@@ -646,6 +751,24 @@ public class Regress
         printOut(style, line, id);
     }
 
+    private synchronized void printStdOut(String line)
+    {
+        if (m_stdOut == null)
+            System.out.println(line);
+        else
+        {
+            m_stdOut.append(line);
+            m_stdOut.append('\n');
+        }
+    }
+
+    private synchronized String takeStdOut()
+    {
+        String result = m_stdOut.toString();
+        m_stdOut.setLength(0);
+        return result;
+    }
+
     private synchronized void printOutSeparator()
     {
         if (m_currentStyle != null)
@@ -740,7 +863,106 @@ public class Regress
         }
     }
 
-    private void runTest(String test) throws Exception
+    /** Run the test files in parallel.
+        Each thread takes a Regress instance from m_workers, which keeps its
+        instance of the program for reuse, while running a test file. The
+        summaries and the buffered output to standard out are collected in
+        the order of the test files. */
+    private void runParallel(final ArrayList<String> tests,
+                             int numberThreads)
+        throws Exception
+    {
+        numberThreads = Math.min(numberThreads, tests.size());
+        for (int i = 0; i < numberThreads; ++i)
+            m_workers.add(new Regress(this));
+        ExecutorService executor =
+            Executors.newFixedThreadPool(numberThreads);
+        try
+        {
+            ArrayList<Future<TestSummary>> results =
+                new ArrayList<Future<TestSummary>>();
+            for (int i = 0; i < tests.size(); ++i)
+            {
+                final String test = tests.get(i);
+                results.add(executor.submit(new Callable<TestSummary>() {
+                        public TestSummary call() throws Exception
+                        {
+                            Regress worker = m_workers.take();
+                            try
+                            {
+                                worker.m_outPrefix = getOutPrefix(tests, test);
+                                TestSummary summary = worker.runTest(test);
+                                summary.m_stdOut = worker.takeStdOut();
+                                return summary;
+                            }
+                            finally
+                            {
+                                m_workers.add(worker);
+                            }
+                        }
+                    }));
+            }
+            for (Future<TestSummary> result : results)
+            {
+                TestSummary summary = getResult(result);
+                System.out.print(summary.m_stdOut);
+                m_testSummaries.add(summary);
+                m_name = summary.m_name;
+                m_version = summary.m_version;
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            for (Regress worker : m_workers)
+            {
+                worker.quitProgram();
+                if (! worker.m_result)
+                    m_result = false;
+            }
+        }
+    }
+
+    /** Start the program or reuse the running instance.
+        @param testFileDir The directory of the test file, which is used as
+        the working directory of the program. */
+    private void startProgram(File testFileDir) throws GtpError
+    {
+        if (m_gtp != null)
+        {
+            if (! m_gtp.isProgramDead() && testFileDir.equals(m_reuseDir))
+                return;
+            quitProgram();
+        }
+        m_gtp = new GtpClient(m_program, testFileDir, m_verbose, this);
+        m_reuseDir = testFileDir;
+    }
+
+    /** Quit the program kept running for reuse, if any. */
+    private void quitProgram()
+    {
+        if (m_gtp == null)
+            return;
+        if (! m_gtp.isProgramDead())
+        {
+            try
+            {
+                m_gtp.send("quit");
+            }
+            catch (GtpError e)
+            {
+            }
+            m_gtp.close();
+        }
+        m_gtp.waitForExit();
+        m_gtp = null;
+        m_reuseDir = null;
+    }
+
+    /** Run a test file.
+        @return The summary of the test file. */
+    private TestSummary runTest(String test) throws Exception
     {
         m_tests.clear();
         m_otherErrors = 0;
@@ -755,7 +977,7 @@ public class Regress
         BufferedReader reader = new BufferedReader(fileReader);
         try
         {
-            m_gtp = new GtpClient(m_program, testFileDir, m_verbose, this);
+            startProgram(testFileDir);
             if (m_gtpFile != null)
                 sendGtpFile();
             m_lastSgf = null;
@@ -784,16 +1006,31 @@ public class Regress
                 handleLastResponse();
                 m_lastFullResponse = null;
             }
-            if (! m_gtp.isProgramDead())
+            if (m_reuse && ! m_gtp.isProgramDead())
             {
-                send("quit");
-                m_gtp.close();
+                try
+                {
+                    send("clear_board");
+                }
+                catch (GtpError e)
+                {
+                    quitProgram();
+                }
+            }
+            else
+            {
+                if (! m_gtp.isProgramDead())
+                {
+                    send("quit");
+                    m_gtp.close();
+                }
+                m_gtp.waitForExit();
+                m_gtp = null;
             }
-            m_gtp.waitForExit();
             finishOutFile();
             TestSummary testSummary = getTestSummary(timeMillis, cpuTime);
-            m_testSummaries.add(testSummary);
             writeTestSummary(testSummary);
+            return testSummary;
         }
         finally
         {
@@ -1023,12 +1260,12 @@ public class Regress
         if (m_longOutput)
         {
             // Output compatible with eval.sh in GNU Go
-            System.out.println("Summary: " + summary.getNumberPasses()
-                               + "/" + summary.m_numberTests + " passes. "
-                               + summary.m_unexpectedPasses
-                               + " unexpected passes, "
-                               + summary.m_unexpectedFails
-                               + " unexpected failures");
+            printStdOut("Summary: " + summary.getNumberPasses()
+                        + "/" + summary.m_numberTests + " passes. "
+                        + summary.m_unexpectedPasses
+                        + " unexpected passes, "
+                        + summary.m_unexpectedFails
+                        + " unexpected failures");
         }
         File file = new File(m_prefix + m_outName + ".html");
         PrintStream out = new PrintStream(file);
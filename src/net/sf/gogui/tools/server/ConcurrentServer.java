@@ -0,0 +1,327 @@
+// ConcurrentServer.java
+
+package net.sf.gogui.tools.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/** Server for many simultaneous connections.
+    Each connection is served in its own thread with a process from a
+    ProcessPool. Connections that arrive while all processes are in use
+    wait for a free process, up to a maximum number of waiting connections;
+    further connections are closed immediately. The streams are copied with
+    blocking writes, so a client that does not read the responses blocks
+    the output of its program instead of filling a buffer in the server.
+    The server logs each connection with its waiting time and the number
+    of bytes transferred, followed by the totals of all connections. */
+final class ConcurrentServer
+{
+    /** Constructor.
+        @param verbose Log everything sent and received to stderr
+        @param program Command line for Go program
+        @param port Port number
+        @param timeout Close connections after this number of seconds
+        without data in either direction, zero for no timeout.
+        @param numberProcesses Number of processes of the program.
+        @param maxWaiting Maximum number of connections waiting for a
+        process. */
+    public ConcurrentServer(boolean verbose, String program, int port,
+                            int timeout, int numberProcesses,
+                            int maxWaiting)
+    {
+        m_verbose = verbose;
+        m_program = program;
+        m_port = port;
+        m_timeout = timeout;
+        m_numberProcesses = numberProcesses;
+        m_maxWaiting = maxWaiting;
+    }
+
+    /** Run the server.
+        Does not return unless an error occurs. */
+    public void run() throws IOException
+    {
+        ProcessPool pool = new ProcessPool(m_program, m_numberProcesses);
+        ServerSocket serverSocket = new ServerSocket(m_port, BACKLOG);
+        System.err.println("gogui-server: Waiting for connections on port "
+                           + m_port + " with " + m_numberProcesses
+                           + " processes");
+        try
+        {
+            while (true)
+            {
+                Socket socket = serverSocket.accept();
+                if (! addConnection())
+                {
+                    log(socket, "rejected, too many connections");
+                    socket.close();
+                    continue;
+                }
+                Thread thread = new Thread(new Connection(socket, pool));
+                thread.start();
+            }
+        }
+        finally
+        {
+            serverSocket.close();
+            pool.close();
+        }
+    }
+
+    private class Connection
+        implements Runnable
+    {
+        public Connection(Socket socket, ProcessPool pool)
+        {
+            m_socket = socket;
+            m_pool = pool;
+            m_lastActivity = System.currentTimeMillis();
+        }
+
+        public void run()
+        {
+            long startTime = System.currentTimeMillis();
+            Process process;
+            try
+            {
+                process = m_pool.acquire();
+            }
+            catch (Exception e)
+            {
+                log(m_socket, "could not start program: " + e.getMessage());
+                endConnection(false, 0, 0, 0);
+                close();
+                return;
+            }
+            long waitTime = System.currentTimeMillis() - startTime;
+            startConnection();
+            log(m_socket, "connected, waited " + waitTime + " ms");
+            try
+            {
+                serve(process);
+            }
+            finally
+            {
+                m_pool.release(process);
+                close();
+                endConnection(true, waitTime, m_bytesIn, m_bytesOut);
+                log(m_socket, "closed, " + m_bytesIn + " bytes in, "
+                    + m_bytesOut + " bytes out (" + getStatistics() + ")");
+            }
+        }
+
+        private volatile long m_lastActivity;
+
+        private long m_bytesIn;
+
+        private long m_bytesOut;
+
+        private final ProcessPool m_pool;
+
+        private final Socket m_socket;
+
+        private void close()
+        {
+            try
+            {
+                m_socket.close();
+            }
+            catch (IOException e)
+            {
+            }
+        }
+
+        /** Copy the output of the program to the client.
+            Destroys the process if the client cannot be written to. */
+        private void copyToClient(Process process)
+        {
+            byte buffer[] = new byte[BUFFER_SIZE];
+            try
+            {
+                InputStream in = process.getInputStream();
+                OutputStream out = m_socket.getOutputStream();
+                while (true)
+                {
+                    int n = in.read(buffer);
+                    if (n < 0)
+                        break;
+                    if (m_verbose)
+                        System.err.write(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    out.flush();
+                    m_bytesOut += n;
+                    m_lastActivity = System.currentTimeMillis();
+                }
+                m_socket.shutdownOutput();
+            }
+            catch (IOException e)
+            {
+                if (m_verbose)
+                    log(m_socket, e.getMessage());
+                process.destroy();
+            }
+        }
+
+        /** Copy the input of the client to the program.
+            Returns if the client closes the connection or is idle for
+            longer than the timeout. */
+        private void copyToProgram(Process process) throws IOException
+        {
+            byte buffer[] = new byte[BUFFER_SIZE];
+            InputStream in = m_socket.getInputStream();
+            OutputStream out = process.getOutputStream();
+            while (true)
+            {
+                int n;
+                try
+                {
+                    n = in.read(buffer);
+                }
+                catch (SocketTimeoutException e)
+                {
+                    // The program may still be sending a response
+                    long idleTime =
+                        System.currentTimeMillis() - m_lastActivity;
+                    if (idleTime < m_timeout * 1000L)
+                        continue;
+                    log(m_socket, "idle timeout");
+                    process.destroy();
+                    return;
+                }
+                if (n < 0)
+                    break;
+                if (m_verbose)
+                    System.err.write(buffer, 0, n);
+                out.write(buffer, 0, n);
+                out.flush();
+                m_bytesIn += n;
+                m_lastActivity = System.currentTimeMillis();
+            }
+            // Programs supporting GTP exit at the end of their input
+            out.close();
+        }
+
+        private void serve(final Process process)
+        {
+            Thread toClient = new Thread() {
+                    public void run()
+                    {
+                        copyToClient(process);
+                    }
+                };
+            toClient.start();
+            try
+            {
+                if (m_timeout > 0)
+                    m_socket.setSoTimeout(m_timeout * 1000);
+                copyToProgram(process);
+            }
+            catch (IOException e)
+            {
+                if (m_verbose)
+                    log(m_socket, e.getMessage());
+                process.destroy();
+            }
+            try
+            {
+                toClient.join();
+                process.waitFor();
+            }
+            catch (InterruptedException e)
+            {
+                process.destroy();
+            }
+        }
+    }
+
+    private static final int BACKLOG = 50;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final boolean m_verbose;
+
+    private final int m_maxWaiting;
+
+    private final int m_numberProcesses;
+
+    private final int m_port;
+
+    private final int m_timeout;
+
+    private final String m_program;
+
+    /** Number of finished connections. */
+    private int m_connections;
+
+    private int m_active;
+
+    private int m_waiting;
+
+    private int m_rejected;
+
+    private long m_totalWaitTime;
+
+    private long m_maxWaitTime;
+
+    private long m_totalBytesIn;
+
+    private long m_totalBytesOut;
+
+    /** Add a connection that waits for a process.
+        @return false, if the connection is rejected, because the maximum
+        number of waiting connections is reached. */
+    private synchronized boolean addConnection()
+    {
+        if (m_active + m_waiting >= m_numberProcesses + m_maxWaiting)
+        {
+            ++m_rejected;
+            return false;
+        }
+        ++m_waiting;
+        return true;
+    }
+
+    private synchronized void endConnection(boolean wasActive,
+                                            long waitTime, long bytesIn,
+                                            long bytesOut)
+    {
+        if (! wasActive)
+        {
+            --m_waiting;
+            return;
+        }
+        --m_active;
+        ++m_connections;
+        m_totalWaitTime += waitTime;
+        m_maxWaitTime = Math.max(m_maxWaitTime, waitTime);
+        m_totalBytesIn += bytesIn;
+        m_totalBytesOut += bytesOut;
+    }
+
+    private synchronized String getStatistics()
+    {
+        long averageWaitTime =
+            (m_connections == 0 ? 0 : m_totalWaitTime / m_connections);
+        return "connections " + m_connections + ", active " + m_active
+            + ", waiting " + m_waiting + ", rejected " + m_rejected
+            + ", average wait " + averageWaitTime + " ms, max wait "
+            + m_maxWaitTime + " ms, bytes in " + m_totalBytesIn
+            + ", bytes out " + m_totalBytesOut;
+    }
+
+    private static void log(Socket socket, String message)
+    {
+        System.err.println("gogui-server: " + socket.getInetAddress() + ":"
+                           + socket.getPort() + " " + message);
+    }
+
+    private synchronized void startConnection()
+    {
+        --m_waiting;
+        ++m_active;
+    }
+}
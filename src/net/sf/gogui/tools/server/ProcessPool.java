@@ -0,0 +1,148 @@
+// ProcessPool.java
+
+package net.sf.gogui.tools.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import net.sf.gogui.util.ProcessUtil;
+import net.sf.gogui.util.StringUtil;
+
+/** Pool of pre-started processes of a Go program.
+    The number of processes (idle, in use or starting) is limited to a
+    maximum. Each process is used for one connection only, because the
+    state of the program after a connection is unknown. When a process is
+    released, a new process is started in the background, so that the next
+    connection does not have to wait until the program has started. If
+    all processes are in use, acquire() waits until a process is
+    released. */
+final class ProcessPool
+{
+    /** Constructor.
+        Starts all processes. Throws an exception if the first process
+        cannot be started.
+        @param program The command line of the program.
+        @param maxProcesses The maximum number of processes. */
+    public ProcessPool(String program, int maxProcesses) throws IOException
+    {
+        assert maxProcesses > 0;
+        m_command = StringUtil.splitArguments(program);
+        m_maxProcesses = maxProcesses;
+        m_numberProcesses = maxProcesses;
+        m_idle.add(startProcess());
+        for (int i = 1; i < maxProcesses; ++i)
+            startInBackground();
+    }
+
+    /** Get a process for exclusive use.
+        Must be returned with release() after use. */
+    public Process acquire() throws IOException, InterruptedException
+    {
+        synchronized (this)
+        {
+            while (true)
+            {
+                if (! m_idle.isEmpty())
+                {
+                    Process process = m_idle.remove(0);
+                    if (process.isAlive())
+                        return process;
+                    System.err.println("gogui-server: program died,"
+                                       + " restarting program");
+                    process.destroy();
+                    --m_numberProcesses;
+                }
+                if (m_numberProcesses < m_maxProcesses)
+                    break;
+                wait();
+            }
+            ++m_numberProcesses;
+        }
+        // Start the process without holding the lock, starting a program
+        // can take a while
+        try
+        {
+            return startProcess();
+        }
+        catch (IOException e)
+        {
+            synchronized (this)
+            {
+                --m_numberProcesses;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /** Destroy all processes that are not in use. */
+    public synchronized void close()
+    {
+        m_isClosed = true;
+        for (Process process : m_idle)
+            process.destroy();
+        m_numberProcesses -= m_idle.size();
+        m_idle.clear();
+    }
+
+    /** Return a process acquired with acquire().
+        Destroys the process, if it is still running, and starts a new
+        process in the background. */
+    public void release(Process process)
+    {
+        process.destroy();
+        startInBackground();
+    }
+
+    private boolean m_isClosed;
+
+    private final int m_maxProcesses;
+
+    /** Number of processes that are idle, in use or starting. */
+    private int m_numberProcesses;
+
+    private final String[] m_command;
+
+    private final ArrayList<Process> m_idle = new ArrayList<Process>();
+
+    /** Start a process in a new thread and add it to the idle processes.
+        The process is already counted in m_numberProcesses. */
+    private void startInBackground()
+    {
+        Thread thread = new Thread() {
+                public void run()
+                {
+                    Process process = null;
+                    try
+                    {
+                        process = startProcess();
+                    }
+                    catch (IOException e)
+                    {
+                        System.err.println("gogui-server: " + e.getMessage());
+                    }
+                    synchronized (ProcessPool.this)
+                    {
+                        if (process == null)
+                            --m_numberProcesses;
+                        else if (m_isClosed)
+                        {
+                            process.destroy();
+                            --m_numberProcesses;
+                        }
+                        else
+                            m_idle.add(process);
+                        ProcessPool.this.notifyAll();
+                    }
+                }
+            };
+        thread.start();
+    }
+
+    private Process startProcess() throws IOException
+    {
+        Process process = Runtime.getRuntime().exec(m_command);
+        Thread stdErrThread = new ProcessUtil.StdErrThread(process);
+        stdErrThread.start();
+        return process;
+    }
+}
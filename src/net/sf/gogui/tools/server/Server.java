@@ -88,7 +88,9 @@ public final class Server
                 "config:",
                 "help",
                 "loop",
+                "pool:",
                 "port:",
+                "queue:",
                 "remote:",
                 "timeout:",
                 "user:",
@@ -103,6 +105,17 @@ public final class Server
                 System.err.println("Option -loop can't be used with -remote");
                 System.exit(1);
             }
+            if (opt.contains("pool") && (loop || opt.contains("remote")))
+            {
+                System.err.println("Option -pool can't be used with -loop"
+                                   + " or -remote");
+                System.exit(1);
+            }
+            if (opt.contains("queue") && ! opt.contains("pool"))
+            {
+                System.err.println("Option -queue only valid with -pool");
+                System.exit(1);
+            }
             if (opt.contains("help"))
             {
                 printUsage(System.out);
@@ -134,6 +147,14 @@ public final class Server
                 System.exit(1);
             }
             String program = arguments.get(0);
+            if (opt.contains("pool"))
+            {
+                int numberProcesses = opt.getInteger("pool", 1, 1);
+                int maxWaiting = opt.getInteger("queue", 16, 0);
+                new ConcurrentServer(verbose, program, port, timeout,
+                                     numberProcesses, maxWaiting).run();
+                return;
+            }
             new Server(verbose, loop, program, remoteHost, port, userFile,
                        timeout);
         }
@@ -182,7 +203,9 @@ public final class Server
                   "-config  config file\n" +
                   "-help    display this help and exit\n" +
                   "-loop    restart after connection finished\n" +
+                  "-pool    processes for concurrent connections\n" +
                   "-port    port of network connection\n" +
+                  "-queue   max connections waiting for a process (-pool)\n" +
                   "-remote  connect to remote host\n" +
                   "-timeout timeout seconds for closing idle connections\n" +
                   "-user    login information for remote host\n" +
@@ -10,6 +10,16 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.text.DecimalFormat;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
@@ -26,12 +36,28 @@ import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.util.Table;
 import net.sf.gogui.util.TableUtil;
 
-/** Produce HTML reports from the table generated by Statistics. */
+/** Produce HTML reports from the table generated by Statistics.
+    The plots are rendered and the game pages are written by the tasks of a
+    thread pool, while the summary and command pages are written by the
+    calling thread. The digests of all plots are stored in a file with
+    extension plots.dat. In incremental mode, plots with the same digest as
+    in the last run are not rendered again, if the image file exists. */
 public class Analyze
 {
-    public Analyze(String fileName, String output, int precision)
+    /** Constructor.
+        @param fileName The result table.
+        @param output The filename prefix or directory for the output
+        files. Empty string uses the name of the result table.
+        @param precision The floating point precision.
+        @param numberThreads The number of threads for rendering the
+        plots and writing the game pages.
+        @param incremental Only render plots that changed since the last
+        run. */
+    public Analyze(String fileName, String output, int precision,
+                   int numberThreads, boolean incremental)
         throws Exception
     {
+        assert numberThreads > 0;
         if (output.equals(""))
             m_output = FileUtil.removeExtension(new File(fileName), "dat");
         else if (new File(output).isDirectory())
@@ -43,6 +69,7 @@ public class Analyze
         else
             m_output = output;
         m_precision = precision;
+        m_incremental = incremental;
         m_table = new Table();
         m_table.read(new File(fileName));
         if (m_table.getNumberColumns() < 2
@@ -52,81 +79,29 @@ public class Analyze
         m_commands = new ArrayList<String>();
         for (int i = 2; i < m_table.getNumberColumns(); ++i)
             m_commands.add(m_table.getColumnTitle(i));
-        m_commandStatistics =
-            new ArrayList<CommandStatistics>(m_commands.size());
-        File file = new File(m_output + ".html");
-        initGameData();
-        findGameGlobalCommands();
-        PrintStream out = new PrintStream(file);
-        startHtml(out, "Statistics Summary");
-        startInfo(out, "Statistics Summary");
-        writeInfo(out);
-        endInfo(out);
-        out.print("<table border=\"0\">\n" +
-                  "<tr><td>\n");
-        writePlot(out, "<small>positions</small>",
-                  getCountFile().getName(),
-                  "<a href=\"" + getCountDataFile().getName()
-                  + "\"><small>data</small></a>");
-        out.print("</td></tr>\n");
-        for (int i = 0; i < m_commands.size(); ++i)
+        if (m_incremental)
+            readDigests();
+        m_pool = new ForkJoinPool(numberThreads);
+        try
         {
-            CommandStatistics commandStatistics = computeCommandStatistics(i);
-            m_commandStatistics.add(commandStatistics);
-            if (commandStatistics.getCount() > 0
-                && ! commandStatistics.m_isBeginCommand)
-            {
-                String command = getCommand(i);
-                Table table = commandStatistics.m_tableAtMove;
-                Plot plot = generatePlotMove(getImgWidth(m_maxMove),
-                                             getColor(command));
-                plot.setFormatY(commandStatistics.m_format);
-                File pngFile = getAvgPlotFile(i);
-                File dataFile = getAvgDataFile(i);
-                plot.setPlotStyleNoLines();
-                plot.plot(pngFile, table, "Move", "Mean", "Error");
-                FileWriter writer = new FileWriter(dataFile);
-                try
-                {
-                    table.save(writer, false);
-                }
-                finally
-                {
-                    writer.close();
-                }
-                out.print("<tr><td>\n");
-                writePlot(out, getCommandLink(i), pngFile.getName(),
-                          "<a href=\"" + dataFile.getName()
-                          + "\"><small>data</small></a>");
-                out.print("</td></tr>\n");
-            }
+            initGameData();
+            findGameGlobalCommands();
+            m_commandStatistics = computeCommandStatistics();
+            writeHtml();
+            waitForTasks();
         }
-        out.print("</table>\n" +
-                  "<hr>\n" +
-                  "<table border=\"0\" cellpadding=\"0\">\n" +
-                  "<tr>\n");
-        int n = 0;
-        for (int i = 0; i < m_commands.size(); ++i)
+        finally
         {
-            CommandStatistics commandStatistics = getCommandStatistics(i);
-            if (commandStatistics.getCount() == 0)
-                continue;
-            out.print("<td valign=\"bottom\" bgcolor=\"" + COLOR_HEADER
-                      + "\">\n");
-            writePlot(out, getCommandLink(i), getHistoFile(i).getName(), "");
-            out.print("</td>\n");
-            ++n;
-            if (n % 5 == 0)
-                out.print("</tr><tr>\n");
+            m_pool.shutdownNow();
         }
-        out.print("</tr>\n" +
-                  "</table>\n" +
-                  "<hr>\n");
-        writeCommandsTable(out);
-        out.print("<hr>\n");
-        writeGameTable(out);
-        finishHtml(out);
-        out.close();
+        writeDigests();
+    }
+
+    /** Get the number of plots that were not rendered again in
+        incremental mode. */
+    public int getNumberPlotsSkipped()
+    {
+        return m_numberPlotsSkipped.get();
     }
 
     private static final Color[] PLOT_COLOR = {
@@ -194,6 +169,52 @@ public class Analyze
         public int m_numberPositions;
     }
 
+    /** Task rendering a plot. */
+    private abstract class PlotTask
+        implements Callable<Void>
+    {
+        public PlotTask(File file, Plot plot, String columnX, String columnY,
+                        String errorColumn)
+        {
+            m_file = file;
+            m_plot = plot;
+            m_columnX = columnX;
+            m_columnY = columnY;
+            m_errorColumn = errorColumn;
+        }
+
+        public Void call() throws Exception
+        {
+            Table table = getTable();
+            String digest =
+                m_plot.getDigest(table, m_columnX, m_columnY, m_errorColumn);
+            String name = m_file.getName();
+            m_digests.put(name, digest);
+            if (m_incremental && digest.equals(m_oldDigests.get(name))
+                && m_file.exists())
+                m_numberPlotsSkipped.incrementAndGet();
+            else
+                m_plot.plot(m_file, table, m_columnX, m_columnY,
+                            m_errorColumn);
+            return null;
+        }
+
+        /** Get the plotted data.
+            Called by the task, such that expensive selections of rows
+            from the result table are done in parallel. */
+        protected abstract Table getTable() throws Exception;
+
+        private final File m_file;
+
+        private final Plot m_plot;
+
+        private final String m_columnX;
+
+        private final String m_columnY;
+
+        private final String m_errorColumn;
+    }
+
     private static final int IMAGE_HEIGHT = 100;
 
     private int m_maxMove;
@@ -202,17 +223,38 @@ public class Analyze
 
     private final int m_precision;
 
+    private final boolean m_incremental;
+
     private static final String COLOR_HEADER = "#b5c8f0";
 
     private static final String COLOR_INFO = "#e0e0e0";
 
     private final String m_output;
 
+    private final AtomicInteger m_numberPlotsSkipped = new AtomicInteger();
+
+    private final ForkJoinPool m_pool;
+
+    /** Submitted tasks that were not waited for yet. */
+    private final ArrayList<Future<?>> m_tasks = new ArrayList<Future<?>>();
+
+    /** Digests of the plots by file name. */
+    private final Map<String,String> m_digests =
+        new ConcurrentHashMap<String,String>();
+
+    /** Digests of the plots of the last run. */
+    private final Map<String,String> m_oldDigests =
+        new HashMap<String,String>();
+
+    /** Rows of the result table by game file. */
+    private final Map<String,ArrayList<Integer>> m_gameRows =
+        new HashMap<String,ArrayList<Integer>>();
+
     private final Table m_table;
 
     private Table m_tableFinal;
 
-    private final ArrayList<CommandStatistics> m_commandStatistics;
+    private ArrayList<CommandStatistics> m_commandStatistics;
 
     private final ArrayList<String> m_commands;
 
@@ -238,8 +280,7 @@ public class Analyze
             for (int j = 0; j < m_gameData.size(); ++j)
             {
                 GameData data = m_gameData.get(j);
-                Table table = TableUtil.select(m_table, "File", data.m_file,
-                                               command);
+                Table table = selectGame(data.m_file, command);
                 ArrayList<String> notEmpty
                     = TableUtil.getColumnNotEmpty(table, command);
                 if (notEmpty.size() > 1)
@@ -303,6 +344,11 @@ public class Analyze
         return new File(m_output + ".count.dat");
     }
 
+    private File getDigestFile()
+    {
+        return new File(m_output + ".plots.dat");
+    }
+
     private File getGameFile(int gameIndex)
     {
         return new File(m_output + ".game-" + gameIndex + ".html");
@@ -313,6 +359,23 @@ public class Analyze
         return m_gameGlobalCommands.get(index);
     }
 
+    /** Wait for the result of a task.
+        Throws the exception thrown by the task. */
+    private static <T> T getResult(Future<T> task) throws Exception
+    {
+        try
+        {
+            return task.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw (Exception)cause;
+        }
+    }
+
     private File getHistoFile(int commandIndex)
     {
         return new File(m_output + ".command-" + commandIndex + ".histo.png");
@@ -345,14 +408,29 @@ public class Analyze
             + "\">" + link + "</a>";
     }
 
-    private CommandStatistics computeCommandStatistics(int index)
+    /** Compute the statistics of all commands in parallel. */
+    private ArrayList<CommandStatistics> computeCommandStatistics()
         throws Exception
     {
-        String command = getCommand(index);
-        return new CommandStatistics(command, m_table, m_tableFinal,
-                                     getHistoFile(index),
-                                     getHistoFinalFile(index),
-                                     getColor(command), m_precision);
+        ArrayList<Future<CommandStatistics>> tasks =
+            new ArrayList<Future<CommandStatistics>>(m_commands.size());
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            final String command = getCommand(i);
+            tasks.add(m_pool.submit(new Callable<CommandStatistics>() {
+                    public CommandStatistics call() throws Exception
+                    {
+                        return new CommandStatistics(command, m_table,
+                                                     m_tableFinal,
+                                                     m_precision);
+                    }
+                }));
+        }
+        ArrayList<CommandStatistics> result =
+            new ArrayList<CommandStatistics>(m_commands.size());
+        for (Future<CommandStatistics> task : tasks)
+            result.add(getResult(task));
+        return result;
     }
 
     private Plot generatePlotMove(int width, Color color)
@@ -367,16 +445,46 @@ public class Analyze
     }
 
     private void generatePlot(int commandIndex, DecimalFormat format,
-                              int gameIndex, String gameFile) throws Exception
+                              int gameIndex, final String gameFile)
+        throws Exception
     {
-        String command = getCommand(commandIndex);
-        Table table = TableUtil.select(m_table, "File", gameFile,
-                                       "Move", command);
+        final String command = getCommand(commandIndex);
         File file = getPlotFile(gameIndex, commandIndex);
         Plot plot = generatePlotMove(getImgWidth(m_maxMove),
                                      getColor(command));
         plot.setFormatY(format);
-        plot.plot(file, table, "Move", command, null);
+        submit(new PlotTask(file, plot, "Move", command, null) {
+                protected Table getTable() throws Exception
+                {
+                    return selectGame(gameFile, "Move", command);
+                }
+            });
+    }
+
+    /** Plot the histograms of a command. */
+    private void generatePlotsHisto(int commandIndex) throws Exception
+    {
+        CommandStatistics commandStatistics =
+            getCommandStatistics(commandIndex);
+        if (commandStatistics.getCount() == 0)
+            return;
+        String command = getCommand(commandIndex);
+        Color color = getColor(command);
+        Histogram histogram = commandStatistics.m_statisticsAll.m_histogram;
+        Table histoTable = TableUtil.fromHistogram(histogram, command);
+        Plot plot = new Plot(200, 150, color, m_precision);
+        commandStatistics.setHistogramProperties(plot);
+        submitPlot(getHistoFile(commandIndex), plot, histoTable, command,
+                   "Count", null);
+        if (commandStatistics.m_statisticsFinal.getCount() > 0)
+        {
+            histogram = commandStatistics.m_statisticsFinal.m_histogram;
+            histoTable = TableUtil.fromHistogram(histogram, command);
+            plot = new Plot(200, 150, color, m_precision);
+            commandStatistics.setHistogramProperties(plot);
+            submitPlot(getHistoFinalFile(commandIndex), plot, histoTable,
+                       command, "Count", null);
+        }
     }
 
     private Color getColor(String command) throws Table.InvalidLocation
@@ -422,6 +530,13 @@ public class Analyze
             }
             ++count[move];
             m_maxMove = Math.max(m_maxMove, move);
+            ArrayList<Integer> rows = m_gameRows.get(file);
+            if (rows == null)
+            {
+                rows = new ArrayList<Integer>();
+                m_gameRows.put(file, rows);
+            }
+            rows.add(row);
             if (last == null || ! file.equals(last))
             {
                 if (data != null)
@@ -449,9 +564,14 @@ public class Analyze
             data = m_gameData.get(i);
             String file = data.m_file;
             String finalPosition = Integer.toString(data.m_finalPosition);
-            int row = TableUtil.findRow(m_table, "File", file, "Move",
-                                        finalPosition);
-            TableUtil.appendRow(m_tableFinal, m_table, row);
+            // First row of the game with the final move number like
+            // TableUtil.findRow()
+            for (int row : m_gameRows.get(file))
+                if (finalPosition.equals(m_table.get("Move", row)))
+                {
+                    TableUtil.appendRow(m_tableFinal, m_table, row);
+                    break;
+                }
         }
         ArrayList<String> columnTitles = new ArrayList<String>();
         columnTitles.add("Move");
@@ -467,7 +587,7 @@ public class Analyze
         }
         Plot plot = generatePlotMove(getImgWidth(m_maxMove), Color.DARK_GRAY);
         plot.setNoPlotYZero();
-        plot.plot(getCountFile(), table, "Move", "Count", null);
+        submitPlot(getCountFile(), plot, table, "Move", "Count", null);
         FileWriter writer = new FileWriter(getCountDataFile());
         try
         {
@@ -487,6 +607,64 @@ public class Analyze
         return false;
     }
 
+    private void readDigests() throws Exception
+    {
+        File file = getDigestFile();
+        if (! file.exists())
+            return;
+        Table table = new Table();
+        table.read(file);
+        for (int row = 0; row < table.getNumberRows(); ++row)
+            m_oldDigests.put(table.get("File", row),
+                             table.get("Digest", row));
+    }
+
+    /** Select the rows of a game from the result table.
+        Returns the same table as TableUtil.select() with compare column
+        File, but does not iterate over all rows of the result table. */
+    private Table selectGame(String gameFile,
+                             ArrayList<String> columnTitles)
+        throws Table.InvalidLocation
+    {
+        Table result = new Table(columnTitles);
+        int[] columns = new int[columnTitles.size()];
+        for (int i = 0; i < columns.length; ++i)
+            columns[i] = m_table.getColumnIndex(columnTitles.get(i));
+        for (int row : m_gameRows.get(gameFile))
+        {
+            result.startRow();
+            for (int i = 0; i < columns.length; ++i)
+                result.set(i, m_table.get(columns[i], row));
+        }
+        return result;
+    }
+
+    private Table selectGame(String gameFile, String... columnTitles)
+        throws Table.InvalidLocation
+    {
+        return selectGame(gameFile,
+                          new ArrayList<String>(Arrays.asList(columnTitles)));
+    }
+
+    /** Submit a task to the thread pool.
+        Must only be called by the thread that runs the constructor. */
+    private void submit(Callable<?> task)
+    {
+        m_tasks.add(m_pool.submit(task));
+    }
+
+    private void submitPlot(File file, Plot plot, final Table table,
+                            String columnX, String columnY,
+                            String errorColumn)
+    {
+        submit(new PlotTask(file, plot, columnX, columnY, errorColumn) {
+                protected Table getTable()
+                {
+                    return table;
+                }
+            });
+    }
+
     private void startHtml(PrintStream out, String title)
     {
         String charset = StringUtil.getDefaultEncoding();
@@ -526,6 +704,29 @@ public class Analyze
                   + " cellpadding=\"0\">\n");
     }
 
+    /** Wait for all submitted tasks.
+        If tasks failed, the exception of the first failed task is thrown
+        after all tasks are finished. */
+    private void waitForTasks() throws Exception
+    {
+        Exception exception = null;
+        for (Future<?> task : m_tasks)
+        {
+            try
+            {
+                getResult(task);
+            }
+            catch (Exception e)
+            {
+                if (exception == null)
+                    exception = e;
+            }
+        }
+        m_tasks.clear();
+        if (exception != null)
+            throw exception;
+    }
+
     private void writeCommandPage(int commandIndex)
         throws Exception
     {
@@ -572,7 +773,7 @@ public class Analyze
             Color color = getColor(command);
             Plot plot = new Plot(180, 135, color, m_precision);
             commandStatistics.setHistogramProperties(plot);
-            plot.plot(histoFile, histoTable, command, "Count", null);
+            submitPlot(histoFile, plot, histoTable, command, "Count", null);
             out.print("<table align=\"left\" border=\"0\">" +
                       "<tr><td align=\"center\"><small>" + i
                       + "</small><br><img src=\""
@@ -690,7 +891,6 @@ public class Analyze
             if (commandStatistics.getCount() > 0
                 && ! commandStatistics.m_isBeginCommand)
             {
-                generatePlot(i, commandStatistics.m_format, gameNumber, game);
                 out.print("<tr><td align=\"center\">" + getCommandLink(i)
                           + "<br><img src=\""
                           + getPlotFile(gameNumber, i).getName()
@@ -699,7 +899,7 @@ public class Analyze
         }
         out.print("</table>\n" +
                   "<hr>\n");
-        Table table = TableUtil.select(m_table, "File", game);
+        Table table = selectGame(game, m_table.getColumnTitles());
         out.print("<table class=\"smalltable\">\n" +
                   "<thead><tr>");
         for (int i = 1; i < table.getNumberColumns(); ++i)
@@ -769,11 +969,119 @@ public class Analyze
                     out.print("<td>" + getGameGlobalCommand(j).getResult(i)
                               + "</td>");
             out.print("</tr>\n");
-            writeGamePage(data.m_file, data.m_name, i);
+            for (int j = 0; j < m_commands.size(); ++j)
+            {
+                CommandStatistics commandStatistics = getCommandStatistics(j);
+                if (commandStatistics.getCount() > 0
+                    && ! commandStatistics.m_isBeginCommand)
+                    generatePlot(j, commandStatistics.m_format, i,
+                                 data.m_file);
+            }
+            final GameData gameData = data;
+            final int gameNumber = i;
+            submit(new Callable<Void>() {
+                    public Void call() throws Exception
+                    {
+                        writeGamePage(gameData.m_file, gameData.m_name,
+                                      gameNumber);
+                        return null;
+                    }
+                });
         }
         out.print("</table>\n");
     }
 
+    private void writeDigests() throws IOException
+    {
+        ArrayList<String> columnTitles = new ArrayList<String>();
+        columnTitles.add("File");
+        columnTitles.add("Digest");
+        Table table = new Table(columnTitles);
+        for (Map.Entry<String,String> entry
+                 : new TreeMap<String,String>(m_digests).entrySet())
+        {
+            table.startRow();
+            table.set(0, entry.getKey());
+            table.set(1, entry.getValue());
+        }
+        table.save(getDigestFile());
+    }
+
+    private void writeHtml() throws Exception
+    {
+        File file = new File(m_output + ".html");
+        PrintStream out = new PrintStream(file);
+        startHtml(out, "Statistics Summary");
+        startInfo(out, "Statistics Summary");
+        writeInfo(out);
+        endInfo(out);
+        out.print("<table border=\"0\">\n" +
+                  "<tr><td>\n");
+        writePlot(out, "<small>positions</small>",
+                  getCountFile().getName(),
+                  "<a href=\"" + getCountDataFile().getName()
+                  + "\"><small>data</small></a>");
+        out.print("</td></tr>\n");
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            CommandStatistics commandStatistics = getCommandStatistics(i);
+            generatePlotsHisto(i);
+            if (commandStatistics.getCount() > 0
+                && ! commandStatistics.m_isBeginCommand)
+            {
+                String command = getCommand(i);
+                Table table = commandStatistics.m_tableAtMove;
+                Plot plot = generatePlotMove(getImgWidth(m_maxMove),
+                                             getColor(command));
+                plot.setFormatY(commandStatistics.m_format);
+                File pngFile = getAvgPlotFile(i);
+                File dataFile = getAvgDataFile(i);
+                plot.setPlotStyleNoLines();
+                submitPlot(pngFile, plot, table, "Move", "Mean", "Error");
+                FileWriter writer = new FileWriter(dataFile);
+                try
+                {
+                    table.save(writer, false);
+                }
+                finally
+                {
+                    writer.close();
+                }
+                out.print("<tr><td>\n");
+                writePlot(out, getCommandLink(i), pngFile.getName(),
+                          "<a href=\"" + dataFile.getName()
+                          + "\"><small>data</small></a>");
+                out.print("</td></tr>\n");
+            }
+        }
+        out.print("</table>\n" +
+                  "<hr>\n" +
+                  "<table border=\"0\" cellpadding=\"0\">\n" +
+                  "<tr>\n");
+        int n = 0;
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            CommandStatistics commandStatistics = getCommandStatistics(i);
+            if (commandStatistics.getCount() == 0)
+                continue;
+            out.print("<td valign=\"bottom\" bgcolor=\"" + COLOR_HEADER
+                      + "\">\n");
+            writePlot(out, getCommandLink(i), getHistoFile(i).getName(), "");
+            out.print("</td>\n");
+            ++n;
+            if (n % 5 == 0)
+                out.print("</tr><tr>\n");
+        }
+        out.print("</tr>\n" +
+                  "</table>\n" +
+                  "<hr>\n");
+        writeCommandsTable(out);
+        out.print("<hr>\n");
+        writeGameTable(out);
+        finishHtml(out);
+        out.close();
+    }
+
     private void writeHtmlRow(PrintStream out, String label,
                               String value) throws Exception
     {
@@ -2,13 +2,11 @@
 
 package net.sf.gogui.tools.statistics;
 
-import java.awt.Color;
-import java.io.File;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.Histogram;
 import net.sf.gogui.util.Table;
-import net.sf.gogui.util.TableUtil;
 
 /** Collect GTP response statistics for a command. */
 public final class CommandStatistics
@@ -27,12 +25,68 @@ public final class CommandStatistics
 
     public final Table m_tableAtMove;
 
+    /** Constructor.
+        The statistics for all positions and for the positions at each
+        move are collected in a single pass over the table. The
+        histograms are not plotted, see setHistogramProperties(). */
     public CommandStatistics(String command, Table table, Table tableFinal,
-                             File histoFile, File histoFileFinal,
-                             Color color, int precision)
+                             int precision)
         throws Exception
     {
-        m_statisticsAll = new PositionStatistics(command, table, false, 0, 0);
+        PositionStatistics.Accumulator all =
+            new PositionStatistics.Accumulator();
+        ArrayList<PositionStatistics.Accumulator> atMove =
+            new ArrayList<PositionStatistics.Accumulator>();
+        double maxMove = Double.NEGATIVE_INFINITY;
+        int column = table.getColumnIndex(command);
+        int moveColumn = table.getColumnIndex("Move");
+        Table.ColumnType moveType = table.getColumnType(moveColumn);
+        boolean intMoves = (moveType == Table.ColumnType.BOOL
+                            || moveType == Table.ColumnType.INT);
+        for (int row = 0; row < table.getNumberRows(); ++row)
+        {
+            all.add(table, column, row);
+            boolean hasValue = ! table.isNull(column, row);
+            int move;
+            if (intMoves && ! table.isNull(moveColumn, row))
+            {
+                move = table.getInt(moveColumn, row);
+                if (hasValue && move < 0)
+                    throw new ErrorMessage("Invalid move in table");
+            }
+            else if (hasValue)
+                move = PositionStatistics.getMove(table.get(moveColumn,
+                                                            row));
+            else
+            {
+                String moveValue = table.get(moveColumn, row);
+                try
+                {
+                    move = Integer.parseInt(moveValue);
+                }
+                catch (NumberFormatException e)
+                {
+                    if (moveValue != null)
+                        maxMove = Math.max(maxMove,
+                                           parseDouble(moveValue));
+                    continue;
+                }
+            }
+            maxMove = Math.max(maxMove, move);
+            if (move < 1)
+                continue;
+            while (atMove.size() < move)
+                atMove.add(null);
+            PositionStatistics.Accumulator accumulator =
+                atMove.get(move - 1);
+            if (accumulator == null)
+            {
+                accumulator = new PositionStatistics.Accumulator();
+                atMove.set(move - 1, accumulator);
+            }
+            accumulator.addLast(all);
+        }
+        m_statisticsAll = new PositionStatistics(command, all, false, 0, 0);
         double min = m_statisticsAll.getMin();
         double max = m_statisticsAll.getMax();
         m_statisticsFinal
@@ -43,15 +97,19 @@ public final class CommandStatistics
         columnTitles.add("Mean");
         columnTitles.add("Error");
         m_tableAtMove = new Table(columnTitles);
-        Table tableAtMove;
-        m_maxMove = (int)(TableUtil.getMax(table, "Move") + 1);
+        m_maxMove = (int)(maxMove + 1);
+        PositionStatistics.Accumulator empty =
+            new PositionStatistics.Accumulator();
         boolean isBeginCommand = true;
         for (int move = 1; move <= m_maxMove; ++move)
         {
-            tableAtMove = TableUtil.selectIntRange(table, "Move", move,
-                                                    move);
+            PositionStatistics.Accumulator accumulator = null;
+            if (move <= atMove.size())
+                accumulator = atMove.get(move - 1);
+            if (accumulator == null)
+                accumulator = empty;
             PositionStatistics statisticsAtMove
-                = new PositionStatistics(command, tableAtMove, true, min,
+                = new PositionStatistics(command, accumulator, true, min,
                                          max);
             m_statisticsAtMove.add(statisticsAtMove);
             int count = statisticsAtMove.getCount();
@@ -67,22 +125,6 @@ public final class CommandStatistics
         }
         m_isBeginCommand = isBeginCommand;
         m_format = getFormat(precision, min, max);
-        if (getCount() > 0)
-        {
-            Histogram histogram = m_statisticsAll.m_histogram;
-            Table histoTable = TableUtil.fromHistogram(histogram, command);
-            Plot plot = new Plot(200, 150, color, precision);
-            setHistogramProperties(plot);
-            plot.plot(histoFile, histoTable, command, "Count", null);
-            histogram = m_statisticsFinal.m_histogram;
-            if (m_statisticsFinal.getCount() > 0)
-            {
-                histoTable = TableUtil.fromHistogram(histogram, command);
-                plot = new Plot(200, 150, color, precision);
-                setHistogramProperties(plot);
-                plot.plot(histoFileFinal, histoTable, command, "Count", null);
-            }
-        }
     }
 
     public int getCount()
@@ -119,6 +161,20 @@ public final class CommandStatistics
         }
     }
 
+    /** Parse a move like TableUtil.getMax().
+        Returns negative infinity for values that are no numbers. */
+    private static double parseDouble(String value)
+    {
+        try
+        {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e)
+        {
+            return Double.NEGATIVE_INFINITY;
+        }
+    }
+
     private static DecimalFormat getFormat(int precision, double min,
                                            double max)
     {
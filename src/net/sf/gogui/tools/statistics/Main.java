@@ -27,6 +27,7 @@ public final class Main
                 "final:",
                 "force",
                 "help",
+                "incremental",
                 "max:",
                 "min:",
                 "output:",
@@ -36,6 +37,7 @@ public final class Main
                 "random",
                 "setup",
                 "size:",
+                "threads:",
                 "verbose",
                 "version"
             };
@@ -70,6 +72,7 @@ public final class Main
             int min = opt.getInteger("min", 0, 0);
             int max = opt.getInteger("max", Integer.MAX_VALUE, 0);
             int precision = opt.getInteger("precision", 3, 0);
+            int numberThreads = opt.getInteger("threads", 1, 1);
             int boardSize = opt.getInteger("size", GoPoint.DEFAULT_SIZE, 1,
                                            GoPoint.MAX_SIZE);
             ArrayList<String> commands = parseCommands(opt, "commands");
@@ -86,7 +89,12 @@ public final class Main
                 }
                 String fileName = opt.get("analyze");
                 String output = opt.get("output");
-                new Analyze(fileName, output, precision);
+                if (! opt.contains("threads"))
+                    numberThreads =
+                        Runtime.getRuntime().availableProcessors();
+                boolean incremental = opt.contains("incremental");
+                new Analyze(fileName, output, precision, numberThreads,
+                            incremental);
             }
             else
             {
@@ -107,6 +115,7 @@ public final class Main
                 statistics.setMin(min);
                 statistics.setMax(max);
                 statistics.setQuiet(quiet);
+                statistics.setThreads(numberThreads);
                 statistics.run(program, arguments, boardSize, commands,
                                beginCommands, finalCommands, verbose,
                                allowSetup, backward, random);
@@ -153,6 +162,7 @@ public final class Main
                   "-final        GTP commands to run on final positions\n" +
                   "-force        Overwrite existing file\n" +
                   "-help         Display this help and exit\n" +
+                  "-incremental  Only create changed plots for -analyze\n" +
                   "-max          Only positions with maximum move number\n" +
                   "-min          Only positions with minimum move number\n" +
                   "-output       Filename prefix for output files\n" +
@@ -160,6 +170,8 @@ public final class Main
                   "-quiet        Don't write logging messages\n" +
                   "-setup        Allow setup stones in root position\n" +
                   "-size         Board size of games\n" +
+                  "-threads      Number of program instances or analyze\n" +
+                  "              threads\n" +
                   "-verbose      Log GTP stream to stderr\n" +
                   "-version      Display this help and exit\n");
     }
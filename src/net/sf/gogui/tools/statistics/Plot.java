@@ -12,6 +12,9 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import javax.imageio.ImageIO;
 import net.sf.gogui.gui.GuiUtil;
@@ -63,18 +66,83 @@ public class Plot
         ImageIO.write(image, "png", file);
     }
 
+    /** Get a digest of the plot settings and the plotted data.
+        Two plots with the same digest produce the same image.
+        @return The MD5 digest as a hexadecimal string. */
+    public String getDigest(Table table, String columnX, String columnY,
+                            String errorColumn)
+        throws Table.InvalidLocation
+    {
+        StringBuilder buffer = new StringBuilder(256);
+        buffer.append(m_imgWidth).append(' ').append(m_imgHeight)
+            .append(' ').append(m_color.getRGB()).append(' ')
+            .append(m_precision).append(' ').append(m_autoXMin)
+            .append(m_autoXMax).append(m_autoXTics).append(m_autoYMin)
+            .append(m_autoYMax).append(m_autoYTics).append(m_noLines)
+            .append(m_plotYZero).append(m_useSolidLineInterval)
+            .append(m_withBars).append(m_xLabelsBool).append(' ')
+            .append(m_xLabelPerTic).append(' ').append(m_barWidth)
+            .append(' ').append(m_minX).append(' ').append(m_maxX)
+            .append(' ').append(m_minY).append(' ').append(m_maxY)
+            .append(' ').append(m_solidLineInterval).append(' ')
+            .append(m_xTics).append(' ').append(m_yTics).append(' ')
+            .append(m_formatX == null ? "" : m_formatX.toPattern())
+            .append(' ')
+            .append(m_formatY == null ? "" : m_formatY.toPattern())
+            .append(' ').append(m_title).append('\n');
+        int x = table.getColumnIndex(columnX);
+        int y = table.getColumnIndex(columnY);
+        int error = -1;
+        if (errorColumn != null)
+            error = table.getColumnIndex(errorColumn);
+        for (int row = 0; row < table.getNumberRows(); ++row)
+        {
+            buffer.append(table.get(x, row)).append('\t')
+                .append(table.get(y, row));
+            if (error >= 0)
+                buffer.append('\t').append(table.get(error, row));
+            buffer.append('\n');
+        }
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] bytes = digest.digest(buffer.toString().getBytes("UTF-8"));
+            StringBuilder result = new StringBuilder(2 * bytes.length);
+            for (byte b : bytes)
+            {
+                result.append(Character.forDigit((b >> 4) & 0xf, 16));
+                result.append(Character.forDigit(b & 0xf, 16));
+            }
+            return result.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform is required to support MD5
+            assert false;
+            return "";
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            assert false;
+            return "";
+        }
+    }
+
     /** Set number format for x-axis.
+        The plot uses a copy of the format, such that a format can be
+        shared by plots rendered in different threads.
         @param format The format. */
     public void setFormatX(DecimalFormat format)
     {
-        m_formatX = format;
+        m_formatX = (DecimalFormat)format.clone();
     }
 
     /** Set number format for y-axis.
+        The plot uses a copy of the format, see setFormatX().
         @param format The format. */
     public void setFormatY(DecimalFormat format)
     {
-        m_formatY = format;
+        m_formatY = (DecimalFormat)format.clone();
     }
 
     /** Set plot style to bars.
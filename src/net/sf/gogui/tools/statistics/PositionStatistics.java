@@ -23,53 +23,123 @@ public final class PositionStatistics
 
     public final Table m_histoTable;
 
-    public PositionStatistics(String command, Table table,
-                              boolean noAutoScaleHisto,
-                              double histoMin, double histoMax)
-        throws Table.InvalidLocation, ErrorMessage
+    /** Values of a set of positions.
+        Used for computing the statistics of groups of positions, for
+        example all positions with the same move number, in a single pass
+        over a table. The values are kept, because the histogram range is
+        only known after all values were added. */
+    public static final class Accumulator
     {
-        m_statistics = new Statistics();
-        boolean onlyIntValues = true;
-        int numberNoResult = 0;
-        boolean onlyBoolValues = true;
-        for (int row = 0; row < table.getNumberRows(); ++row)
+        /** Add the value of a position.
+            @param value The table element, null if the command has no
+            result for this position. */
+        public void add(String value)
         {
-            String value = table.get(command, row);
-            if (value == null)
-            {
-                ++numberNoResult;
-                continue;
-            }
-            if (TableUtil.isNumberValue(value))
+            m_lastHasValue = false;
+            if (value != null)
             {
-                if (! TableUtil.isIntValue(value))
-                    onlyIntValues = false;
-                if (! TableUtil.isBoolValue(value))
-                    onlyBoolValues = false;
+                try
+                {
+                    m_lastValue = Double.parseDouble(value);
+                    m_lastHasValue = true;
+                    m_lastIsInt = TableUtil.isIntValue(value);
+                    m_lastIsBool = TableUtil.isBoolValue(value);
+                }
+                catch (NumberFormatException e)
+                {
+                }
             }
-            int move;
-            try
+            addLast(this);
+        }
+
+        /** Add the value of a position from a table.
+            Equivalent to add(table.get(column, row)), but avoids
+            converting elements of numeric columns to strings. */
+        public void add(Table table, int column, int row)
+            throws ErrorMessage
+        {
+            Table.ColumnType type = table.getColumnType(column);
+            if (type == Table.ColumnType.STRING)
             {
-                move = Integer.parseInt(table.get("Move", row));
+                add(table.get(column, row));
+                return;
             }
-            catch (NumberFormatException e)
+            m_lastHasValue = ! table.isNull(column, row);
+            if (m_lastHasValue)
             {
-                throw new ErrorMessage("Invalid move in table");
+                m_lastValue = table.getDouble(column, row);
+                m_lastIsInt = (type != Table.ColumnType.DOUBLE);
+                m_lastIsBool = (type == Table.ColumnType.BOOL
+                                || (m_lastIsInt
+                                    && (m_lastValue == 0
+                                        || m_lastValue == 1)));
             }
-            if (move < 0)
-                throw new ErrorMessage("Invalid move in table");
-            try
+            addLast(this);
+        }
+
+        /** Add the value that was last added to another accumulator.
+            Avoids parsing the value again, if the same value is added to
+            more than one accumulator. */
+        public void addLast(Accumulator accumulator)
+        {
+            if (! accumulator.m_lastHasValue)
             {
-                m_statistics.add(Double.parseDouble(value));
+                ++m_numberNoResult;
+                return;
             }
-            catch (NumberFormatException e)
+            if (! accumulator.m_lastIsInt)
+                m_onlyIntValues = false;
+            if (! accumulator.m_lastIsBool)
+                m_onlyBoolValues = false;
+            if (m_size == m_values.length)
             {
-                ++numberNoResult;
+                double[] values = new double[Math.max(16, 2 * m_size)];
+                System.arraycopy(m_values, 0, values, 0, m_size);
+                m_values = values;
             }
+            m_values[m_size++] = accumulator.m_lastValue;
         }
-        m_onlyBoolValues = onlyBoolValues;
-        m_onlyIntValues = onlyIntValues;
-        m_numberNoResult = numberNoResult;
+
+        private boolean m_lastHasValue;
+
+        private boolean m_lastIsBool;
+
+        private boolean m_lastIsInt;
+
+        private boolean m_onlyBoolValues = true;
+
+        private boolean m_onlyIntValues = true;
+
+        private int m_numberNoResult;
+
+        private int m_size;
+
+        private double m_lastValue;
+
+        private double[] m_values = new double[0];
+    }
+
+    public PositionStatistics(String command, Table table,
+                              boolean noAutoScaleHisto,
+                              double histoMin, double histoMax)
+        throws Table.InvalidLocation, ErrorMessage
+    {
+        this(command, accumulate(command, table), noAutoScaleHisto,
+             histoMin, histoMax);
+    }
+
+    public PositionStatistics(String command, Accumulator accumulator,
+                              boolean noAutoScaleHisto,
+                              double histoMin, double histoMax)
+    {
+        m_statistics = new Statistics();
+        double[] values = accumulator.m_values;
+        int size = accumulator.m_size;
+        for (int i = 0; i < size; ++i)
+            m_statistics.add(values[i]);
+        m_onlyBoolValues = accumulator.m_onlyBoolValues;
+        m_onlyIntValues = accumulator.m_onlyIntValues;
+        m_numberNoResult = accumulator.m_numberNoResult;
         double min = m_statistics.getMin();
         double max = m_statistics.getMax();
         if (! noAutoScaleHisto)
@@ -79,27 +149,15 @@ public final class PositionStatistics
         }
         double diff = histoMax - histoMin;
         int maxBins = 20;
-        if (onlyIntValues)
+        if (m_onlyIntValues)
         {
             int step = Math.max(1, (int)(diff / maxBins + 1));
             m_histogram = new Histogram(histoMin, histoMax, step);
         }
         else
             m_histogram = new Histogram(histoMin, histoMax, diff / maxBins);
-        for (int i = 0; i < table.getNumberRows(); ++i)
-        {
-            String value = table.get(command, i);
-            if (value == null)
-                continue;
-            try
-            {
-                m_histogram.add(Double.parseDouble(value));
-            }
-            catch (NumberFormatException e)
-            {
-                continue;
-            }
-        }
+        for (int i = 0; i < size; ++i)
+            m_histogram.add(values[i]);
         m_histoTable = TableUtil.fromHistogram(m_histogram, command);
     }
 
@@ -142,4 +200,38 @@ public final class PositionStatistics
     {
         return m_statistics.getSum();
     }
+
+    /** Parse the move of a table row.
+        @return The move number.
+        @throws ErrorMessage If the move is not a non-negative integer. */
+    static int getMove(String value) throws ErrorMessage
+    {
+        int move;
+        try
+        {
+            move = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ErrorMessage("Invalid move in table");
+        }
+        if (move < 0)
+            throw new ErrorMessage("Invalid move in table");
+        return move;
+    }
+
+    private static Accumulator accumulate(String command, Table table)
+        throws Table.InvalidLocation, ErrorMessage
+    {
+        Accumulator accumulator = new Accumulator();
+        int column = table.getColumnIndex(command);
+        int moveColumn = table.getColumnIndex("Move");
+        for (int row = 0; row < table.getNumberRows(); ++row)
+        {
+            if (! table.isNull(column, row))
+                getMove(table.get(moveColumn, row));
+            accumulator.add(table, column, row);
+        }
+        return accumulator;
+    }
 }
@@ -6,7 +6,6 @@ import java.io.InputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
@@ -36,6 +35,10 @@ import net.sf.gogui.util.Table;
 /** Run commands of a GTP engine on all positions in a game collection. */
 public class Statistics
 {
+    /** Run with new instances of a GTP program.
+        Uses the number of instances set with setThreads(). If an instance
+        of the program dies, the current file is skipped and the program
+        is restarted. */
     public void run(String program, ArrayList<String> sgfFiles, int size,
                     ArrayList<String> commands,
                     ArrayList<String> beginCommands,
@@ -43,9 +46,20 @@ public class Statistics
                     boolean allowSetup, boolean backward, boolean random)
         throws ErrorMessage, GtpError, IOException
     {
-        run(new GtpClient(program, null, verbose, null), program, sgfFiles,
-            size, commands, beginCommands, finalCommands, allowSetup,
-            backward, random);
+        ArrayList<GtpClientBase> gtp = new ArrayList<GtpClientBase>();
+        try
+        {
+            for (int i = 0; i < m_numberThreads; ++i)
+                gtp.add(createGtpClient(program, verbose, i));
+        }
+        catch (GtpError e)
+        {
+            for (GtpClientBase client : gtp)
+                closeGtp(client);
+            throw e;
+        }
+        run(gtp, program, verbose, sgfFiles, size, commands, beginCommands,
+            finalCommands, allowSetup, backward, random);
     }
 
     /** Construct with existing GTP engine.
@@ -74,38 +88,10 @@ public class Statistics
                     boolean backward, boolean random)
         throws ErrorMessage, IOException
     {
-        new FileCheck(sgfFiles, size, allowSetup);
-        m_size = size;
-        m_allowSetup = allowSetup;
-        m_backward = backward;
-        m_random = random;
-        initCommands(commands, beginCommands, finalCommands);
-        ArrayList<String> columnHeaders = new ArrayList<String>();
-        columnHeaders.add("File");
-        columnHeaders.add("Move");
-        for (int i = 0; i < m_commands.size(); ++i)
-            columnHeaders.add(getCommand(i).m_columnTitle);
-        m_table = new Table(columnHeaders);
-        m_table.setProperty("Size", Integer.toString(size));
-        m_gtp = gtp;
-        m_synchronizer = new GtpSynchronizer(m_gtp);
-        m_gtp.queryProtocolVersion();
-        m_gtp.queryName();
-        if (program != null)
-            m_table.setProperty("Program", program);
-        m_table.setProperty("Name", m_gtp.getLabel());
-        m_table.setProperty("Version", m_gtp.queryVersion());
-        String host = Platform.getHostInfo();
-        m_table.setProperty("Host", host);
-        m_table.setProperty("Date", StringUtil.getDate());
-        for (int i = 0; i < sgfFiles.size(); ++i)
-            handleFile(sgfFiles.get(i));
-        m_gtp.send("quit");
-        m_gtp.close();
-        m_gtp.waitForExit();
-        m_table.setProperty("Games", Integer.toString(m_numberGames));
-        m_table.setProperty("Backward", backward ? "yes" : "no");
-        m_table.setProperty("Random", random ? "yes" : "no");
+        ArrayList<GtpClientBase> list = new ArrayList<GtpClientBase>();
+        list.add(gtp);
+        run(list, null, false, sgfFiles, size, commands, beginCommands,
+            finalCommands, allowSetup, backward, random);
     }
 
     /** Set maximum move number for positions to run the commands on.
@@ -129,18 +115,21 @@ public class Statistics
         m_quiet = enable;
     }
 
+    /** Set number of program instances used in parallel.
+        Only used by run(String, ...). The files are distributed to the
+        instances; the rows of the result table are in the order of the
+        files and positions, independent of the number of threads.
+        Default is one. */
+    public void setThreads(int numberThreads)
+    {
+        assert numberThreads > 0;
+        m_numberThreads = numberThreads;
+    }
+
     /** Save result table of last run. */
     public void saveTable(File output) throws IOException
     {
-        FileWriter writer = new FileWriter(output);
-        try
-        {
-            m_table.save(writer);
-        }
-        finally
-        {
-            writer.close();
-        }
+        m_table.save(output);
     }
 
     private static class Command
@@ -154,6 +143,311 @@ public class Statistics
         public String m_columnTitle;
     }
 
+    /** Runs the commands on files with one instance of the program.
+        Takes the next file to handle from getNextFile(). */
+    private class Worker
+        implements Runnable
+    {
+        /** Constructor.
+            @param gtp The program.
+            @param program The program command for restarting the program,
+            if it dies, or null, if it cannot be restarted.
+            @param verbose Log the GTP stream of restarted programs.
+            @param index Index of the instance (used for logging). */
+        public Worker(GtpClientBase gtp, String program, boolean verbose,
+                      int index)
+        {
+            m_gtp = gtp;
+            m_program = program;
+            m_verbose = verbose;
+            m_index = index;
+            m_synchronizer = new GtpSynchronizer(m_gtp);
+        }
+
+        public void close()
+        {
+            closeGtp(m_gtp);
+        }
+
+        public void run()
+        {
+            String name = null;
+            try
+            {
+                int index;
+                while ((index = getNextFile()) >= 0)
+                {
+                    name = m_sgfFiles.get(index);
+                    try
+                    {
+                        setRows(index, handleFile(name));
+                    }
+                    catch (GtpError e)
+                    {
+                        if (m_program == null || ! m_gtp.isProgramDead())
+                            throw e;
+                        System.err.println(name + ": " + e.getMessage());
+                        System.err.println("Program died, restarting");
+                        restart();
+                    }
+                }
+            }
+            catch (Throwable e)
+            {
+                // Also catch errors like OutOfMemoryError, otherwise the
+                // thread would end and the rows of the file would be
+                // missing in the result without an error
+                if (e instanceof Error && name != null)
+                    System.err.println(name + ": " + e);
+                setException(e);
+            }
+        }
+
+        private final boolean m_verbose;
+
+        private final int m_index;
+
+        private double m_lastCpuTime;
+
+        private GtpClientBase m_gtp;
+
+        private GtpSynchronizer m_synchronizer;
+
+        private final String m_program;
+
+        /** Rows of the result table for the current file. */
+        private Table m_rows;
+
+        private String convertResponse(String command, String response,
+                                       GoColor toMove, Move move)
+            throws GtpError
+        {
+            if (command.equals("cputime"))
+            {
+                try
+                {
+                    double cpuTime = Double.parseDouble(response);
+                    double diff = cpuTime - m_lastCpuTime;
+                    m_lastCpuTime = cpuTime;
+                    return FORMAT2.format(diff);
+                }
+                catch (NumberFormatException e)
+                {
+                    return response;
+                }
+            }
+            else if (command.equals("estimate_score"))
+            {
+                String arg[] = StringUtil.splitArguments(response);
+                if (arg.length == 0)
+                    return response;
+                return convertScore(arg[0]);
+            }
+            else if (command.equals("final_score"))
+            {
+                return convertScore(response);
+            }
+            else if (command.equals("reg_genmove"))
+            {
+                if (move == null)
+                    return "";
+                try
+                {
+                    GoPoint point = GoPoint.parsePoint(response, m_size);
+                    return Move.get(toMove, point) == move ? "1" : "0";
+                }
+                catch (InvalidPointException e)
+                {
+                    throw new GtpError("Program sent invalid move: "
+                                       + response);
+                }
+            }
+            return response;
+        }
+
+        /** Run the commands on all positions of a file.
+            @return The rows of the result table for this file. */
+        private Table handleFile(String name)
+            throws ErrorMessage, FileNotFoundException, GtpError,
+                   SgfError
+        {
+            m_rows = new Table(m_table.getColumnTitles());
+            File file = new File(name);
+            InputStream in = new FileInputStream(file);
+            SgfReader reader = new SgfReader(in, file, null, 0);
+            incrementNumberGames();
+            Game game = new Game(reader.getTree());
+            checkGame(game.getTree(), name);
+            if (m_random)
+                iteratePositionsRandom(game, name);
+            else if (m_backward)
+                iteratePositionsBackward(game, name);
+            else
+                iteratePositions(game, name);
+            Table rows = m_rows;
+            m_rows = null;
+            return rows;
+        }
+
+        private void handlePosition(String name, GoColor toMove, Move move,
+                                    int number, boolean beginCommands,
+                                    boolean regularCommands,
+                                    boolean finalCommands)
+            throws GtpError
+        {
+            if (! m_quiet)
+                System.err.println(name + ":" + number);
+            m_rows.startRow();
+            try
+            {
+                m_rows.set("File", name);
+                m_rows.set("Move", number);
+                for (int i = 0; i < m_commands.size(); ++i)
+                {
+                    Command command = getCommand(i);
+                    if (command.m_begin && beginCommands)
+                    {
+                        String response =
+                            send(command.m_command, toMove, move);
+                        m_rows.set(command.m_columnTitle, response);
+                    }
+                }
+                for (int i = 0; i < m_commands.size(); ++i)
+                {
+                    Command command = getCommand(i);
+                    if (! command.m_begin && ! command.m_final
+                        && regularCommands)
+                    {
+                        String response =
+                            send(command.m_command, toMove, move);
+                        m_rows.set(command.m_columnTitle, response);
+                    }
+                }
+                for (int i = 0; i < m_commands.size(); ++i)
+                {
+                    Command command = getCommand(i);
+                    if (command.m_final && finalCommands)
+                    {
+                        String response =
+                            send(command.m_command, toMove, move);
+                        m_rows.set(command.m_columnTitle, response);
+                    }
+                }
+            }
+            catch (Table.InvalidLocation e)
+            {
+                System.err.println(e.getMessage());
+                // Table was created by this class in correct format
+                assert false;
+            }
+        }
+
+        private void iteratePositions(Game game, String name) throws GtpError
+        {
+            int number = 0;
+            for (ConstNode node = game.getRoot(); node != null;
+                 node = node.getChildConst())
+            {
+                game.gotoNode(node, null);
+                synchronize(game);
+                Move move = node.getMove();
+                boolean beginCommands = ! node.hasFather();
+                boolean regularCommands =
+                    ((move != null || node.hasSetup() || ! node.hasFather())
+                     && number >= m_min && number <= m_max);
+                boolean finalCommands = ! node.hasChildren();
+                if (beginCommands || regularCommands || finalCommands)
+                    handlePosition(name, node.getToMove(), move, number,
+                                   beginCommands, regularCommands,
+                                   finalCommands);
+                ++number;
+            }
+        }
+
+        private void iteratePositionsBackward(Game game, String name)
+            throws GtpError
+        {
+            int number = 0;
+            for (ConstNode node = NodeUtil.getLast(game.getRoot());
+                 node != null; node = node.getFatherConst())
+            {
+                game.gotoNode(node, null);
+                synchronize(game);
+                Move move = node.getMove();
+                boolean beginCommands = ! node.hasChildren();
+                boolean regularCommands =
+                    ((move != null || node.hasSetup() || ! node.hasFather())
+                     && number >= m_min && number <= m_max);
+                boolean finalCommands = ! node.hasFather();
+                if (beginCommands || regularCommands || finalCommands)
+                    handlePosition(name, node.getToMove(), move, number,
+                                   beginCommands, regularCommands,
+                                   finalCommands);
+                ++number;
+            }
+        }
+
+        private void iteratePositionsRandom(Game game, String name)
+            throws GtpError
+        {
+            int minDepth;
+            int maxDepth;
+            if (m_backward)
+            {
+                int depth =
+                    NodeUtil.getDepth(NodeUtil.getLast(game.getRoot()));
+                minDepth = depth - m_max;
+                maxDepth = depth - m_min;
+            }
+            else
+            {
+                minDepth = m_min;
+                maxDepth = m_max;
+            }
+            ConstNode node = NodeUtil.selectRandom(game.getRoot(), minDepth,
+                                                   maxDepth);
+            if (node == null)
+                return;
+            int number = NodeUtil.getDepth(node);
+            game.gotoNode(node, null);
+            synchronize(game);
+            Move move = node.getMove();
+            boolean beginCommands = ! node.hasChildren();
+            boolean regularCommands =
+                (move != null || node.hasSetup() || ! node.hasFather());
+            boolean finalCommands = ! node.hasFather();
+            if (beginCommands || regularCommands || finalCommands)
+                handlePosition(name, node.getToMove(), move, number,
+                               beginCommands, regularCommands, finalCommands);
+        }
+
+        private String send(String command, GoColor toMove, Move move)
+            throws GtpError
+        {
+            String cmd = convertCommand(command, toMove);
+            String response = m_gtp.send(cmd).trim();
+            response = response.replaceAll("\t", " ");
+            response = response.replaceAll("\n", " ");
+            return convertResponse(command, response, toMove, move);
+        }
+
+        private void synchronize(ConstGame game) throws GtpError
+        {
+            ConstNode node = game.getGameInfoNode();
+            ConstGameInfo info = game.getGameInfo(node);
+            m_synchronizer.synchronize(game.getBoard(), info.getKomi(),
+                                       info.getTimeSettings());
+        }
+
+        private void restart() throws GtpError
+        {
+            closeGtp(m_gtp);
+            m_gtp = createGtpClient(m_program, m_verbose, m_index);
+            m_synchronizer = new GtpSynchronizer(m_gtp);
+            m_lastCpuTime = 0;
+        }
+    }
+
     private boolean m_allowSetup;
 
     private boolean m_backward;
@@ -166,13 +460,16 @@ public class Statistics
 
     private int m_min = 0;
 
+    private int m_nextFile;
+
     private int m_numberGames;
 
-    private int m_size;
+    private int m_numberThreads = 1;
 
-    private double m_lastCpuTime = 0;
+    private int m_size;
 
-    private GtpClientBase m_gtp;
+    /** First error that occurred in one of the workers. */
+    private Throwable m_exception;
 
     private static final NumberFormat FORMAT1 = StringUtil.getNumberFormat(1);
 
@@ -182,7 +479,11 @@ public class Statistics
 
     private ArrayList<Command> m_commands;
 
-    private GtpSynchronizer m_synchronizer;
+    private ArrayList<String> m_sgfFiles;
+
+    /** Rows of the result table for each file.
+        Null for files that were not handled, because the program died. */
+    private Table[] m_fileRows;
 
     private void addCommand(String commandLine, boolean isBegin,
                             boolean isFinal) throws ErrorMessage
@@ -221,6 +522,17 @@ public class Statistics
             addCommand(c, isBegin, isFinal);
     }
 
+    private void appendRows(Table rows)
+    {
+        int numberColumns = rows.getNumberColumns();
+        for (int i = 0; i < rows.getNumberRows(); ++i)
+        {
+            m_table.startRow();
+            for (int j = 0; j < numberColumns; ++j)
+                m_table.set(j, rows.get(j, i));
+        }
+    }
+
     private void checkGame(ConstGameTree tree, String name) throws ErrorMessage
     {
         int size = tree.getBoardSize();
@@ -256,56 +568,24 @@ public class Statistics
         }
     }
 
-    private String convertCommand(String command, GoColor toMove)
-    {
-        if (command.equals("reg_genmove"))
-            return command + ' ' + toMove;
-        return command;
-    }
-
-    private String convertResponse(String command, String response,
-                                   GoColor toMove, Move move) throws GtpError
+    private static void closeGtp(GtpClientBase gtp)
     {
-        if (command.equals("cputime"))
-        {
-            try
-            {
-                double cpuTime = Double.parseDouble(response);
-                double diff = cpuTime - m_lastCpuTime;
-                m_lastCpuTime = cpuTime;
-                return FORMAT2.format(diff);
-            }
-            catch (NumberFormatException e)
-            {
-                return response;
-            }
-        }
-        else if (command.equals("estimate_score"))
-        {
-            String arg[] = StringUtil.splitArguments(response);
-            if (arg.length == 0)
-                return response;
-            return convertScore(arg[0]);
-        }
-        else if (command.equals("final_score"))
+        try
         {
-            return convertScore(response);
+            gtp.send("quit");
         }
-        else if (command.equals("reg_genmove"))
+        catch (GtpError e)
         {
-            if (move == null)
-                return "";
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(response, m_size);
-                return Move.get(toMove, point) == move ? "1" : "0";
-            }
-            catch (InvalidPointException e)
-            {
-                throw new GtpError("Program sent invalid move: " + response);
-            }
         }
-        return response;
+        gtp.close();
+        gtp.waitForExit();
+    }
+
+    private String convertCommand(String command, GoColor toMove)
+    {
+        if (command.equals("reg_genmove"))
+            return command + ' ' + toMove;
+        return command;
     }
 
     /** Tries to convert score into number.
@@ -331,6 +611,31 @@ public class Statistics
         }
     }
 
+    private static GtpClientBase createGtpClient(String program,
+                                                 boolean verbose, int index)
+        throws GtpError
+    {
+        GtpClient gtp = new GtpClient(program, null, verbose, null);
+        if (index > 0)
+            gtp.setLogPrefix(Integer.toString(index + 1));
+        return gtp;
+    }
+
+    /** Get the index of the next file to handle.
+        @return The index or -1, if all files are handled or an error
+        occurred. */
+    private synchronized int getNextFile()
+    {
+        if (m_exception != null || m_nextFile >= m_sgfFiles.size())
+            return -1;
+        return m_nextFile++;
+    }
+
+    private synchronized void incrementNumberGames()
+    {
+        ++m_numberGames;
+    }
+
     private void initCommands(ArrayList<String> commands,
                               ArrayList<String> beginCommands,
                               ArrayList<String> finalCommands)
@@ -352,164 +657,116 @@ public class Statistics
         return m_commands.get(index);
     }
 
-    private void handleFile(String name)
-        throws ErrorMessage, FileNotFoundException, GtpError,
-               SgfError
+    private void run(ArrayList<GtpClientBase> gtp, String program,
+                     boolean verbose, ArrayList<String> sgfFiles, int size,
+                     ArrayList<String> commands,
+                     ArrayList<String> beginCommands,
+                     ArrayList<String> finalCommands, boolean allowSetup,
+                     boolean backward, boolean random)
+        throws ErrorMessage, IOException
     {
-        File file = new File(name);
-        InputStream in = new FileInputStream(file);
-        SgfReader reader = new SgfReader(in, file, null, 0);
-        ++m_numberGames;
-        Game game = new Game(reader.getTree());
-        checkGame(game.getTree(), name);
-        if (m_random)
-            iteratePositionsRandom(game, name);
-        else if (m_backward)
-            iteratePositionsBackward(game, name);
-        else
-            iteratePositions(game, name);
+        ArrayList<Worker> workers = new ArrayList<Worker>(gtp.size());
+        for (int i = 0; i < gtp.size(); ++i)
+            workers.add(new Worker(gtp.get(i), program, verbose, i));
+        try
+        {
+            run(workers, program, sgfFiles, size, commands, beginCommands,
+                finalCommands, allowSetup, backward, random);
+        }
+        finally
+        {
+            for (Worker worker : workers)
+                worker.close();
+        }
     }
 
-    private void handlePosition(String name, GoColor toMove, Move move,
-                                int number, boolean beginCommands,
-                                boolean regularCommands,
-                                boolean finalCommands)
-        throws GtpError
+    private void run(ArrayList<Worker> workers, String program,
+                     ArrayList<String> sgfFiles, int size,
+                     ArrayList<String> commands,
+                     ArrayList<String> beginCommands,
+                     ArrayList<String> finalCommands, boolean allowSetup,
+                     boolean backward, boolean random)
+        throws ErrorMessage, IOException
     {
-        if (! m_quiet)
-            System.err.println(name + ":" + number);
-        m_table.startRow();
-        try
+        new FileCheck(sgfFiles, size, allowSetup);
+        m_size = size;
+        m_allowSetup = allowSetup;
+        m_backward = backward;
+        m_random = random;
+        initCommands(commands, beginCommands, finalCommands);
+        ArrayList<String> columnHeaders = new ArrayList<String>();
+        columnHeaders.add("File");
+        columnHeaders.add("Move");
+        for (int i = 0; i < m_commands.size(); ++i)
+            columnHeaders.add(getCommand(i).m_columnTitle);
+        m_table = new Table(columnHeaders);
+        m_table.setProperty("Size", Integer.toString(size));
+        for (Worker worker : workers)
+            worker.m_gtp.queryProtocolVersion();
+        GtpClientBase gtp = workers.get(0).m_gtp;
+        gtp.queryName();
+        if (program != null)
+            m_table.setProperty("Program", program);
+        m_table.setProperty("Name", gtp.getLabel());
+        m_table.setProperty("Version", gtp.queryVersion());
+        String host = Platform.getHostInfo();
+        m_table.setProperty("Host", host);
+        m_table.setProperty("Date", StringUtil.getDate());
+        m_sgfFiles = sgfFiles;
+        m_nextFile = 0;
+        m_numberGames = 0;
+        m_exception = null;
+        m_fileRows = new Table[sgfFiles.size()];
+        if (workers.size() == 1)
+            workers.get(0).run();
+        else
         {
-            m_table.set("File", name);
-            m_table.set("Move", number);
-            for (int i = 0; i < m_commands.size(); ++i)
+            ArrayList<Thread> threads = new ArrayList<Thread>();
+            for (Worker worker : workers)
             {
-                Command command = getCommand(i);
-                if (command.m_begin && beginCommands)
-                {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
-                }
+                Thread thread = new Thread(worker);
+                thread.start();
+                threads.add(thread);
             }
-            for (int i = 0; i < m_commands.size(); ++i)
+            for (Thread thread : threads)
             {
-                Command command = getCommand(i);
-                if (! command.m_begin && ! command.m_final && regularCommands)
+                try
                 {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
+                    thread.join();
                 }
-            }
-            for (int i = 0; i < m_commands.size(); ++i)
-            {
-                Command command = getCommand(i);
-                if (command.m_final && finalCommands)
+                catch (InterruptedException e)
                 {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
+                    throw new ErrorMessage("Interrupted");
                 }
             }
         }
-        catch (Table.InvalidLocation e)
-        {
-            System.err.println(e.getMessage());
-            // Table was created by this class in correct format
-            assert false;
-        }
-    }
-
-    private void iteratePositions(Game game, String name) throws GtpError
-    {
-        int number = 0;
-        for (ConstNode node = game.getRoot(); node != null;
-             node = node.getChildConst())
-        {
-            game.gotoNode(node, null);
-            synchronize(game);
-            Move move = node.getMove();
-            boolean beginCommands = ! node.hasFather();
-            boolean regularCommands =
-                ((move != null || node.hasSetup() || ! node.hasFather())
-                 && number >= m_min && number <= m_max);
-            boolean finalCommands = ! node.hasChildren();
-            if (beginCommands || regularCommands || finalCommands)
-                handlePosition(name, node.getToMove(), move, number,
-                               beginCommands, regularCommands, finalCommands);
-            ++number;
-        }
-    }
-
-    private void iteratePositionsBackward(Game game, String name)
-        throws GtpError
-    {
-        int number = 0;
-        for (ConstNode node = NodeUtil.getLast(game.getRoot()); node != null;
-             node = node.getFatherConst())
-        {
-            game.gotoNode(node, null);
-            synchronize(game);
-            Move move = node.getMove();
-            boolean beginCommands = ! node.hasChildren();
-            boolean regularCommands =
-                ((move != null || node.hasSetup() || ! node.hasFather())
-                 && number >= m_min && number <= m_max);
-            boolean finalCommands = ! node.hasFather();
-            if (beginCommands || regularCommands || finalCommands)
-                handlePosition(name, node.getToMove(), move, number,
-                               beginCommands, regularCommands, finalCommands);
-            ++number;
-        }
+        if (m_exception instanceof ErrorMessage)
+            throw (ErrorMessage)m_exception;
+        if (m_exception instanceof IOException)
+            throw (IOException)m_exception;
+        if (m_exception instanceof RuntimeException)
+            throw (RuntimeException)m_exception;
+        if (m_exception instanceof Error)
+            throw (Error)m_exception;
+        assert m_exception == null;
+        for (int i = 0; i < m_fileRows.length; ++i)
+            if (m_fileRows[i] != null)
+                appendRows(m_fileRows[i]);
+        m_fileRows = null;
+        m_table.setProperty("Games", Integer.toString(m_numberGames));
+        m_table.setProperty("Backward", backward ? "yes" : "no");
+        m_table.setProperty("Random", random ? "yes" : "no");
     }
 
-    private void iteratePositionsRandom(Game game, String name)
-        throws GtpError
+    private synchronized void setException(Throwable e)
     {
-        int minDepth;
-        int maxDepth;
-        if (m_backward)
-        {
-            int depth = NodeUtil.getDepth(NodeUtil.getLast(game.getRoot()));
-            minDepth = depth - m_max;
-            maxDepth = depth - m_min;
-        }
-        else
-        {
-            minDepth = m_min;
-            maxDepth = m_max;
-        }
-        ConstNode node = NodeUtil.selectRandom(game.getRoot(), minDepth,
-                                               maxDepth);
-        if (node == null)
-            return;
-        int number = NodeUtil.getDepth(node);
-        game.gotoNode(node, null);
-        synchronize(game);
-        Move move = node.getMove();
-        boolean beginCommands = ! node.hasChildren();
-        boolean regularCommands =
-            (move != null || node.hasSetup() || ! node.hasFather());
-        boolean finalCommands = ! node.hasFather();
-        if (beginCommands || regularCommands || finalCommands)
-            handlePosition(name, node.getToMove(), move, number,
-                           beginCommands, regularCommands, finalCommands);
+        if (m_exception == null)
+            m_exception = e;
     }
 
-    private String send(String command, GoColor toMove, Move move)
-        throws GtpError
+    private synchronized void setRows(int fileIndex, Table rows)
     {
-        String cmd = convertCommand(command, toMove);
-        String response = m_gtp.send(cmd).trim();
-        response = response.replaceAll("\t", " ");
-        response = response.replaceAll("\n", " ");
-        return convertResponse(command, response, toMove, move);
+        m_fileRows[fileIndex] = rows;
     }
 
-    private void synchronize(ConstGame game) throws GtpError
-    {
-        ConstNode node = game.getGameInfoNode();
-        ConstGameInfo info = game.getGameInfo(node);
-        m_synchronizer.synchronize(game.getBoard(), info.getKomi(),
-                                   info.getTimeSettings());
-    }
 }
@@ -5,7 +5,11 @@ package net.sf.gogui.tools.thumbnailer;
 import java.io.File;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import javax.imageio.ImageIO;
+import net.sf.gogui.thumbnail.ThumbnailBatch;
 import net.sf.gogui.thumbnail.ThumbnailCreator;
+import net.sf.gogui.thumbnail.ThumbnailPlatform;
+import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.Options;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.version.Version;
@@ -19,12 +23,14 @@ public final class Main
         try
         {
             String options[] = {
+                "batch",
                 //"check-expire:", // experimental; needs more testing
                 "config:",
                 //"expire:", // experimental; needs more testing
                 "help",
                 "scale",
                 "size:",
+                "threads:",
                 "verbose",
                 "version"
             };
@@ -55,6 +61,19 @@ public final class Main
             boolean verbose = opt.contains("verbose");
             boolean scale = opt.contains("scale");
             ArrayList<String> arguments = opt.getArguments();
+            if (opt.contains("batch"))
+            {
+                if (arguments.isEmpty() || opt.contains("size") || scale)
+                {
+                    printUsage(System.err);
+                    System.exit(1);
+                }
+                int defaultThreads =
+                    Runtime.getRuntime().availableProcessors();
+                int threads = opt.getInteger("threads", defaultThreads, 1);
+                runBatch(arguments, threads, verbose);
+                return;
+            }
             if (arguments.isEmpty() || arguments.size() > 2)
             {
                 printUsage(System.err);
@@ -92,13 +111,39 @@ public final class Main
     {
         String helpText =
             "Usage: gogui-thumbnailer [options] input [output]\n" +
+            "       gogui-thumbnailer -batch [options] file|dir...\n" +
             "Options:\n" +
+            "-batch     Create thumbnails at standard location for files\n" +
+            "           and directories\n" +
             "-config    config file\n" +
             "-help      Print help and exit\n" +
             "-scale     Scale size for board sizes other than 19x19\n" +
             "-size      Thumbnail size in pixels\n" +
+            "-threads   Number of threads in batch mode\n" +
             "-verbose   Print logging messages to stderr\n" +
             "-version   Print version and exit\n";
         out.print(helpText);
     }
+
+    private static void runBatch(ArrayList<String> arguments, int threads,
+                                 boolean verbose) throws ErrorMessage
+    {
+        if (! ThumbnailPlatform.checkThumbnailSupport())
+            throw new ErrorMessage("Thumbnail directory does not exist: "
+                                   + ThumbnailPlatform.getNormalDir());
+        // The thumbnails are small, writing them directly is faster than
+        // using a temporary cache file
+        ImageIO.setUseCache(false);
+        ArrayList<File> files = new ArrayList<File>();
+        for (String argument : arguments)
+            files.add(new File(argument));
+        ThumbnailBatch batch = new ThumbnailBatch(threads, verbose);
+        batch.run(files);
+        if (verbose)
+            System.err.println("Created: " + batch.getNumberCreated()
+                               + ", up to date: " + batch.getNumberSkipped()
+                               + ", errors: " + batch.getNumberErrors());
+        if (batch.getNumberErrors() > 0)
+            System.exit(1);
+    }
 }
@@ -13,6 +13,7 @@ import net.sf.gogui.util.HtmlUtil;
 import net.sf.gogui.util.Statistics;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.util.Table;
+import net.sf.gogui.util.TableReader;
 
 /** Analyze the game results and produce a HTML formatted report. */
 public class Analyze
@@ -81,7 +82,9 @@ public class Analyze
 
     private final Statistics m_timeWhite = new Statistics();
 
-    private Table m_table;
+    /** Reader of the result file.
+        Closed after reading the games, still used for the properties. */
+    private TableReader m_reader;
 
     private void calcStatistics()
     {
@@ -184,38 +187,60 @@ public class Analyze
             statistics.m_histo.add(score);
     }
 
+    /** Read the games.
+        The rows are read one at a time, only the entries needed for the
+        statistics are kept in memory. */
     private void readTable(File file) throws Exception
     {
-        m_table = new Table();
-        m_table.read(file);
+        m_reader = new TableReader(file);
         try
         {
-            for (int i = 0; i < m_table.getNumberRows(); ++i)
+            int gameColumn = m_reader.getColumnIndex("GAME");
+            int resultBlackColumn = m_reader.getColumnIndex("RES_B");
+            int resultWhiteColumn = m_reader.getColumnIndex("RES_W");
+            int resultRefereeColumn = m_reader.getColumnIndex("RES_R");
+            int alternatedColumn = m_reader.getColumnIndex("ALT");
+            int duplicateColumn = m_reader.getColumnIndex("DUP");
+            int lengthColumn = m_reader.getColumnIndex("LEN");
+            int timeBlackColumn = -1;
+            int timeWhiteColumn = -1;
+            try
             {
-                int gameIndex = m_table.getInt("GAME", i);
-                String resultBlack = m_table.get("RES_B", i);
-                String resultWhite = m_table.get("RES_W", i);
-                String resultReferee = m_table.get("RES_R", i);
-                boolean alternated = (m_table.getInt("ALT", i) != 0);
-                String duplicate = m_table.get("DUP", i);
-                int length = m_table.getInt("LEN", i);
+                timeBlackColumn = m_reader.getColumnIndex("TIME_B");
+                timeWhiteColumn = m_reader.getColumnIndex("TIME_W");
+            }
+            catch (Table.InvalidLocation e)
+            {
+                // twogtp versions before 1.1pre2 did not save TIME_B,
+                // TIME_W, we still support analyzing such old tables for
+                // a while
+                timeBlackColumn = -1;
+            }
+            int cpuBlackColumn = m_reader.getColumnIndex("CPU_B");
+            int cpuWhiteColumn = m_reader.getColumnIndex("CPU_W");
+            int errorColumn = m_reader.getColumnIndex("ERR");
+            int errorMessageColumn = m_reader.getColumnIndex("ERR_MSG");
+            while (m_reader.next())
+            {
+                int gameIndex = m_reader.getInt(gameColumn);
+                String resultBlack = m_reader.get(resultBlackColumn);
+                String resultWhite = m_reader.get(resultWhiteColumn);
+                String resultReferee = m_reader.get(resultRefereeColumn);
+                boolean alternated =
+                    (m_reader.getInt(alternatedColumn) != 0);
+                String duplicate = m_reader.get(duplicateColumn);
+                int length = m_reader.getInt(lengthColumn);
                 double timeBlack = 0;
                 double timeWhite = 0;
-                try
+                if (timeBlackColumn >= 0)
                 {
-                    timeBlack = m_table.getDouble("TIME_B", i);
-                    timeWhite = m_table.getDouble("TIME_W", i);
+                    timeBlack = m_reader.getDouble(timeBlackColumn);
+                    timeWhite = m_reader.getDouble(timeWhiteColumn);
                 }
-                catch (Table.InvalidLocation e)
-                {
-                    // twogtp versions before 1.1pre2 did not save TIME_B,
-                    // TIME_W, we still support analyzing such old tables for
-                    // a while
-                }
-                double cpuBlack = m_table.getDouble("CPU_B", i);
-                double cpuWhite = m_table.getDouble("CPU_W", i);
-                boolean error = (m_table.getInt("ERR", i) != 0);
-                String errorMessage = m_table.get("ERR_MSG", i);
+                double cpuBlack = m_reader.getDouble(cpuBlackColumn);
+                double cpuWhite = m_reader.getDouble(cpuWhiteColumn);
+                boolean error = (m_reader.getInt(errorColumn) != 0);
+                String errorMessage = m_reader.get(errorMessageColumn);
                 m_entries.add(new Entry(gameIndex, resultBlack, resultWhite,
                                         resultReferee, alternated, duplicate,
                                         length, timeBlack, timeWhite,
@@ -227,6 +252,10 @@ public class Analyze
         {
             throw new ErrorMessage("Wrong file format");
         }
+        finally
+        {
+            m_reader.close();
+        }
     }
 
     private void writeHtml(File file) throws Exception
@@ -240,22 +269,22 @@ public class Analyze
         PrintStream out = new PrintStream(file);
         NumberFormat format = StringUtil.getNumberFormat(1);
         String black;
-        if (m_table.hasProperty("BlackLabel"))
-            black = m_table.getProperty("BlackLabel");
-        else if (m_table.hasProperty("Black"))
+        if (m_reader.hasProperty("BlackLabel"))
+            black = m_reader.getProperty("BlackLabel");
+        else if (m_reader.hasProperty("Black"))
             // Older versions of TwoGtp do not have BlackLabel property
-            black = m_table.getProperty("Black");
+            black = m_reader.getProperty("Black");
         else
             black = "Black";
         String white;
-        if (m_table.hasProperty("WhiteLabel"))
-            white = m_table.getProperty("WhiteLabel");
-        else if (m_table.hasProperty("White"))
+        if (m_reader.hasProperty("WhiteLabel"))
+            white = m_reader.getProperty("WhiteLabel");
+        else if (m_reader.hasProperty("White"))
             // Older versions of TwoGtp do not have WhiteLabel property
-            white = m_table.getProperty("White");
+            white = m_reader.getProperty("White");
         else
             white = "Black";
-        boolean useXml = (! m_table.getProperty("Xml", "0").equals("0"));
+        boolean useXml = (! m_reader.getProperty("Xml", "0").equals("0"));
         out.print("<html>\n" +
                   "<head>\n" +
                   "<title>" + black + " - " + white + "</title>\n" +
@@ -277,14 +306,14 @@ public class Analyze
                   "</table>\n" +
                   "<table width=\"100%\" bgcolor=\"" + COLOR_INFO
                   + "\">\n");
-        String referee = m_table.getProperty("Referee", "");
+        String referee = m_reader.getProperty("Referee", "");
         if (referee.equals("-") || referee.equals(""))
             referee = null;
         writePropertyHtmlRow(out, "Black", "Black");
         writePropertyHtmlRow(out, "White", "White");
         writePropertyHtmlRow(out, "Size", "Size");
         writePropertyHtmlRow(out, "Komi", "Komi");
-        if (m_table.hasProperty("Openings"))
+        if (m_reader.hasProperty("Openings"))
             writePropertyHtmlRow(out, "Openings", "Openings");
         writePropertyHtmlRow(out, "Date", "Date");
         writePropertyHtmlRow(out, "Host", "Host");
@@ -402,7 +431,7 @@ public class Analyze
                                       String keyLabel)
         throws Exception
     {
-        String value = m_table.getProperty(key, "");
+        String value = m_reader.getProperty(key, "");
         writeHtmlRow(out, keyLabel, value);
     }
 
@@ -7,10 +7,8 @@ import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Map;
-import java.util.TreeMap;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.GameTree;
-import net.sf.gogui.go.Board;
 import net.sf.gogui.go.BoardUtil;
 import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.GoColor;
@@ -68,39 +66,62 @@ public final class Compare
     {
         String result = "-";
         int size = board.getSize();
+        int maxDifferent = moves.size() / 5;
         for (Map.Entry<Integer, ArrayList<Placement>> entry : games.entrySet())
         {
             int numberGame = entry.getKey();
             if (useAlternate && ((numberGame % 2 != 0) != isAlternated))
                 continue;
-            ArrayList<Placement> gameMoves = entry.getValue();
-            for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+            int numberDifferent =
+                getNumberDifferent(moves, entry.getValue(), size);
+            if (numberDifferent == 0)
+                return Integer.toString(numberGame);
+            else if (numberDifferent < maxDifferent)
+                result = Integer.toString(numberGame) + "?";
+        }
+        return result;
+    }
+
+    /** Count the different placements of two games.
+        Compares the placements by number for all rotations of the second
+        game. Placements beyond the length of the shorter game count as
+        different.
+        @param moves The placements of the first game.
+        @param gameMoves The placements of the second game.
+        @param size The board size.
+        @return The smallest number of different placements for all
+        rotations. Counting stops, if the number exceeds 20% of the length
+        of the first game. */
+    public static int getNumberDifferent(ArrayList<Placement> moves,
+                                         ArrayList<Placement> gameMoves,
+                                         int size)
+    {
+        int result = Integer.MAX_VALUE;
+        for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+        {
+            int numberDifferent = 0;
+            int moveNumber = moves.size();
+            int maxDifferent = moveNumber / 5;
+            if (gameMoves.size() != moveNumber)
+            {
+                numberDifferent = Math.abs(gameMoves.size() - moveNumber);
+                moveNumber = Math.min(gameMoves.size(), moveNumber);
+            }
+            for (int i = 0;
+                 numberDifferent <= maxDifferent && i < moveNumber; ++i)
             {
-                int numberDifferent = 0;
-                int moveNumber = moves.size();
-                int maxDifferent = moveNumber / 5;
-                if (gameMoves.size() != moveNumber)
-                {
-                    numberDifferent = Math.abs(gameMoves.size() - moveNumber);
-                    moveNumber = Math.min(gameMoves.size(), moveNumber);
-                }
-                for (int i = 0;
-                     numberDifferent <= maxDifferent && i < moveNumber; ++i)
-                {
-                    Placement move = moves.get(i);
-                    Placement gameMove = gameMoves.get(i);
-                    GoPoint gameRotatedPoint =
-                        BoardUtil.rotate(rot, gameMove.m_point, size);
-                    if (move.m_isSetup != gameMove.m_isSetup
-                        || ! move.m_color.equals(gameMove.m_color)
-                        || ! GoPoint.equals(move.m_point, gameRotatedPoint))
-                        ++numberDifferent;
-                }
-                if (numberDifferent == 0)
-                    return Integer.toString(numberGame);
-                else if (numberDifferent < maxDifferent)
-                    result = Integer.toString(numberGame) + "?";
+                Placement move = moves.get(i);
+                Placement gameMove = gameMoves.get(i);
+                GoPoint gameRotatedPoint =
+                    BoardUtil.rotate(rot, gameMove.m_point, size);
+                if (move.m_isSetup != gameMove.m_isSetup
+                    || ! move.m_color.equals(gameMove.m_color)
+                    || ! GoPoint.equals(move.m_point, gameRotatedPoint))
+                    ++numberDifferent;
             }
+            if (numberDifferent == 0)
+                return 0;
+            result = Math.min(result, numberDifferent);
         }
         return result;
     }
@@ -109,13 +130,13 @@ public final class Compare
         Prints the results to standard output, one line per game
         with the filename and the duplicate information as returned by
         Compare.checkDuplicate.
+        Uses a DuplicateIndex, so that large collections can be checked.
         @param filenames List of filenames
         @throws Exception If reading one of the files fails. */
     public static void compare(ArrayList<String> filenames) throws Exception
     {
-        Board board = null;
-        Map<Integer, ArrayList<Placement>> games =
-            new TreeMap<Integer, ArrayList<Placement>>();
+        DuplicateIndex index = null;
+        int boardSize = 0;
         for (int gameNumber = 0; gameNumber < filenames.size(); ++gameNumber)
         {
             String filename = filenames.get(gameNumber);
@@ -124,17 +145,19 @@ public final class Compare
             SgfReader reader = new SgfReader(fileStream, file, null, 0);
             GameTree tree = reader.getTree();
             int size = tree.getBoardSize();
-            if (board == null)
-                board = new Board(size);
-            else if (size != board.getSize())
+            if (index == null)
+            {
+                index = new DuplicateIndex(size);
+                boardSize = size;
+            }
+            else if (size != boardSize)
                 throw new Exception("Board size in " + filename +
                                     " does not match other games");
             ArrayList<Placement> moves = getPlacements(tree.getRoot());
-            String duplicate =
-                checkDuplicate(board, moves, games, false, false);
+            String duplicate = index.checkDuplicate(moves, false, false);
             System.out.println(Integer.toString(gameNumber) + " " +
                                filename + " " + duplicate);
-            games.put(gameNumber, moves);
+            index.add(gameNumber, moves);
         }
     }
 
@@ -0,0 +1,205 @@
+// DuplicateIndex.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import net.sf.gogui.go.BoardUtil;
+import net.sf.gogui.go.GoPoint;
+
+/** Index of games for finding duplicates.
+    Gives the same results as Compare.checkDuplicate() without comparing a
+    game to all games in the collection.
+    Exact duplicates are found by a hash code of the complete sequence of
+    placements for each rotation of the game.
+    Near duplicates are found by blocks of BLOCK_SIZE consecutive
+    placements at fixed positions in the sequence. A game with less than
+    <code>maxDifferent</code> (20%) different placements must share at least
+    <code>numberBlocks - maxDifferent + 1</code> blocks with the game to
+    check, so it must share at least one of any <code>maxDifferent</code>
+    blocks. Only the games sharing one of the least frequent blocks are
+    compared with the game to check.
+    This class is not thread-safe. */
+public final class DuplicateIndex
+{
+    /** Constructor.
+        @param size The board size of all games in the index. */
+    public DuplicateIndex(int size)
+    {
+        m_size = size;
+    }
+
+    /** Add a game to the index.
+        @param gameNumber The number of the game.
+        @param moves The sequence of placements of the game as returned by
+        Compare.getPlacements() */
+    public void add(int gameNumber, ArrayList<Compare.Placement> moves)
+    {
+        m_games.put(gameNumber, moves);
+        getCodes(moves, 0);
+        addToIndex(m_sequences, getSequenceHash(m_codes), gameNumber);
+        int numberBlocks = m_codes.length / BLOCK_SIZE;
+        for (int i = 0; i < numberBlocks; ++i)
+            addToIndex(m_blocks, getBlockKey(m_codes, i), gameNumber);
+    }
+
+    /** Check if game already exists in the index.
+        @param moves Moves of game to check.
+        @param useAlternate If true, assume that players are exchanged every
+        second game. Only check games where player played the same color.
+        @param isAlternated If useAlternate, indicate if game to check
+        had players exchanged.
+        @return See Compare.checkDuplicate() */
+    public String checkDuplicate(ArrayList<Compare.Placement> moves,
+                                 boolean useAlternate, boolean isAlternated)
+    {
+        int numberMoves = moves.size();
+        int maxDifferent = numberMoves / 5;
+        int numberBlocks = numberMoves / BLOCK_SIZE;
+        // Number of least frequent blocks, from which a near duplicate must
+        // share at least one block
+        int numberProbes = maxDifferent;
+        assert numberProbes <= numberBlocks;
+        TreeMap<Integer,ArrayList<Compare.Placement>> candidates =
+            new TreeMap<Integer,ArrayList<Compare.Placement>>();
+        for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+        {
+            getCodes(moves, rot);
+            addCandidates(m_sequences.get(getSequenceHash(m_codes)),
+                          candidates);
+            if (numberProbes == 0)
+                continue;
+            ArrayList<ArrayList<Integer>> postings =
+                new ArrayList<ArrayList<Integer>>(numberBlocks);
+            for (int i = 0; i < numberBlocks; ++i)
+            {
+                ArrayList<Integer> games =
+                    m_blocks.get(getBlockKey(m_codes, i));
+                if (games == null)
+                    games = EMPTY_POSTINGS;
+                postings.add(games);
+            }
+            // Partial selection sort is fine, numberProbes is small
+            // compared to the number of blocks for long games
+            for (int i = 0; i < numberProbes; ++i)
+            {
+                int min = i;
+                for (int j = i + 1; j < numberBlocks; ++j)
+                    if (postings.get(j).size() < postings.get(min).size())
+                        min = j;
+                ArrayList<Integer> games = postings.get(min);
+                postings.set(min, postings.get(i));
+                addCandidates(games, candidates);
+            }
+        }
+        String result = "-";
+        for (Map.Entry<Integer,ArrayList<Compare.Placement>> entry
+                 : candidates.entrySet())
+        {
+            int numberGame = entry.getKey();
+            if (useAlternate && ((numberGame % 2 != 0) != isAlternated))
+                continue;
+            int numberDifferent =
+                Compare.getNumberDifferent(moves, entry.getValue(), m_size);
+            if (numberDifferent == 0)
+                return Integer.toString(numberGame);
+            else if (numberDifferent < maxDifferent)
+                result = Integer.toString(numberGame) + "?";
+        }
+        return result;
+    }
+
+    /** Number of placements in the blocks used for finding near
+        duplicates.
+        Must be small compared to 5, such that games with less than 20%
+        different placements share enough blocks. */
+    private static final int BLOCK_SIZE = 4;
+
+    /** Number of different placement codes.
+        @see #getCode */
+    private static final int CODE_RANGE = 6 * (GoPoint.NUMBER_INDEXES + 1);
+
+    private static final ArrayList<Integer> EMPTY_POSTINGS
+        = new ArrayList<Integer>();
+
+    private final int m_size;
+
+    /** Temporary variable reused for efficiency. */
+    private int[] m_codes = new int[0];
+
+    private final TreeMap<Integer,ArrayList<Compare.Placement>> m_games
+        = new TreeMap<Integer,ArrayList<Compare.Placement>>();
+
+    /** Games indexed by the hash code of their sequence of placements. */
+    private final HashMap<Long,ArrayList<Integer>> m_sequences
+        = new HashMap<Long,ArrayList<Integer>>();
+
+    /** Games indexed by their blocks of placements.
+        @see #getBlockKey */
+    private final HashMap<Long,ArrayList<Integer>> m_blocks
+        = new HashMap<Long,ArrayList<Integer>>();
+
+    private void addCandidates(ArrayList<Integer> games,
+                    TreeMap<Integer,ArrayList<Compare.Placement>> candidates)
+    {
+        if (games == null)
+            return;
+        for (int gameNumber : games)
+            candidates.put(gameNumber, m_games.get(gameNumber));
+    }
+
+    private static void addToIndex(HashMap<Long,ArrayList<Integer>> index,
+                                   long key, int gameNumber)
+    {
+        ArrayList<Integer> games = index.get(key);
+        if (games == null)
+        {
+            games = new ArrayList<Integer>(1);
+            index.put(key, games);
+        }
+        games.add(gameNumber);
+    }
+
+    /** Get a key for a block that is unique for the position of the block
+        in the sequence and the placements in the block. */
+    private static long getBlockKey(int[] codes, int block)
+    {
+        long key = block;
+        for (int i = block * BLOCK_SIZE; i < (block + 1) * BLOCK_SIZE; ++i)
+            key = key * CODE_RANGE + codes[i];
+        return key;
+    }
+
+    /** Convert placements to integer codes.
+        Stores the codes of the placements after applying a rotation in
+        m_codes, which is resized to the number of placements. */
+    private void getCodes(ArrayList<Compare.Placement> moves, int rot)
+    {
+        if (m_codes.length != moves.size())
+            m_codes = new int[moves.size()];
+        for (int i = 0; i < m_codes.length; ++i)
+            m_codes[i] = getCode(moves.get(i), rot);
+    }
+
+    /** Get integer code for a placement that is unique for the setup flag,
+        the color and the rotated point of the placement. */
+    private int getCode(Compare.Placement placement, int rot)
+    {
+        GoPoint p = BoardUtil.rotate(rot, placement.m_point, m_size);
+        int pointCode = (p == null ? GoPoint.NUMBER_INDEXES : p.getIndex());
+        int colorCode = placement.m_color.ordinal();
+        if (placement.m_isSetup)
+            colorCode += 3;
+        return colorCode * (GoPoint.NUMBER_INDEXES + 1) + pointCode;
+    }
+
+    private static long getSequenceHash(int[] codes)
+    {
+        long hash = codes.length;
+        for (int i = 0; i < codes.length; ++i)
+            hash = hash * 1000003L + codes[i];
+        return hash;
+    }
+}
@@ -39,6 +39,7 @@ public final class Main
                 "openings:",
                 "referee:",
                 "sgffile:",
+                "sharedreferee",
                 "size:",
                 "threads:",
                 "time:",
@@ -71,6 +72,7 @@ public final class Main
                    "-openings       directory with opening sgf files\n" +
                    "-referee        command for referee program\n" +
                    "-sgffile        filename prefix\n" +
+                   "-sharedreferee  use one referee process for all threads\n" +
                    "-size           board size for autoplay (default 19)\n" +
                    "-threads n      number of threads\n" +
                    "-time spec      set time limits (min[+min/moves])\n" +
@@ -111,6 +113,10 @@ public final class Main
                 throw new ErrorMessage("No white program set");
             String referee = opt.get("referee", "");
             String observer = opt.get("observer", "");
+            boolean isRefereeShared = opt.contains("sharedreferee");
+            if (isRefereeShared && (referee.equals("") || ! auto))
+                throw new ErrorMessage("Option -sharedreferee needs options"
+                                       + " -referee and -auto");
             int size = opt.getInteger("size", GoPoint.DEFAULT_SIZE, 1,
                                       GoPoint.MAX_SIZE);
             Komi komi = new Komi(6.5);
@@ -136,42 +142,51 @@ public final class Main
             if (auto)
                 System.in.close();
 
-            TwoGtp twoGtp[] = new TwoGtp[numberThreads];
-            TwoGtpThread thread[] = new TwoGtpThread[numberThreads];
+            ProgramPool blackPool =
+                new ProgramPool(black, "Black", "B", verbose, numberThreads);
+            ProgramPool whitePool =
+                new ProgramPool(white, "White", "W", verbose, numberThreads);
+            ProgramPool refereePool = null;
+            if (! referee.equals(""))
+                refereePool =
+                    new ProgramPool(referee, "Referee", "R", verbose,
+                                    isRefereeShared ? 1 : numberThreads);
             ResultFile resultFile = null;
-            for (int i = 0; i < numberThreads; ++i)
+            if (! sgfFile.equals(""))
             {
                 ArrayList<Program> allPrograms = new ArrayList<Program>();
-                Program blackProgram =
-                    new Program(black, "Black", "B", verbose);
+                Program blackProgram = blackPool.acquire();
                 allPrograms.add(blackProgram);
-                Program whiteProgram =
-                    new Program(white, "White", "W", verbose);
+                Program whiteProgram = whitePool.acquire();
                 allPrograms.add(whiteProgram);
-                Program refereeProgram;
-                if (referee.equals(""))
-                    refereeProgram = null;
-                else
+                Program refereeProgram = null;
+                if (refereePool != null)
                 {
-                    refereeProgram =
-                        new Program(referee, "Referee", "R", verbose);
+                    refereeProgram = refereePool.acquire();
                     allPrograms.add(refereeProgram);
                 }
                 for (Program program : allPrograms)
                     program.setLabel(allPrograms);
-                if (! sgfFile.equals("") && resultFile == null)
-                    resultFile =
-                        new ResultFile(force, blackProgram, whiteProgram,
-                                       refereeProgram, numberGames, size,
-                                       komi, sgfFile, openings, alternate,
-                                       useXml, numberThreads);
+                resultFile =
+                    new ResultFile(force, blackProgram, whiteProgram,
+                                   refereeProgram, numberGames, size, komi,
+                                   sgfFile, openings, alternate, useXml);
+                blackPool.release(blackProgram);
+                whitePool.release(whiteProgram);
+                if (refereeProgram != null)
+                    refereePool.release(refereeProgram);
+            }
+            TwoGtp twoGtp[] = new TwoGtp[numberThreads];
+            TwoGtpThread thread[] = new TwoGtpThread[numberThreads];
+            for (int i = 0; i < numberThreads; ++i)
+            {
                 if (i > 0)
                     verbose = false;
-                twoGtp[i] = new TwoGtp(blackProgram, whiteProgram,
-                                       refereeProgram, observer, size, komi, handicap,
-                                       numberGames, alternate, sgfFile,
-                                       verbose, openings, timeSettings,
-                                       resultFile);
+                twoGtp[i] = new TwoGtp(blackPool, whitePool, refereePool,
+                                       isRefereeShared, observer, size, komi,
+                                       handicap, numberGames, alternate,
+                                       sgfFile, verbose, openings,
+                                       timeSettings, resultFile);
                 twoGtp[i].setMaxMoves(maxMoves);
                 if (debugToComment)
                     twoGtp[i].setDebugToComment(true);
@@ -194,6 +209,10 @@ public final class Main
             }
             else
                 twoGtp[0].mainLoop(System.in, System.out);
+            blackPool.close();
+            whitePool.close();
+            if (refereePool != null)
+                refereePool.close();
             if (resultFile != null)
                 resultFile.close();
         }
@@ -0,0 +1,129 @@
+// ProgramPool.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import net.sf.gogui.gtp.GtpError;
+
+/** Bounded pool of processes of a Go program.
+    Processes are started when needed, up to a maximum number. If all
+    processes are in use, acquire() waits until one is released. Processes
+    that died are closed and replaced by a new process on the next
+    acquire(). */
+public class ProgramPool
+{
+    /** Constructor.
+        @param command The command for starting the program.
+        @param defaultName See Program constructor.
+        @param logPrefix See Program constructor.
+        @param verbose Log the GTP streams of the first process.
+        @param maxPrograms The maximum number of processes. */
+    public ProgramPool(String command, String defaultName, String logPrefix,
+                       boolean verbose, int maxPrograms)
+    {
+        assert maxPrograms > 0;
+        m_command = command;
+        m_defaultName = defaultName;
+        m_logPrefix = logPrefix;
+        m_verbose = verbose;
+        m_maxPrograms = maxPrograms;
+    }
+
+    /** Get a process of the program for exclusive use.
+        Must be returned with release() after use. */
+    public Program acquire() throws GtpError
+    {
+        boolean verbose;
+        synchronized (this)
+        {
+            while (true)
+            {
+                if (! m_idle.isEmpty())
+                {
+                    Program program = m_idle.remove(m_idle.size() - 1);
+                    if (! program.isProgramDead())
+                        return program;
+                    System.err.println(program.getLabel()
+                                       + " died, restarting program");
+                    closeProgram(program);
+                }
+                if (m_numberPrograms < m_maxPrograms)
+                    break;
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new GtpError("interrupted");
+                }
+            }
+            ++m_numberPrograms;
+            verbose = (m_verbose && m_numberStarted == 0);
+            ++m_numberStarted;
+        }
+        // Start the process without holding the lock, starting a program
+        // can take a while
+        try
+        {
+            return new Program(m_command, m_defaultName, m_logPrefix,
+                               verbose);
+        }
+        catch (GtpError e)
+        {
+            synchronized (this)
+            {
+                --m_numberPrograms;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /** Close all processes that are not in use. */
+    public synchronized void close()
+    {
+        for (Program program : m_idle)
+            closeProgram(program);
+        m_idle.clear();
+    }
+
+    public String getCommand()
+    {
+        return m_command;
+    }
+
+    /** Return a process acquired with acquire().
+        Processes that died are closed. */
+    public synchronized void release(Program program)
+    {
+        if (program.isProgramDead())
+            closeProgram(program);
+        else
+            m_idle.add(program);
+        notifyAll();
+    }
+
+    private final boolean m_verbose;
+
+    private final int m_maxPrograms;
+
+    /** Number of processes that are running, idle or in use. */
+    private int m_numberPrograms;
+
+    private int m_numberStarted;
+
+    private final String m_command;
+
+    private final String m_defaultName;
+
+    private final String m_logPrefix;
+
+    private final ArrayList<Program> m_idle = new ArrayList<Program>();
+
+    private void closeProgram(Program program)
+    {
+        program.close();
+        --m_numberPrograms;
+    }
+}
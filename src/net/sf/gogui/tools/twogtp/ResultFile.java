@@ -2,18 +2,21 @@
 
 package net.sf.gogui.tools.twogtp;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.ConstGame;
@@ -28,18 +31,26 @@ import net.sf.gogui.util.Table;
 import net.sf.gogui.xml.XmlWriter;
 import net.sf.gogui.version.Version;
 
+/** Result table and game files of a TwoGtp run.
+    The table file is used as an append-only journal. Each result is
+    appended as a single line and synced to the disk, so the cost per game
+    does not grow with the number of games. The file is periodically
+    compacted by rewriting it sorted by game number (and on close()), such
+    that the number of rows rewritten per game is constant on average.
+    Rows between compactions are not sorted, which is handled by all
+    readers of the table. */
 public class ResultFile
 {
     public ResultFile(boolean force, Program black, Program white,
                       Program referee, int numberGames, int size, Komi komi,
                       String filePrefix, Openings openings, boolean alternate,
-                      boolean useXml, int numberThreads) throws ErrorMessage
+                      boolean useXml) throws ErrorMessage
     {
         m_filePrefix = filePrefix;
         m_alternate = alternate;
         m_numberGames = numberGames;
         m_useXml = useXml;
-        m_numberThreads = numberThreads;
+        m_duplicates = new DuplicateIndex(size);
         m_lockFile = new File(filePrefix + ".lock");
         acquireLock();
         m_tableFile = new File(filePrefix + ".dat");
@@ -51,6 +62,7 @@ public class ResultFile
         }
         if (m_tableFile.exists())
         {
+            repairTable(m_tableFile);
             m_table = readTable(m_tableFile, numberGames, m_gameExists);
             m_nextGameIndex = 0;
             while (m_gameExists.contains(m_nextGameIndex))
@@ -68,7 +80,17 @@ public class ResultFile
         {
             m_table = createTable(black, white, referee, size, komi, openings);
             m_nextGameIndex = 0;
+            try
+            {
+                m_table.save(m_tableFile);
+            }
+            catch (IOException e)
+            {
+                throw new ErrorMessage("Could not write to: " + m_tableFile);
+            }
         }
+        m_numberRowsCompacted = m_table.getNumberRows();
+        openTable();
     }
 
     public synchronized void addResult(int gameIndex, ConstGame game,
@@ -84,8 +106,7 @@ public class ResultFile
         ArrayList<Compare.Placement> moves
             = Compare.getPlacements(game.getTree().getRootConst());
         String duplicate =
-            Compare.checkDuplicate(game.getBoard(), moves, m_games,
-                                   m_alternate, alternated);
+            m_duplicates.checkDuplicate(moves, m_alternate, alternated);
         NumberFormat format = StringUtil.getNumberFormat(1);
         m_table.startRow();
         m_table.set("GAME", Integer.toString(gameIndex));
@@ -102,32 +123,12 @@ public class ResultFile
         m_table.set("ERR", error ? "1" : "0");
         m_table.set("ERR_MSG", errorMessage);
 
-        // The code does not rely on the table being sorted by game number,
-        // but it looks nicer for the user.
-        int rowEnd = m_table.getNumberRows();
-        int rowBegin = rowEnd - m_numberThreads;
-        if (rowBegin < 0)
-            rowBegin = 0;
-        // If the run was terminated and continued with a different number
-        // of threads, there could be a gap between gameIndex and
-        // getNumberRows() larger than m_numberThreads
-        if (gameIndex < rowBegin)
-            rowBegin = gameIndex;
-        m_table.sortByIntColumn("GAME", rowBegin, rowEnd);
-
-        File tmpFile = new File(m_tableFile.getAbsolutePath() + ".new");
-        try
-        {
-            m_table.save(tmpFile);
-            if (Platform.isWindows())
-                // File.renameTo() fails on Windows if target exists
-                m_tableFile.delete();
-            tmpFile.renameTo(m_tableFile);
-        }
-        catch (IOException e)
-        {
-            throw new ErrorMessage("Could not write to: " + m_tableFile);
-        }
+        appendRow(m_table.getNumberRows() - 1);
+        int numberRowsAppended =
+            m_table.getNumberRows() - m_numberRowsCompacted;
+        if (numberRowsAppended >= Math.max(MIN_COMPACT,
+                                           m_numberRowsCompacted))
+            compact();
         File file = getFile(gameIndex);
         try
         {
@@ -138,7 +139,7 @@ public class ResultFile
             else
                 new SgfWriter(out, game.getTree(),
                               "gogui-twogtp", Version.get());
-            m_games.put(gameIndex, moves);
+            m_duplicates.add(gameIndex, moves);
         }
         catch (FileNotFoundException e)
         {
@@ -147,8 +148,29 @@ public class ResultFile
         }
     }
 
-    public void close()
+    public synchronized void close()
     {
+        try
+        {
+            if (m_table.getNumberRows() > m_numberRowsCompacted)
+                compact();
+        }
+        catch (ErrorMessage e)
+        {
+            System.err.println(e.getMessage());
+        }
+        if (m_tableOut != null)
+        {
+            try
+            {
+                m_tableOut.close();
+            }
+            catch (IOException e)
+            {
+                System.err.println("Could not close '" + m_tableFile + "'");
+            }
+            m_tableOut = null;
+        }
         try
         {
             m_lockFileChannel.close();
@@ -178,6 +200,9 @@ public class ResultFile
         return m_nextGameIndex;
     }
 
+    /** Minimum number of appended rows before the table is compacted. */
+    private static final int MIN_COMPACT = 100;
+
     private final boolean m_alternate;
 
     private final boolean m_useXml;
@@ -186,9 +211,10 @@ public class ResultFile
 
     private int m_nextGameIndex;
 
-    private final int m_numberGames;
+    /** Number of rows in the table file at the last compaction. */
+    private int m_numberRowsCompacted;
 
-    private final int m_numberThreads;
+    private final int m_numberGames;
 
     private final String m_filePrefix;
 
@@ -200,8 +226,10 @@ public class ResultFile
 
     private final Table m_table;
 
-    private final TreeMap<Integer, ArrayList<Compare.Placement>> m_games
-        = new TreeMap<Integer, ArrayList<Compare.Placement>>();
+    /** Stream for appending rows to the table file. */
+    private FileOutputStream m_tableOut;
+
+    private final DuplicateIndex m_duplicates;
 
     private void acquireLock() throws ErrorMessage
     {
@@ -223,6 +251,88 @@ public class ResultFile
         }
     }
 
+    /** Append a row of the table to the table file.
+        The row is synced to the disk, such that results are not lost if
+        TwoGtp is terminated. */
+    private void appendRow(int row) throws ErrorMessage
+    {
+        try
+        {
+            StringWriter writer = new StringWriter();
+            m_table.saveRow(writer, row);
+            m_tableOut.write(writer.toString().getBytes());
+            m_tableOut.getChannel().force(false);
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not write to: " + m_tableFile);
+        }
+    }
+
+    /** Rewrite the table file sorted by game number.
+        The code does not rely on the table being sorted by game number,
+        but it looks nicer for the user. */
+    private void compact() throws ErrorMessage
+    {
+        m_table.sortByIntColumn("GAME", 0, m_table.getNumberRows());
+        File tmpFile = new File(m_tableFile.getAbsolutePath() + ".new");
+        try
+        {
+            m_tableOut.close();
+            saveSynced(tmpFile);
+            if (Platform.isWindows())
+                // File.renameTo() fails on Windows if target exists
+                m_tableFile.delete();
+            if (! tmpFile.renameTo(m_tableFile))
+                throw new IOException();
+            m_numberRowsCompacted = m_table.getNumberRows();
+        }
+        catch (IOException e)
+        {
+            // Try to reopen the table file, but report the original error
+            try
+            {
+                openTable();
+            }
+            catch (ErrorMessage reopenError)
+            {
+            }
+            throw new ErrorMessage("Could not write to: " + m_tableFile);
+        }
+        openTable();
+    }
+
+    /** Save the table and force the file to the disk.
+        Used before replacing the table file, which contains rows that were
+        already forced to the disk by appendRow(). */
+    private void saveSynced(File file) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+            m_table.save(writer);
+            out.getChannel().force(true);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private void openTable() throws ErrorMessage
+    {
+        try
+        {
+            m_tableOut = new FileOutputStream(m_tableFile, true);
+        }
+        catch (FileNotFoundException e)
+        {
+            throw new ErrorMessage("Could not open " + m_tableFile + ": "
+                                   + e.getMessage());
+        }
+    }
+
     private Table createTable(Program black, Program white, Program referee,
                               int size, Komi komi, Openings openings)
     {
@@ -286,7 +396,7 @@ public class ResultFile
                 FileInputStream fileStream = new FileInputStream(file);
                 SgfReader reader = new SgfReader(fileStream, file, null, 0);
                 ConstNode root = reader.getTree().getRoot();
-                m_games.put(n, Compare.getPlacements(root));
+                m_duplicates.add(n, Compare.getPlacements(root));
             }
             catch (SgfError e)
             {
@@ -301,6 +411,45 @@ public class ResultFile
         }
     }
 
+    /** Remove an incomplete last line from the table file.
+        The last line can be incomplete, if TwoGtp was terminated while
+        appending a row. */
+    private static void repairTable(File file) throws ErrorMessage
+    {
+        try
+        {
+            RandomAccessFile randomAccessFile =
+                new RandomAccessFile(file, "rw");
+            try
+            {
+                long length = randomAccessFile.length();
+                long pos = length;
+                while (pos > 0)
+                {
+                    randomAccessFile.seek(pos - 1);
+                    if (randomAccessFile.read() == '\n')
+                        break;
+                    --pos;
+                }
+                if (pos < length)
+                {
+                    System.err.println("Removing incomplete last line of "
+                                       + file);
+                    randomAccessFile.setLength(pos);
+                }
+            }
+            finally
+            {
+                randomAccessFile.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not repair file " + file + ": "
+                                   + e.getMessage());
+        }
+    }
+
     private static Table readTable(File file, int numberGames,
                                    TreeSet<Integer> gameExists)
         throws ErrorMessage
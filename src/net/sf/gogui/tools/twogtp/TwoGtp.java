@@ -35,10 +35,21 @@ public class TwoGtp
     extends GtpEngine
 {
     /** Constructor.
+        Acquires a process of the black, white and referee program from
+        the pools for exclusive use, until close() is called. Processes
+        that died are replaced by a new process from the pool before a new
+        game is started in autoPlay().
+        @param referee The pool of referee processes or null, if no
+        referee is used.
+        @param isRefereeShared If true, the referee is not kept
+        synchronized during the game, but a referee process is acquired
+        only for scoring the final position. This allows to share a
+        single referee process between multiple instances of TwoGtp.
         @param komi The fixed komi. See TwoGtp documentation for option
         -komi */
-    public TwoGtp(Program black, Program white, Program referee,
-                  String observer, int size, Komi komi, int handicap, int numberGames,
+    public TwoGtp(ProgramPool black, ProgramPool white, ProgramPool referee,
+                  boolean isRefereeShared, String observer, int size,
+                  Komi komi, int handicap, int numberGames,
                   boolean alternate, String filePrefix, boolean verbose,
                   Openings openings, TimeSettings timeSettings,
                   ResultFile resultFile)
@@ -48,24 +59,23 @@ public class TwoGtp
         assert size > 0;
         assert size <= GoPoint.MAX_SIZE;
         assert komi != null;
+        assert referee != null || ! isRefereeShared;
         m_filePrefix = filePrefix;
-        m_allPrograms = new ArrayList<Program>();
-        m_black = black;
-        m_allPrograms.add(m_black);
-        m_white = white;
-        m_allPrograms.add(m_white);
-        m_referee = referee;
-        if (m_referee != null)
-            m_allPrograms.add(m_referee);
+        m_blackPool = black;
+        m_whitePool = white;
+        m_refereePool = referee;
+        m_isRefereeShared = isRefereeShared;
+        m_black = m_blackPool.acquire();
+        m_white = m_whitePool.acquire();
+        if (m_refereePool != null && ! m_isRefereeShared)
+            m_referee = m_refereePool.acquire();
+        else
+            m_referee = null;
         if (observer.equals(""))
             m_observer = null;
         else
-        {
             m_observer = new Program(observer, "Observer", "O", verbose);
-            m_allPrograms.add(m_observer);
-        }
-        for (Program program : m_allPrograms)
-            program.setLabel(m_allPrograms);
+        initAllPrograms();
         m_size = size;
         m_komi = komi;
 	m_handicap = handicap;
@@ -85,6 +95,7 @@ public class TwoGtp
         {
             try
             {
+                replaceDeadPrograms();
                 newGame(m_size);
                 while (! gameOver())
                 {
@@ -99,16 +110,19 @@ public class TwoGtp
                 handleEndOfGame(true, e.getMessage());
             }
         }
-        if (m_black.isProgramDead())
-            throw new ErrorMessage("Black program died");
-        if (m_white.isProgramDead())
-            throw new ErrorMessage("White program died");
     }
 
+    /** Release the processes to the pools and close the observer. */
     public void close()
     {
-        for (Program program : m_allPrograms)
-            program.close();
+        if (m_black != null)
+            m_blackPool.release(m_black);
+        if (m_white != null)
+            m_whitePool.release(m_white);
+        if (m_referee != null)
+            m_refereePool.release(m_referee);
+        if (m_observer != null)
+            m_observer.close();
     }
 
     public void handleCommand(GtpCommand cmd) throws GtpError
@@ -227,38 +241,8 @@ public class TwoGtp
     /** Store stderr of programs during move generation in SGF comments. */
     public void setDebugToComment(boolean enable)
     {
-        m_black.setIOCallback(null);
-        m_white.setIOCallback(null);
         m_debugToComment = enable;
-        if (m_debugToComment)
-        {
-            m_black.setIOCallback(new GtpClient.IOCallback()
-                {
-                    public void receivedInvalidResponse(String s) { }
-
-                    public void receivedResponse(boolean error, String s) { }
-
-                    public void receivedStdErr(String s)
-                    {
-                        appendDebugToCommentBuffer(isAlternated() ? WHITE : BLACK , s);
-                    }
-
-                    public void sentCommand(String s) { }
-                });
-            m_white.setIOCallback(new GtpClient.IOCallback()
-                {
-                    public void receivedInvalidResponse(String s) { }
-
-                    public void receivedResponse(boolean error, String s) { }
-
-                    public void receivedStdErr(String s)
-                    {
-                        appendDebugToCommentBuffer(isAlternated() ?  BLACK : WHITE, s);
-                    }
-
-                    public void sentCommand(String s) { }
-                });
-        }
+        initIOCallbacks();
     }
 
     /** Limit number of moves.
@@ -269,16 +253,24 @@ public class TwoGtp
         m_maxMoves = maxMoves;
     }
 
+    /** Maximum number of games in a row, in which a program died. */
+    private static final int MAX_RESTARTS = 3;
+
     private final boolean m_alternate;
 
     private boolean m_gameSaved;
 
     private boolean m_debugToComment;
 
+    private final boolean m_isRefereeShared;
+
     private int m_maxMoves = 1000;
 
     private int m_gameIndex;
 
+    /** Number of games in a row, in which a program died. */
+    private int m_numberRestarts;
+
     private boolean m_resigned;
 
     private final boolean m_verbose;
@@ -298,15 +290,22 @@ public class TwoGtp
 
     private final Openings m_openings;
 
-    private final Program m_black;
+    private Program m_black;
 
-    private final Program m_white;
+    private Program m_white;
 
-    private final Program m_referee;
+    /** Referee process or null, if no referee or the referee is shared. */
+    private Program m_referee;
 
     private final Program m_observer;
 
-    private final ArrayList<Program> m_allPrograms;
+    private final ProgramPool m_blackPool;
+
+    private final ProgramPool m_whitePool;
+
+    private final ProgramPool m_refereePool;
+
+    private final ArrayList<Program> m_allPrograms = new ArrayList<Program>();
 
     private final BlackWhiteSet<Double> m_realTime =
         new BlackWhiteSet<Double>(0., 0.);
@@ -445,6 +444,33 @@ public class TwoGtp
         return m_game.getTree();
     }
 
+    /** Score the final position with a process from the shared referee
+        pool. */
+    private String getSharedRefereeResult()
+    {
+        Program referee = null;
+        try
+        {
+            referee = m_refereePool.acquire();
+            ArrayList<Program> programs =
+                new ArrayList<Program>(m_allPrograms);
+            programs.add(referee);
+            referee.setLabel(programs);
+            referee.synchronizeInit(m_game);
+            return referee.getResult();
+        }
+        catch (GtpError e)
+        {
+            System.err.println(e.getMessage());
+            return "?";
+        }
+        finally
+        {
+            if (referee != null)
+                m_refereePool.release(referee);
+        }
+    }
+
     private String getTitle()
     {
         StringBuilder buffer = new StringBuilder();
@@ -490,6 +516,8 @@ public class TwoGtp
             resultReferee = "?";
             if (m_referee != null)
                 resultReferee = m_referee.getResult();
+            else if (m_isRefereeShared)
+                resultReferee = getSharedRefereeResult();
         }
         double cpuTimeBlack = m_black.getAndClearCpuTime();
         double cpuTimeWhite = m_white.getAndClearCpuTime();
@@ -518,7 +546,7 @@ public class TwoGtp
         String whiteVersion = m_white.getVersion();
         m_game.setPlayer(BLACK, nameBlack);
         m_game.setPlayer(WHITE, nameWhite);
-        if (m_referee != null)
+        if (m_refereePool != null)
             m_game.setResult(resultReferee);
         else if (resultBlack.equals(resultWhite) && ! resultBlack.equals("?"))
             m_game.setResult(resultBlack);
@@ -541,10 +569,10 @@ public class TwoGtp
         comment.append(resultBlack);
         comment.append("\nResult[White]: ");
         comment.append(resultWhite);
-        if (m_referee != null)
+        if (m_refereePool != null)
         {
             comment.append("\nReferee: ");
-            comment.append(m_referee.getProgramCommand());
+            comment.append(m_refereePool.getCommand());
             comment.append("\nResult[Referee]: ");
             comment.append(resultReferee);
         }
@@ -570,6 +598,19 @@ public class TwoGtp
                                    cpuTimeWhite);
     }
 
+    private void initAllPrograms()
+    {
+        m_allPrograms.clear();
+        m_allPrograms.add(m_black);
+        m_allPrograms.add(m_white);
+        if (m_referee != null)
+            m_allPrograms.add(m_referee);
+        if (m_observer != null)
+            m_allPrograms.add(m_observer);
+        for (Program program : m_allPrograms)
+            program.setLabel(m_allPrograms);
+    }
+
     private void initGame(int size) throws GtpError
     {
         m_game = new Game(size, m_komi, Board.getHandicapStones(size, m_handicap), null, null);
@@ -609,6 +650,41 @@ public class TwoGtp
         synchronizeInit();
     }
 
+    private void initIOCallbacks()
+    {
+        m_black.setIOCallback(null);
+        m_white.setIOCallback(null);
+        if (m_debugToComment)
+        {
+            m_black.setIOCallback(new GtpClient.IOCallback()
+                {
+                    public void receivedInvalidResponse(String s) { }
+
+                    public void receivedResponse(boolean error, String s) { }
+
+                    public void receivedStdErr(String s)
+                    {
+                        appendDebugToCommentBuffer(isAlternated() ? WHITE : BLACK , s);
+                    }
+
+                    public void sentCommand(String s) { }
+                });
+            m_white.setIOCallback(new GtpClient.IOCallback()
+                {
+                    public void receivedInvalidResponse(String s) { }
+
+                    public void receivedResponse(boolean error, String s) { }
+
+                    public void receivedStdErr(String s)
+                    {
+                        appendDebugToCommentBuffer(isAlternated() ?  BLACK : WHITE, s);
+                    }
+
+                    public void sentCommand(String s) { }
+                });
+        }
+    }
+
     private String inverseResult(String result)
     {
         if (result.indexOf('B') >= 0)
@@ -685,6 +761,55 @@ public class TwoGtp
                             GtpUtil.getTimeSettingsCommand(m_timeSettings));
     }
 
+    /** Replace processes that died by new processes from the pools. */
+    private void replaceDeadPrograms() throws ErrorMessage
+    {
+        boolean isBlackDead = m_black.isProgramDead();
+        boolean isWhiteDead = m_white.isProgramDead();
+        boolean isRefereeDead =
+            (m_referee != null && m_referee.isProgramDead());
+        if (! isBlackDead && ! isWhiteDead && ! isRefereeDead)
+        {
+            m_numberRestarts = 0;
+            return;
+        }
+        if (++m_numberRestarts >= MAX_RESTARTS)
+            throw new ErrorMessage("Program died in " + MAX_RESTARTS
+                                   + " games in a row");
+        try
+        {
+            if (isBlackDead)
+            {
+                System.err.println(m_black.getLabel() + " died, restarting");
+                m_blackPool.release(m_black);
+                m_black = null;
+                m_black = m_blackPool.acquire();
+            }
+            if (isWhiteDead)
+            {
+                System.err.println(m_white.getLabel() + " died, restarting");
+                m_whitePool.release(m_white);
+                m_white = null;
+                m_white = m_whitePool.acquire();
+            }
+            if (isRefereeDead)
+            {
+                System.err.println(m_referee.getLabel()
+                                   + " died, restarting");
+                m_refereePool.release(m_referee);
+                m_referee = null;
+                m_referee = m_refereePool.acquire();
+            }
+        }
+        catch (GtpError e)
+        {
+            throw new ErrorMessage("Could not restart program: "
+                                   + e.getMessage());
+        }
+        initAllPrograms();
+        initIOCallbacks();
+    }
+
     private void sendGenmove(GoColor color, StringBuilder response)
         throws GtpError, ErrorMessage
     {
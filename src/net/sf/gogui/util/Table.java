@@ -2,21 +2,49 @@
 
 package net.sf.gogui.util;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
-/** Table of string elements. */
+/** Table of string elements.
+    The elements are stored by column. The type of each column is inferred
+    from its elements: columns containing only integers, only floating
+    point numbers or only the values 0 and 1 are stored in arrays of
+    primitive types and are parsed only once, when the element is set.
+    Other columns store each distinct string only once. A numeric column
+    only stores elements in their canonical string representation (as
+    produced by Integer.toString() or Double.toString()), so that get()
+    returns exactly the string that was set. If an element that does not
+    fit the type of the column is set, the column is converted to a more
+    general type. */
 public class Table
 {
+    /** Type of the elements of a column.
+        @see #getColumnType(int) */
+    public enum ColumnType
+    {
+        /** Only the values 0 and 1 (or no elements). */
+        BOOL,
+
+        /** Only integers. */
+        INT,
+
+        /** Only floating point numbers. */
+        DOUBLE,
+
+        /** Any strings. */
+        STRING;
+    }
+
     /** Error thrown on invalid table location argument. */
     public static class InvalidLocation
         extends ErrorMessage
@@ -61,7 +89,7 @@ public class Table
 
     public String get(int column, int row)
     {
-        return getRow(row).get(column);
+        return getColumn(column).get(row);
     }
 
     public String get(String columnTitle, int row) throws InvalidLocation
@@ -72,9 +100,12 @@ public class Table
     public double getDouble(int column, int row)
         throws InvalidLocation, InvalidElement
     {
+        Column c = getColumn(column);
+        if (c.getType() != ColumnType.STRING && ! c.isNull(row))
+            return c.getDouble(row);
         try
         {
-            String s = get(column, row);
+            String s = c.get(row);
             if (s == null)
                 s = "";
             return Double.parseDouble(s);
@@ -95,9 +126,15 @@ public class Table
 
     public int getInt(int column, int row) throws InvalidElement
     {
+        Column c = getColumn(column);
+        ColumnType type = c.getType();
+        if ((type == ColumnType.BOOL || type == ColumnType.INT)
+            && ! c.isNull(row))
+            return c.getInt(row);
         try
         {
-            String s = get(column, row);
+            // Elements of DOUBLE columns are never integers
+            String s = c.get(row);
             if (s == null)
                 s = "";
             return Integer.parseInt(s);
@@ -126,6 +163,13 @@ public class Table
         throw new InvalidLocation("No such column in table: " + column);
     }
 
+    /** Get the type of a column.
+        The type depends on the elements that were set so far. */
+    public ColumnType getColumnType(int column)
+    {
+        return getColumn(column).getType();
+    }
+
     public String getColumnTitle(int index)
     {
         return m_columnTitles.get(index);
@@ -144,7 +188,7 @@ public class Table
 
     public int getNumberRows()
     {
-        return m_rows.size();
+        return m_numberRows;
     }
 
     /** Get meta information.
@@ -170,32 +214,31 @@ public class Table
         return m_properties.containsKey(key);
     }
 
+    /** Check if an element is not set.
+        Equivalent to get(column, row) == null, but does not create a
+        string for elements of numeric columns. */
+    public boolean isNull(int column, int row)
+    {
+        return getColumn(column).isNull(row);
+    }
+
     public void read(File file) throws FileNotFoundException, IOException,
                                        InvalidFormat
     {
-        read(new FileReader(file));
+        read(new TableReader(file));
     }
 
     public void read(Reader reader) throws IOException, InvalidFormat
     {
-        BufferedReader bufferedReader = new BufferedReader(reader);
-        m_lineNumber = 0;
-        m_propertiesRead = false;
-        String line = null;
-        while ((line = bufferedReader.readLine()) != null)
-        {
-            ++m_lineNumber;
-            handleLine(line);
-        }
-        bufferedReader.close();
+        read(new TableReader(reader));
     }
 
     public void save(File file) throws IOException
     {
-        FileWriter writer = new FileWriter(file);
+        TableWriter writer = new TableWriter(file);
         try
         {
-            save(writer);
+            save(writer, true);
         }
         finally
         {
@@ -210,38 +253,20 @@ public class Table
 
     public void save(Writer out, boolean withHeader) throws IOException
     {
-        if (withHeader)
-        {
-            for (Map.Entry<String,String> entry : m_properties.entrySet())
-            {
-                String key = entry.getKey();
-                String value = entry.getValue();
-                out.write("# " + key + ": " + value + "\n");
-            }
-            out.write("#\n#");
-            for (int i = 0; i < m_numberColumns; ++i)
-            {
-                out.write(getColumnTitle(i));
-                if (i < m_numberColumns - 1)
-                    out.write('\t');
-                else
-                    out.write('\n');
-            }
-        }
-        for (int i = 0; i < m_rows.size(); ++i)
-        {
-            ArrayList<String> row = m_rows.get(i);
-            for (int j = 0; j < m_numberColumns; ++j)
-            {
-                String value = row.get(j);
-                if (value != null)
-                    out.write(value);
-                if (j < m_numberColumns - 1)
-                    out.write('\t');
-                else
-                    out.write('\n');
-            }
-        }
+        TableWriter writer = new TableWriter(out);
+        save(writer, withHeader);
+        writer.flush();
+    }
+
+    /** Write a single row.
+        Writes the row in the same format as save(), terminated by a
+        newline. Can be used to append rows to a file written with
+        save(). */
+    public void saveRow(Writer out, int row) throws IOException
+    {
+        TableWriter writer = new TableWriter(out);
+        saveRow(writer, row, new String[m_numberColumns]);
+        writer.flush();
     }
 
     /** Set element in last row.
@@ -249,12 +274,20 @@ public class Table
         @param value The value (must not contain newlines or tabs). */
     public void set(int column, String value)
     {
-        assert m_lastRow.get(column) == null;
+        assert m_numberRows > 0;
+        int row = m_numberRows - 1;
+        Column c = getColumn(column);
+        assert c.isNull(row);
         // Values containing newlines and tabs are not supported by save()
         // yet
         assert value == null || value.indexOf("\n") < 0;
         assert value == null || value.indexOf("\t") < 0;
-        m_lastRow.set(column, value);
+        if (value == null || c.set(row, value))
+            return;
+        c = convert(c, value);
+        m_columns.set(column, c);
+        boolean success = c.set(row, value);
+        assert success;
     }
 
     public void set(String column, int value) throws InvalidLocation
@@ -282,24 +315,45 @@ public class Table
 
     public void startRow()
     {
-        ArrayList<String> row = new ArrayList<String>(m_numberColumns);
+        ensureColumns();
         for (int i = 0; i < m_numberColumns; ++i)
-            row.add(null);
-        m_rows.add(row);
-        m_lastRow = row;
+            m_columns.get(i).addRow();
+        ++m_numberRows;
     }
 
+    /** Sort rows by the integer value of a column.
+        The sort is stable. Each element is parsed only once.
+        @param column The column.
+        @param rowBegin First row of the range to sort.
+        @param rowEnd Last row (exclusive) of the range to sort. */
     public void sortByIntColumn(int column, int rowBegin,
                                 int rowEnd) throws InvalidElement
     {
-        for (int row1 = rowBegin; row1 < rowEnd - 1; ++row1)
-            for (int row2 = row1 + 1; row2 < rowEnd; ++row2)
-                if (getInt(column, row2) < getInt(column, row1))
+        int size = rowEnd - rowBegin;
+        if (size < 2)
+            return;
+        final int[] keys = new int[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; ++i)
+        {
+            keys[i] = getInt(column, rowBegin + i);
+            order[i] = i;
+        }
+        // Arrays.sort() on objects is a stable merge sort
+        Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer i1, Integer i2)
                 {
-                    ArrayList<String> tmp = m_rows.get(row1);
-                    m_rows.set(row1, m_rows.get(row2));
-                    m_rows.set(row2, tmp);
+                    int key1 = keys[i1.intValue()];
+                    int key2 = keys[i2.intValue()];
+                    return (key1 < key2 ? -1 : (key1 == key2 ? 0 : 1));
                 }
+            });
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; ++i)
+            permutation[i] = order[i].intValue();
+        ensureColumns();
+        for (int i = 0; i < m_numberColumns; ++i)
+            m_columns.get(i).permute(rowBegin, permutation);
     }
 
     public void sortByIntColumn(String columnTitle, int rowBegin,
@@ -309,21 +363,349 @@ public class Table
         sortByIntColumn(getColumnIndex(columnTitle), rowBegin, rowEnd);
     }
 
-    private boolean m_propertiesRead;
+    /** Elements of a column. */
+    private abstract static class Column
+    {
+        public abstract void addRow();
+
+        public abstract String get(int row);
+
+        /** Get element as double.
+            Only called for non-null elements of numeric columns. */
+        public double getDouble(int row)
+        {
+            assert false;
+            return 0;
+        }
+
+        /** Get element as integer.
+            Only called for non-null elements of BOOL and INT columns. */
+        public int getInt(int row)
+        {
+            assert false;
+            return 0;
+        }
+
+        public abstract ColumnType getType();
+
+        public abstract boolean isNull(int row);
+
+        /** Reorder rows.
+            @param rowBegin The first row of the range to reorder.
+            @param permutation The old index relative to rowBegin for
+            each row in the range. */
+        public abstract void permute(int rowBegin, int[] permutation);
+
+        /** Set a non-null element.
+            @return false, if the value cannot be stored in a column of
+            this type. */
+        public abstract boolean set(int row, String value);
+
+        protected int m_size;
+
+        protected static int grow(int capacity)
+        {
+            return Math.max(16, capacity + (capacity >> 1));
+        }
+
+        protected static void permute(BitSet bits, int rowBegin,
+                                      int[] permutation)
+        {
+            BitSet old = bits.get(rowBegin, rowBegin + permutation.length);
+            for (int i = 0; i < permutation.length; ++i)
+                bits.set(rowBegin + i, old.get(permutation[i]));
+        }
+    }
+
+    private static final class BoolColumn
+        extends Column
+    {
+        public void addRow()
+        {
+            if (m_size == m_values.length)
+                m_values = Arrays.copyOf(m_values, grow(m_size));
+            m_values[m_size++] = NULL;
+        }
+
+        public String get(int row)
+        {
+            assert row < m_size;
+            byte value = m_values[row];
+            return (value == NULL ? null : (value == 0 ? "0" : "1"));
+        }
+
+        public double getDouble(int row)
+        {
+            return m_values[row];
+        }
+
+        public int getInt(int row)
+        {
+            return m_values[row];
+        }
+
+        public ColumnType getType()
+        {
+            return ColumnType.BOOL;
+        }
+
+        public boolean isNull(int row)
+        {
+            assert row < m_size;
+            return m_values[row] == NULL;
+        }
+
+        public void permute(int rowBegin, int[] permutation)
+        {
+            byte[] old = Arrays.copyOfRange(m_values, rowBegin,
+                                            rowBegin + permutation.length);
+            for (int i = 0; i < permutation.length; ++i)
+                m_values[rowBegin + i] = old[permutation[i]];
+        }
+
+        public boolean set(int row, String value)
+        {
+            if (value.equals("0"))
+                m_values[row] = 0;
+            else if (value.equals("1"))
+                m_values[row] = 1;
+            else
+                return false;
+            return true;
+        }
+
+        private static final byte NULL = -1;
+
+        private byte[] m_values = new byte[0];
+    }
+
+    private static final class IntColumn
+        extends Column
+    {
+        public void addRow()
+        {
+            if (m_size == m_values.length)
+                m_values = Arrays.copyOf(m_values, grow(m_size));
+            ++m_size;
+        }
 
-    private int m_lineNumber;
+        public String get(int row)
+        {
+            assert row < m_size;
+            if (! m_hasValue.get(row))
+                return null;
+            return Integer.toString(m_values[row]);
+        }
+
+        public double getDouble(int row)
+        {
+            return m_values[row];
+        }
+
+        public int getInt(int row)
+        {
+            return m_values[row];
+        }
+
+        public ColumnType getType()
+        {
+            return ColumnType.INT;
+        }
+
+        public boolean isNull(int row)
+        {
+            assert row < m_size;
+            return ! m_hasValue.get(row);
+        }
+
+        public void permute(int rowBegin, int[] permutation)
+        {
+            int[] old = Arrays.copyOfRange(m_values, rowBegin,
+                                           rowBegin + permutation.length);
+            for (int i = 0; i < permutation.length; ++i)
+                m_values[rowBegin + i] = old[permutation[i]];
+            permute(m_hasValue, rowBegin, permutation);
+        }
+
+        public boolean set(int row, String value)
+        {
+            // Accept only the representation of Integer.toString()
+            int length = value.length();
+            int i = 0;
+            boolean negative = false;
+            if (length > 1 && value.charAt(0) == '-')
+            {
+                negative = true;
+                i = 1;
+            }
+            if (length == i || length - i > 10
+                || (value.charAt(i) == '0' && length > 1))
+                return false;
+            long result = 0;
+            for ( ; i < length; ++i)
+            {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9')
+                    return false;
+                result = 10 * result + (c - '0');
+            }
+            if (negative)
+                result = -result;
+            if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE)
+                return false;
+            m_values[row] = (int)result;
+            m_hasValue.set(row);
+            return true;
+        }
+
+        /** Rows with non-null elements.
+            Stores the non-null instead of the null elements, because
+            clearing the highest bit of a BitSet is slow. */
+        private final BitSet m_hasValue = new BitSet();
+
+        private int[] m_values = new int[0];
+    }
+
+    private static final class DoubleColumn
+        extends Column
+    {
+        public void addRow()
+        {
+            if (m_size == m_values.length)
+                m_values = Arrays.copyOf(m_values, grow(m_size));
+            ++m_size;
+        }
+
+        public String get(int row)
+        {
+            assert row < m_size;
+            if (! m_hasValue.get(row))
+                return null;
+            return Double.toString(m_values[row]);
+        }
+
+        public double getDouble(int row)
+        {
+            return m_values[row];
+        }
+
+        public ColumnType getType()
+        {
+            return ColumnType.DOUBLE;
+        }
+
+        public boolean isNull(int row)
+        {
+            assert row < m_size;
+            return ! m_hasValue.get(row);
+        }
+
+        public void permute(int rowBegin, int[] permutation)
+        {
+            double[] old = Arrays.copyOfRange(m_values, rowBegin,
+                                              rowBegin + permutation.length);
+            for (int i = 0; i < permutation.length; ++i)
+                m_values[rowBegin + i] = old[permutation[i]];
+            permute(m_hasValue, rowBegin, permutation);
+        }
+
+        public boolean set(int row, String value)
+        {
+            // Accept only the representation of Double.toString(), which
+            // always contains a dot or is NaN or Infinity
+            if (value.indexOf('.') < 0 && ! value.endsWith("Infinity")
+                && ! value.equals("NaN"))
+                return false;
+            double doubleValue;
+            try
+            {
+                doubleValue = Double.parseDouble(value);
+            }
+            catch (NumberFormatException e)
+            {
+                return false;
+            }
+            if (! Double.toString(doubleValue).equals(value))
+                return false;
+            m_values[row] = doubleValue;
+            m_hasValue.set(row);
+            return true;
+        }
+
+        /** Rows with non-null elements. */
+        private final BitSet m_hasValue = new BitSet();
+
+        private double[] m_values = new double[0];
+    }
+
+    /** Column storing each distinct string only once. */
+    private static final class StringColumn
+        extends Column
+    {
+        public void addRow()
+        {
+            if (m_size == m_codes.length)
+                m_codes = Arrays.copyOf(m_codes, grow(m_size));
+            m_codes[m_size++] = -1;
+        }
+
+        public String get(int row)
+        {
+            assert row < m_size;
+            int code = m_codes[row];
+            return (code < 0 ? null : m_strings.get(code));
+        }
+
+        public ColumnType getType()
+        {
+            return ColumnType.STRING;
+        }
+
+        public boolean isNull(int row)
+        {
+            assert row < m_size;
+            return m_codes[row] < 0;
+        }
+
+        public void permute(int rowBegin, int[] permutation)
+        {
+            int[] old = Arrays.copyOfRange(m_codes, rowBegin,
+                                           rowBegin + permutation.length);
+            for (int i = 0; i < permutation.length; ++i)
+                m_codes[rowBegin + i] = old[permutation[i]];
+        }
+
+        public boolean set(int row, String value)
+        {
+            Integer code = m_dictionary.get(value);
+            if (code == null)
+            {
+                code = Integer.valueOf(m_strings.size());
+                m_strings.add(value);
+                m_dictionary.put(value, code);
+            }
+            m_codes[row] = code.intValue();
+            return true;
+        }
+
+        private int[] m_codes = new int[0];
+
+        private final ArrayList<String> m_strings = new ArrayList<String>();
+
+        private final HashMap<String,Integer> m_dictionary
+            = new HashMap<String,Integer>();
+    }
 
     private int m_numberColumns;
 
+    private int m_numberRows;
+
     private final Map<String,String> m_properties =
         new TreeMap<String,String>();
 
     private final ArrayList<String> m_columnTitles;
 
-    private ArrayList<String> m_lastRow;
-
-    private final ArrayList<ArrayList<String>> m_rows
-        = new ArrayList<ArrayList<String>>();
+    private final ArrayList<Column> m_columns = new ArrayList<Column>();
 
     private void addColumnTitle(String columnTitle)
     {
@@ -331,52 +713,111 @@ public class Table
         ++m_numberColumns;
     }
 
-    private ArrayList<String> getRow(int index)
+    /** Create a column of the most specific type that can store all
+        elements of a column and an additional element. */
+    private Column convert(Column column, String value)
     {
-        return m_rows.get(index);
+        ColumnType[] types = ColumnType.values();
+        for (int i = column.getType().ordinal() + 1; i < types.length; ++i)
+        {
+            Column result = createColumn(types[i]);
+            boolean success = true;
+            for (int row = 0; row < m_numberRows && success; ++row)
+            {
+                result.addRow();
+                String element = column.get(row);
+                if (element != null)
+                    success = result.set(row, element);
+            }
+            if (success && result.set(m_numberRows - 1, value))
+                return result;
+        }
+        assert false;
+        return null;
     }
 
-    private void handleComment(String comment)
+    private static Column createColumn(ColumnType type)
     {
-        comment = comment.trim();
-        if (m_propertiesRead)
+        switch (type)
         {
-            String[] array = comment.split("\\t");
-            for (int i = 0; i < array.length; ++i)
-                addColumnTitle(array[i]);
-            return;
+        case BOOL:
+            return new BoolColumn();
+        case INT:
+            return new IntColumn();
+        case DOUBLE:
+            return new DoubleColumn();
+        default:
+            return new StringColumn();
         }
-        if (comment.equals(""))
-        {
-            m_propertiesRead = true;
-            return;
-        }
-        int pos = comment.indexOf(':');
-        if (pos < 0)
+    }
+
+    /** Create the columns for column titles added since the last call.
+        The new columns have no elements in the existing rows. */
+    private void ensureColumns()
+    {
+        while (m_columns.size() < m_numberColumns)
         {
-            System.err.println("Invalid line " + m_lineNumber + ": "
-                               + comment);
-            return;
+            Column column = new BoolColumn();
+            for (int row = 0; row < m_numberRows; ++row)
+                column.addRow();
+            m_columns.add(column);
         }
-        String key = comment.substring(0, pos).trim();
-        String value = comment.substring(pos + 1).trim();
-        setProperty(key, value);
     }
 
-    private void handleLine(String line) throws InvalidFormat
+    private Column getColumn(int column)
+    {
+        if (column >= m_columns.size())
+            ensureColumns();
+        return m_columns.get(column);
+    }
+
+    private void read(TableReader reader) throws IOException, InvalidFormat
     {
-        line = line.trim();
-        if (line.startsWith("#"))
+        try
         {
-            handleComment(line.substring(1));
-            return;
+            int firstColumn = m_numberColumns;
+            while (true)
+            {
+                boolean hasRow = reader.next();
+                // Comment lines can add column titles at any position
+                while (m_numberColumns - firstColumn
+                       < reader.getNumberColumns())
+                    addColumnTitle(reader.getColumnTitle(m_numberColumns
+                                                         - firstColumn));
+                if (! hasRow)
+                    break;
+                startRow();
+                for (int i = 0; i < reader.getNumberColumns(); ++i)
+                {
+                    String value = reader.get(i);
+                    if (value == null)
+                        break;
+                    set(firstColumn + i, value);
+                }
+            }
+            m_properties.putAll(reader.getProperties());
+        }
+        finally
+        {
+            reader.close();
         }
-        String[] array = line.split("\\t");
-        if (array.length > getNumberColumns())
-            throw new InvalidFormat("Invalid line " + m_lineNumber
-                                    + ": " + line);
-        startRow();
-        for (int i = 0; i < array.length; ++i)
-            set(i, array[i]);
+    }
+
+    private void save(TableWriter writer, boolean withHeader)
+        throws IOException
+    {
+        if (withHeader)
+            writer.writeHeader(m_properties, m_columnTitles);
+        String[] row = new String[m_numberColumns];
+        for (int i = 0; i < m_numberRows; ++i)
+            saveRow(writer, i, row);
+    }
+
+    private void saveRow(TableWriter writer, int row, String[] elements)
+        throws IOException
+    {
+        for (int j = 0; j < m_numberColumns; ++j)
+            elements[j] = get(j, row);
+        writer.writeRow(elements);
     }
 }
@@ -0,0 +1,384 @@
+// TableReader.java
+
+package net.sf.gogui.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Reads a file in the format of Table row by row.
+    Allows processing tables that do not fit into memory. The properties
+    and column titles are read by the constructor; the rows are read with
+    next(), the elements of the current row are accessed with get().
+    Files are read through memory-mapped buffers, which avoids copying the
+    file contents if the same file is read again while it is still in the
+    operating system's file cache (not on Windows, which does not allow
+    replacing a file while it is mapped). */
+public final class TableReader
+{
+    /** Read a table from a file.
+        The file is expected in the platform's default encoding like with
+        FileReader. */
+    public TableReader(File file) throws IOException, Table.InvalidFormat
+    {
+        m_charset = Charset.defaultCharset();
+        FileInputStream in = new FileInputStream(file);
+        if (Platform.isWindows() || ! isAsciiCompatible(m_charset))
+            m_reader = new BufferedReader(new InputStreamReader(in));
+        else
+        {
+            m_channel = in.getChannel();
+            m_size = m_channel.size();
+        }
+        readHeader();
+    }
+
+    public TableReader(Reader reader) throws IOException, Table.InvalidFormat
+    {
+        m_reader = new BufferedReader(reader);
+        readHeader();
+    }
+
+    public void close() throws IOException
+    {
+        m_buffer = null;
+        if (m_reader != null)
+            m_reader.close();
+        if (m_channel != null)
+            m_channel.close();
+    }
+
+    /** Get element of current row.
+        @return The element or null, if the row has fewer elements. */
+    public String get(int column)
+    {
+        assert m_line != null;
+        if (column >= m_numberElements)
+            return null;
+        return m_line.substring(m_start[column], m_start[column + 1] - 1);
+    }
+
+    public String get(String columnTitle) throws Table.InvalidLocation
+    {
+        return get(getColumnIndex(columnTitle));
+    }
+
+    public int getColumnIndex(String column) throws Table.InvalidLocation
+    {
+        int index = m_columnTitles.indexOf(column);
+        if (index < 0)
+            throw new Table.InvalidLocation("No such column in table: "
+                                            + column);
+        return index;
+    }
+
+    public String getColumnTitle(int index)
+    {
+        return m_columnTitles.get(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ArrayList<String> getColumnTitles()
+    {
+        return (ArrayList<String>)m_columnTitles.clone();
+    }
+
+    public double getDouble(int column) throws Table.InvalidElement
+    {
+        try
+        {
+            String s = get(column);
+            if (s == null)
+                s = "";
+            return Double.parseDouble(s);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new Table.InvalidElement("Expected floating point number"
+                                           + " in table (column=" + column
+                                           + ", line=" + m_lineNumber + ")");
+        }
+    }
+
+    public double getDouble(String columnTitle)
+        throws Table.InvalidLocation, Table.InvalidElement
+    {
+        return getDouble(getColumnIndex(columnTitle));
+    }
+
+    public int getInt(int column) throws Table.InvalidElement
+    {
+        try
+        {
+            String s = get(column);
+            if (s == null)
+                s = "";
+            return Integer.parseInt(s);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new Table.InvalidElement("Expected integer in table"
+                                           + " (column=" + column
+                                           + ", line=" + m_lineNumber + ")");
+        }
+    }
+
+    public int getInt(String columnTitle)
+        throws Table.InvalidLocation, Table.InvalidElement
+    {
+        return getInt(getColumnIndex(columnTitle));
+    }
+
+    /** Get line number of the current row in the file. */
+    public int getLineNumber()
+    {
+        return m_lineNumber;
+    }
+
+    public int getNumberColumns()
+    {
+        return m_columnTitles.size();
+    }
+
+    /** Get meta information.
+        @param key the property key
+        @return The property value or null, if it dows not exist */
+    public String getProperty(String key)
+    {
+        return getProperty(key, null);
+    }
+
+    /** Get meta information.
+        @param key the property key
+        @param def the default value, if this property does not exist */
+    public String getProperty(String key, String def)
+    {
+        if (! hasProperty(key))
+            return def;
+        return m_properties.get(key);
+    }
+
+    /** Get all properties.
+        Properties in comment lines after the first row are only
+        contained, if the rows before them were read. */
+    public Map<String,String> getProperties()
+    {
+        return new TreeMap<String,String>(m_properties);
+    }
+
+    public boolean hasProperty(String key)
+    {
+        return m_properties.containsKey(key);
+    }
+
+    /** Read the next row.
+        @return false, if the end of the file is reached. */
+    public boolean next() throws IOException, Table.InvalidFormat
+    {
+        if (m_hasNextLine)
+        {
+            m_hasNextLine = false;
+            return true;
+        }
+        while (true)
+        {
+            String line = readLine();
+            if (line == null)
+            {
+                m_line = null;
+                return false;
+            }
+            ++m_lineNumber;
+            line = line.trim();
+            if (line.startsWith("#"))
+            {
+                handleComment(line.substring(1));
+                continue;
+            }
+            int numberElements = 0;
+            int start = 0;
+            while (true)
+            {
+                if (numberElements + 1 >= m_start.length)
+                    m_start = Arrays.copyOf(m_start, 2 * m_start.length);
+                m_start[numberElements++] = start;
+                int end = line.indexOf('\t', start);
+                if (end < 0)
+                    break;
+                start = end + 1;
+            }
+            m_start[numberElements] = line.length() + 1;
+            if (numberElements > getNumberColumns())
+                throw new Table.InvalidFormat("Invalid line " + m_lineNumber
+                                              + ": " + line);
+            m_line = line;
+            m_numberElements = numberElements;
+            return true;
+        }
+    }
+
+    /** Size of the memory-mapped regions of the file. */
+    private static final int MAP_SIZE = 64 * 1024 * 1024;
+
+    private boolean m_hasNextLine;
+
+    private boolean m_propertiesRead;
+
+    /** Skip a line feed at the beginning of the next line. */
+    private boolean m_skipLineFeed;
+
+    private int m_lineNumber;
+
+    private int m_numberElements;
+
+    /** Start index of each element in the current line.
+        Contains an additional entry for the end of the last element. */
+    private int[] m_start = new int[16];
+
+    private long m_position;
+
+    private long m_size;
+
+    private byte[] m_lineBuffer = new byte[256];
+
+    private BufferedReader m_reader;
+
+    private Charset m_charset;
+
+    private FileChannel m_channel;
+
+    private MappedByteBuffer m_buffer;
+
+    private String m_line;
+
+    private final ArrayList<String> m_columnTitles = new ArrayList<String>();
+
+    private final Map<String,String> m_properties =
+        new TreeMap<String,String>();
+
+    /** Close the reader and ignore errors, which would hide the original
+        error. */
+    private void closeAfterError()
+    {
+        try
+        {
+            close();
+        }
+        catch (IOException e)
+        {
+        }
+    }
+
+    private void handleComment(String comment)
+    {
+        comment = comment.trim();
+        if (m_propertiesRead)
+        {
+            String[] array = comment.split("\\t");
+            for (int i = 0; i < array.length; ++i)
+                m_columnTitles.add(array[i]);
+            return;
+        }
+        if (comment.equals(""))
+        {
+            m_propertiesRead = true;
+            return;
+        }
+        int pos = comment.indexOf(':');
+        if (pos < 0)
+        {
+            System.err.println("Invalid line " + m_lineNumber + ": "
+                               + comment);
+            return;
+        }
+        String key = comment.substring(0, pos).trim();
+        String value = comment.substring(pos + 1).trim();
+        m_properties.put(key, value);
+    }
+
+    /** Check that line ends and tabs are encoded as single ASCII bytes. */
+    private static boolean isAsciiCompatible(Charset charset)
+    {
+        return Arrays.equals("\t\n\r#".getBytes(charset),
+                             new byte[] { '\t', '\n', '\r', '#' });
+    }
+
+    /** Read the properties and column titles.
+        Reads until the first row. Closes the reader on failure, because
+        the constructor does not return it to the caller. */
+    private void readHeader() throws IOException, Table.InvalidFormat
+    {
+        try
+        {
+            m_hasNextLine = next();
+        }
+        catch (IOException e)
+        {
+            closeAfterError();
+            throw e;
+        }
+        catch (Table.InvalidFormat e)
+        {
+            closeAfterError();
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            closeAfterError();
+            throw e;
+        }
+    }
+
+    private String readLine() throws IOException
+    {
+        if (m_reader != null)
+            return m_reader.readLine();
+        // Line ends like in BufferedReader.readLine()
+        int length = 0;
+        while (true)
+        {
+            if (m_buffer == null || ! m_buffer.hasRemaining())
+            {
+                if (m_position >= m_size)
+                {
+                    m_buffer = null;
+                    if (length == 0)
+                        return null;
+                    break;
+                }
+                long size = Math.min(MAP_SIZE, m_size - m_position);
+                m_buffer = m_channel.map(FileChannel.MapMode.READ_ONLY,
+                                         m_position, size);
+                m_position += size;
+            }
+            byte b = m_buffer.get();
+            if (m_skipLineFeed)
+            {
+                m_skipLineFeed = false;
+                if (b == '\n')
+                    continue;
+            }
+            if (b == '\n')
+                break;
+            if (b == '\r')
+            {
+                m_skipLineFeed = true;
+                break;
+            }
+            if (length == m_lineBuffer.length)
+                m_lineBuffer = Arrays.copyOf(m_lineBuffer, 2 * length);
+            m_lineBuffer[length++] = b;
+        }
+        return new String(m_lineBuffer, 0, length, m_charset);
+    }
+}
@@ -124,6 +124,13 @@ public final class TableUtil
     {
         double max = Double.NEGATIVE_INFINITY;
         int col = table.getColumnIndex(column);
+        if (table.getColumnType(col) != Table.ColumnType.STRING)
+        {
+            for (int row = 0; row < table.getNumberRows(); ++row)
+                if (! table.isNull(col, row))
+                    max = Math.max(max, getDouble(table, col, row));
+            return max;
+        }
         for (int row = 0; row < table.getNumberRows(); ++row)
         {
             try
@@ -143,6 +150,13 @@ public final class TableUtil
     {
         Statistics statistics = new Statistics();
         int col = table.getColumnIndex(column);
+        if (table.getColumnType(col) != Table.ColumnType.STRING)
+        {
+            for (int row = 0; row < table.getNumberRows(); ++row)
+                if (! table.isNull(col, row))
+                    statistics.add(getDouble(table, col, row));
+            return statistics;
+        }
         for (int row = 0; row < table.getNumberRows(); ++row)
         {
             try
@@ -182,6 +196,14 @@ public final class TableUtil
 
     public static boolean isIntValue(String string)
     {
+        // Avoid the cost of the exception for floating point numbers
+        for (int i = 0; i < string.length(); ++i)
+        {
+            char c = string.charAt(i);
+            if (! Character.isDigit(c)
+                && ! (i == 0 && (c == '-' || c == '+')))
+                return false;
+        }
         try
         {
             Integer.parseInt(string);
@@ -256,12 +278,12 @@ public final class TableUtil
     {
         Table result = new Table(table.getColumnTitles());
         int numberColumns = table.getNumberColumns();
+        int col = table.getColumnIndex(compareColumn);
         for (int row = 0; row < table.getNumberRows(); ++row)
         {
-            String value = table.get(compareColumn, row);
             try
             {
-                int intValue = Integer.parseInt(value);
+                int intValue = table.getInt(col, row);
                 if (intValue >= min && intValue <= max)
                 {
                     result.startRow();
@@ -270,7 +292,7 @@ public final class TableUtil
                 }
 
             }
-            catch (NumberFormatException e)
+            catch (Table.InvalidElement e)
             {
             }
         }
@@ -281,4 +303,18 @@ public final class TableUtil
     private TableUtil()
     {
     }
+
+    /** Get a non-null element of a numeric column. */
+    private static double getDouble(Table table, int column, int row)
+    {
+        try
+        {
+            return table.getDouble(column, row);
+        }
+        catch (ErrorMessage e)
+        {
+            assert false;
+            return 0;
+        }
+    }
 }
@@ -0,0 +1,107 @@
+// TableWriter.java
+
+package net.sf.gogui.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Map;
+
+/** Writes a file in the format of Table row by row.
+    Allows writing tables that do not fit into memory. Each row is
+    formatted into a reused buffer and written with a single call to the
+    underlying writer. */
+public final class TableWriter
+{
+    /** Write a table to a file.
+        The file is written in the platform's default encoding like with
+        FileWriter. */
+    public TableWriter(File file) throws IOException
+    {
+        this(new BufferedWriter(new OutputStreamWriter
+                                (new FileOutputStream(file)), BUFFER_SIZE));
+    }
+
+    /** Write a table to a writer.
+        The writer is not buffered by this class. */
+    public TableWriter(Writer writer)
+    {
+        m_writer = writer;
+    }
+
+    public void close() throws IOException
+    {
+        m_writer.close();
+    }
+
+    public void flush() throws IOException
+    {
+        m_writer.flush();
+    }
+
+    /** Write the properties and column titles.
+        @param properties The properties in the order of the iteration.
+        @param columnTitles The column titles. */
+    public void writeHeader(Map<String,String> properties,
+                            ArrayList<String> columnTitles)
+        throws IOException
+    {
+        m_buffer.setLength(0);
+        for (Map.Entry<String,String> entry : properties.entrySet())
+        {
+            m_buffer.append("# ");
+            m_buffer.append(entry.getKey());
+            m_buffer.append(": ");
+            m_buffer.append(entry.getValue());
+            m_buffer.append('\n');
+        }
+        m_buffer.append("#\n#");
+        for (int i = 0; i < columnTitles.size(); ++i)
+        {
+            if (i > 0)
+                m_buffer.append('\t');
+            m_buffer.append(columnTitles.get(i));
+        }
+        m_buffer.append('\n');
+        write();
+    }
+
+    /** Write a row.
+        @param elements The elements of the row; null elements are written
+        as empty elements. The elements must not contain newlines or
+        tabs. */
+    public void writeRow(String[] elements) throws IOException
+    {
+        m_buffer.setLength(0);
+        for (int i = 0; i < elements.length; ++i)
+        {
+            if (i > 0)
+                m_buffer.append('\t');
+            if (elements[i] != null)
+                m_buffer.append(elements[i]);
+        }
+        m_buffer.append('\n');
+        write();
+    }
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private char[] m_chars = new char[256];
+
+    private final StringBuilder m_buffer = new StringBuilder(256);
+
+    private final Writer m_writer;
+
+    private void write() throws IOException
+    {
+        int length = m_buffer.length();
+        if (length > m_chars.length)
+            m_chars = new char[Math.max(length, 2 * m_chars.length)];
+        m_buffer.getChars(0, length, m_chars, 0);
+        m_writer.write(m_chars, 0, length);
+    }
+}
@@ -0,0 +1,78 @@
+// BoardPainterBenchmark.java
+
+package net.sf.gogui.boardpainter;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+
+/** Measures the frames per second of BoardPainter for full-board updates.
+    Simulates a program that sends live graphics for all points of the
+    board with every frame (stones, ghost stones, labels and influence) and
+    draws the whole board into a buffered image.
+    This is not a unit test, it is run with
+    <tt>java net.sf.gogui.boardpainter.BoardPainterBenchmark
+    [width [size [frames]]]</tt>. The default width is 2000 pixels, which is
+    the board width on a 4K screen. */
+public final class BoardPainterBenchmark
+{
+    public static void main(String args[])
+    {
+        int width = (args.length > 0 ? Integer.parseInt(args[0]) : 2000);
+        int size = (args.length > 1 ? Integer.parseInt(args[1]) : 19);
+        int frames = (args.length > 2 ? Integer.parseInt(args[2]) : 200);
+        Field[][] field = new Field[size][size];
+        for (int x = 0; x < size; ++x)
+            for (int y = 0; y < size; ++y)
+                field[x][y] = new Field();
+        BoardPainter painter = new BoardPainter();
+        BufferedImage image =
+            new BufferedImage(width, width, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        // Warm up
+        for (int i = 0; i < frames / 10 + 1; ++i)
+        {
+            update(field, i);
+            painter.draw(graphics, field, width, true);
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < frames; ++i)
+        {
+            update(field, i);
+            painter.draw(graphics, field, width, true);
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        graphics.dispose();
+        System.out.println("width " + width + ", size " + size + ", field "
+                           + painter.getFieldSize() + ": " + frames
+                           + " frames in " + (float)seconds + " s, "
+                           + (float)(frames / seconds) + " frames/s");
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private BoardPainterBenchmark()
+    {
+    }
+
+    private static final GoColor[] COLORS = { BLACK, WHITE, EMPTY };
+
+    private static void update(Field[][] field, int frame)
+    {
+        for (int x = 0; x < field.length; ++x)
+            for (int y = 0; y < field.length; ++y)
+            {
+                int i = frame + 3 * x + 7 * y;
+                Field f = field[x][y];
+                f.setColor(COLORS[i % 3]);
+                if (f.getColor() == EMPTY && i % 2 == 0)
+                    f.setGhostStone(COLORS[(i / 3) % 2]);
+                else
+                    f.setGhostStone(null);
+                f.setLabel(i % 5 == 0 ? Integer.toString(i % 100) : "");
+                f.setInfluence((i % 21 - 10) / 10.0);
+            }
+    }
+}
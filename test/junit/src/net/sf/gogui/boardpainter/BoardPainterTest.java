@@ -0,0 +1,86 @@
+// BoardPainterTest.java
+
+package net.sf.gogui.boardpainter;
+
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import static net.sf.gogui.go.GoColor.WHITE;
+
+public final class BoardPainterTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(BoardPainterTest.class);
+    }
+
+    public void setUp()
+    {
+        m_field = new Field[9][9];
+        for (int x = 0; x < 9; ++x)
+            for (int y = 0; y < 9; ++y)
+                m_field[x][y] = new Field();
+        m_field[2][2].setColor(BLACK);
+        m_field[6][3].setColor(WHITE);
+        m_field[4][4].setGhostStone(BLACK);
+        m_field[5][5].setLabel("A");
+    }
+
+    /** Test that only the fields in the clip bounds are redrawn. */
+    public void testClip()
+    {
+        BoardPainter painter = new BoardPainter();
+        BufferedImage image = BoardPainterUtil.getImage(painter, m_field,
+                                                        WIDTH, WIDTH);
+        m_field[1][7].setColor(WHITE);
+        m_field[7][1].setColor(BLACK);
+        Point location = painter.getLocation(1, 7);
+        Graphics graphics = image.getGraphics();
+        int size = painter.getFieldSize() + painter.getShadowOffset();
+        graphics.setClip(location.x, location.y, size, size);
+        painter.draw(graphics, m_field, WIDTH, false);
+        graphics.dispose();
+        // Field outside the clip bounds must not be drawn
+        m_field[7][1].setColor(EMPTY);
+        assertSameImage(getImage(false, false), image);
+    }
+
+    /** Test that the cached grid is redrawn if the orientation changes. */
+    public void testOrientation()
+    {
+        BoardPainter painter = new BoardPainter();
+        BoardPainterUtil.getImage(painter, m_field, WIDTH, WIDTH);
+        painter.setOrientation(true, true);
+        BufferedImage image = BoardPainterUtil.getImage(painter, m_field,
+                                                        WIDTH, WIDTH);
+        assertSameImage(getImage(true, true), image);
+    }
+
+    private static final int WIDTH = 200;
+
+    private Field[][] m_field;
+
+    private static void assertSameImage(BufferedImage expected,
+                                        BufferedImage image)
+    {
+        for (int x = 0; x < WIDTH; ++x)
+            for (int y = 0; y < WIDTH; ++y)
+                assertEquals(expected.getRGB(x, y), image.getRGB(x, y));
+    }
+
+    private BufferedImage getImage(boolean flipHorizontal,
+                                   boolean flipVertical)
+    {
+        BoardPainter painter = new BoardPainter();
+        painter.setOrientation(flipHorizontal, flipVertical);
+        return BoardPainterUtil.getImage(painter, m_field, WIDTH, WIDTH);
+    }
+}
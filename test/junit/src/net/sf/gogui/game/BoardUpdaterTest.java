@@ -3,6 +3,7 @@
 package net.sf.gogui.game;
 
 import net.sf.gogui.go.Board;
+import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 import net.sf.gogui.go.GoPoint;
@@ -27,6 +28,50 @@ public final class BoardUpdaterTest
         m_updater = new BoardUpdater();
     }
 
+    /** Test that updateIncremental() gives the same position as update()
+        when navigating in a tree with variations, captures, setup stones
+        and player properties. */
+    public void testIncremental()
+    {
+        GameTree tree = new GameTree(9, null, null, null, null);
+        Node root = tree.getRoot();
+        Node node1 = appendMove(root, BLACK, 1, 0);
+        Node node2 = appendMove(node1, WHITE, 0, 0);
+        Node node3 = appendMove(node2, BLACK, 0, 1);
+        Node node4 = appendMove(node3, WHITE, 4, 4);
+        Node variation1 = appendMove(node2, BLACK, 5, 5);
+        Node variation2 = appendMove(variation1, WHITE, 6, 6);
+        Node setup = new Node();
+        setup.addStone(WHITE, GoPoint.get(2, 2));
+        setup.setPlayer(WHITE);
+        node3.append(setup);
+        Node node5 = appendMove(setup, WHITE, 3, 3);
+        Node player = new Node();
+        player.setPlayer(WHITE);
+        node1.append(player);
+        Node node6 = appendMove(player, WHITE, 7, 7);
+        Node[] nodes = {
+            node4, node3, variation2, node1, node5, node2, node6, root, node5,
+            setup, node4, node6, variation1, node4, root, node5, node3
+        };
+        Board board = new Board(9);
+        Board expected = new Board(9);
+        BoardUpdater updater = new BoardUpdater();
+        for (Node node : nodes)
+        {
+            m_updater.updateIncremental(tree, node, board);
+            updater.update(tree, node, expected);
+            for (GoPoint p : board)
+                assertEquals(expected.getColor(p), board.getColor(p));
+            assertEquals(expected.getToMove(), board.getToMove());
+            assertEquals(expected.getNumberMoves(), board.getNumberMoves());
+            assertEquals(expected.getCaptured(BLACK),
+                         board.getCaptured(BLACK));
+            assertEquals(expected.getCaptured(WHITE),
+                         board.getCaptured(WHITE));
+        }
+    }
+
     public void testSetup()
     {
         GameTree tree = new GameTree();
@@ -82,4 +127,11 @@ public final class BoardUpdaterTest
     }
 
     private BoardUpdater m_updater;
+
+    private static Node appendMove(Node father, GoColor c, int x, int y)
+    {
+        Node node = new Node(Move.get(c, GoPoint.get(x, y)));
+        father.append(node);
+        return node;
+    }
 }
@@ -74,6 +74,28 @@ public final class GameTest
         assertEquals(0, node.getSetup(EMPTY).size());
     }
 
+    /** Test that setup stones are shown on the board.
+        Checks for a bug that did not update the board after adding or
+        removing setup stones in the root node, because the board updater
+        did not notice that the current node was modified. */
+    public static void testSetupBoard()
+    {
+        Game game = new Game(19);
+        GoPoint p = GoPoint.get(0, 0);
+        game.setup(p, BLACK);
+        assertEquals(BLACK, game.getBoard().getColor(p));
+        game.setup(p, WHITE);
+        assertEquals(WHITE, game.getBoard().getColor(p));
+        game.setup(p, EMPTY);
+        assertEquals(EMPTY, game.getBoard().getColor(p));
+        game.play(Move.get(BLACK, 3, 3));
+        GoPoint q = GoPoint.get(1, 1);
+        game.setup(q, WHITE);
+        assertEquals(WHITE, game.getBoard().getColor(q));
+        game.setup(q, EMPTY);
+        assertEquals(EMPTY, game.getBoard().getColor(q));
+    }
+
     /** Test that clock is initialized with time settings. */
     public static void testTimeSettingsInit()
     {
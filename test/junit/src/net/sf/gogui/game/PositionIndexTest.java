@@ -0,0 +1,80 @@
+// PositionIndexTest.java
+
+package net.sf.gogui.game;
+
+import java.util.List;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+
+public final class PositionIndexTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(PositionIndexTest.class);
+    }
+
+    /** Test detection of a ko recapture that repeats a position. */
+    public void testGetRepetition()
+    {
+        // 3 . . . .
+        // 2 @ O . .
+        // 1 . @ O .
+        //   A B C D
+        GameTree tree = new GameTree(9, null, null, null, null);
+        Node root = tree.getRoot();
+        root.addStone(BLACK, GoPoint.get(0, 1));
+        root.addStone(BLACK, GoPoint.get(1, 0));
+        root.addStone(WHITE, GoPoint.get(1, 1));
+        root.addStone(WHITE, GoPoint.get(2, 0));
+        Node node1 = appendMove(root, WHITE, 0, 0);
+        Node node2 = appendMove(node1, BLACK, 1, 0);
+        Node node3 = appendMove(node2, WHITE, 0, 0);
+        PositionIndex index = new PositionIndex(tree);
+        assertEquals(4, index.size());
+        assertNull(index.getRepetition(node1));
+        assertSame(root, index.getRepetition(node2));
+        assertSame(node1, index.getRepetition(node3));
+    }
+
+    /** Test finding the same position in different variations. */
+    public void testGetTranspositions()
+    {
+        GameTree tree = new GameTree(9, null, null, null, null);
+        Node root = tree.getRoot();
+        Node node1 = appendMove(root, BLACK, 2, 2);
+        Node node2 = appendMove(node1, WHITE, 6, 6);
+        Node node3 = appendMove(node2, BLACK, 2, 6);
+        Node variation1 = appendMove(root, BLACK, 2, 6);
+        Node variation2 = appendMove(variation1, WHITE, 6, 6);
+        Node variation3 = appendMove(variation2, BLACK, 2, 2);
+        Node rotated = appendMove(root, BLACK, 6, 2);
+        PositionIndex index = new PositionIndex(tree);
+        assertEquals(index.getHash(node3), index.getHash(variation3));
+        List<ConstNode> transpositions = index.getTranspositions(node3);
+        assertEquals(1, transpositions.size());
+        assertSame(variation3, transpositions.get(0));
+        assertTrue(index.getTranspositions(node2).isEmpty());
+        assertTrue(index.getTranspositions(rotated).isEmpty());
+        PositionIndex symmetricIndex = new PositionIndex(tree, true);
+        transpositions = symmetricIndex.getTranspositions(rotated);
+        assertEquals(2, transpositions.size());
+        assertSame(node1, transpositions.get(0));
+        assertSame(variation1, transpositions.get(1));
+    }
+
+    private static Node appendMove(Node father, GoColor c, int x, int y)
+    {
+        Node node = new Node(Move.get(c, GoPoint.get(x, y)));
+        father.append(node);
+        return node;
+    }
+}
@@ -93,6 +93,70 @@ public final class BoardTest
         assertTrue(board.getKilled().isEmpty());
     }
 
+    /** Test Board.getHash() and Board.getSymmetricHash(). */
+    public void testGetHash()
+    {
+        Board board = new Board(9);
+        long emptyHash = board.getHash();
+        board.play(BLACK, GoPoint.get(2, 3));
+        board.play(WHITE, GoPoint.get(4, 4));
+        long hash = board.getHash();
+        assertTrue(hash != emptyHash);
+        long symmetricHash = board.getSymmetricHash();
+        board.undo(2);
+        assertEquals(emptyHash, board.getHash());
+        board.play(WHITE, GoPoint.get(4, 4));
+        board.play(BLACK, GoPoint.get(2, 3));
+        assertEquals(hash, board.getHash());
+        for (int i = 0; i < BoardUtil.NUMBER_ROTATIONS; ++i)
+        {
+            Board rotated = new Board(9);
+            rotated.play(BLACK, BoardUtil.rotate(i, GoPoint.get(2, 3), 9));
+            rotated.play(WHITE, BoardUtil.rotate(i, GoPoint.get(4, 4), 9));
+            assertEquals(rotated.getHash(), board.getHash(i));
+            assertEquals(symmetricHash, rotated.getSymmetricHash());
+        }
+        board.init(9);
+        assertEquals(emptyHash, board.getHash());
+    }
+
+    /** Test Board.getLiberties(). */
+    public void testGetLiberties()
+    {
+        Board board = new Board(19);
+        // 4 . . . . .
+        // 3 . . O . .
+        // 2 O O @ O .
+        // 1 @ @ . . .
+        //   A B C D E
+        PointList black = new PointList();
+        PointList white = new PointList();
+        black.add(GoPoint.get(0, 0));
+        black.add(GoPoint.get(1, 0));
+        black.add(GoPoint.get(2, 1));
+        white.add(GoPoint.get(0, 1));
+        white.add(GoPoint.get(1, 1));
+        white.add(GoPoint.get(2, 2));
+        white.add(GoPoint.get(3, 1));
+        board.setup(black, white, BLACK);
+        assertEquals(1, board.getLiberties(GoPoint.get(0, 0)));
+        assertEquals(1, board.getLiberties(GoPoint.get(2, 1)));
+        assertEquals(2, board.getLiberties(GoPoint.get(0, 1)));
+        assertEquals(3, board.getLiberties(GoPoint.get(2, 2)));
+        board.play(BLACK, GoPoint.get(2, 0));
+        assertEquals(1, board.getLiberties(GoPoint.get(0, 0)));
+        assertEquals(1, board.getLiberties(GoPoint.get(2, 1)));
+        assertEquals(3, board.getLiberties(GoPoint.get(3, 1)));
+        board.undo();
+        board.play(WHITE, GoPoint.get(2, 0));
+        assertEquals(5, board.getLiberties(GoPoint.get(0, 1)));
+        assertEquals(3, board.getLiberties(GoPoint.get(2, 0)));
+        board.undo();
+        assertEquals(1, board.getLiberties(GoPoint.get(1, 0)));
+        assertEquals(2, board.getLiberties(GoPoint.get(1, 1)));
+        assertEquals(3, board.getLiberties(GoPoint.get(3, 1)));
+    }
+
     /** Test Board.getSuicide(). */
     public void testGetSuicide()
     {
@@ -0,0 +1,125 @@
+// RulerSessionTest.java
+
+package net.sf.gogui.go;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.gtp.GtpClientBase;
+import net.sf.gogui.gtp.GtpEngineConnection;
+import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpExpectEngine;
+
+public final class RulerSessionTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(RulerSessionTest.class);
+    }
+
+    public void setUp() throws IOException, GtpError
+    {
+        m_expect = new GtpExpectEngine(null);
+        GtpEngineConnection connection = new GtpEngineConnection(m_expect);
+        m_ruler = connection.getGtpClient();
+        m_expect.expect("list_commands",
+                        "play\nundo\nclear_board\ngogui-rules_board\n"
+                        + "gogui-rules_board_size\ngogui-rules_legal_moves\n"
+                        + "gogui-rules_side_to_move");
+        m_ruler.querySupportedCommands();
+        m_session = new RulerSession();
+    }
+
+    /** Test that positions are synchronized with undo and cached. */
+    public void testNavigation() throws GtpError
+    {
+        Move b1 = Move.get(BLACK, GoPoint.get(0, 0));
+        Move w2 = Move.get(WHITE, GoPoint.get(1, 0));
+        Move w3 = Move.get(WHITE, GoPoint.get(2, 0));
+        m_session.setPosition(m_ruler, 19, moves(b1));
+        m_expect.expect("clear_board");
+        m_expect.expect(m_ruler.getCommandPlay(b1));
+        expectQueries("1");
+        assertEquals("board1", m_session.getBoard(m_ruler));
+        assertEquals("black", m_session.getSideToMove(m_ruler));
+        assertEquals("19", m_session.getBoardSize(m_ruler));
+        assertTrue(m_expect.isExpectQueueEmpty());
+        m_session.setPosition(m_ruler, 19, moves(b1, w2));
+        m_expect.expect(m_ruler.getCommandPlay(w2));
+        expectQueries("2");
+        assertEquals("legal2", m_session.getLegalMoves(m_ruler));
+        assertTrue(m_expect.isExpectQueueEmpty());
+        m_session.setPosition(m_ruler, 19, moves(b1));
+        assertEquals("board1", m_session.getBoard(m_ruler));
+        m_session.setPosition(m_ruler, 19, moves(b1, w3));
+        m_expect.expect("undo");
+        m_expect.expect(m_ruler.getCommandPlay(w3));
+        expectQueries("3");
+        assertEquals("board3", m_session.getBoard(m_ruler));
+        assertTrue(m_expect.isExpectQueueEmpty());
+    }
+
+    /** Test that the session detects commands sent by others. */
+    public void testOtherCommands() throws GtpError
+    {
+        Move b1 = Move.get(BLACK, GoPoint.get(0, 0));
+        m_session.setPosition(m_ruler, 19, moves());
+        m_expect.expect("clear_board");
+        expectQueries("1");
+        assertEquals("board1", m_session.getBoard(m_ruler));
+        m_expect.expect(m_ruler.getCommandPlay(b1));
+        m_ruler.sendPlay(b1);
+        expectQueries("2");
+        assertEquals("board2", m_session.getBoard(m_ruler));
+        assertTrue(m_expect.isExpectQueueEmpty());
+    }
+
+    /** Test that a failed move does not change the position. */
+    public void testPlayError() throws GtpError
+    {
+        Move b1 = Move.get(BLACK, GoPoint.get(0, 0));
+        m_session.setPosition(m_ruler, 19, moves());
+        m_expect.expect("clear_board");
+        try
+        {
+            m_session.play(m_ruler, b1);
+            fail("play should throw an error");
+        }
+        catch (GtpError e)
+        {
+        }
+        m_expect.expect("clear_board");
+        expectQueries("1");
+        assertEquals("board1", m_session.getBoard(m_ruler));
+        assertTrue(m_expect.isExpectQueueEmpty());
+    }
+
+    private GtpExpectEngine m_expect;
+
+    private GtpClientBase m_ruler;
+
+    private RulerSession m_session;
+
+    private void expectQueries(String suffix)
+    {
+        m_expect.expect("gogui-rules_board", "board" + suffix);
+        m_expect.expect("gogui-rules_board_size", "19");
+        m_expect.expect("gogui-rules_legal_moves", "legal" + suffix);
+        m_expect.expect("gogui-rules_side_to_move", "black");
+    }
+
+    private static ArrayList<Move> moves(Move... moves)
+    {
+        ArrayList<Move> result = new ArrayList<Move>();
+        for (Move move : moves)
+            result.add(move);
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+// GtpClientTest.java
+
+package net.sf.gogui.gtp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+public final class GtpClientTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GtpClientTest.class);
+    }
+
+    public void setUp() throws IOException, GtpError
+    {
+        m_expect = new GtpExpectEngine(null);
+        GtpEngineConnection connection = new GtpEngineConnection(m_expect);
+        m_gtp = (GtpClient)connection.getGtpClient();
+    }
+
+    /** Test sending more commands than the maximum number of pipelined
+        commands. */
+    public void testSendList() throws GtpError
+    {
+        m_gtp.setAutoNumber(true);
+        ArrayList<String> commands = new ArrayList<String>();
+        for (int i = 0; i < 50; ++i)
+        {
+            String command = "command" + i;
+            commands.add(command);
+            m_expect.expect(command, "response" + i);
+        }
+        ArrayList<String> responses = m_gtp.send(commands);
+        assertTrue(m_expect.isExpectQueueEmpty());
+        assertEquals(50, responses.size());
+        for (int i = 0; i < 50; ++i)
+            assertEquals("response" + i, responses.get(i));
+        assertEquals("response49", m_gtp.getResponse());
+        m_expect.expect("command", "response");
+        assertEquals("response", m_gtp.send("command"));
+    }
+
+    /** Test that all commands are executed if a command fails. */
+    public void testSendListError()
+    {
+        m_expect.expect("first", "1");
+        m_expect.expect("third", "3");
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("first");
+        commands.add("second");
+        commands.add("third");
+        try
+        {
+            m_gtp.send(commands);
+            fail("send should throw an error");
+        }
+        catch (GtpError e)
+        {
+            assertEquals("second", e.getCommand());
+        }
+        assertTrue(m_expect.isExpectQueueEmpty());
+        assertEquals("3", m_gtp.getResponse());
+    }
+
+    private GtpExpectEngine m_expect;
+
+    private GtpClient m_gtp;
+}
@@ -2,6 +2,12 @@
 
 package net.sf.gogui.gtp;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public final class GtpEngineTest
     extends junit.framework.TestCase
 {
@@ -22,4 +28,33 @@ public final class GtpEngineTest
         assertEquals("true", gtp.send("known_command name"));
         assertEquals("false", gtp.send("known_command foobar"));
     }
+
+    /** Test that concurrent commands are executed while another command
+        is running and that the responses are written in order. */
+    public void testConcurrent() throws IOException
+    {
+        GtpEngine engine = new GtpEngine(null);
+        final CountDownLatch latch = new CountDownLatch(1);
+        engine.register("wait", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    try
+                    {
+                        if (! latch.await(10, TimeUnit.SECONDS))
+                            throw new GtpError("timeout");
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new GtpError("interrupted");
+                    }
+                    cmd.setResponse("done"); } });
+        engine.register("release", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    latch.countDown(); } }, true);
+        engine.setConcurrentThreads(2);
+        String input = "1 wait\n2 name\n3 release\n4 foobar\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.mainLoop(new ByteArrayInputStream(input.getBytes()), out);
+        assertEquals("=1 done\n\n=2 Unknown\n\n=3 \n\n"
+                     + "?4 unknown command: foobar\n\n", out.toString());
+    }
 }
@@ -0,0 +1,73 @@
+// AnalyzeShowTest.java
+
+package net.sf.gogui.gui;
+
+import net.sf.gogui.boardpainter.ConstField;
+import net.sf.gogui.go.Board;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+
+public final class AnalyzeShowTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(AnalyzeShowTest.class);
+    }
+
+    /** Test that showLiveGfx() has the same result as clearing the board
+        and showing the frame. */
+    public void testShowLiveGfx()
+    {
+        Board board = new Board(9);
+        board.play(Move.get(BLACK, GoPoint.get(2, 2)));
+        board.play(Move.get(WHITE, GoPoint.get(3, 3)));
+        String first = "LABEL A1 x B1 y\nINFLUENCE C1 0.3\nMARK D1\n"
+            + "VAR b E5 w F5\nBLACK A9\nCOLOR red B9\n";
+        String second = "LABEL A1 x C2 z\nINFLUENCE C1 0.4 D1 -1\n"
+            + "CIRCLE D1\nWHITE A9\n";
+        GuiBoard guiBoard = new GuiBoard(9);
+        GuiBoard expected = new GuiBoard(9);
+        guiBoard.setSelect(GoPoint.get(8, 8), true);
+        guiBoard.setCrossHair(GoPoint.get(7, 7), true);
+        for (String text : new String[] { first, second })
+        {
+            GfxFrame frame = new GfxFrame(text, GoPoint.MAX_SIZE);
+            AnalyzeShow.showLiveGfx(frame, guiBoard, board, null);
+            expected.clearAll();
+            GuiBoardUtil.updateFromGoBoard(expected, board, false, false);
+            AnalyzeShow.showGfx(text, expected, null, null);
+            for (GoPoint p : board)
+                assertSameField(expected.getFieldConst(p),
+                                guiBoard.getFieldConst(p));
+        }
+    }
+
+    private static void assertSameField(ConstField expected,
+                                        ConstField field)
+    {
+        assertEquals(expected.getColor(), field.getColor());
+        assertEquals(expected.getCrossHair(), field.getCrossHair());
+        assertEquals(expected.getCursor(), field.getCursor());
+        assertEquals(expected.getFieldBackground(),
+                     field.getFieldBackground());
+        assertEquals(expected.getGhostStone(), field.getGhostStone());
+        assertEquals(expected.getLabel(), field.getLabel());
+        assertEquals(expected.getMark(), field.getMark());
+        assertEquals(expected.getMarkCircle(), field.getMarkCircle());
+        assertEquals(expected.getMarkSquare(), field.getMarkSquare());
+        assertEquals(expected.getMarkTriangle(), field.getMarkTriangle());
+        assertEquals(expected.getSelect(), field.getSelect());
+        assertEquals(expected.getTerritory(), field.getTerritory());
+        assertEquals(expected.isInfluenceSet(), field.isInfluenceSet());
+        if (expected.isInfluenceSet())
+            assertEquals(expected.getInfluence(), field.getInfluence());
+    }
+}
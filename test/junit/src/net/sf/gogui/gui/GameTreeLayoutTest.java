@@ -0,0 +1,62 @@
+// GameTreeLayoutTest.java
+
+package net.sf.gogui.gui;
+
+import net.sf.gogui.game.Node;
+
+public final class GameTreeLayoutTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GameTreeLayoutTest.class);
+    }
+
+    public void testFind()
+    {
+        GameTreeLayout layout = new GameTreeLayout();
+        Node[] nodes = new Node[1000];
+        for (int i = 0; i < nodes.length; ++i)
+        {
+            nodes[i] = new Node();
+            assertEquals(i, layout.add(nodes[i], i % 10, 3 * (i / 10), i));
+        }
+        assertEquals(1000, layout.getNumberNodes());
+        assertEquals(9, layout.getMaxColumn());
+        assertEquals(297, layout.getMaxRow());
+        for (int i = 0; i < nodes.length; ++i)
+        {
+            int column = i % 10;
+            int row = 3 * (i / 10);
+            assertEquals(i, layout.getIndex(nodes[i]));
+            assertEquals(i, layout.find(column, row));
+            assertEquals(-1, layout.find(column, row + 1));
+            assertSame(nodes[i], layout.getNode(i));
+        }
+        assertEquals(-1, layout.find(10, 0));
+        assertEquals(-1, layout.getIndex(new Node()));
+    }
+
+    /** Test adding a node to a free row above other nodes in the
+        column. */
+    public void testInsert()
+    {
+        GameTreeLayout layout = new GameTreeLayout();
+        Node node1 = new Node();
+        Node node2 = new Node();
+        Node node3 = new Node();
+        layout.add(node1, 1, 0, 0);
+        layout.add(node2, 1, 5, 0);
+        int index = layout.add(node3, 1, 2, 0);
+        assertEquals(index, layout.find(1, 2));
+        assertEquals(3, layout.getColumnSize(1));
+        assertEquals(1, layout.findInColumn(1, 1));
+        assertSame(node3, layout.getNode(layout.getInColumn(1, 1)));
+        assertSame(node2, layout.getNode(layout.getInColumn(1, 2)));
+    }
+}
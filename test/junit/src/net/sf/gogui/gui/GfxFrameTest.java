@@ -0,0 +1,82 @@
+// GfxFrameTest.java
+
+package net.sf.gogui.gui;
+
+import java.awt.Color;
+import net.sf.gogui.boardpainter.ConstField;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+
+public final class GfxFrameTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GfxFrameTest.class);
+    }
+
+    public void testClear()
+    {
+        GfxFrame frame = new GfxFrame("LABEL A1 x\nTEXT a\nCLEAR\nMARK B2\n",
+                                      9);
+        assertTrue(frame.isClear());
+        assertNull(getField(frame, 0, 0).getLabel());
+        assertTrue(getField(frame, 1, 1).getMark());
+        assertEquals(1, frame.getText().size());
+    }
+
+    public void testParse()
+    {
+        GfxFrame frame =
+            new GfxFrame("INFLUENCE A1 0.5 B1 x\n"
+                         + "LABEL C1 abc J9 y K10 z\n"
+                         + "COLOR red A2 B2\n"
+                         + "BLACK A3\n"
+                         + "WHITE B3\n"
+                         + "CIRCLE A4\n"
+                         + "SQUARE B4\n"
+                         + "TRIANGLE C4\n"
+                         + "TEXT hello world\n"
+                         + "TEXT second\n", 9);
+        assertFalse(frame.isClear());
+        assertTrue(getField(frame, 0, 0).isInfluenceSet());
+        assertEquals(0.5, getField(frame, 0, 0).getInfluence());
+        assertFalse(getField(frame, 1, 0).isInfluenceSet());
+        assertEquals("abc", getField(frame, 2, 0).getLabel());
+        assertEquals("y", getField(frame, 8, 8).getLabel());
+        assertNull(getField(frame, 3, 0).getLabel());
+        assertEquals(Color.red, getField(frame, 0, 1).getFieldBackground());
+        assertEquals(Color.red, getField(frame, 1, 1).getFieldBackground());
+        assertEquals(BLACK, getField(frame, 0, 2).getTerritory());
+        assertEquals(WHITE, getField(frame, 1, 2).getTerritory());
+        assertEquals(EMPTY, getField(frame, 2, 2).getTerritory());
+        assertTrue(getField(frame, 0, 3).getMarkCircle());
+        assertTrue(getField(frame, 1, 3).getMarkSquare());
+        assertTrue(getField(frame, 2, 3).getMarkTriangle());
+        assertEquals(2, frame.getText().size());
+        assertEquals("hello world", frame.getText().get(0));
+        assertEquals("second", frame.getText().get(1));
+    }
+
+    public void testVariation()
+    {
+        GfxFrame frame = new GfxFrame("VAR b A1 w PASS b C1\n", 9);
+        assertEquals(BLACK, getField(frame, 0, 0).getGhostStone());
+        assertEquals("1", getField(frame, 0, 0).getLabel());
+        assertEquals(BLACK, getField(frame, 2, 0).getGhostStone());
+        assertEquals("3", getField(frame, 2, 0).getLabel());
+        assertNull(getField(frame, 1, 0).getGhostStone());
+    }
+
+    private static ConstField getField(GfxFrame frame, int x, int y)
+    {
+        return frame.getField(GoPoint.get(x, y));
+    }
+}
@@ -0,0 +1,97 @@
+// GtpShellLogTest.java
+
+package net.sf.gogui.gui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+public final class GtpShellLogTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GtpShellLogTest.class);
+    }
+
+    public void testMaxChars() throws IOException
+    {
+        GtpShellLog log = new GtpShellLog(1000, 20, false);
+        for (int i = 0; i < 10; ++i)
+            log.append("line" + i + "\n", 0);
+        // Each line has 5 characters
+        assertEquals(4, log.getNumberLines());
+        assertEquals(6, log.getLinesRemoved());
+        assertEquals(6, log.getLinesTruncated());
+        assertEquals("line6", log.getLine(0));
+        assertEquals("line9", log.getLine(3));
+        assertEquals("line6\nline7\nline8\nline9\n", write(log));
+    }
+
+    public void testMaxLines() throws IOException
+    {
+        GtpShellLog log = new GtpShellLog(3, 1000, true);
+        log.append("a\nb\nc\nd", 0);
+        log.append("e\nf\n", 0);
+        assertEquals(3, log.getNumberLines());
+        assertEquals(2, log.getLinesRemoved());
+        assertEquals("c", log.getLine(0));
+        assertEquals("de", log.getLine(1));
+        assertEquals("f", log.getLine(2));
+        // The temporary file contains the complete log
+        assertEquals(0, log.getLinesTruncated());
+        assertEquals("a\nb\nc\nde\nf\n", write(log));
+        log.close();
+        assertEquals(2, log.getLinesTruncated());
+        assertEquals("c\nde\nf\n", write(log));
+    }
+
+    public void testLongLine()
+    {
+        GtpShellLog log = new GtpShellLog(10, 100000, false);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < GtpShellLog.MAX_LINE_LENGTH + 5; ++i)
+            text.append('x');
+        log.append(text.toString(), 0);
+        assertEquals(2, log.getNumberLines());
+        assertEquals(GtpShellLog.MAX_LINE_LENGTH, log.getLine(0).length());
+        assertEquals("xxxxx", log.getLine(1));
+        assertEquals(GtpShellLog.MAX_LINE_LENGTH, log.getMaxLineLength());
+    }
+
+    public void testRuns()
+    {
+        GtpShellLog log = new GtpShellLog(10, 1000, false);
+        log.append("12:00 ", 6);
+        log.append("= ok\n", 3);
+        log.append("\tx\r\n", 0);
+        assertEquals(2, log.getNumberLines());
+        assertEquals("12:00 = ok", log.getLine(0));
+        assertRuns(new int[] { 0, 6, 6, 3 }, log.getRuns(0));
+        assertEquals("        x", log.getLine(1));
+        assertRuns(new int[] { 0, 0 }, log.getRuns(1));
+        assertEquals("00 = ok\n    ", log.getText(0, 3, 1, 4));
+        assertEquals("ok\n        x", log.getText(0, 8, 1, 100));
+    }
+
+    private static void assertRuns(int[] expected, int[] runs)
+    {
+        assertEquals(expected.length, runs.length);
+        for (int i = 0; i < expected.length; ++i)
+            assertEquals(expected[i], runs[i]);
+    }
+
+    private static String write(GtpShellLog log) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(out);
+        log.write(printStream);
+        printStream.close();
+        return out.toString();
+    }
+}
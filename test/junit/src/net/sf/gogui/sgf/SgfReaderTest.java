@@ -39,6 +39,25 @@ public final class SgfReaderTest
         return new junit.framework.TestSuite(SgfReaderTest.class);
     }
 
+    /** Test that the CA property is also used if not reading from a file.
+        Includes a charset, in which the byte of the backslash character can
+        also occur as part of multi-byte characters. */
+    public void testCharset() throws Exception
+    {
+        String comment = "\u65e5\u672c\u30bd";
+        String[] charsets = { "UTF-8", "Shift_JIS" };
+        for (String charset : charsets)
+        {
+            String text =
+                "(;FF[4]CA[" + charset + "];B[aa]C[" + comment + "])";
+            InputStream in =
+                new ByteArrayInputStream(text.getBytes(charset));
+            SgfReader reader = new SgfReader(in, null, null, 0);
+            ConstNode node = reader.getTree().getRootConst().getChildConst();
+            assertEquals(comment, node.getComment());
+        }
+    }
+
     public void testDuplicateProperty() throws Exception
     {
         readSgfFileString("(;C[foo]C[bar])", false, true);
@@ -78,6 +97,36 @@ public final class SgfReaderTest
         readSgfFile("invalidmove.sgf", true, false);
     }
 
+    /** Test reading with lazy loading of node content.
+        Uses a maximum of one node with loaded content, so that the content
+        is removed and loaded again when accessing the nodes alternately. */
+    public void testLazy() throws Exception
+    {
+        String text = "(;C[root];B[aa]C[foo]TR[bb]XY[1];W[cc]LB[dd:A]V[2])";
+        InputStream in = new ByteArrayInputStream(text.getBytes());
+        SgfReader reader = new SgfReader(in, null, null, 0, 1);
+        Node root = reader.getTree().getRoot();
+        Node node1 = root.getChild();
+        Node node2 = node1.getChild();
+        assertEquals("root", root.getComment());
+        for (int i = 0; i < 2; ++i)
+        {
+            assertEquals(Move.get(BLACK, 0, 18), node1.getMove());
+            assertEquals("foo", node1.getComment());
+            assertEquals(1, node1.getMarkedConst(MarkType.TRIANGLE).size());
+            assertEquals("1", getSgfPropertyValue(node1, "XY"));
+            assertEquals(Move.get(WHITE, 2, 16), node2.getMove());
+            assertEquals("A", node2.getLabel(GoPoint.get(3, 15)));
+            assertEquals(2f, node2.getValue());
+            assertFalse(node2.hasComment());
+        }
+        // Modified content must not be removed
+        node1.setComment("bar");
+        assertEquals("A", node2.getLabel(GoPoint.get(3, 15)));
+        assertEquals("bar", node1.getComment());
+        assertEquals(1, node1.getMarkedConst(MarkType.TRIANGLE).size());
+    }
+
     /** Test that linebreaks in a text value is handled correctly. */
     public void testLinebreaks() throws Exception
     {
@@ -0,0 +1,92 @@
+// ThumbnailBatchTest.java
+
+package net.sf.gogui.thumbnail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import net.sf.gogui.util.ErrorMessage;
+
+public final class ThumbnailBatchTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(ThumbnailBatchTest.class);
+    }
+
+    public void setUp() throws IOException
+    {
+        m_home = System.getProperty("user.home");
+        m_dir = File.createTempFile("gogui-thumbnail", "");
+        m_dir.delete();
+        m_dir.mkdir();
+        System.setProperty("user.home", m_dir.getPath());
+        ThumbnailPlatform.getNormalDir().mkdirs();
+    }
+
+    public void tearDown()
+    {
+        System.setProperty("user.home", m_home);
+        delete(m_dir);
+    }
+
+    /** Test that directories are searched recursively and that files with
+        up-to-date thumbnails are skipped. */
+    public void testRun() throws ErrorMessage, IOException
+    {
+        File games = new File(m_dir, "games");
+        File subDir = new File(games, "sub");
+        subDir.mkdirs();
+        File file1 = new File(games, "1.sgf");
+        writeFile(file1, "(;SZ[9];B[ee])");
+        writeFile(new File(subDir, "2.SGF"), "(;SZ[9];B[ee];W[cc])");
+        writeFile(new File(subDir, "3.txt"), "");
+        ArrayList<File> files = new ArrayList<File>();
+        files.add(games);
+        assertEquals(2, run(files).getNumberCreated());
+        assertEquals(2, ThumbnailPlatform.getNormalDir().list().length);
+        ThumbnailBatch batch = run(files);
+        assertEquals(0, batch.getNumberCreated());
+        assertEquals(2, batch.getNumberSkipped());
+        file1.setLastModified(file1.lastModified() + 10000);
+        batch = run(files);
+        assertEquals(1, batch.getNumberCreated());
+        assertEquals(1, batch.getNumberSkipped());
+        assertEquals(0, batch.getNumberErrors());
+    }
+
+    private String m_home;
+
+    private File m_dir;
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                delete(child);
+        file.delete();
+    }
+
+    private static ThumbnailBatch run(ArrayList<File> files)
+        throws ErrorMessage
+    {
+        ThumbnailBatch batch = new ThumbnailBatch(2, false);
+        batch.run(files);
+        return batch;
+    }
+
+    private static void writeFile(File file, String text) throws IOException
+    {
+        FileWriter writer = new FileWriter(file);
+        writer.write(text);
+        writer.close();
+    }
+}
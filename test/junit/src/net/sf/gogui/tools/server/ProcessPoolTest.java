@@ -0,0 +1,94 @@
+// ProcessPoolTest.java
+
+package net.sf.gogui.tools.server;
+
+import java.io.File;
+
+public final class ProcessPoolTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(ProcessPoolTest.class);
+    }
+
+    /** Test that acquire() waits until a process is released and that
+        released processes are replaced by new processes. */
+    public void testAcquireRelease() throws Exception
+    {
+        final ProcessPool pool = new ProcessPool(getDummy(""), 1);
+        try
+        {
+            Process process = pool.acquire();
+            assertTrue(process.isAlive());
+            final Process[] acquired = new Process[1];
+            Thread thread = new Thread() {
+                    public void run()
+                    {
+                        try
+                        {
+                            acquired[0] = pool.acquire();
+                        }
+                        catch (Exception e)
+                        {
+                        }
+                    }
+                };
+            thread.start();
+            thread.join(500);
+            assertTrue(thread.isAlive());
+            pool.release(process);
+            thread.join(TIMEOUT);
+            assertFalse(thread.isAlive());
+            process.waitFor();
+            assertNotNull(acquired[0]);
+            assertNotSame(process, acquired[0]);
+            assertTrue(acquired[0].isAlive());
+            pool.release(acquired[0]);
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    /** Test that dead idle processes are replaced by new processes.
+        Uses a program that terminates immediately, so all idle processes
+        are dead. The pool must not lose count of its processes, otherwise
+        acquire() would block forever. */
+    public void testRestartDeadProgram() throws Exception
+    {
+        ProcessPool pool = new ProcessPool(getDummy("-version"), 1);
+        try
+        {
+            for (int i = 0; i < 3; ++i)
+            {
+                Process process = pool.acquire();
+                process.waitFor();
+                pool.release(process);
+            }
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    private static final long TIMEOUT = 60000;
+
+    /** Get the command line for running gogui-dummy with the Java virtual
+        machine and class path used for running the tests. */
+    private static String getDummy(String options)
+    {
+        String java = System.getProperty("java.home") + File.separator
+            + "bin" + File.separator + "java";
+        return "\"" + java + "\" -cp \""
+            + System.getProperty("java.class.path")
+            + "\" net.sf.gogui.tools.dummy.Main " + options;
+    }
+}
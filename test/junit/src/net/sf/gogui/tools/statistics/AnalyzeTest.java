@@ -0,0 +1,90 @@
+// AnalyzeTest.java
+
+package net.sf.gogui.tools.statistics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+public final class AnalyzeTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(AnalyzeTest.class);
+    }
+
+    public void setUp() throws IOException
+    {
+        m_dir = File.createTempFile("gogui-statistics", "");
+        m_dir.delete();
+        m_dir.mkdir();
+    }
+
+    public void tearDown()
+    {
+        File[] files = m_dir.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        m_dir.delete();
+    }
+
+    /** Test that only plots with changed data are rendered again in
+        incremental mode. */
+    public void testIncremental() throws Exception
+    {
+        String game = getClass().getResource("game-1.sgf").getFile();
+        File table = new File(m_dir, "statistics.dat");
+        writeTable(table, game, "7");
+        File plot = new File(m_dir, "statistics.game-0.command-0.png");
+        assertEquals(0, analyze(table, false).getNumberPlotsSkipped());
+        assertTrue(plot.exists());
+        int numberPlots = getNumberPlots();
+        assertTrue(numberPlots > 1);
+        assertEquals(numberPlots,
+                     analyze(table, true).getNumberPlotsSkipped());
+        plot.delete();
+        assertEquals(numberPlots - 1,
+                     analyze(table, true).getNumberPlotsSkipped());
+        assertTrue(plot.exists());
+        writeTable(table, game, "8");
+        int skipped = analyze(table, true).getNumberPlotsSkipped();
+        assertTrue(skipped > 0);
+        assertTrue(skipped < numberPlots);
+    }
+
+    private File m_dir;
+
+    private int getNumberPlots()
+    {
+        int result = 0;
+        for (String name : m_dir.list())
+            if (name.endsWith(".png"))
+                ++result;
+        return result;
+    }
+
+    private static Analyze analyze(File table, boolean incremental)
+        throws Exception
+    {
+        return new Analyze(table.toString(), "", 3, 2, incremental);
+    }
+
+    private static void writeTable(File file, String game, String value)
+        throws IOException
+    {
+        FileWriter writer = new FileWriter(file);
+        writer.write("#\n" +
+                     "#File\tMove\tfoo\n" +
+                     game + "\t1\t5\n" +
+                     game + "\t2\t" + value + "\n" +
+                     game + "\t3\t6\n");
+        writer.close();
+    }
+}
@@ -0,0 +1,89 @@
+// CommandStatisticsBenchmark.java
+
+package net.sf.gogui.tools.statistics;
+
+import java.util.ArrayList;
+import java.util.Random;
+import net.sf.gogui.util.Table;
+import net.sf.gogui.util.TableUtil;
+
+/** Measures the time for computing the statistics of all commands of a
+    large table generated by gogui-statistics.
+    Generates a synthetic table with games of 300 moves and a mix of
+    integer, floating point and boolean commands, some of them without
+    results at some positions.
+    This is not a unit test, it is run with
+    <tt>java net.sf.gogui.tools.statistics.CommandStatisticsBenchmark
+    [rows [commands]]</tt>. The default is 3000000 rows and 10 commands. */
+public final class CommandStatisticsBenchmark
+{
+    public static void main(String args[]) throws Exception
+    {
+        int rows = (args.length > 0 ? Integer.parseInt(args[0]) : 3000000);
+        int commands = (args.length > 1 ? Integer.parseInt(args[1]) : 10);
+        long startTime = System.nanoTime();
+        Table table = createTable(rows, commands);
+        Table tableFinal = new Table(table.getColumnTitles());
+        for (int row = NUMBER_MOVES - 1; row < rows; row += NUMBER_MOVES)
+            TableUtil.appendRow(tableFinal, table, row);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.println("created table with " + rows + " rows in "
+                           + (float)seconds + " s");
+        startTime = System.nanoTime();
+        for (int i = 0; i < commands; ++i)
+            new CommandStatistics("command" + i, table, tableFinal, 3);
+        seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.println(commands + " commands in " + (float)seconds
+                           + " s, " + (float)(seconds / commands)
+                           + " s/command");
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private CommandStatisticsBenchmark()
+    {
+    }
+
+    private static final int NUMBER_MOVES = 300;
+
+    private static Table createTable(int rows, int commands)
+    {
+        ArrayList<String> columnTitles = new ArrayList<String>();
+        columnTitles.add("File");
+        columnTitles.add("Move");
+        for (int i = 0; i < commands; ++i)
+            columnTitles.add("command" + i);
+        Table table = new Table(columnTitles);
+        Random random = new Random(0);
+        for (int row = 0; row < rows; ++row)
+        {
+            int move = row % NUMBER_MOVES;
+            table.startRow();
+            table.set(0, "game-" + (row / NUMBER_MOVES) + ".sgf");
+            table.set(1, Integer.toString(move));
+            for (int i = 0; i < commands; ++i)
+            {
+                String value;
+                switch (i % 4)
+                {
+                case 0:
+                    value = Integer.toString(random.nextInt(1000) - move);
+                    break;
+                case 1:
+                    value = Double.toString(
+                        Math.round(1000 * random.nextGaussian()) / 1000.
+                        + move);
+                    break;
+                case 2:
+                    value = (random.nextBoolean() ? "1" : "0");
+                    break;
+                default:
+                    value = (move % 10 == 0 ?
+                             Integer.toString(random.nextInt(100)) : null);
+                    break;
+                }
+                table.set(2 + i, value);
+            }
+        }
+        return table;
+    }
+}
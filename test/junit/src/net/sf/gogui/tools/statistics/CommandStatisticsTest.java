@@ -0,0 +1,74 @@
+// CommandStatisticsTest.java
+
+package net.sf.gogui.tools.statistics;
+
+import java.util.ArrayList;
+import net.sf.gogui.util.Table;
+import net.sf.gogui.util.TableUtil;
+
+public final class CommandStatisticsTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(CommandStatisticsTest.class);
+    }
+
+    /** Test that the statistics at each move are the same as the
+        statistics of the table rows selected by move. */
+    public void testStatisticsAtMove() throws Exception
+    {
+        ArrayList<String> columnTitles = new ArrayList<String>();
+        columnTitles.add("File");
+        columnTitles.add("Move");
+        columnTitles.add("foo");
+        Table table = new Table(columnTitles);
+        addRow(table, "1.sgf", "0", "3");
+        addRow(table, "1.sgf", "1", "2.5");
+        addRow(table, "1.sgf", "2", null);
+        addRow(table, "1.sgf", "4", "x");
+        addRow(table, "2.sgf", "0", "1");
+        addRow(table, "2.sgf", "1", "-7");
+        addRow(table, "2.sgf", "2", "4");
+        CommandStatistics statistics =
+            new CommandStatistics("foo", table, table, 3);
+        assertEquals(5, statistics.m_maxMove);
+        assertEquals(5, statistics.getCount());
+        assertFalse(statistics.m_isBeginCommand);
+        double min = statistics.m_statisticsAll.getMin();
+        double max = statistics.m_statisticsAll.getMax();
+        for (int move = 1; move <= statistics.m_maxMove; ++move)
+        {
+            Table tableAtMove =
+                TableUtil.selectIntRange(table, "Move", move, move);
+            PositionStatistics expected =
+                new PositionStatistics("foo", tableAtMove, true, min, max);
+            PositionStatistics actual = statistics.getStatistics(move - 1);
+            assertEquals(expected.getCount(), actual.getCount());
+            assertEquals(expected.m_numberNoResult, actual.m_numberNoResult);
+            assertEquals(expected.m_onlyIntValues, actual.m_onlyIntValues);
+            assertEquals(expected.getMean(), actual.getMean(), 0);
+            assertEquals(expected.getError(), actual.getError(), 0);
+            assertEquals(expected.m_histogram.getSize(),
+                         actual.m_histogram.getSize());
+            for (int i = 0; i < expected.m_histogram.getSize(); ++i)
+                assertEquals(expected.m_histogram.getCount(i),
+                             actual.m_histogram.getCount(i));
+        }
+        assertEquals(2, statistics.m_tableAtMove.getNumberRows());
+    }
+
+    private static void addRow(Table table, String file, String move,
+                               String value)
+    {
+        table.startRow();
+        table.set(0, file);
+        table.set(1, move);
+        table.set(2, value);
+    }
+}
@@ -0,0 +1,117 @@
+// DuplicateIndexTest.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+import net.sf.gogui.go.Board;
+import net.sf.gogui.go.BoardUtil;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+
+public final class DuplicateIndexTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(DuplicateIndexTest.class);
+    }
+
+    /** Compare results with Compare.checkDuplicate() for random games,
+        rotated games and games with a few changed placements. */
+    public void testCheckDuplicate()
+    {
+        int size = 9;
+        Random random = new Random(1);
+        Board board = new Board(size);
+        DuplicateIndex index = new DuplicateIndex(size);
+        TreeMap<Integer,ArrayList<Compare.Placement>> games
+            = new TreeMap<Integer,ArrayList<Compare.Placement>>();
+        int numberExact = 0;
+        int numberNear = 0;
+        for (int gameNumber = 0; gameNumber < 200; ++gameNumber)
+        {
+            ArrayList<Compare.Placement> moves;
+            if (games.isEmpty() || random.nextInt(3) == 0)
+                moves = createRandomGame(random, size, 2 + random.nextInt(60));
+            else
+            {
+                int rot = random.nextInt(BoardUtil.NUMBER_ROTATIONS);
+                int numberChanges = random.nextInt(4);
+                int other = random.nextInt(games.size());
+                moves = modifyGame(games.get(other), random, size, rot,
+                                   numberChanges);
+            }
+            boolean alternated = (gameNumber % 2 != 0);
+            for (int i = 0; i < 2; ++i)
+            {
+                boolean useAlternate = (i == 1);
+                String expected =
+                    Compare.checkDuplicate(board, moves, games, useAlternate,
+                                           alternated);
+                assertEquals(expected,
+                             index.checkDuplicate(moves, useAlternate,
+                                                  alternated));
+                if (! expected.equals("-"))
+                {
+                    if (expected.endsWith("?"))
+                        ++numberNear;
+                    else
+                        ++numberExact;
+                }
+            }
+            games.put(gameNumber, moves);
+            index.add(gameNumber, moves);
+        }
+        assertTrue(numberExact > 0);
+        assertTrue(numberNear > 0);
+    }
+
+    private static ArrayList<Compare.Placement>
+        createRandomGame(Random random, int size, int length)
+    {
+        ArrayList<Compare.Placement> result =
+            new ArrayList<Compare.Placement>();
+        for (int i = 0; i < length; ++i)
+            result.add(new Compare.Placement(false, i % 2 == 0 ? BLACK : WHITE,
+                                             getRandomPoint(random, size)));
+        return result;
+    }
+
+    private static GoPoint getRandomPoint(Random random, int size)
+    {
+        return GoPoint.get(random.nextInt(size), random.nextInt(size));
+    }
+
+    private static ArrayList<Compare.Placement>
+        modifyGame(ArrayList<Compare.Placement> moves, Random random,
+                   int size, int rot, int numberChanges)
+    {
+        ArrayList<Compare.Placement> result =
+            new ArrayList<Compare.Placement>();
+        for (Compare.Placement placement : moves)
+        {
+            GoPoint p = BoardUtil.rotate(rot, placement.m_point, size);
+            result.add(new Compare.Placement(placement.m_isSetup,
+                                             placement.m_color, p));
+        }
+        for (int i = 0; i < numberChanges; ++i)
+        {
+            int n = random.nextInt(result.size());
+            Compare.Placement placement = result.get(n);
+            result.set(n, new Compare.Placement(placement.m_isSetup,
+                                                placement.m_color,
+                                                getRandomPoint(random, size)));
+        }
+        if (random.nextBoolean())
+            result.add(new Compare.Placement(false, BLACK, null));
+        return result;
+    }
+}
@@ -0,0 +1,153 @@
+// TableReaderTest.java
+
+package net.sf.gogui.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+public final class TableReaderTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(TableReaderTest.class);
+    }
+
+    public void testRead() throws Exception
+    {
+        TableReader reader =
+            new TableReader(new StringReader("# Key: Value\n" +
+                                             "#\n" +
+                                             "#Col1\tCol2\tCol3\n" +
+                                             "1\t2\t1.5\n" +
+                                             "\n" +
+                                             "foo\t\tbar\n"));
+        assertEquals("Value", reader.getProperty("Key"));
+        assertEquals(3, reader.getNumberColumns());
+        assertEquals("Col3", reader.getColumnTitle(2));
+        assertTrue(reader.next());
+        assertEquals(4, reader.getLineNumber());
+        assertEquals(2, reader.getInt("Col2"));
+        assertEquals(1.5, reader.getDouble(2), 0);
+        assertTrue(reader.next());
+        assertEquals("", reader.get(0));
+        assertNull(reader.get(1));
+        assertTrue(reader.next());
+        assertEquals("foo", reader.get(0));
+        assertEquals("", reader.get(1));
+        assertEquals("bar", reader.get(2));
+        boolean errorThrown = false;
+        try
+        {
+            reader.getInt(1);
+        }
+        catch (Table.InvalidElement e)
+        {
+            errorThrown = true;
+        }
+        assertTrue(errorThrown);
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    /** Test that the reader is closed if the constructor fails. */
+    public void testCloseOnInvalidFormat() throws Exception
+    {
+        final boolean[] closed = new boolean[1];
+        StringReader in = new StringReader("#\n#Col1\n1\t2\n") {
+                public void close()
+                {
+                    closed[0] = true;
+                    super.close();
+                }
+            };
+        boolean errorThrown = false;
+        try
+        {
+            new TableReader(in);
+        }
+        catch (Table.InvalidFormat e)
+        {
+            errorThrown = true;
+        }
+        assertTrue(errorThrown);
+        assertTrue(closed[0]);
+    }
+
+    /** Test reading a file with all kinds of line ends. */
+    public void testReadFile() throws Exception
+    {
+        File file = File.createTempFile("gogui", ".dat");
+        try
+        {
+            writeFile(file, "# Key: Value\r\n#\r#Col1\tCol2\n1\t2\r\n\r\n"
+                      + "3\t4\r5");
+            TableReader reader = new TableReader(file);
+            assertEquals("Value", reader.getProperty("Key"));
+            assertEquals(2, reader.getNumberColumns());
+            assertTrue(reader.next());
+            assertEquals("2", reader.get(1));
+            assertTrue(reader.next());
+            assertEquals("", reader.get(0));
+            assertTrue(reader.next());
+            assertEquals("4", reader.get("Col2"));
+            assertTrue(reader.next());
+            assertEquals("5", reader.get(0));
+            assertEquals(7, reader.getLineNumber());
+            assertFalse(reader.next());
+            reader.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testWrite() throws Exception
+    {
+        File file = File.createTempFile("gogui", ".dat");
+        try
+        {
+            Map<String,String> properties = new TreeMap<String,String>();
+            properties.put("Key", "Value");
+            ArrayList<String> columnTitles = new ArrayList<String>();
+            columnTitles.add("Col1");
+            columnTitles.add("Col2");
+            TableWriter writer = new TableWriter(file);
+            writer.writeHeader(properties, columnTitles);
+            writer.writeRow(new String[] { "1", null });
+            writer.writeRow(new String[] { "foo", "2" });
+            writer.close();
+            Table table = new Table();
+            table.read(file);
+            assertEquals("Value", table.getProperty("Key"));
+            assertEquals(columnTitles, table.getColumnTitles());
+            assertEquals(2, table.getNumberRows());
+            assertEquals(1, table.getInt(0, 0));
+            assertTrue(table.isNull(1, 0));
+            assertEquals("foo", table.get(0, 1));
+            assertEquals(2, table.getInt("Col2", 1));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private static void writeFile(File file, String text) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(text.getBytes());
+        out.close();
+    }
+}
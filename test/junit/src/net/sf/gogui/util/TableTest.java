@@ -3,6 +3,7 @@
 package net.sf.gogui.util;
 
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 
 public final class TableTest
@@ -36,6 +37,53 @@ public final class TableTest
         assertEquals("bar", table.get(2, 1));
     }
 
+    /** Test that elements are returned unchanged if columns change their
+        type. */
+    public void testColumnTypes() throws Exception
+    {
+        Table table = get("#\n" +
+                          "#Bool\tInt\tDouble\tString\tMixed\n" +
+                          "0\t-5\t0.5\tfoo\t1\n" +
+                          "1\t1\t-1.0E10\tfoo\t0.25\n" +
+                          "1\t0\tNaN\tbar\t007\n" +
+                          "1\t\t\t\t\n");
+        assertEquals(Table.ColumnType.BOOL, table.getColumnType(0));
+        assertEquals(Table.ColumnType.INT, table.getColumnType(1));
+        assertEquals(Table.ColumnType.DOUBLE, table.getColumnType(2));
+        assertEquals(Table.ColumnType.STRING, table.getColumnType(3));
+        assertEquals(Table.ColumnType.STRING, table.getColumnType(4));
+        assertEquals("1", table.get(0, 3));
+        assertEquals(-5, table.getInt(1, 0));
+        assertEquals(-1e10, table.getDouble(2, 1), 0);
+        assertEquals("NaN", table.get(2, 2));
+        assertEquals("bar", table.get(3, 2));
+        assertEquals("1", table.get(4, 0));
+        assertEquals("0.25", table.get(4, 1));
+        assertEquals("007", table.get(4, 2));
+        assertEquals(7, table.getInt(4, 2));
+        // Empty elements at the end of a line are not set
+        assertTrue(table.isNull(1, 3));
+        assertNull(table.get(4, 3));
+        table.startRow();
+        table.set(0, "2");
+        table.set(1, "1.5");
+        table.set(2, "1.50");
+        assertEquals(Table.ColumnType.INT, table.getColumnType(0));
+        assertEquals(Table.ColumnType.STRING, table.getColumnType(1));
+        assertEquals(Table.ColumnType.STRING, table.getColumnType(2));
+        assertEquals("-5", table.get(1, 0));
+        assertEquals("1.5", table.get(1, 4));
+        assertEquals("-1.0E10", table.get(2, 1));
+        assertEquals("1.50", table.get(2, 4));
+        StringWriter writer = new StringWriter();
+        table.save(writer, false);
+        assertEquals("0\t-5\t0.5\tfoo\t1\n" +
+                     "1\t1\t-1.0E10\tfoo\t0.25\n" +
+                     "1\t0\tNaN\tbar\t007\n" +
+                     "1\t\t\t\t\n" +
+                     "2\t1.5\t1.50\t\t\n", writer.toString());
+    }
+
     public void testGetDouble() throws ErrorMessage
     {
         ArrayList<String> columnTitles = new ArrayList<String>();
@@ -126,6 +174,47 @@ public final class TableTest
         assertTrue(errorThrown);
     }
 
+    public void testSaveRow() throws Exception
+    {
+        Table table = get("#\n" +
+                          "#Col1\tCol2\n" +
+                          "1\t2\n" +
+                          "3\t\n");
+        StringWriter writer = new StringWriter();
+        table.saveRow(writer, 1);
+        table.saveRow(writer, 0);
+        assertEquals("3\t\n1\t2\n", writer.toString());
+    }
+
+    public void testSortByIntColumn() throws Exception
+    {
+        Table table = get("#\n" +
+                          "#Col1\tCol2\n" +
+                          "5\ta\n" +
+                          "3\tb\n" +
+                          "4\tc\n" +
+                          "3\td\n" +
+                          "1\te\n");
+        table.sortByIntColumn("Col1", 1, 5);
+        assertEquals("a", table.get(1, 0));
+        assertEquals("e", table.get(1, 1));
+        assertEquals("b", table.get(1, 2));
+        assertEquals("d", table.get(1, 3));
+        assertEquals("c", table.get(1, 4));
+        table.startRow();
+        table.set(0, "x");
+        boolean errorThrown = false;
+        try
+        {
+            table.sortByIntColumn(0, 0, table.getNumberRows());
+        }
+        catch (ErrorMessage e)
+        {
+            errorThrown = true;
+        }
+        assertTrue(errorThrown);
+    }
+
     private static Table get(String string) throws Exception
     {
         Table table = new Table();